@@ -25,6 +25,7 @@ import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.service.tax.AccountManagementService;
 import com.axelor.exception.AxelorException;
+import java.time.LocalDate;
 
 public interface AccountManagementAccountService extends AccountManagementService {
 
@@ -48,6 +49,29 @@ public interface AccountManagementAccountService extends AccountManagementServic
       boolean fixedAsset)
       throws AxelorException;
 
+  /**
+   * Get the account, the tax and the tax line of a product in one call, according to the fiscal
+   * position.
+   *
+   * @param date the date of the tax line
+   * @param product
+   * @param company
+   * @param fiscalPosition
+   * @param isPurchase Specify if we want get the account and tax for purchase or sale
+   * @param fixedAsset Specify if we should get the purchase account for fixed asset or not. Used
+   *     only if isPurchase param is true.
+   * @return the account, tax and tax line of the product
+   * @throws AxelorException if one of them is not configured
+   */
+  public ProductAccounting getProductAccounting(
+      LocalDate date,
+      Product product,
+      Company company,
+      FiscalPosition fiscalPosition,
+      boolean isPurchase,
+      boolean fixedAsset)
+      throws AxelorException;
+
   /**
    * Get the product analytic distribution template
    *
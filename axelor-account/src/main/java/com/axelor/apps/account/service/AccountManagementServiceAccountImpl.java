@@ -25,6 +25,7 @@ import com.axelor.apps.account.db.FixedAssetCategory;
 import com.axelor.apps.account.exception.IExceptionMessage;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.service.tax.AccountManagementCache;
 import com.axelor.apps.base.service.tax.AccountManagementServiceImpl;
 import com.axelor.apps.base.service.tax.FiscalPositionService;
 import com.axelor.apps.base.service.tax.TaxService;
@@ -34,6 +35,7 @@ import com.axelor.i18n.I18n;
 import com.axelor.meta.CallMethod;
 import com.google.inject.Inject;
 import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,8 +46,10 @@ public class AccountManagementServiceAccountImpl extends AccountManagementServic
 
   @Inject
   public AccountManagementServiceAccountImpl(
-      FiscalPositionService fiscalPositionService, TaxService taxService) {
-    super(fiscalPositionService, taxService);
+      FiscalPositionService fiscalPositionService,
+      TaxService taxService,
+      AccountManagementCache accountManagementCache) {
+    super(fiscalPositionService, taxService, accountManagementCache);
   }
 
   /**
@@ -68,6 +72,25 @@ public class AccountManagementServiceAccountImpl extends AccountManagementServic
       boolean fixedAsset)
       throws AxelorException {
 
+    return accountManagementCache.get(
+        Account.class,
+        product,
+        company,
+        fiscalPosition,
+        isPurchase,
+        fixedAsset,
+        null,
+        () -> computeProductAccount(product, company, fiscalPosition, isPurchase, fixedAsset));
+  }
+
+  protected Account computeProductAccount(
+      Product product,
+      Company company,
+      FiscalPosition fiscalPosition,
+      boolean isPurchase,
+      boolean fixedAsset)
+      throws AxelorException {
+
     log.debug(
         "Get the account for the product {} (company : {}, purchase : {}, fixed asset : {}, fiscal position : {})",
         new Object[] {
@@ -95,6 +118,22 @@ public class AccountManagementServiceAccountImpl extends AccountManagementServic
         company.getName());
   }
 
+  @Override
+  public ProductAccounting getProductAccounting(
+      LocalDate date,
+      Product product,
+      Company company,
+      FiscalPosition fiscalPosition,
+      boolean isPurchase,
+      boolean fixedAsset)
+      throws AxelorException {
+
+    return new ProductAccounting(
+        getProductAccount(product, company, fiscalPosition, isPurchase, fixedAsset),
+        getProductTax(product, company, fiscalPosition, isPurchase),
+        getTaxLine(date, product, company, fiscalPosition, isPurchase));
+  }
+
   /**
    * Get the product tax
    *
@@ -0,0 +1,48 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.Tax;
+import com.axelor.apps.account.db.TaxLine;
+
+/** The account, tax and tax line resolved for a product. */
+public class ProductAccounting {
+
+  private final Account account;
+  private final Tax tax;
+  private final TaxLine taxLine;
+
+  public ProductAccounting(Account account, Tax tax, TaxLine taxLine) {
+    this.account = account;
+    this.tax = tax;
+    this.taxLine = taxLine;
+  }
+
+  public Account getAccount() {
+    return account;
+  }
+
+  public Tax getTax() {
+    return tax;
+  }
+
+  public TaxLine getTaxLine() {
+    return taxLine;
+  }
+}
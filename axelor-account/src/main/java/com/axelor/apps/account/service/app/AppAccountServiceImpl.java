@@ -23,9 +23,6 @@ import com.axelor.apps.base.db.AppAccount;
 import com.axelor.apps.base.db.AppBudget;
 import com.axelor.apps.base.db.AppInvoice;
 import com.axelor.apps.base.db.Company;
-import com.axelor.apps.base.db.repo.AppAccountRepository;
-import com.axelor.apps.base.db.repo.AppBudgetRepository;
-import com.axelor.apps.base.db.repo.AppInvoiceRepository;
 import com.axelor.apps.base.db.repo.CompanyRepository;
 import com.axelor.apps.base.service.app.AppBaseServiceImpl;
 import com.google.inject.Inject;
@@ -36,29 +33,23 @@ import java.util.List;
 @Singleton
 public class AppAccountServiceImpl extends AppBaseServiceImpl implements AppAccountService {
 
-  @Inject private AppAccountRepository appAccountRepo;
-
-  @Inject private AppBudgetRepository appBudgetRepo;
-
-  @Inject private AppInvoiceRepository appInvoiceRepo;
-
   @Inject private AccountConfigRepository accountConfigRepo;
 
   @Inject private CompanyRepository companyRepo;
 
   @Override
   public AppAccount getAppAccount() {
-    return appAccountRepo.all().fetchOne();
+    return appConfigCache.find(AppAccount.class);
   }
 
   @Override
   public AppBudget getAppBudget() {
-    return appBudgetRepo.all().fetchOne();
+    return appConfigCache.find(AppBudget.class);
   }
 
   @Override
   public AppInvoice getAppInvoice() {
-    return appInvoiceRepo.all().fetchOne();
+    return appConfigCache.find(AppInvoice.class);
   }
 
   @Transactional
@@ -31,14 +31,13 @@ import com.axelor.apps.message.db.repo.MessageRepository;
 import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.ExceptionOriginRepository;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
-import java.util.List;
 import javax.persistence.Table;
 
 public class BatchDebtRecovery extends BatchStrategy {
@@ -98,57 +97,63 @@ public class BatchDebtRecovery extends BatchStrategy {
   public void debtRecoveryPartner() {
     Company company = batch.getAccountingBatch().getCompany();
 
-    Query<Partner> query =
-        partnerRepository
-            .all()
-            .filter(
-                "self.isContact = false "
-                    + "AND :_company MEMBER OF self.companySet "
-                    + "AND self.accountingSituationList IS NOT EMPTY "
-                    + "AND self.isCustomer = true "
-                    + "AND self.id NOT IN ("
-                    + Beans.get(BlockingService.class)
-                        .listOfBlockedPartner(company, BlockingRepository.REMINDER_BLOCKING)
-                    + ")")
-            .bind("_company", company)
-            .order("id");
-
-    int offset = 0;
-    List<Partner> partnerList;
-
-    while (!(partnerList = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      findBatch();
-
-      for (Partner partner : partnerList) {
-        ++offset;
-
-        try {
-          boolean remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company);
-          if (remindedOk) {
-            DebtRecovery debtRecovery = debtRecoveryService.getDebtRecovery(partner, company);
-            addBatchToModel(debtRecovery);
-            incrementDone(partner);
-          }
-        } catch (AxelorException e) {
-          TraceBackService.trace(
-              new AxelorException(
-                  e, e.getCategory(), I18n.get("Partner") + " %s", partner.getName()),
-              ExceptionOriginRepository.DEBT_RECOVERY,
-              batch.getId());
-          incrementAnomaly(partner);
-          break;
-        } catch (Exception e) {
-          TraceBackService.trace(
-              new Exception(String.format(I18n.get("Partner") + " %s", partner.getName()), e),
-              ExceptionOriginRepository.DEBT_RECOVERY,
-              batch.getId());
-          incrementAnomaly(partner);
-          break;
-        }
-      }
+    String filter =
+        "self.isContact = false "
+            + "AND :_company MEMBER OF self.companySet "
+            + "AND self.accountingSituationList IS NOT EMPTY "
+            + "AND self.isCustomer = true "
+            + "AND self.id NOT IN ("
+            + Beans.get(BlockingService.class)
+                .listOfBlockedPartner(company, BlockingRepository.REMINDER_BLOCKING)
+            + ")";
+
+    processRecords(
+        Partner.class,
+        filter,
+        ImmutableMap.of("_company", company),
+        partner -> debtRecoveryPartner(partner, company));
+  }
+
+  @Override
+  protected String getPartitionKey() {
+    return "id";
+  }
 
-      JPA.clear();
+  @Override
+  protected boolean isResumable() {
+    return true;
+  }
+
+  /**
+   * Generate the debt recovery of a partner.
+   *
+   * @param partner
+   * @param company
+   * @return false if an anomaly occurred
+   */
+  protected boolean debtRecoveryPartner(Partner partner, Company company) {
+    try {
+      boolean remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company);
+      if (remindedOk) {
+        DebtRecovery debtRecovery = debtRecoveryService.getDebtRecovery(partner, company);
+        addBatchToModel(debtRecovery);
+        incrementDone(partner);
+      }
+      return true;
+    } catch (AxelorException e) {
+      TraceBackService.trace(
+          new AxelorException(e, e.getCategory(), I18n.get("Partner") + " %s", partner.getName()),
+          ExceptionOriginRepository.DEBT_RECOVERY,
+          batch.getId());
+      incrementAnomaly(partner);
+    } catch (Exception e) {
+      TraceBackService.trace(
+          new Exception(String.format(I18n.get("Partner") + " %s", partner.getName()), e),
+          ExceptionOriginRepository.DEBT_RECOVERY,
+          batch.getId());
+      incrementAnomaly(partner);
     }
+    return false;
   }
 
   protected void incrementDone(Partner partner) {
@@ -170,7 +175,8 @@ public class BatchDebtRecovery extends BatchStrategy {
     String sqlString = String.format("INSERT INTO %s VALUES (:modelId, :batchId)", tableName);
     javax.persistence.Query query = JPA.em().createNativeQuery(sqlString);
     query.setParameter("modelId", model.getId());
-    query.setParameter("batchId", batch.getId());
+    // Partners may be processed by partition workers, which must not touch the shared batch.
+    query.setParameter("batchId", getCurrentBatchId());
     JPA.runInTransaction(query::executeUpdate);
   }
 
@@ -17,20 +17,21 @@
  */
 package com.axelor.apps.base.service.app;
 
+import com.axelor.app.AppSettings;
 import com.axelor.apps.base.db.App;
 import com.axelor.apps.base.db.DataBackup;
 import com.axelor.apps.tool.date.DateTool;
+import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.AuditableModel;
 import com.axelor.common.StringUtils;
 import com.axelor.data.csv.CSVBind;
 import com.axelor.data.csv.CSVConfig;
 import com.axelor.data.csv.CSVInput;
-import com.axelor.db.JpaRepository;
-import com.axelor.db.Model;
-import com.axelor.db.Query;
+import com.axelor.db.JPA;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.db.mapper.Property;
 import com.axelor.exception.service.TraceBackService;
+import com.axelor.i18n.I18n;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.meta.db.MetaJsonField;
 import com.axelor.meta.db.MetaModel;
@@ -41,26 +42,36 @@ import com.google.common.io.Files;
 import com.google.inject.Inject;
 import com.opencsv.CSVWriter;
 import com.thoughtworks.xstream.XStream;
-import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
+import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,15 +81,10 @@ public class DataBackupCreateService {
   private static final char QUOTE_CHAR = '"';
   private static final char REFERENCE_FIELD_SEPARATOR = '|';
 
-  private static final int BUFFER_SIZE = 1000;
-
   @Inject private MetaModelRepository metaModelRepo;
 
   private Logger LOG = LoggerFactory.getLogger(getClass());
 
-  private boolean notNullReferenceFlag, referenceFlag;
-  private boolean byteArrFieldFlag = false;
-
   private static Set<String> exceptColumnNameList =
       ImmutableSet.of(
           "importOrigin",
@@ -107,70 +113,186 @@ public class DataBackupCreateService {
           .put("com.axelor.apps.bankpayment.db.BankStatementFileFormat", "self.name = :name")
           .build();
 
-  List<String> fileNameList;
-
-  /* Generate csv Files for each individual MetaModel and single config file */
-  public File create(DataBackup dataBackup) throws InterruptedException {
+  /*
+   * Generate csv Files for each individual MetaModel and single config file.
+   *
+   * Models are exported by data.backup.workers threads (1 by default). Each model is written in
+   * the temporary directory and moved into the zip once complete, so that a model failing midway
+   * leaves no partial file: it is left out of the backup and reported in the errors.
+   */
+  public File create(DataBackup dataBackup, List<String> errors) throws InterruptedException {
     File tempDir = Files.createTempDir();
     String tempDirectoryPath = tempDir.getAbsolutePath();
+    long startTime = System.currentTimeMillis();
 
-    fileNameList = new ArrayList<>();
     List<MetaModel> metaModelList = getMetaModels();
+    Map<String, List<String>> subClassesMap = getSubClassesMap(metaModelList);
+    BackupOptions options = new BackupOptions(dataBackup);
+
+    List<ModelExport> exports = new ArrayList<>();
+    for (MetaModel metaModel : metaModelList) {
+      exports.add(
+          new ModelExport(
+              metaModel.getName(),
+              metaModel.getFullName(),
+              subClassesMap.get(metaModel.getFullName())));
+    }
+
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmSS");
+    String backupZipFileName = "DataBackup_" + LocalDateTime.now().format(formatter) + ".zip";
+    File zipFile = new File(tempDirectoryPath, backupZipFileName);
+
+    try (ZipOutputStream out =
+        new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+
+      int workers = Math.max(1, AppSettings.get().getInt("data.backup.workers", 1));
+      if (workers > 1) {
+        exportParallel(exports, options, tempDirectoryPath, out, workers, errors);
+      } else {
+        for (ModelExport export : exports) {
+          exportToFile(export, options, tempDirectoryPath);
+          addToZip(export, tempDirectoryPath, out);
+        }
+      }
+
+      out.putNextEntry(new ZipEntry(DataBackupServiceImpl.CONFIG_FILE_NAME));
+      out.write(generateConfig(createConfig(exports, options)).getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+    } catch (IOException e) {
+      TraceBackService.trace(e, "Error From DataBackupCreateService - create()");
+      errors.add(String.format(I18n.get("Backup file not written: %s"), e.getMessage()));
+    }
+
+    for (ModelExport export : exports) {
+      if (export.error != null) {
+        TraceBackService.trace(export.error, DataBackupService.class.getName());
+        errors.add(
+            String.format(
+                I18n.get("Model %s not backed up: %s"), export.name, export.error.getMessage()));
+      }
+    }
+
+    LOG.info(
+        "Data backup of {} models created in {} ms",
+        exports.stream().filter(export -> export.exported).count(),
+        System.currentTimeMillis() - startTime);
+    return zipFile;
+  }
+
+  private void exportParallel(
+      List<ModelExport> exports,
+      BackupOptions options,
+      String dirPath,
+      ZipOutputStream out,
+      int workers,
+      List<String> errors)
+      throws InterruptedException, IOException {
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    CompletionService<ModelExport> completionService = new ExecutorCompletionService<>(executor);
+    Subject subject = AuthUtils.getSubject();
+
+    try {
+      for (ModelExport export : exports) {
+        Callable<ModelExport> task =
+            () -> {
+              exportToFile(export, options, dirPath);
+              return export;
+            };
+        completionService.submit(subject != null ? subject.associateWith(task) : task);
+      }
+
+      for (int i = 0; i < exports.size(); i++) {
+        try {
+          addToZip(completionService.take().get(), dirPath, out);
+          LOG.debug("Data backup : {}/{} models done", i + 1, exports.size());
+        } catch (ExecutionException e) {
+          TraceBackService.trace(e.getCause(), DataBackupService.class.getName());
+          errors.add(e.getCause().toString());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /* Move the files of an exported model into the zip */
+  protected void addToZip(ModelExport export, String dirPath, ZipOutputStream out)
+      throws IOException {
+
+    if (export.exported) {
+      addFileToZip(out, dirPath, export.getFileName());
+    }
+    for (String fileName : export.fileNames) {
+      addFileToZip(out, dirPath, fileName);
+    }
+  }
+
+  /*
+   * Export a model in a csv file of the given directory. On failure, the files written so far are
+   * deleted and the error is kept on the export.
+   */
+  protected void exportToFile(ModelExport export, BackupOptions options, String dirPath) {
+
+    File csvFile = new File(dirPath, export.getFileName());
+    try {
+      if (getMetaModelDataCount(export) == 0) {
+        return;
+      }
+      try (CSVWriter csvWriter =
+          new CSVWriter(
+              new BufferedWriter(
+                  new OutputStreamWriter(new FileOutputStream(csvFile), StandardCharsets.UTF_8)),
+              SEPARATOR,
+              QUOTE_CHAR)) {
+        writeCSVData(export, options, csvWriter, dirPath);
+      }
+      export.exported = true;
+    } catch (ClassNotFoundException e) {
+    } catch (IOException | RuntimeException e) {
+      csvFile.delete();
+      for (String fileName : export.fileNames) {
+        new File(dirPath, fileName).delete();
+      }
+      export.fileNames.clear();
+      export.exported = false;
+      export.error = e;
+    }
+  }
+
+  private CSVConfig createConfig(List<ModelExport> exports, BackupOptions options) {
 
     LinkedList<CSVInput> simpleCsvs = new LinkedList<>();
     LinkedList<CSVInput> refernceCsvs = new LinkedList<>();
     LinkedList<CSVInput> notNullReferenceCsvs = new LinkedList<>();
-    Map<String, List<String>> subClassesMap = getSubClassesMap();
-
-    for (MetaModel metaModel : metaModelList) {
 
-      try {
-        List<String> subClasses = subClassesMap.get(metaModel.getFullName());
-        long totalRecord = getMetaModelDataCount(metaModel, subClasses);
-        if (totalRecord > 0) {
-          LOG.debug("Exporting Model : " + metaModel.getFullName());
-
-          notNullReferenceFlag = false;
-          referenceFlag = false;
-
-          CSVWriter csvWriter =
-              new CSVWriter(
-                  new FileWriter(new File(tempDirectoryPath, metaModel.getName() + ".csv")),
-                  SEPARATOR,
-                  QUOTE_CHAR);
-          CSVInput csvInput =
-              writeCSVData(
-                  metaModel, csvWriter, dataBackup, totalRecord, subClasses, tempDirectoryPath);
-          csvWriter.close();
-
-          if (notNullReferenceFlag) {
-            notNullReferenceCsvs.add(csvInput);
-          } else if (referenceFlag) {
-            refernceCsvs.add(csvInput);
-            CSVInput temcsv = new CSVInput();
-            temcsv.setFileName(csvInput.getFileName());
-            temcsv.setTypeName(csvInput.getTypeName());
-
-            if (dataBackup.getIsRelativeDate()) {
-              temcsv.setBindings(new ArrayList<>());
-              getCsvInputForDateorDateTime(metaModel, temcsv);
-            }
-            if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
-              temcsv.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
-            }
-            if (Class.forName(metaModel.getFullName()).getSuperclass() == App.class) {
-              temcsv.setSearch("self.code = :code");
-            }
-            simpleCsvs.add(temcsv);
-          } else {
-            simpleCsvs.add(csvInput);
-          }
-
-          fileNameList.add(metaModel.getName() + ".csv");
+    for (ModelExport export : exports) {
+      if (!export.exported) {
+        continue;
+      }
+      CSVInput csvInput = export.csvInput;
+
+      if (export.notNullReferenceFlag) {
+        notNullReferenceCsvs.add(csvInput);
+      } else if (export.referenceFlag) {
+        refernceCsvs.add(csvInput);
+        CSVInput temcsv = new CSVInput();
+        temcsv.setFileName(csvInput.getFileName());
+        temcsv.setTypeName(csvInput.getTypeName());
+
+        if (options.isRelativeDate) {
+          temcsv.setBindings(new ArrayList<>());
+          getCsvInputForDateorDateTime(export.fullName, temcsv);
         }
-      } catch (ClassNotFoundException e) {
-      } catch (IOException e) {
-        TraceBackService.trace(e, DataBackupService.class.getName());
+        if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
+          temcsv.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
+        }
+        if (export.isApp()) {
+          temcsv.setSearch("self.code = :code");
+        }
+        simpleCsvs.add(temcsv);
+      } else {
+        simpleCsvs.add(csvInput);
       }
     }
 
@@ -179,16 +301,12 @@ public class DataBackupCreateService {
     csvConfig.getInputs().addAll(notNullReferenceCsvs);
     csvConfig.getInputs().addAll(refernceCsvs);
     csvConfig.getInputs().addAll(notNullReferenceCsvs);
-    generateConfig(tempDirectoryPath, csvConfig);
-
-    fileNameList.add(DataBackupServiceImpl.CONFIG_FILE_NAME);
-    File zippedFile = generateZIP(tempDirectoryPath, fileNameList);
-    return zippedFile;
+    return csvConfig;
   }
 
-  void getCsvInputForDateorDateTime(MetaModel metaModel, CSVInput csvInput) {
+  void getCsvInputForDateorDateTime(String fullName, CSVInput csvInput) {
     try {
-      Mapper metaModelMapper = Mapper.of(Class.forName(metaModel.getFullName()));
+      Mapper metaModelMapper = Mapper.of(Class.forName(fullName));
       Property[] properties = metaModelMapper.getProperties();
       for (Property property : properties) {
         String propertyType = property.getType().toString();
@@ -213,8 +331,7 @@ public class DataBackupCreateService {
     return metaModels;
   }
 
-  private Map<String, List<String>> getSubClassesMap() {
-    List<MetaModel> metaModels = getMetaModels();
+  private Map<String, List<String>> getSubClassesMap(List<MetaModel> metaModels) {
     List<String> subClasses;
     Map<String, List<String>> subClassMap = new HashMap<String, List<String>>();
     for (MetaModel metaModel : metaModels) {
@@ -237,130 +354,113 @@ public class DataBackupCreateService {
     return subClassMap;
   }
 
-  /* Get All Data of Specific MetaModel */
-  private List<Model> getMetaModelDataList(
-      MetaModel metaModel, int start, Integer fetchLimit, List<String> subClasses)
-      throws ClassNotFoundException {
-
-    Query<Model> query = getQuery(metaModel, subClasses);
-
-    if (query != null) {
-      return query.fetch(fetchLimit, start);
+  protected long getMetaModelDataCount(ModelExport export) throws ClassNotFoundException {
+    Class.forName(export.fullName);
+    try {
+      return JPA.em()
+          .createQuery(
+              "SELECT COUNT(self.id) FROM " + export.name + " self" + getWhere(export),
+              Long.class)
+          .getSingleResult();
+    } catch (RuntimeException e) {
+      TraceBackService.trace(e, DataBackupService.class.getName());
+      return 0;
     }
-
-    return null;
   }
 
-  private long getMetaModelDataCount(MetaModel metaModel, List<String> subClasses)
-      throws InterruptedException, ClassNotFoundException {
-    Query<Model> query = getQuery(metaModel, subClasses);
-    long count = 0;
-    if (query != null) {
-      count = query.count();
+  /* Exclude the records of the sub classes, exported with their own model */
+  private static String getWhere(ModelExport export) {
+    if (export.subClasses == null || export.subClasses.isEmpty()) {
+      return "";
     }
-    return count;
+    List<String> conditions = new ArrayList<>();
+    for (String subClassName : export.subClasses) {
+      conditions.add("self.id NOT IN (SELECT sub.id FROM " + subClassName + " sub)");
+    }
+    return " WHERE " + String.join(" AND ", conditions);
   }
 
-  private Query<Model> getQuery(MetaModel metaModel, List<String> subClasses)
+  /*
+   * Write the records of a model, read by pages of fetchLimit records following the id. Records
+   * are read through a projection of the exported columns, without loading the entities.
+   */
+  protected void writeCSVData(
+      ModelExport export, BackupOptions options, CSVWriter csvWriter, String dirPath)
       throws ClassNotFoundException {
-    String whereStr = "";
-    if (subClasses != null && subClasses.size() > 0) {
-      for (String subClassName : subClasses) {
-        whereStr += whereStr.length() > 0 ? " AND " : "";
-        whereStr += "id NOT IN (select id from " + subClassName + ")";
-      }
+
+    long startTime = System.currentTimeMillis();
+    CSVInput csvInput = export.csvInput;
+    Mapper metaModelMapper = Mapper.of(Class.forName(export.fullName));
+    List<Property> properties =
+        Arrays.stream(metaModelMapper.getProperties())
+            .filter(this::isPropertyExportable)
+            .collect(Collectors.toList());
+
+    csvInput.setFileName(export.getFileName());
+    csvInput.setTypeName(export.fullName);
+    csvInput.setBindings(new ArrayList<>());
+
+    List<String> headerArr = new ArrayList<>();
+    for (Property property : properties) {
+      headerArr.add(getMetaModelHeader(property, export, options.isRelativeDate));
     }
-    @SuppressWarnings("unchecked")
-    Class<Model> klass = (Class<Model>) Class.forName(metaModel.getFullName());
-    JpaRepository<Model> model = null;
-    Query<Model> query = null;
-    try {
-      model = JpaRepository.of(klass);
-    } catch (Exception e) {
-      TraceBackService.trace(e, DataBackupService.class.getName());
+    if (export.byteArrFieldFlag) {
+      csvInput.setCallable(
+          "com.axelor.apps.base.service.app.DataBackupRestoreService:importObjectWithByteArray");
     }
-    if (model != null) {
-      query = JpaRepository.of(klass).all();
-      if (StringUtils.notEmpty(whereStr)) {
-        query.filter(whereStr);
+    csvWriter.writeNext(headerArr.toArray(new String[headerArr.size()]), true);
+
+    ExportQuery exportQuery = new ExportQuery(export, properties, options.updateImportId);
+    long lastId = 0;
+    List<Object[]> rows;
+    do {
+      rows =
+          JPA.em()
+              .createQuery(exportQuery.select, Object[].class)
+              .setParameter("lastId", lastId)
+              .setMaxResults(options.fetchLimit)
+              .getResultList();
+      if (rows.isEmpty()) {
+        break;
       }
-    }
-    return query;
-  }
 
-  private CSVInput writeCSVData(
-      MetaModel metaModel,
-      CSVWriter csvWriter,
-      DataBackup dataBackup,
-      long totalRecord,
-      List<String> subClasses,
-      String dirPath) {
-
-    CSVInput csvInput = new CSVInput();
-    boolean headerFlag = true;
-    List<String> dataArr = null;
-    List<String> headerArr = new ArrayList<>();
-    List<Model> dataList = null;
+      List<Long> ids = rows.stream().map(row -> (Long) row[0]).collect(Collectors.toList());
+      Map<String, Map<Long, String>> collectionValues = new HashMap<>();
+      for (Property property : exportQuery.collections) {
+        collectionValues.put(
+            property.getName(), getRelationalFieldData(export, property, ids, options));
+      }
 
-    try {
-      Mapper metaModelMapper = Mapper.of(Class.forName(metaModel.getFullName()));
-      Property[] pro = metaModelMapper.getProperties();
-      Integer fetchLimit = dataBackup.getFetchLimit();
-      boolean isRelativeDate = dataBackup.getIsRelativeDate();
-      boolean updateImportId = dataBackup.getUpdateImportId();
-
-      csvInput.setFileName(metaModel.getName() + ".csv");
-      csvInput.setTypeName(metaModel.getFullName());
-      csvInput.setBindings(new ArrayList<>());
-
-      for (int i = 0; i < totalRecord; i = i + fetchLimit) {
-
-        dataList = getMetaModelDataList(metaModel, i, fetchLimit, subClasses);
-
-        if (dataList != null && dataList.size() > 0) {
-          for (Object dataObject : dataList) {
-            dataArr = new ArrayList<>();
-
-            for (Property property : pro) {
-              if (isPropertyExportable(property)) {
-                if (headerFlag) {
-                  String headerStr =
-                      getMetaModelHeader(dataObject, property, csvInput, isRelativeDate);
-                  headerArr.add(headerStr);
-                }
-                dataArr.add(
-                    getMetaModelData(
-                        metaModel.getName(),
-                        metaModelMapper,
-                        property,
-                        dataObject,
-                        dirPath,
-                        isRelativeDate,
-                        updateImportId));
-              }
-            }
-
-            if (headerFlag) {
-              if (byteArrFieldFlag) {
-                csvInput.setCallable(
-                    "com.axelor.apps.base.service.app.DataBackupRestoreService:importObjectWithByteArray");
-                byteArrFieldFlag = false;
-              }
-              csvWriter.writeNext(headerArr.toArray(new String[headerArr.size()]), true);
-              headerFlag = false;
-            }
-            csvWriter.writeNext(dataArr.toArray(new String[dataArr.size()]), true);
-          }
+      for (Object[] row : rows) {
+        String[] dataArr = new String[properties.size()];
+        for (int i = 0; i < properties.size(); i++) {
+          Property property = properties.get(i);
+          dataArr[i] =
+              property.isCollection()
+                  ? collectionValues.get(property.getName()).getOrDefault(row[0], "")
+                  : getMetaModelData(
+                      export, property, row, exportQuery.columns[i], dirPath, options);
         }
+        csvWriter.writeNext(dataArr, true);
       }
-      if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
-        csvInput.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
-      } else if (Class.forName(metaModel.getFullName()).getSuperclass() == App.class) {
-        csvInput.setSearch("self.code = :code");
-      }
-    } catch (ClassNotFoundException e) {
+
+      lastId = ids.get(ids.size() - 1);
+      export.rowCount += rows.size();
+    } while (rows.size() == options.fetchLimit);
+
+    if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
+      csvInput.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
+    } else if (export.isApp()) {
+      csvInput.setSearch("self.code = :code");
     }
-    return csvInput;
+
+    long duration = Math.max(1, System.currentTimeMillis() - startTime);
+    LOG.info(
+        "Exported model {} : {} records in {} ms ({} records/s)",
+        export.fullName,
+        export.rowCount,
+        duration,
+        export.rowCount * 1000 / duration);
   }
 
   private boolean isPropertyExportable(Property property) {
@@ -381,28 +481,27 @@ public class DataBackupCreateService {
   }
 
   /* Get Header For csv File */
-  private String getMetaModelHeader(
-      Object value, Property property, CSVInput csvInput, boolean isRelativeDate) {
+  private String getMetaModelHeader(Property property, ModelExport export, boolean isRelativeDate) {
     String propertyTypeStr = property.getType().toString();
     String propertyName = property.getName();
     switch (propertyTypeStr) {
       case "DATE":
       case "DATETIME":
         if (isRelativeDate) {
-          return getDateOrDateTimeHeader(property, csvInput);
+          return getDateOrDateTimeHeader(property, export.csvInput);
         }
         return propertyName;
       case "LONG":
         return propertyName.equalsIgnoreCase("id") ? "importId" : propertyName;
       case "BINARY":
-        byteArrFieldFlag = true;
+        export.byteArrFieldFlag = true;
         return "byte_" + propertyName;
       case "ONE_TO_ONE":
       case "MANY_TO_ONE":
-        return getRelationalFieldHeader(property, csvInput, "ONE");
+        return getRelationalFieldHeader(property, export, "ONE");
       case "ONE_TO_MANY":
       case "MANY_TO_MANY":
-        return getRelationalFieldHeader(property, csvInput, "MANY");
+        return getRelationalFieldHeader(property, export, "MANY");
       default:
         return propertyName;
     }
@@ -426,7 +525,8 @@ public class DataBackupCreateService {
   }
 
   private String getRelationalFieldHeader(
-      Property property, CSVInput csvInput, String relationship) {
+      Property property, ModelExport export, String relationship) {
+    CSVInput csvInput = export.csvInput;
     csvInput.setSearch("self.importId = :importId");
     CSVBind csvBind = new CSVBind();
     String columnName = property.getName() + "_importId";
@@ -434,9 +534,7 @@ public class DataBackupCreateService {
         relationship.equalsIgnoreCase("ONE")
             ? "self.importId = :" + columnName
             : "self.importId in :" + columnName;
-    if (property.getTarget() != null
-        && property.getTarget().getPackage().equals(Package.getPackage("com.axelor.meta.db"))
-        && !property.getTarget().getTypeName().equals("com.axelor.meta.db.MetaFile")) {
+    if (isReferencedByName(property)) {
       columnName = property.getName() + "_name";
       search =
           relationship.equalsIgnoreCase("ONE")
@@ -451,44 +549,64 @@ public class DataBackupCreateService {
       csvBind.setExpression(columnName + ".split('\\\\|') as List");
     }
     csvInput.getBindings().add(csvBind);
-    referenceFlag = true;
+    export.referenceFlag = true;
     if (property.isRequired()) {
-      notNullReferenceFlag = true;
+      export.notNullReferenceFlag = true;
     }
     return columnName;
   }
 
+  /* Records of the meta models are referenced by name, others by import id */
+  private static boolean isReferencedByName(Property property) {
+    return property.getTarget() != null
+        && property.getTarget().getPackage().equals(Package.getPackage("com.axelor.meta.db"))
+        && !property.getTarget().getTypeName().equals("com.axelor.meta.db.MetaFile");
+  }
+
+  /* The name of a reference is read when its target has one, falling back to its key */
+  private static boolean hasNameColumn(Property property) {
+    return isReferencedByName(property)
+        && Mapper.of(property.getTarget()).getProperty("name") != null;
+  }
+
   /* Get Data For csv File */
   private String getMetaModelData(
-      String metaModelName,
-      Mapper metaModelMapper,
+      ModelExport export,
       Property property,
-      Object dataObject,
+      Object[] row,
+      int column,
       String dirPath,
-      boolean isRelativeDate,
-      boolean updateImportId) {
+      BackupOptions options) {
+
+    String id = row[0].toString();
+    Object value = row[column];
+    String propertyTypeStr = property.getType().toString();
 
-    String id = metaModelMapper.get(dataObject, "id").toString();
-    Object value = metaModelMapper.get(dataObject, property.getName());
+    if (propertyTypeStr.equals("ONE_TO_ONE") || propertyTypeStr.equals("MANY_TO_ONE")) {
+      // the name column, when the target is referenced by name, is followed by the key column
+      if (hasNameColumn(property) && value == null) {
+        value = row[column + 1];
+      }
+      return value == null ? "" : value.toString();
+    }
     if (value == null) {
       return "";
     }
-    String propertyTypeStr = property.getType().toString();
 
     switch (propertyTypeStr) {
       case "LONG":
-        if (updateImportId) {
-          return ((Model) dataObject).getImportId();
+        if (options.updateImportId) {
+          return (String) row[1];
         }
         return value.toString();
       case "DATE":
-        if (isRelativeDate) {
+        if (options.isRelativeDate) {
           return createRelativeDate((LocalDate) value);
         }
         return value.toString();
 
       case "DATETIME":
-        if (isRelativeDate) {
+        if (options.isRelativeDate) {
           if (property.getJavaType() == ZonedDateTime.class) {
             return createRelativeDateTime(((ZonedDateTime) value).toLocalDateTime());
           }
@@ -499,22 +617,16 @@ public class DataBackupCreateService {
             : value.toString();
 
       case "BINARY":
-        String fileName = metaModelName + "_" + property.getName() + "_" + id + ".png";
+        String fileName = export.name + "_" + property.getName() + "_" + id + ".png";
 
         try {
+          export.fileNames.add(fileName);
           org.apache.commons.io.FileUtils.writeByteArrayToFile(
               new File(dirPath, fileName), (byte[]) value);
-          fileNameList.add(fileName);
         } catch (IOException e) {
-          e.printStackTrace();
+          throw new UncheckedIOException(e);
         }
         return fileName;
-      case "ONE_TO_ONE":
-      case "MANY_TO_ONE":
-        return getRelationalFieldValue(property, value, updateImportId);
-      case "ONE_TO_MANY":
-      case "MANY_TO_MANY":
-        return getRelationalFieldData(property, value, updateImportId);
       default:
         return value.toString();
     }
@@ -586,87 +698,154 @@ public class DataBackupCreateService {
         + "]";
   }
 
-  public String getRelationalFieldData(Property property, Object value, boolean updateImportId) {
-    StringBuilder idStringBuilder = new StringBuilder();
-    Collection<?> valueList = (Collection<?>) value;
-    String referenceData = "";
-    for (Object val : valueList) {
-      referenceData = getRelationalFieldValue(property, val, updateImportId);
-      if (StringUtils.notBlank(referenceData)) {
-        idStringBuilder.append(referenceData + REFERENCE_FIELD_SEPARATOR);
+  /* Get the references of a collection for a page of records, with one query */
+  private Map<Long, String> getRelationalFieldData(
+      ModelExport export, Property property, List<Long> ids, BackupOptions options) {
+
+    String key = options.updateImportId ? "importId" : "id";
+    boolean hasName = hasNameColumn(property);
+    String select = hasName ? "target.name, target." + key : "target." + key;
+
+    List<Object[]> rows =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, "
+                    + select
+                    + " FROM "
+                    + export.name
+                    + " self JOIN self."
+                    + property.getName()
+                    + " target WHERE self.id IN (:ids) ORDER BY self.id, target.id",
+                Object[].class)
+            .setParameter("ids", ids)
+            .getResultList();
+
+    Map<Long, String> values = new HashMap<>();
+    for (Object[] row : rows) {
+      Object value = hasName && row[1] == null ? row[2] : row[1];
+      if (value == null || StringUtils.isBlank(value.toString())) {
+        continue;
       }
+      values.merge(
+          (Long) row[0],
+          value.toString(),
+          (previous, reference) -> previous + REFERENCE_FIELD_SEPARATOR + reference);
     }
+    return values;
+  }
 
-    if (StringUtils.notBlank(idStringBuilder)) {
-      idStringBuilder.setLength(idStringBuilder.length() - 1);
-    }
-    return idStringBuilder.toString();
+  private void addFileToZip(ZipOutputStream out, String dirPath, String fileName)
+      throws IOException {
+    File file = new File(dirPath, fileName);
+    out.putNextEntry(new ZipEntry(fileName));
+    java.nio.file.Files.copy(file.toPath(), out);
+    out.closeEntry();
+    file.delete();
   }
 
-  private String getRelationalFieldValue(Property property, Object val, boolean updateImportId) {
-    if (property.getTarget() != null
-        && property.getTarget().getPackage().equals(Package.getPackage("com.axelor.meta.db"))
-        && !property.getTarget().getTypeName().equals("com.axelor.meta.db.MetaFile")) {
-      try {
-        return Mapper.of(val.getClass()).get(val, "name").toString();
-      } catch (Exception e) {
-        return (updateImportId) ? ((Model) val).getImportId() : ((Model) val).getId().toString();
-      }
-    } else {
-      return (updateImportId) ? ((Model) val).getImportId() : ((Model) val).getId().toString();
-    }
+  /* Generate XML content from CSVConfig */
+  private String generateConfig(CSVConfig csvConfig) {
+    XStream xStream = new XStream();
+    xStream.processAnnotations(CSVConfig.class);
+    xStream.setMode(XStream.NO_REFERENCES);
+    return xStream.toXML(csvConfig);
   }
 
-  private File generateZIP(String dirPath, List<String> fileNameList) {
+  /* Backup parameters, read once for all the models */
+  static class BackupOptions {
 
-    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmSS");
-    String backupZipFileName = "DataBackup_" + LocalDateTime.now().format(formatter) + ".zip";
-    File zipFile = new File(dirPath, backupZipFileName);
-    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile))) {
-
-      for (String fileName : fileNameList) {
-        ZipEntry e = new ZipEntry(fileName);
-        out.putNextEntry(e);
-        File file = new File(dirPath, fileName);
-        try (BufferedInputStream bin = new BufferedInputStream(new FileInputStream(file))) {
-          byte[] data;
-          while (bin.available() > 0) {
-            if (bin.available() < BUFFER_SIZE) {
-              data = new byte[bin.available()];
-            } else {
-              data = new byte[BUFFER_SIZE];
-            }
-            bin.read(data, 0, data.length);
-            out.write(data, 0, data.length);
-          }
-          bin.close();
-          out.closeEntry();
+    private final int fetchLimit;
+    private final boolean isRelativeDate;
+    private final boolean updateImportId;
 
-          file.delete();
-        }
-      }
-      out.close();
-    } catch (IOException e) {
-      TraceBackService.trace(e, "Error From DataBackupCreateService - generateZIP()");
+    private BackupOptions(DataBackup dataBackup) {
+      this.fetchLimit = Math.max(1, dataBackup.getFetchLimit());
+      this.isRelativeDate = dataBackup.getIsRelativeDate();
+      this.updateImportId = dataBackup.getUpdateImportId();
     }
-
-    return zipFile;
   }
 
-  /* Generate XML File from CSVConfig */
-  private void generateConfig(String dirPath, CSVConfig csvConfig) {
+  /* State of the export of a model, confined to the thread exporting it */
+  static class ModelExport {
 
-    File file = new File(dirPath, DataBackupServiceImpl.CONFIG_FILE_NAME);
-    try (FileWriter fileWriter = new FileWriter(file, true)) {
+    final String name;
+    final String fullName;
+    final List<String> subClasses;
 
-      XStream xStream = new XStream();
-      xStream.processAnnotations(CSVConfig.class);
-      xStream.setMode(XStream.NO_REFERENCES);
-      fileWriter.append(xStream.toXML(csvConfig));
+    final CSVInput csvInput = new CSVInput();
+    final List<String> fileNames = new ArrayList<>();
 
-      fileWriter.close();
-    } catch (IOException e) {
-      TraceBackService.trace(e, "Error From DataBackupCreateService - generateConfig()");
+    boolean notNullReferenceFlag;
+    boolean referenceFlag;
+    boolean byteArrFieldFlag;
+    boolean exported;
+    long rowCount;
+    Exception error;
+
+    ModelExport(String name, String fullName, List<String> subClasses) {
+      this.name = name;
+      this.fullName = fullName;
+      this.subClasses = subClasses;
+    }
+
+    String getFileName() {
+      return name + ".csv";
+    }
+
+    boolean isApp() {
+      try {
+        return Class.forName(fullName).getSuperclass() == App.class;
+      } catch (ClassNotFoundException e) {
+        return false;
+      }
+    }
+  }
+
+  /*
+   * Projection query of a page of records: the id, the import id, then one column per exported
+   * property, two for the references by name: the name and the key used when it is empty.
+   * Collections are read by separate queries.
+   */
+  private static class ExportQuery {
+
+    private final String select;
+    private final int[] columns;
+    private final List<Property> collections = new ArrayList<>();
+
+    private ExportQuery(ModelExport export, List<Property> properties, boolean updateImportId) {
+      String key = updateImportId ? "importId" : "id";
+      List<String> selects = new ArrayList<>(Arrays.asList("self.id", "self.importId"));
+      StringBuilder joins = new StringBuilder();
+      columns = new int[properties.size()];
+
+      for (int i = 0; i < properties.size(); i++) {
+        Property property = properties.get(i);
+        columns[i] = selects.size();
+        if (property.isCollection()) {
+          collections.add(property);
+          columns[i] = -1;
+        } else if (property.getTarget() != null) {
+          String alias = "ref" + i;
+          joins.append(" LEFT JOIN self.").append(property.getName()).append(" ").append(alias);
+          if (hasNameColumn(property)) {
+            selects.add(alias + ".name");
+          }
+          selects.add(alias + "." + key);
+        } else {
+          selects.add("self." + property.getName());
+        }
+      }
+
+      String where = getWhere(export);
+      select =
+          "SELECT "
+              + String.join(", ", selects)
+              + " FROM "
+              + export.name
+              + " self"
+              + joins
+              + (where.isEmpty() ? " WHERE" : where + " AND")
+              + " self.id > :lastId ORDER BY self.id";
     }
   }
 }
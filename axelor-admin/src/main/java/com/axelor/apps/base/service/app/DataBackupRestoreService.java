@@ -17,84 +17,123 @@
  */
 package com.axelor.apps.base.service.app;
 
+import com.axelor.app.AppSettings;
+import com.axelor.apps.tool.ImportReferenceResolver;
+import com.axelor.apps.tool.ImportReferenceResolver.Lookup;
+import com.axelor.auth.AuthUtils;
 import com.axelor.common.StringUtils;
 import com.axelor.data.Listener;
+import com.axelor.data.XStreamUtils;
+import com.axelor.data.csv.CSVBind;
+import com.axelor.data.csv.CSVConfig;
 import com.axelor.data.csv.CSVImporter;
+import com.axelor.data.csv.CSVInput;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
 import com.axelor.db.mapper.Mapper;
+import com.axelor.db.mapper.Property;
+import com.axelor.db.mapper.PropertyType;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaFile;
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import com.opencsv.CSVReader;
+import com.thoughtworks.xstream.XStream;
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.invoke.MethodHandles;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import org.apache.commons.io.FileUtils;
+import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class DataBackupRestoreService {
 
-  /* Restore the Data using provided zip File and prepare Log File and Return it*/
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final Pattern SEARCH_PATTERN = Pattern.compile("^self\\.(\\w+) = :(\\w+)$");
+
+  protected static final Pattern COLLECTION_SEARCH_PATTERN =
+      Pattern.compile("^self\\.(\\w+) in :(\\w+)$");
+
+  protected static final int COLLECTION_CHUNK_SIZE = 1000;
+
+  /*
+   * Restore the Data using provided zip File and prepare Log File and Return it.
+   *
+   * Inputs are grouped in levels: an input comes after the first input creating each model it
+   * references or one of its sub classes, and after the previous input of its own model. Inputs
+   * of a level are restored by data.restore.workers threads (1 by default). References are
+   * resolved from id maps prefetched per input, and collections are linked in a last pass once
+   * all the records exist.
+   */
   public File restore(MetaFile zipedBackupFile) {
-    Logger LOG = LoggerFactory.getLogger(getClass());
     File tempDir = Files.createTempDir();
     String dirPath = tempDir.getAbsolutePath();
     StringBuilder sb = new StringBuilder();
+    long startTime = System.currentTimeMillis();
     try {
       unZip(zipedBackupFile, dirPath);
-      String configFName =
-          tempDir.getAbsolutePath() + File.separator + DataBackupServiceImpl.CONFIG_FILE_NAME;
-
-      CSVImporter csvImporter = new CSVImporter(configFName, tempDir.getAbsolutePath());
-      csvImporter.addListener(
-          new Listener() {
-            String modelName;
-            StringBuilder sb1 = new StringBuilder();
-
-            @Override
-            public void handle(Model bean, Exception e) {
-              if (e.getMessage() != null && !e.getMessage().equals("null")) {
-                if (bean != null) {
-                  sb1.append(bean.getClass().getSimpleName() + " : \n" + e.getMessage() + "\n\n");
-                } else {
-                  sb1.append(e.getMessage() + "\n\n");
-                }
-              }
-            }
+      CSVConfig csvConfig = readConfig(new File(dirPath, DataBackupServiceImpl.CONFIG_FILE_NAME));
 
-            @Override
-            public void imported(Model model) {
-              modelName = model.getClass().getSimpleName();
-            }
+      Map<CSVInput, List<CSVBind>> collectionBinds = new LinkedHashMap<>();
+      for (CSVInput input : csvConfig.getInputs()) {
+        List<CSVBind> binds = extractCollectionBinds(input);
+        if (!binds.isEmpty()) {
+          collectionBinds.put(input, binds);
+        }
+      }
 
-            @Override
-            public void imported(Integer total, Integer count) {
-              String str = "", strError = "";
-              if (!StringUtils.isBlank(sb1)) {
-                strError = "Errors : \n" + sb1.toString();
-              }
-              str = "Total Records :  {" + total + "} - Success Records :  {" + count + "}  \n";
-              if (total != 0 && count != 0) {
-                sb.append(modelName + " : \n");
-              }
-              sb.append(strError).append(str + "-----------------------------------------\n");
-              sb1.setLength(0);
-            }
-          });
-      csvImporter.run();
-      LOG.info("Data Restore Completed");
+      List<List<CSVInput>> levels = computeLevels(csvConfig.getInputs());
+      int workers = Math.max(1, AppSettings.get().getInt("data.restore.workers", 1));
+      for (int level = 0; level < levels.size(); level++) {
+        LOG.info("Restoring level {} : {} models", level, levels.get(level).size());
+        for (String log : restoreLevel(levels.get(level), dirPath, workers)) {
+          sb.append(log);
+        }
+      }
+
+      Set<String> linked = new HashSet<>();
+      for (Map.Entry<CSVInput, List<CSVBind>> entry : collectionBinds.entrySet()) {
+        for (CSVBind bind : entry.getValue()) {
+          if (linked.add(entry.getKey().getFileName() + ":" + bind.getField())) {
+            sb.append(restoreCollection(entry.getKey(), bind, dirPath));
+          }
+        }
+      }
+
+      LOG.info("Data Restore Completed in {} ms", System.currentTimeMillis() - startTime);
       FileUtils.cleanDirectory(new File(tempDir.getAbsolutePath()));
       DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmSS");
       String logFileName = "DataBackupLog_" + LocalDateTime.now().format(formatter) + ".log";
@@ -107,6 +146,388 @@ public class DataBackupRestoreService {
     } catch (IOException e) {
       TraceBackService.trace(e);
       return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      TraceBackService.trace(e);
+      return null;
+    }
+  }
+
+  protected CSVConfig readConfig(File configFile) {
+    XStream stream = XStreamUtils.createXStream();
+    stream.processAnnotations(CSVConfig.class);
+    return (CSVConfig) stream.fromXML(configFile);
+  }
+
+  /*
+   * Group the inputs in levels. An input depends on the previous input of its model, and on the
+   * first input of each model its many-to-one bindings may reference, which creates its records:
+   * the referenced model and all its sub classes. Only earlier inputs are considered, as the
+   * configuration is already ordered to restore references in a second pass.
+   */
+  protected List<List<CSVInput>> computeLevels(List<CSVInput> inputs) {
+    Map<Class<?>, Integer> creators = new LinkedHashMap<>();
+    Map<String, Integer> previousInputs = new HashMap<>();
+    int[] levels = new int[inputs.size()];
+    List<List<CSVInput>> levelList = new ArrayList<>();
+
+    for (int i = 0; i < inputs.size(); i++) {
+      CSVInput input = inputs.get(i);
+      int level = 0;
+      Integer previous = previousInputs.get(input.getTypeName());
+      if (previous != null) {
+        level = levels[previous] + 1;
+      }
+
+      Mapper mapper = getMapper(input.getTypeName());
+      if (mapper != null && input.getBindings() != null) {
+        for (CSVBind bind : input.getBindings()) {
+          Property property = bind.getField() != null ? mapper.getProperty(bind.getField()) : null;
+          if (property == null || property.getTarget() == null || property.isCollection()) {
+            continue;
+          }
+          for (Map.Entry<Class<?>, Integer> creator : creators.entrySet()) {
+            if (property.getTarget().isAssignableFrom(creator.getKey())) {
+              level = Math.max(level, levels[creator.getValue()] + 1);
+            }
+          }
+        }
+      }
+
+      levels[i] = level;
+      if (mapper != null) {
+        creators.putIfAbsent(mapper.getBeanClass(), i);
+      }
+      previousInputs.put(input.getTypeName(), i);
+      while (levelList.size() <= level) {
+        levelList.add(new ArrayList<>());
+      }
+      levelList.get(level).add(input);
+    }
+    return levelList;
+  }
+
+  /* Restore the inputs of a level and return their logs, in the order of the inputs */
+  protected List<String> restoreLevel(List<CSVInput> inputs, String dirPath, int workers)
+      throws InterruptedException {
+
+    List<String> logs = new ArrayList<>();
+    if (workers == 1 || inputs.size() == 1) {
+      for (CSVInput input : inputs) {
+        logs.add(restoreInput(input, dirPath));
+      }
+      return logs;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, inputs.size()));
+    Subject subject = AuthUtils.getSubject();
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (CSVInput input : inputs) {
+        Callable<String> task = () -> restoreInput(input, dirPath);
+        futures.add(executor.submit(subject != null ? subject.associateWith(task) : task));
+      }
+      for (Future<String> future : futures) {
+        try {
+          logs.add(future.get());
+        } catch (ExecutionException e) {
+          TraceBackService.trace(e.getCause());
+          logs.add(e.getCause() + "\n\n");
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return logs;
+  }
+
+  protected String restoreInput(CSVInput input, String dirPath) throws IOException {
+    File file = new File(dirPath, input.getFileName());
+    if (!file.exists()) {
+      return "";
+    }
+
+    long startTime = System.currentTimeMillis();
+    Map<String, Lookup> lookups = prepareLookups(input);
+    ImportReferenceResolver references = new ImportReferenceResolver(lookups);
+    readColumnValues(file, input, lookups.keySet()).forEach(references::prefetch);
+
+    CSVConfig config = new CSVConfig();
+    config.setInputs(Lists.newArrayList(input));
+    CSVImporter csvImporter = new CSVImporter(config, dirPath);
+    RestoreListener listener = new RestoreListener();
+    csvImporter.addListener(listener);
+    Map<String, Object> context = new HashMap<>();
+    context.put(ImportReferenceResolver.CONTEXT_KEY, references);
+    csvImporter.setContext(context);
+    csvImporter.run();
+
+    LOG.debug(
+        "Restored {} in {} ms", input.getFileName(), System.currentTimeMillis() - startTime);
+    return listener.getLog();
+  }
+
+  /*
+   * Replace the searches of the references on a single string field of another model, by import
+   * id or by name, with a call to the resolver. References to the model of the input are left to
+   * the search, as they may target records created by the previous rows.
+   */
+  @SuppressWarnings("unchecked")
+  protected Map<String, Lookup> prepareLookups(CSVInput input) {
+    Map<String, Lookup> lookups = new HashMap<>();
+    Mapper mapper = getMapper(input.getTypeName());
+    if (mapper == null || input.getBindings() == null) {
+      return lookups;
+    }
+
+    for (CSVBind bind : input.getBindings()) {
+      Matcher matcher = SEARCH_PATTERN.matcher(Strings.nullToEmpty(bind.getSearch()).trim());
+      if (!matcher.matches()
+          || bind.getExpression() != null
+          || (bind.getBindings() != null && !bind.getBindings().isEmpty())) {
+        continue;
+      }
+      String field = matcher.group(1);
+      String column = matcher.group(2);
+      if (bind.getColumn() != null && !bind.getColumn().equals(column)) {
+        continue;
+      }
+
+      Property property = mapper.getProperty(bind.getField());
+      if (property == null
+          || property.getTarget() == null
+          || property.isCollection()
+          || property.getTarget().getName().equals(input.getTypeName())) {
+        continue;
+      }
+      Property targetProperty = Mapper.of(property.getTarget()).getProperty(field);
+      if (targetProperty == null || targetProperty.getJavaType() != String.class) {
+        continue;
+      }
+
+      lookups.put(column, new Lookup((Class<? extends Model>) property.getTarget(), field));
+      bind.setSearch(null);
+      bind.setExpression(
+          String.format("%s.get('%s', %s)", ImportReferenceResolver.CONTEXT_KEY, column, column));
+    }
+    return lookups;
+  }
+
+  /* Remove the collection bindings of an input, they are restored by a last bulk pass */
+  protected List<CSVBind> extractCollectionBinds(CSVInput input) {
+    List<CSVBind> binds = new ArrayList<>();
+    Mapper mapper = getMapper(input.getTypeName());
+    if (mapper == null || input.getBindings() == null) {
+      return binds;
+    }
+
+    Iterator<CSVBind> iterator = input.getBindings().iterator();
+    while (iterator.hasNext()) {
+      CSVBind bind = iterator.next();
+      Property property = bind.getField() != null ? mapper.getProperty(bind.getField()) : null;
+      if (property != null
+          && property.isCollection()
+          && bind.getColumn() != null
+          && COLLECTION_SEARCH_PATTERN
+              .matcher(Strings.nullToEmpty(bind.getSearch()).trim())
+              .matches()) {
+        binds.add(bind);
+        iterator.remove();
+      }
+    }
+    return binds;
+  }
+
+  /*
+   * Link the records of a collection, by chunks of owners. Owners and targets are resolved from id
+   * maps and the owners are loaded once per chunk.
+   */
+  @SuppressWarnings("unchecked")
+  protected String restoreCollection(CSVInput input, CSVBind bind, String dirPath)
+      throws IOException {
+
+    Mapper mapper = getMapper(input.getTypeName());
+    Property property = mapper != null ? mapper.getProperty(bind.getField()) : null;
+    if (property == null) {
+      return "";
+    }
+    Matcher matcher = COLLECTION_SEARCH_PATTERN.matcher(bind.getSearch().trim());
+    matcher.matches();
+    Class<? extends Model> ownerClass = (Class<? extends Model>) mapper.getBeanClass();
+    Class<? extends Model> targetClass = (Class<? extends Model>) property.getTarget();
+
+    Map<String, Lookup> lookups = new HashMap<>();
+    lookups.put("importId", new Lookup(ownerClass, "importId"));
+    lookups.put(bind.getColumn(), new Lookup(targetClass, matcher.group(1)));
+
+    long startTime = System.currentTimeMillis();
+    int linked = 0;
+    int missing = 0;
+    File file = new File(dirPath, input.getFileName());
+    char separator = input.getSeparator();
+
+    try (CSVReader reader = new CSVReader(new BufferedReader(new FileReader(file)), separator)) {
+      List<String> header = Arrays.asList(reader.readNext());
+      int ownerIndex = header.indexOf("importId");
+      int valueIndex = header.indexOf(bind.getColumn());
+      if (ownerIndex < 0 || valueIndex < 0) {
+        return "";
+      }
+
+      Map<String, List<String>> chunk = new LinkedHashMap<>();
+      String[] row;
+      do {
+        row = reader.readNext();
+        if (row != null && !Strings.isNullOrEmpty(row[valueIndex])) {
+          chunk.put(row[ownerIndex], Arrays.asList(row[valueIndex].split("\\|")));
+        }
+        if (chunk.size() == COLLECTION_CHUNK_SIZE || (row == null && !chunk.isEmpty())) {
+          int[] counts = linkCollection(chunk, lookups, bind.getColumn(), property);
+          linked += counts[0];
+          missing += counts[1];
+          chunk.clear();
+        }
+      } while (row != null);
+    }
+
+    LOG.debug(
+        "Restored {}.{} : {} links in {} ms",
+        input.getTypeName(),
+        property.getName(),
+        linked,
+        System.currentTimeMillis() - startTime);
+    return missing == 0
+        ? ""
+        : String.format(
+            "%s.%s : %d references not found%n-----------------------------------------%n",
+            ownerClass.getSimpleName(), property.getName(), missing);
+  }
+
+  @SuppressWarnings("unchecked")
+  protected int[] linkCollection(
+      Map<String, List<String>> chunk,
+      Map<String, Lookup> lookups,
+      String column,
+      Property property) {
+
+    int[] counts = new int[2];
+    ImportReferenceResolver references = new ImportReferenceResolver(lookups);
+    references.prefetch("importId", chunk.keySet());
+    references.prefetch(
+        column,
+        chunk.values().stream().flatMap(List::stream).collect(Collectors.toSet()));
+
+    JPA.runInTransaction(
+        () -> {
+          for (Map.Entry<String, List<String>> entry : chunk.entrySet()) {
+            Model owner = references.get("importId", entry.getKey());
+            if (owner == null) {
+              counts[1] += entry.getValue().size();
+              continue;
+            }
+            Collection<Object> items = (Collection<Object>) property.get(owner);
+            if (items == null) {
+              items =
+                  property.getType() == PropertyType.MANY_TO_MANY
+                      ? new HashSet<>()
+                      : new ArrayList<>();
+              property.set(owner, items);
+            }
+            for (String value : entry.getValue()) {
+              Model item = references.get(column, value);
+              if (item == null) {
+                counts[1]++;
+                continue;
+              }
+              items.add(item);
+              if (!Strings.isNullOrEmpty(property.getMappedBy())) {
+                Mapper.of(property.getTarget()).set(item, property.getMappedBy(), owner);
+              }
+              counts[0]++;
+            }
+          }
+        });
+    JPA.clear();
+    return counts;
+  }
+
+  protected Map<String, Set<String>> readColumnValues(
+      File file, CSVInput input, Collection<String> columns) throws IOException {
+
+    Map<String, Set<String>> values = new HashMap<>();
+    if (columns.isEmpty()) {
+      return values;
+    }
+
+    try (CSVReader reader =
+        new CSVReader(new BufferedReader(new FileReader(file)), input.getSeparator())) {
+      List<String> header = Arrays.asList(reader.readNext());
+      Map<String, Integer> indexes = new HashMap<>();
+      for (String column : columns) {
+        if (header.indexOf(column) >= 0) {
+          indexes.put(column, header.indexOf(column));
+          values.put(column, new HashSet<>());
+        }
+      }
+      String[] row;
+      while ((row = reader.readNext()) != null) {
+        for (Map.Entry<String, Integer> index : indexes.entrySet()) {
+          if (index.getValue() < row.length && !Strings.isNullOrEmpty(row[index.getValue()])) {
+            values.get(index.getKey()).add(row[index.getValue()]);
+          }
+        }
+      }
+    }
+    return values;
+  }
+
+  protected Mapper getMapper(String typeName) {
+    try {
+      return Mapper.of(Class.forName(typeName));
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+  }
+
+  /* Log of the restore of an input, in the format of the import log */
+  protected static class RestoreListener implements Listener {
+
+    private String modelName;
+    private final StringBuilder sb = new StringBuilder();
+    private final StringBuilder sb1 = new StringBuilder();
+
+    @Override
+    public void handle(Model bean, Exception e) {
+      if (e.getMessage() != null && !e.getMessage().equals("null")) {
+        if (bean != null) {
+          sb1.append(bean.getClass().getSimpleName() + " : \n" + e.getMessage() + "\n\n");
+        } else {
+          sb1.append(e.getMessage() + "\n\n");
+        }
+      }
+    }
+
+    @Override
+    public void imported(Model model) {
+      modelName = model.getClass().getSimpleName();
+    }
+
+    @Override
+    public void imported(Integer total, Integer count) {
+      String str = "", strError = "";
+      if (!StringUtils.isBlank(sb1)) {
+        strError = "Errors : \n" + sb1.toString();
+      }
+      str = "Total Records :  {" + total + "} - Success Records :  {" + count + "}  \n";
+      if (total != 0 && count != 0) {
+        sb.append(modelName + " : \n");
+      }
+      sb.append(strError).append(str + "-----------------------------------------\n");
+      sb1.setLength(0);
+    }
+
+    public String getLog() {
+      return sb.toString();
     }
   }
 
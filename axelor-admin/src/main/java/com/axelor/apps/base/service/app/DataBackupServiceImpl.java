@@ -32,9 +32,12 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import com.google.inject.servlet.RequestScoper;
 import com.google.inject.servlet.ServletScopes;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -94,9 +97,23 @@ public class DataBackupServiceImpl implements DataBackupService {
           public Boolean call() throws Exception {
             Logger LOG = LoggerFactory.getLogger(getClass());
             DataBackup obj = Beans.get(DataBackupRepository.class).find(dataBackup.getId());
-            File backupFile = createService.create(obj);
+            List<String> errors = new ArrayList<>();
+            File backupFile = createService.create(obj, errors);
             dataBackupRepository.refresh(obj);
             obj.setBackupMetaFile(metaFiles.upload(backupFile));
+            if (!errors.isEmpty()) {
+              LOG.warn("Data BackUp incomplete: {} errors", errors.size());
+              String logFileName =
+                  "DataBackupErrors_"
+                      + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                      + ".log";
+              obj.setLogMetaFile(
+                  metaFiles.upload(
+                      new ByteArrayInputStream(
+                          String.join(System.lineSeparator(), errors)
+                              .getBytes(StandardCharsets.UTF_8)),
+                      logFileName));
+            }
             obj.setStatusSelect(DataBackupRepository.DATA_BACKUP_STATUS_CREATED);
             Beans.get(DataBackupRepository.class).save(obj);
             LOG.info("Data BackUp Saved");
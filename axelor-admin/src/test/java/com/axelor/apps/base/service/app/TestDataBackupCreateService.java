@@ -0,0 +1,142 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.app;
+
+import com.google.common.io.ByteStreams;
+import com.opencsv.CSVWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestDataBackupCreateService {
+
+  private static final String FAILING_MODEL = "Broken";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private File tempDir;
+
+  private TestCreateService createService;
+
+  /** Writes three records with a picture each, and fails after them for the failing model. */
+  private static class TestCreateService extends DataBackupCreateService {
+
+    @Override
+    protected long getMetaModelDataCount(ModelExport export) {
+      return 1;
+    }
+
+    @Override
+    protected void writeCSVData(
+        ModelExport export, BackupOptions options, CSVWriter csvWriter, String dirPath) {
+
+      csvWriter.writeNext(new String[] {"id", "picture"});
+      for (int id = 1; id <= 3; id++) {
+        String fileName = export.name + "_picture_" + id + ".png";
+        export.fileNames.add(fileName);
+        try {
+          Files.write(new File(dirPath, fileName).toPath(), new byte[] {(byte) id});
+          csvWriter.writeNext(new String[] {String.valueOf(id), fileName});
+          csvWriter.flush();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      if (FAILING_MODEL.equals(export.name)) {
+        throw new IllegalStateException("Connection lost");
+      }
+    }
+  }
+
+  @Before
+  public void prepare() throws IOException {
+    tempDir = folder.newFolder("backup");
+    createService = new TestCreateService();
+  }
+
+  @Test
+  public void testFailedExportDeletesItsFiles() {
+    ModelExport export = new ModelExport(FAILING_MODEL, "com.axelor.test.Broken", null);
+
+    createService.exportToFile(export, null, tempDir.getAbsolutePath());
+
+    Assert.assertFalse(export.exported);
+    Assert.assertTrue(export.error instanceof IllegalStateException);
+    Assert.assertTrue(export.fileNames.isEmpty());
+    Assert.assertEquals(0, tempDir.list().length);
+  }
+
+  @Test
+  public void testZipOnlyHoldsCompleteExports() throws IOException {
+    ModelExport partner = new ModelExport("Partner", "com.axelor.apps.base.db.Partner", null);
+    ModelExport broken = new ModelExport(FAILING_MODEL, "com.axelor.test.Broken", null);
+    File zipFile = folder.newFile("backup.zip");
+
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile))) {
+      for (ModelExport export : Arrays.asList(partner, broken)) {
+        createService.exportToFile(export, null, tempDir.getAbsolutePath());
+        createService.addToZip(export, tempDir.getAbsolutePath(), out);
+      }
+    }
+
+    Assert.assertTrue(partner.exported);
+    Assert.assertNull(partner.error);
+    Assert.assertNotNull(broken.error);
+
+    Map<String, byte[]> entries = readZip(zipFile);
+    Assert.assertEquals(
+        Arrays.asList(
+            "Partner.csv",
+            "Partner_picture_1.png",
+            "Partner_picture_2.png",
+            "Partner_picture_3.png"),
+        new ArrayList<>(entries.keySet()));
+    String[] lines = new String(entries.get("Partner.csv"), StandardCharsets.UTF_8).split("\n");
+    Assert.assertEquals(4, lines.length);
+    Assert.assertEquals(0, tempDir.list().length);
+  }
+
+  private Map<String, byte[]> readZip(File file) throws IOException {
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    try (ZipFile zipFile = new ZipFile(file)) {
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        try (InputStream in = zipFile.getInputStream(entry)) {
+          entries.put(entry.getName(), ByteStreams.toByteArray(in));
+        }
+      }
+    }
+    return entries;
+  }
+}
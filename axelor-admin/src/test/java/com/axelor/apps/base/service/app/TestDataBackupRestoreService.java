@@ -0,0 +1,261 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.app;
+
+import com.axelor.apps.tool.ImportReferenceResolver;
+import com.axelor.data.csv.CSVBind;
+import com.axelor.data.csv.CSVConfig;
+import com.axelor.data.csv.CSVInput;
+import com.axelor.db.Model;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.thoughtworks.xstream.XStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestDataBackupRestoreService {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private DataBackupRestoreService restoreService;
+
+  private List<CSVInput> inputs;
+
+  private CSVInput reconciliationInput;
+
+  /*
+   * The configuration of a backup, in the order of the create service: the inputs without their
+   * references first, then the required references, then the other references. The lines of the
+   * sub class need a bank, so they are created one level after the lines of the super class.
+   */
+  @Before
+  public void prepare() throws IOException {
+    restoreService = new DataBackupRestoreService();
+
+    CSVInput bankInput = createInput(Bank.class);
+    CSVInput lineInput = createInput(StatementLine.class);
+    CSVInput afbLineInput = createInput(AfbStatementLine.class);
+    afbLineInput.getBindings().add(createBind("bank", "bank_code", "self.code = :bank_code"));
+    reconciliationInput = createInput(Reconciliation.class);
+    reconciliationInput
+        .getBindings()
+        .add(createBind("line", "line_importId", "self.importId = :line_importId"));
+    CSVBind linesBind = createBind("lines", "lines_importId", "self.importId in :lines_importId");
+    linesBind.setExpression("lines_importId.split('\\\\|') as List");
+    reconciliationInput.getBindings().add(linesBind);
+
+    CSVConfig csvConfig = new CSVConfig();
+    csvConfig.setInputs(
+        Lists.newArrayList(bankInput, lineInput, afbLineInput, reconciliationInput));
+    inputs = readBack(csvConfig).getInputs();
+    reconciliationInput = inputs.get(3);
+  }
+
+  @Test
+  public void testReferenceWaitsForSubClassCreators() {
+    restoreService.extractCollectionBinds(reconciliationInput);
+
+    List<List<CSVInput>> levels = restoreService.computeLevels(inputs);
+
+    Assert.assertEquals(
+        Arrays.asList(
+            Arrays.asList(Bank.class.getName(), StatementLine.class.getName()),
+            Collections.singletonList(AfbStatementLine.class.getName()),
+            Collections.singletonList(Reconciliation.class.getName())),
+        levels.stream()
+            .map(level -> level.stream().map(CSVInput::getTypeName).collect(Collectors.toList()))
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testCollectionsAreLeftToTheLastPass() {
+    List<CSVBind> collectionBinds = restoreService.extractCollectionBinds(reconciliationInput);
+
+    Assert.assertEquals(1, collectionBinds.size());
+    Assert.assertEquals("lines", collectionBinds.get(0).getField());
+    Assert.assertEquals(
+        Collections.singletonList("line"),
+        reconciliationInput.getBindings().stream()
+            .map(CSVBind::getField)
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testReferencesArePrefetched() throws IOException {
+    restoreService.extractCollectionBinds(reconciliationInput);
+
+    Map<String, ImportReferenceResolver.Lookup> lookups =
+        restoreService.prepareLookups(reconciliationInput);
+
+    Assert.assertEquals(Collections.singleton("line_importId"), lookups.keySet());
+    CSVBind lineBind = reconciliationInput.getBindings().get(0);
+    Assert.assertNull(lineBind.getSearch());
+    Assert.assertEquals(
+        "__references__.get('line_importId', line_importId)", lineBind.getExpression());
+
+    File file = folder.newFile(reconciliationInput.getFileName());
+    Files.write(
+        file.toPath(),
+        Arrays.asList("importId,line_importId,lines_importId", "1,10,10|11", "2,11,", "3,10,"),
+        StandardCharsets.UTF_8);
+    Map<String, Set<String>> values =
+        restoreService.readColumnValues(file, reconciliationInput, lookups.keySet());
+
+    Assert.assertEquals(Sets.newHashSet("10", "11"), values.get("line_importId"));
+  }
+
+  @Test
+  public void testReferenceToOwnModelIsSearched() {
+    CSVInput afbLineInput = inputs.get(2);
+    afbLineInput
+        .getBindings()
+        .add(createBind("parent", "parent_importId", "self.importId = :parent_importId"));
+
+    Map<String, ImportReferenceResolver.Lookup> lookups =
+        restoreService.prepareLookups(afbLineInput);
+
+    Assert.assertEquals(Collections.singleton("bank_code"), lookups.keySet());
+  }
+
+  private CSVInput createInput(Class<?> klass) {
+    CSVInput input = new CSVInput();
+    input.setFileName(klass.getSimpleName() + ".csv");
+    input.setTypeName(klass.getName());
+    input.setBindings(Lists.newArrayList());
+    return input;
+  }
+
+  private CSVBind createBind(String field, String column, String search) {
+    CSVBind bind = new CSVBind();
+    bind.setField(field);
+    bind.setColumn(column);
+    bind.setSearch(search);
+    bind.setUpdate(true);
+    return bind;
+  }
+
+  /* Write the configuration as the create service does, and read it as the restore does */
+  private CSVConfig readBack(CSVConfig csvConfig) throws IOException {
+    XStream xStream = new XStream();
+    xStream.processAnnotations(CSVConfig.class);
+    xStream.setMode(XStream.NO_REFERENCES);
+    File configFile = folder.newFile(DataBackupServiceImpl.CONFIG_FILE_NAME);
+    Files.write(configFile.toPath(), xStream.toXML(csvConfig).getBytes(StandardCharsets.UTF_8));
+    return restoreService.readConfig(configFile);
+  }
+
+  public static class TestModel extends Model {
+
+    private Long id;
+    private String importId;
+
+    @Override
+    public Long getId() {
+      return id;
+    }
+
+    @Override
+    public void setId(Long id) {
+      this.id = id;
+    }
+
+    public String getImportId() {
+      return importId;
+    }
+
+    public void setImportId(String importId) {
+      this.importId = importId;
+    }
+  }
+
+  public static class Bank extends TestModel {
+
+    private String code;
+
+    public String getCode() {
+      return code;
+    }
+
+    public void setCode(String code) {
+      this.code = code;
+    }
+  }
+
+  public static class StatementLine extends TestModel {}
+
+  public static class AfbStatementLine extends StatementLine {
+
+    @ManyToOne private Bank bank;
+
+    @ManyToOne private AfbStatementLine parent;
+
+    public Bank getBank() {
+      return bank;
+    }
+
+    public void setBank(Bank bank) {
+      this.bank = bank;
+    }
+
+    public AfbStatementLine getParent() {
+      return parent;
+    }
+
+    public void setParent(AfbStatementLine parent) {
+      this.parent = parent;
+    }
+  }
+
+  public static class Reconciliation extends TestModel {
+
+    @ManyToOne private StatementLine line;
+
+    @ManyToMany private Set<StatementLine> lines;
+
+    public StatementLine getLine() {
+      return line;
+    }
+
+    public void setLine(StatementLine line) {
+      this.line = line;
+    }
+
+    public Set<StatementLine> getLines() {
+      return lines;
+    }
+
+    public void setLines(Set<StatementLine> lines) {
+      this.lines = lines;
+    }
+  }
+}
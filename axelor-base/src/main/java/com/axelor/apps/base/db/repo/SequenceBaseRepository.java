@@ -18,6 +18,8 @@
 package com.axelor.apps.base.db.repo;
 
 import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.inject.Beans;
 
 public class SequenceBaseRepository extends SequenceRepository {
 
@@ -30,4 +32,13 @@ public class SequenceBaseRepository extends SequenceRepository {
 
     return copy;
   }
+
+  @Override
+  public Sequence save(Sequence sequence) {
+
+    // Blocks reserved in memory were computed with the previous settings and versions.
+    Beans.get(SequenceService.class).invalidateBlocks(sequence.getId());
+
+    return super.save(sequence);
+  }
 }
@@ -120,6 +120,12 @@ public interface IExceptionMessage {
 
   public static final String BASE_BATCH_2 = /*$$(*/ "Batch %s unknown" /*)*/;
 
+  public static final String BASE_BATCH_GEOCODING_NOT_CONFIGURED = /*$$(*/
+      "No map API is configured to geocode the addresses." /*)*/;
+
+  public static final String BASE_BATCH_GEOCODING_REPORT = /*$$(*/
+      "%s address(es) geocoded, %s address(es) not found." /*)*/;
+
   /** Product service */
   public static final String PRODUCT_NO_SEQUENCE = /*$$(*/
       "There is no configured sequence for product" /*)*/;
@@ -208,6 +214,8 @@ public interface IExceptionMessage {
       "Invalid duplicate finder field '%s'. Field type ManyToMany or OneToMany is not supported for duplicate check" /*)*/;
   public static final String GENERAL_10 = /*$$(*/ "No duplicate finder field configured." /*)*/;
   public static final String GENERAL_11 = /*$$(*/ "Please select original object." /*)*/;
+  public static final String GENERAL_12 = /*$$(*/
+      "%d groups of more than %d similar records were not compared, the result may be incomplete." /*)*/;
 
   /** Messsage controller */
   public static final String MESSAGE_1 = /*$$(*/
@@ -18,6 +18,7 @@
 package com.axelor.apps.base.job;
 
 import com.axelor.apps.base.service.currency.CurrencyConversionFactory;
+import com.axelor.apps.base.service.currency.CurrencyRateIndex;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
 import org.quartz.Job;
@@ -28,10 +29,13 @@ public class CurrencyConversionJob implements Job {
 
   @Inject protected CurrencyConversionFactory currencyConversionFactory;
 
+  @Inject protected CurrencyRateIndex currencyRateIndex;
+
   @Override
   public void execute(JobExecutionContext context) throws JobExecutionException {
     try {
       currencyConversionFactory.getCurrencyConversionService().updateCurrencyConverion();
+      currencyRateIndex.invalidate();
     } catch (AxelorException e) {
       throw new JobExecutionException(e);
     }
@@ -21,16 +21,29 @@ import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.base.tracking.GlobalTrackingLogService;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.inject.Beans;
+import java.lang.invoke.MethodHandles;
 import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class GlobalTrackingLogCleaningJob extends ThreadedJob {
 
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
   @Override
   public void executeInThread(JobExecutionContext context) {
     try {
-      Beans.get(GlobalTrackingLogService.class)
-          .deleteOldGlobalTrackingLog(
-              Beans.get(AppBaseService.class).getGlobalTrackingLogPersistence());
+      long start = System.currentTimeMillis();
+      long purged =
+          Beans.get(GlobalTrackingLogService.class)
+              .deleteOldGlobalTrackingLog(
+                  Beans.get(AppBaseService.class).getGlobalTrackingLogPersistence());
+      long duration = Math.max(System.currentTimeMillis() - start, 1);
+      LOG.info(
+          "Purged {} global tracking rows in {} ms ({} rows/s)",
+          purged,
+          duration,
+          purged * 1000 / duration);
     } catch (Exception e) {
       TraceBackService.trace(e);
       throw new UncheckedJobExecutionException(e);
@@ -74,9 +74,14 @@ import com.axelor.apps.base.service.DurationService;
 import com.axelor.apps.base.service.DurationServiceImpl;
 import com.axelor.apps.base.service.FrequencyService;
 import com.axelor.apps.base.service.FrequencyServiceImpl;
+import com.axelor.apps.base.service.GeocodingProvider;
+import com.axelor.apps.base.service.GeocodingProviderImpl;
+import com.axelor.apps.base.service.GeocodingService;
+import com.axelor.apps.base.service.GeocodingServiceImpl;
 import com.axelor.apps.base.service.MailServiceBaseImpl;
 import com.axelor.apps.base.service.MapRestService;
 import com.axelor.apps.base.service.MapRestServiceImpl;
+import com.axelor.apps.base.service.PartnerNameIndex;
 import com.axelor.apps.base.service.PartnerPriceListService;
 import com.axelor.apps.base.service.PartnerPriceListServiceImpl;
 import com.axelor.apps.base.service.PartnerService;
@@ -119,6 +124,8 @@ import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.base.service.app.AppBaseServiceImpl;
 import com.axelor.apps.base.service.app.AppService;
 import com.axelor.apps.base.service.app.AppServiceImpl;
+import com.axelor.apps.base.service.imports.CityBulkImportService;
+import com.axelor.apps.base.service.imports.CityBulkImportServiceImpl;
 import com.axelor.apps.base.service.imports.ConvertDemoDataFileService;
 import com.axelor.apps.base.service.imports.ConvertDemoDataFileServiceImpl;
 import com.axelor.apps.base.service.imports.ImportCityService;
@@ -128,6 +135,8 @@ import com.axelor.apps.base.service.imports.ImportDemoDataServiceImpl;
 import com.axelor.apps.base.service.message.MailAccountServiceBaseImpl;
 import com.axelor.apps.base.service.message.MessageServiceBaseImpl;
 import com.axelor.apps.base.service.message.TemplateMessageServiceBaseImpl;
+import com.axelor.apps.base.service.script.GroovyScriptService;
+import com.axelor.apps.base.service.script.GroovyScriptServiceImpl;
 import com.axelor.apps.base.service.tax.AccountManagementService;
 import com.axelor.apps.base.service.tax.AccountManagementServiceImpl;
 import com.axelor.apps.base.service.tax.FiscalPositionService;
@@ -183,6 +192,9 @@ public class BaseModule extends AxelorModule {
     bind(UserRepository.class).to(UserBaseRepository.class);
     bind(BankDetailsService.class).to(BankDetailsServiceImpl.class);
     bind(ImportCityService.class).to(ImportCityServiceImpl.class);
+    bind(CityBulkImportService.class).to(CityBulkImportServiceImpl.class);
+    bind(GeocodingProvider.class).to(GeocodingProviderImpl.class);
+    bind(GeocodingService.class).to(GeocodingServiceImpl.class);
     bind(BaseBatchRepository.class).to(BaseBatchBaseRepository.class);
     bind(MailBatchRepository.class).to(MailBatchBaseRepository.class);
     bind(AlarmEngineBatchRepository.class).to(AlarmEngineBatchBaseRepository.class);
@@ -211,6 +223,7 @@ public class BaseModule extends AxelorModule {
     bind(FileFieldService.class).to(FileFieldServiceImpl.class);
     bind(ActionService.class).to(ActionServiceImpl.class);
     bind(PartnerService.class).to(PartnerServiceImpl.class);
+    bind(PartnerNameIndex.class);
     bind(ProductCompanyService.class).to(ProductCompanyServiceImpl.class);
     bind(SearchCallService.class).to(SearchCallServiceImpl.class);
     bind(GlobalTrackingLogService.class).to(GlobalTrackingLogServiceImpl.class);
@@ -224,5 +237,6 @@ public class BaseModule extends AxelorModule {
     bind(PrintService.class).to(PrintServiceImpl.class);
     bind(PrintTemplateLineService.class).to(PrintTemplateLineServiceImpl.class);
     bind(AdvancedImportRepository.class).to(AdvancedImportBaseRepository.class);
+    bind(GroovyScriptService.class).to(GroovyScriptServiceImpl.class);
   }
 }
@@ -25,6 +25,7 @@ import com.axelor.apps.base.db.ABCAnalysisClass;
 import com.axelor.apps.base.db.ABCAnalysisLine;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.db.Unit;
 import com.axelor.apps.base.db.repo.ABCAnalysisClassRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisLineRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisRepository;
@@ -33,21 +34,25 @@ import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.report.IReport;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.report.engine.ReportSettings;
-import com.axelor.apps.tool.StringTool;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
+import javax.persistence.EntityManager;
+import org.hibernate.Session;
 
 public class ABCAnalysisServiceImpl implements ABCAnalysisService {
   protected ABCAnalysisLineRepository abcAnalysisLineRepository;
@@ -126,7 +131,6 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
     start(abcAnalysis);
     getAbcAnalysisClassList(abcAnalysis);
     createAllABCAnalysisLine(abcAnalysis);
-    doAnalysis(abcAnalysisRepository.find(abcAnalysis.getId()));
     finish(abcAnalysisRepository.find(abcAnalysis.getId()));
   }
 
@@ -146,38 +150,43 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
     this.abcAnalysisClassList = abcAnalysisClassQuery.fetch();
   }
 
-  private Set<Product> getProductSet(ABCAnalysis abcAnalysis) {
-    Set<Product> productList = new HashSet<>();
+  private Set<Long> getProductIdSet(ABCAnalysis abcAnalysis) {
+    Set<Long> productIdSet = new HashSet<>();
     String productCategoryQuery = getProductCategoryQuery();
     String productFamilyQuery = getProductFamilyQuery();
 
-    if (!abcAnalysis.getProductSet().isEmpty()) {
-      productList.addAll(abcAnalysis.getProductSet());
-    }
+    abcAnalysis.getProductSet().forEach(product -> productIdSet.add(product.getId()));
 
     if (!abcAnalysis.getProductCategorySet().isEmpty()) {
-      productList.addAll(
+      addProductIds(
+          productIdSet,
           productRepository
               .all()
               .filter(
                   productCategoryQuery,
                   abcAnalysis.getProductCategorySet(),
-                  ProductRepository.PRODUCT_TYPE_STORABLE)
-              .fetch());
+                  ProductRepository.PRODUCT_TYPE_STORABLE));
     }
 
     if (!abcAnalysis.getProductFamilySet().isEmpty()) {
-      productList.addAll(
+      addProductIds(
+          productIdSet,
           productRepository
               .all()
               .filter(
                   productFamilyQuery,
                   abcAnalysis.getProductFamilySet(),
-                  ProductRepository.PRODUCT_TYPE_STORABLE)
-              .fetch());
+                  ProductRepository.PRODUCT_TYPE_STORABLE));
     }
 
-    return productList;
+    return productIdSet;
+  }
+
+  @SuppressWarnings("rawtypes")
+  private void addProductIds(Set<Long> productIdSet, Query<Product> productQuery) {
+    for (Map values : productQuery.select("id").fetch(0, 0)) {
+      productIdSet.add((Long) values.get("id"));
+    }
   }
 
   protected String getProductCategoryQuery() {
@@ -188,88 +197,114 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
     return "self.productFamily in (?1) AND self.productTypeSelect = ?2 AND dtype = 'Product'";
   }
 
-  protected void createAllABCAnalysisLine(ABCAnalysis abcAnalysis) throws AxelorException {
-    int offset = 0;
+  /**
+   * Returns the analysed quantities and worths summed by product and unit, in a single aggregate
+   * query. Each row holds the product id, the product unit id, the unit id of the summed
+   * quantity, the summed quantity and the summed worth.
+   */
+  protected List<Object[]> getAggregatedValues(ABCAnalysis abcAnalysis) throws AxelorException {
+    return new ArrayList<>();
+  }
 
-    List<Product> productList;
-    Query<Product> productQuery =
-        productRepository
-            .all()
-            .filter("self.id IN (" + StringTool.getIdListString(getProductSet(abcAnalysis)) + ")");
+  /** Scale used when converting the summed quantities to the product unit. */
+  protected int getQtyScale() {
+    return 5;
+  }
 
-    while (!(productList = productQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      abcAnalysis = abcAnalysisRepository.find(abcAnalysis.getId());
-      offset += productList.size();
+  protected void createAllABCAnalysisLine(ABCAnalysis abcAnalysis) throws AxelorException {
+    totalQty = BigDecimal.ZERO;
+    totalWorth = BigDecimal.ZERO;
+    cumulatedQty = BigDecimal.valueOf(0, 3);
+    cumulatedWorth = BigDecimal.valueOf(0, 3);
+
+    Set<Long> productIdSet = getProductIdSet(abcAnalysis);
+    Map<Long, BigDecimal[]> productValueMap = new HashMap<>();
+    Map<Long, Unit> unitMap = new HashMap<>();
+
+    for (Object[] row : getAggregatedValues(abcAnalysis)) {
+      Long productId = (Long) row[0];
+      if (!productIdSet.contains(productId)) {
+        continue;
+      }
 
-      for (Product product : productList) {
-        product = productRepository.find(product.getId());
-        createABCAnalysisLineForEachProduct(abcAnalysis, product);
+      Long productUnitId = (Long) row[1];
+      Long unitId = (Long) row[2];
+      BigDecimal qty = row[3] != null ? (BigDecimal) row[3] : BigDecimal.ZERO;
+      BigDecimal worth = row[4] != null ? (BigDecimal) row[4] : BigDecimal.ZERO;
+
+      if (unitId == null || !unitId.equals(productUnitId)) {
+        qty =
+            unitConversionService.convert(
+                getUnit(unitMap, unitId),
+                getUnit(unitMap, productUnitId),
+                qty,
+                getQtyScale(),
+                productRepository.find(productId));
       }
 
-      JPA.clear();
+      BigDecimal[] values =
+          productValueMap.computeIfAbsent(
+              productId, id -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+      values[0] = values[0].add(qty);
+      values[1] = values[1].add(worth);
     }
-  }
-
-  @Transactional(rollbackOn = {Exception.class})
-  protected void createABCAnalysisLineForEachProduct(ABCAnalysis abcAnalysis, Product product)
-      throws AxelorException {
-    Optional<ABCAnalysisLine> optionalAbcAnalysisLine = createABCAnalysisLine(abcAnalysis, product);
-    optionalAbcAnalysisLine.ifPresent(
-        abcAnalysisLine -> {
-          abcAnalysisLine = abcAnalysisLineRepository.find(abcAnalysisLine.getId());
-          if (abcAnalysisLine.getDecimalWorth().compareTo(BigDecimal.ZERO) == 0
-              && abcAnalysisLine.getDecimalQty().compareTo(BigDecimal.ZERO) == 0) {
-            abcAnalysisLineRepository.remove(
-                abcAnalysisLineRepository.find(abcAnalysisLine.getId()));
-          }
-        });
-  }
-
-  @Transactional(rollbackOn = {Exception.class})
-  protected Optional<ABCAnalysisLine> createABCAnalysisLine(
-      ABCAnalysis abcAnalysis, Product product) throws AxelorException {
-    ABCAnalysisLine abcAnalysisLine = new ABCAnalysisLine();
 
-    abcAnalysisLine.setAbcAnalysis(abcAnalysis);
-    abcAnalysisLine.setProduct(product);
-
-    abcAnalysisLineRepository.save(abcAnalysisLine);
+    List<Map.Entry<Long, BigDecimal[]>> productValueList = new ArrayList<>();
+    for (Map.Entry<Long, BigDecimal[]> entry : productValueMap.entrySet()) {
+      BigDecimal[] values = entry.getValue();
+      if (values[0].signum() != 0 || values[1].signum() != 0) {
+        productValueList.add(entry);
+        totalQty = totalQty.add(values[0]);
+        totalWorth = totalWorth.add(values[1]);
+      }
+    }
+    JPA.clear();
 
-    return Optional.of(abcAnalysisLine);
-  }
+    productValueList.sort(
+        Comparator.comparing((Map.Entry<Long, BigDecimal[]> entry) -> entry.getValue()[1])
+            .reversed()
+            .thenComparing(Map.Entry::getKey));
 
-  @Transactional
-  protected void setQtyWorth(
-      ABCAnalysisLine abcAnalysisLine, BigDecimal decimalQty, BigDecimal decimalWorth) {
-    abcAnalysisLine.setDecimalQty(decimalQty);
-    abcAnalysisLine.setDecimalWorth(decimalWorth);
-    abcAnalysisLineRepository.save(abcAnalysisLine);
+    for (List<Map.Entry<Long, BigDecimal[]>> chunk :
+        Lists.partition(productValueList, FETCH_LIMIT)) {
+      createABCAnalysisLines(abcAnalysis.getId(), chunk);
+      JPA.clear();
+    }
   }
 
-  protected void doAnalysis(ABCAnalysis abcAnalysis) {
-    List<ABCAnalysisLine> abcAnalysisLineList;
-    int offset = 0;
-    Query<ABCAnalysisLine> query =
-        abcAnalysisLineRepository
-            .all()
-            .filter("self.abcAnalysis.id = :abcAnalysisId")
-            .bind("abcAnalysisId", abcAnalysis.getId())
-            .order("-decimalWorth")
-            .order("id");
-
-    while (!(abcAnalysisLineList = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      offset += abcAnalysisLineList.size();
-      abcAnalysisLineList.forEach(this::analyzeLine);
-      JPA.clear();
+  private Unit getUnit(Map<Long, Unit> unitMap, Long unitId) {
+    if (unitId == null) {
+      return null;
     }
+    return unitMap.computeIfAbsent(unitId, id -> JPA.em().find(Unit.class, id));
   }
 
   @Transactional
-  protected void analyzeLine(ABCAnalysisLine abcAnalysisLine) {
-    computePercentage(abcAnalysisLine);
-    setABCAnalysisClass(abcAnalysisLine);
+  protected void createABCAnalysisLines(
+      Long abcAnalysisId, List<Map.Entry<Long, BigDecimal[]>> productValueList) {
+    EntityManager em = JPA.em();
+    Session session = em.unwrap(Session.class);
+    Integer jdbcBatchSize = session.getJdbcBatchSize();
+    session.setJdbcBatchSize(FETCH_LIMIT);
+    try {
+      ABCAnalysis abcAnalysis = em.getReference(ABCAnalysis.class, abcAnalysisId);
+
+      for (Map.Entry<Long, BigDecimal[]> entry : productValueList) {
+        ABCAnalysisLine abcAnalysisLine = new ABCAnalysisLine();
+        abcAnalysisLine.setAbcAnalysis(abcAnalysis);
+        abcAnalysisLine.setProduct(em.getReference(Product.class, entry.getKey()));
+        abcAnalysisLine.setDecimalQty(entry.getValue()[0]);
+        abcAnalysisLine.setDecimalWorth(entry.getValue()[1]);
+        computePercentage(abcAnalysisLine);
+        setABCAnalysisClass(abcAnalysisLine);
+        em.persist(abcAnalysisLine);
+      }
 
-    abcAnalysisLineRepository.save(abcAnalysisLine);
+      em.flush();
+    } finally {
+      // The session is shared by the thread, other work must not inherit the batch size.
+      session.setJdbcBatchSize(jdbcBatchSize);
+    }
   }
 
   private void computePercentage(ABCAnalysisLine abcAnalysisLine) {
@@ -313,20 +348,12 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
       maxWorth = maxWorth.add(abcAnalysisClass.getWorth());
       if (lineCumulatedQty.compareTo(maxQty) <= 0 && lineCumulatedWorth.compareTo(maxWorth) <= 0) {
         abcAnalysisLine.setAbcAnalysisClass(
-            abcAnalysisClassRepository.find(abcAnalysisClass.getId()));
+            JPA.em().getReference(ABCAnalysisClass.class, abcAnalysisClass.getId()));
         break;
       }
     }
   }
 
-  protected void incTotalQty(BigDecimal totalQty) {
-    this.totalQty = this.totalQty.add(totalQty);
-  }
-
-  protected void incTotalWorth(BigDecimal totalWorth) {
-    this.totalWorth = this.totalWorth.add(totalWorth);
-  }
-
   private void incCumulatedQty(BigDecimal cumulatedQty) {
     this.cumulatedQty = this.cumulatedQty.add(cumulatedQty);
   }
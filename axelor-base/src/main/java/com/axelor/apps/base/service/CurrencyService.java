@@ -18,9 +18,9 @@
 package com.axelor.apps.base.service;
 
 import com.axelor.apps.base.db.Currency;
-import com.axelor.apps.base.db.CurrencyConversionLine;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.currency.CurrencyRateIndex;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
 import com.axelor.exception.AxelorException;
@@ -34,6 +34,7 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
@@ -46,12 +47,15 @@ public class CurrencyService {
 
   protected AppBaseService appBaseService;
 
+  protected CurrencyRateIndex currencyRateIndex;
+
   private LocalDate today;
 
   @Inject
-  public CurrencyService(AppBaseService appBaseService) {
+  public CurrencyService(AppBaseService appBaseService, CurrencyRateIndex currencyRateIndex) {
 
     this.appBaseService = appBaseService;
+    this.currencyRateIndex = currencyRateIndex;
     this.today =
         appBaseService.getTodayDate(
             Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null));
@@ -60,6 +64,7 @@ public class CurrencyService {
   public CurrencyService(LocalDate today) {
 
     this.appBaseService = Beans.get(AppBaseService.class);
+    this.currencyRateIndex = Beans.get(CurrencyRateIndex.class);
     this.today = today;
   }
 
@@ -77,30 +82,27 @@ public class CurrencyService {
     if (startCurrency != null && endCurrency != null && !startCurrency.equals(endCurrency)) {
 
       LocalDate dateToConvert = this.getDateToConvert(date);
-      boolean isInverse = true;
-      BigDecimal exchangeRate = null;
-
-      CurrencyConversionLine currencyConversionLine =
-          this.getCurrencyConversionLine(startCurrency, endCurrency, dateToConvert);
-      if (currencyConversionLine != null) {
-        exchangeRate = currencyConversionLine.getExchangeRate();
-        isInverse = false;
-
-      } else {
-        currencyConversionLine =
-            this.getCurrencyConversionLine(endCurrency, startCurrency, dateToConvert);
-
-        if (currencyConversionLine == null) {
-          throw new AxelorException(
-              TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-              I18n.get(IExceptionMessage.CURRENCY_1),
-              startCurrency.getName(),
-              endCurrency.getName(),
-              dateToConvert);
-        }
-        exchangeRate = currencyConversionLine.getExchangeRate();
+
+      log.debug(
+          "Currency from: {}, Currency to: {}, localDate: {}",
+          startCurrency,
+          endCurrency,
+          dateToConvert);
+
+      CurrencyRateIndex.Rate rate =
+          currencyRateIndex.find(startCurrency.getCode(), endCurrency.getCode(), dateToConvert);
+
+      if (rate == null) {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(IExceptionMessage.CURRENCY_1),
+            startCurrency.getName(),
+            endCurrency.getName(),
+            dateToConvert);
       }
 
+      BigDecimal exchangeRate = rate.getExchangeRate();
+
       if (exchangeRate == null || exchangeRate.compareTo(BigDecimal.ZERO) == 0) {
         throw new AxelorException(
             TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
@@ -110,47 +112,12 @@ public class CurrencyService {
             dateToConvert);
       }
 
-      return isInverse
-          ? BigDecimal.ONE.divide(exchangeRate, 10, RoundingMode.HALF_EVEN)
-          : exchangeRate;
+      return exchangeRate;
     }
 
     return BigDecimal.ONE;
   }
 
-  private CurrencyConversionLine getCurrencyConversionLine(
-      Currency startCurrency, Currency endCurrency, LocalDate localDate) {
-
-    List<CurrencyConversionLine> currencyConversionLineList =
-        appBaseService.getCurrencyConfigurationLineList();
-
-    if (currencyConversionLineList == null) {
-      return null;
-    }
-
-    log.debug(
-        "Currency from: {}, Currency to: {}, localDate: {}", startCurrency, endCurrency, localDate);
-
-    for (CurrencyConversionLine ccl : currencyConversionLineList) {
-
-      String cclStartCode = ccl.getStartCurrency().getCode();
-      String cclEndCode = ccl.getEndCurrency().getCode();
-      String startCode = startCurrency.getCode();
-      String endCode = endCurrency.getCode();
-      LocalDate fromDate = ccl.getFromDate();
-      LocalDate toDate = ccl.getToDate();
-
-      if (cclStartCode.equals(startCode) && cclEndCode.equals(endCode)) {
-        if ((fromDate.isBefore(localDate) || fromDate.equals(localDate))
-            && (toDate == null || toDate.isAfter(localDate) || toDate.isEqual(localDate))) {
-          return ccl;
-        }
-      }
-    }
-
-    return null;
-  }
-
   /**
    * Convert the amount in start currency into the end currency according to the date to convert
    *
@@ -176,6 +143,36 @@ public class CurrencyService {
     return amount;
   }
 
+  /**
+   * Convert a list of amounts in start currency into the end currency according to the date to
+   * convert. The exchange rate is only searched once for the whole list.
+   *
+   * @param startCurrency
+   * @param endCurrency
+   * @param amountList
+   * @param date
+   * @return the converted amounts, in the same order
+   * @throws AxelorException
+   */
+  public List<BigDecimal> getAmountsCurrencyConvertedAtDate(
+      Currency startCurrency, Currency endCurrency, List<BigDecimal> amountList, LocalDate date)
+      throws AxelorException {
+
+    if (startCurrency == null || endCurrency == null || startCurrency.equals(endCurrency)) {
+      return new ArrayList<>(amountList);
+    }
+
+    BigDecimal exchangeRate = this.getCurrencyConversionRate(startCurrency, endCurrency, date);
+    List<BigDecimal> convertedAmountList = new ArrayList<>(amountList.size());
+
+    for (BigDecimal amount : amountList) {
+      convertedAmountList.add(
+          this.getAmountCurrencyConvertedUsingExchangeRate(amount, exchangeRate));
+    }
+
+    return convertedAmountList;
+  }
+
   /**
    * Convert the amount in start currency into the end currency according to the exchange rate
    *
@@ -0,0 +1,440 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.app.AppSettings;
+import com.axelor.apps.base.db.DuplicateBlockingKey;
+import com.axelor.apps.tool.StringTool;
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.db.Query;
+import com.axelor.db.mapper.Property;
+import com.axelor.exception.AxelorException;
+import com.axelor.rpc.filter.Filter;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds duplicated records with blocking keys.
+ *
+ * <p>Records are read page by page and one or more blocking keys are computed from the normalized
+ * values of the chosen fields. The keys are stored in an indexed side table, then read back
+ * sorted, so that records are only compared with the other records of the same block. Records
+ * having at least one match are flagged, and the result is shown through a domain on the side
+ * table, paged by the grid like any other domain.
+ */
+@Singleton
+public class DuplicateFinderService {
+
+  protected static final int DEFAULT_PAGE_SIZE = 1000;
+
+  protected static final int DEFAULT_MAX_BLOCK_SIZE = 1000;
+
+  public static final double DEFAULT_SIMILARITY_THRESHOLD = 0.6;
+
+  protected static final int MAX_KEY_LENGTH = 255;
+
+  /** Searches are kept one day, so that their result can still be browsed. */
+  protected static final int SEARCH_RETENTION_HOURS = 24;
+
+  /** Name of the context parameter holding the key of a search in {@link #getDomain()}. */
+  public static final String SEARCH_KEY_PARAM = "_duplicateSearchKey";
+
+  private final Logger log = LoggerFactory.getLogger(DuplicateFinderService.class);
+
+  protected DuplicateObjectsService duplicateObjectsService;
+
+  protected final int pageSize;
+
+  protected final int maxBlockSize;
+
+  /** Result of a search: its key, and the blocks that were too large to be compared. */
+  public static class DuplicateSearch {
+
+    protected final String searchKey;
+
+    protected final List<String> skippedBlocks;
+
+    public DuplicateSearch(String searchKey, List<String> skippedBlocks) {
+      this.searchKey = searchKey;
+      this.skippedBlocks = skippedBlocks;
+    }
+
+    /** The key of the search, or null if there are no duplicates. */
+    public String getSearchKey() {
+      return searchKey;
+    }
+
+    /** The blocking keys of the blocks having more than the maximum block size. */
+    public List<String> getSkippedBlocks() {
+      return skippedBlocks;
+    }
+  }
+
+  @Inject
+  public DuplicateFinderService(DuplicateObjectsService duplicateObjectsService) {
+    this.duplicateObjectsService = duplicateObjectsService;
+    AppSettings settings = AppSettings.get();
+    this.pageSize = settings.getInt("duplicate.finder.page.size", DEFAULT_PAGE_SIZE);
+    this.maxBlockSize = settings.getInt("duplicate.finder.max.block.size", DEFAULT_MAX_BLOCK_SIZE);
+  }
+
+  /**
+   * Find the records having duplicates.
+   *
+   * @param fieldSet the fields to compare
+   * @param modelClass the model of the records
+   * @param filter an optional filter on the records
+   * @param method one of the DuplicateBlockingKey.METHOD_* constants
+   * @param threshold the minimum trigram similarity of two records, used by the phonetic and
+   *     trigram methods
+   * @return the search, whose key is to bind to {@link #getDomain()}, or is null if there are no
+   *     duplicates
+   * @throws AxelorException if a field can't be compared
+   */
+  public DuplicateSearch findDuplicates(
+      Set<String> fieldSet,
+      Class<? extends Model> modelClass,
+      String filter,
+      int method,
+      double threshold)
+      throws AxelorException {
+
+    List<String> columns = new ArrayList<>();
+    for (String field : new TreeSet<>(fieldSet)) {
+      Property property = duplicateObjectsService.getDuplicateFinderProperty(modelClass, field);
+      columns.add(property.getTarget() != null ? field + ".id" : field);
+    }
+
+    purgeOldSearches();
+
+    String searchKey = UUID.randomUUID().toString();
+    long keyCount = buildBlockingKeys(searchKey, modelClass, columns, filter, method);
+    List<String> skippedBlocks = new ArrayList<>();
+    long matchedCount =
+        keyCount > 1 ? matchBlocks(searchKey, method, threshold, skippedBlocks) : 0;
+
+    log.debug(
+        "Duplicate search {} on {}: {} keys, {} records matched, {} blocks skipped",
+        searchKey,
+        modelClass.getSimpleName(),
+        keyCount,
+        matchedCount,
+        skippedBlocks.size());
+
+    if (matchedCount == 0) {
+      deleteSearch(searchKey);
+      return new DuplicateSearch(null, skippedBlocks);
+    }
+    return new DuplicateSearch(searchKey, skippedBlocks);
+  }
+
+  public int getMaxBlockSize() {
+    return maxBlockSize;
+  }
+
+  /** Domain of the records matched by the search given in the {@link #SEARCH_KEY_PARAM} context. */
+  public String getDomain() {
+    return "self.id IN (SELECT k.recordId FROM "
+        + DuplicateBlockingKey.class.getName()
+        + " k WHERE k.searchKey = :"
+        + SEARCH_KEY_PARAM
+        + " AND k.matched = true)";
+  }
+
+  @SuppressWarnings("rawtypes")
+  protected long buildBlockingKeys(
+      String searchKey,
+      Class<? extends Model> modelClass,
+      List<String> columns,
+      String filter,
+      int method) {
+
+    Filter securityFilter = duplicateObjectsService.getJpaSecurityFilter(modelClass);
+    Object[] params =
+        securityFilter != null ? securityFilter.getParams().toArray() : new Object[] {};
+
+    String[] selectedColumns = new String[columns.size() + 1];
+    selectedColumns[0] = "id";
+    for (int i = 0; i < columns.size(); i++) {
+      selectedColumns[i + 1] = columns.get(i);
+    }
+
+    long keyCount = 0;
+    long lastId = 0;
+
+    while (true) {
+      StringBuilder where = new StringBuilder("self.id > " + lastId);
+      if (filter != null) {
+        where.append(" AND (").append(filter).append(")");
+      }
+      if (securityFilter != null) {
+        where.append(" AND (").append(securityFilter.getQuery()).append(")");
+      }
+
+      List<Map> rows =
+          Query.of(modelClass)
+              .filter(where.toString(), params)
+              .order("id")
+              .select(selectedColumns)
+              .fetch(pageSize, 0);
+      JPA.clear();
+
+      if (rows.isEmpty()) {
+        return keyCount;
+      }
+
+      List<DuplicateBlockingKey> keys = new ArrayList<>();
+      for (Map row : rows) {
+        Long recordId = ((Number) row.get("id")).longValue();
+        String normalizedValue = normalize(row, columns);
+        for (String blockingKey : getBlockingKeys(normalizedValue, method)) {
+          DuplicateBlockingKey key = new DuplicateBlockingKey();
+          key.setSearchKey(searchKey);
+          key.setRecordId(recordId);
+          key.setBlockingKey(StringTool.truncRight(blockingKey, MAX_KEY_LENGTH));
+          key.setNormalizedValue(normalizedValue);
+          keys.add(key);
+        }
+        lastId = recordId;
+      }
+
+      persist(keys);
+      keyCount += keys.size();
+    }
+  }
+
+  @SuppressWarnings("rawtypes")
+  protected String normalize(Map row, List<String> columns) {
+    List<String> values = new ArrayList<>();
+    for (String column : columns) {
+      Object value = row.get(column);
+      if (value != null) {
+        String normalizedValue = StringTool.normalizeForComparison(value.toString());
+        if (!normalizedValue.isEmpty()) {
+          values.add(normalizedValue);
+        }
+      }
+    }
+    return String.join(" ", values);
+  }
+
+  /**
+   * Compute the blocking keys of a record: records are only compared with the records sharing one
+   * of their keys.
+   *
+   * @param normalizedValue the normalized values of the compared fields
+   * @param method one of the DuplicateBlockingKey.METHOD_* constants
+   * @return the keys, empty if the record has no value to compare
+   */
+  protected Set<String> getBlockingKeys(String normalizedValue, int method) {
+    if (normalizedValue.isEmpty()) {
+      return Collections.emptySet();
+    }
+    switch (method) {
+      case DuplicateBlockingKey.METHOD_SORTED_WORDS:
+        return Collections.singleton(StringTool.sortWords(normalizedValue));
+
+      case DuplicateBlockingKey.METHOD_PHONETIC:
+        List<String> codes = new ArrayList<>();
+        for (String word : normalizedValue.split(" ")) {
+          codes.add(StringTool.soundex(word));
+        }
+        Collections.sort(codes);
+        return Collections.singleton(String.join(" ", codes));
+
+      case DuplicateBlockingKey.METHOD_TRIGRAM:
+        Set<String> keys = new HashSet<>();
+        for (String word : normalizedValue.split(" ")) {
+          keys.add(StringTool.soundex(word));
+        }
+        return keys;
+
+      default:
+        return Collections.singleton(normalizedValue);
+    }
+  }
+
+  protected void persist(List<DuplicateBlockingKey> keys) {
+    JPA.runInTransaction(
+        () -> {
+          EntityManager em = JPA.em();
+          Session session = em.unwrap(Session.class);
+          Integer jdbcBatchSize = session.getJdbcBatchSize();
+          session.setJdbcBatchSize(pageSize);
+          try {
+            for (DuplicateBlockingKey key : keys) {
+              em.persist(key);
+            }
+            em.flush();
+          } finally {
+            session.setJdbcBatchSize(jdbcBatchSize);
+          }
+        });
+    JPA.clear();
+  }
+
+  /**
+   * Read the keys sorted by block and compare the records inside each block.
+   *
+   * @param skippedBlocks filled with the keys of the blocks too large to be compared
+   * @return the number of records having at least one duplicate
+   */
+  protected long matchBlocks(
+      String searchKey, int method, double threshold, List<String> skippedBlocks) {
+    Set<Long> matchedIds = new HashSet<>();
+    List<Object[]> block = new ArrayList<>();
+    String blockKey = null;
+    String lastKey = null;
+    Long lastId = null;
+
+    while (true) {
+      TypedQuery<Object[]> query =
+          JPA.em()
+              .createQuery(
+                  "SELECT k.blockingKey, k.recordId, k.normalizedValue "
+                      + "FROM DuplicateBlockingKey k WHERE k.searchKey = :searchKey "
+                      + (lastKey != null
+                          ? "AND (k.blockingKey > :lastKey "
+                              + "OR (k.blockingKey = :lastKey AND k.recordId > :lastId)) "
+                          : "")
+                      + "ORDER BY k.blockingKey, k.recordId",
+                  Object[].class)
+              .setParameter("searchKey", searchKey)
+              .setMaxResults(pageSize);
+      if (lastKey != null) {
+        query.setParameter("lastKey", lastKey).setParameter("lastId", lastId);
+      }
+      List<Object[]> rows = query.getResultList();
+      JPA.clear();
+
+      if (rows.isEmpty()) {
+        break;
+      }
+
+      for (Object[] row : rows) {
+        if (!row[0].equals(blockKey)) {
+          matchBlock(blockKey, block, method, threshold, matchedIds, skippedBlocks);
+          block.clear();
+          blockKey = (String) row[0];
+        }
+        block.add(row);
+      }
+
+      Object[] lastRow = rows.get(rows.size() - 1);
+      lastKey = (String) lastRow[0];
+      lastId = (Long) lastRow[1];
+    }
+    matchBlock(blockKey, block, method, threshold, matchedIds, skippedBlocks);
+
+    markMatched(searchKey, matchedIds);
+    return matchedIds.size();
+  }
+
+  protected void matchBlock(
+      String blockKey,
+      List<Object[]> block,
+      int method,
+      double threshold,
+      Set<Long> matchedIds,
+      List<String> skippedBlocks) {
+
+    if (block.size() < 2) {
+      return;
+    }
+
+    if (method == DuplicateBlockingKey.METHOD_EXACT
+        || method == DuplicateBlockingKey.METHOD_SORTED_WORDS) {
+      for (Object[] row : block) {
+        matchedIds.add((Long) row[1]);
+      }
+      return;
+    }
+
+    if (block.size() > maxBlockSize) {
+      log.warn(
+          "Duplicate block '{}' skipped: {} records, more than {}",
+          blockKey,
+          block.size(),
+          maxBlockSize);
+      skippedBlocks.add(blockKey);
+      return;
+    }
+
+    List<Set<String>> trigrams = new ArrayList<>(block.size());
+    for (Object[] row : block) {
+      trigrams.add(StringTool.trigrams((String) row[2]));
+    }
+    for (int i = 0; i < block.size(); i++) {
+      for (int j = i + 1; j < block.size(); j++) {
+        if (StringTool.trigramSimilarity(trigrams.get(i), trigrams.get(j)) >= threshold) {
+          matchedIds.add((Long) block.get(i)[1]);
+          matchedIds.add((Long) block.get(j)[1]);
+        }
+      }
+    }
+  }
+
+  protected void markMatched(String searchKey, Set<Long> matchedIds) {
+    for (List<Long> ids : Lists.partition(new ArrayList<>(matchedIds), pageSize)) {
+      JPA.runInTransaction(
+          () ->
+              JPA.em()
+                  .createQuery(
+                      "UPDATE DuplicateBlockingKey k SET k.matched = true "
+                          + "WHERE k.searchKey = :searchKey AND k.recordId IN (:ids)")
+                  .setParameter("searchKey", searchKey)
+                  .setParameter("ids", ids)
+                  .executeUpdate());
+    }
+  }
+
+  protected void deleteSearch(String searchKey) {
+    JPA.runInTransaction(
+        () ->
+            JPA.em()
+                .createQuery("DELETE FROM DuplicateBlockingKey k WHERE k.searchKey = :searchKey")
+                .setParameter("searchKey", searchKey)
+                .executeUpdate());
+  }
+
+  protected void purgeOldSearches() {
+    LocalDateTime limit = LocalDateTime.now().minusHours(SEARCH_RETENTION_HOURS);
+    JPA.runInTransaction(
+        () ->
+            JPA.em()
+                .createQuery("DELETE FROM DuplicateBlockingKey k WHERE k.createdOn < :limit")
+                .setParameter("limit", limit)
+                .executeUpdate());
+  }
+}
@@ -33,18 +33,14 @@ import com.axelor.rpc.filter.Filter;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import javax.persistence.Query;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 @Singleton
 public class DuplicateObjectsService {
 
-  private final Logger log = LoggerFactory.getLogger(DuplicateObjectsService.class);
   @Inject private MetaFieldRepository metaFieldRepo;
 
   @Transactional
@@ -170,115 +166,30 @@ public class DuplicateObjectsService {
     return jpaSecurity.getFilter(JpaSecurity.CAN_READ, beanClass, (Long) null);
   }
 
-  /*
-   * find duplicate records
+  /**
+   * Get the property of a field used to find duplicates, checking it can be compared.
+   *
+   * @param modelClass
+   * @param field
+   * @return the property of the field
+   * @throws AxelorException if the field doesn't exist or is a collection
    */
-  public List<?> findDuplicatedRecordIds(
-      Set<String> fieldSet, Class<? extends Model> modelClass, String filter)
+  public Property getDuplicateFinderProperty(Class<?> modelClass, String field)
       throws AxelorException {
-    if (fieldSet == null || fieldSet.isEmpty()) {
-      return Collections.emptyList();
+    Property property = Mapper.of(modelClass).getProperty(field);
+    if (property == null) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.GENERAL_8),
+          field,
+          modelClass.getSimpleName());
     }
-
-    String concatedFields = concatFields(modelClass, fieldSet);
-
-    String subQuery = createSubQuery(modelClass, filter, concatedFields);
-    log.debug("Duplicate check subquery: {}", concatedFields);
-
-    return fetchDuplicatedRecordIds(modelClass, concatedFields, subQuery, filter);
-  }
-
-  /*
-   * get all records for duplicate records
-   */ private String concatFields(Class<?> modelClass, Set<String> fieldSet)
-      throws AxelorException {
-
-    StringBuilder fields = new StringBuilder("LOWER(concat(");
-    Mapper mapper = Mapper.of(modelClass);
-
-    int count = 0;
-
-    for (String field : fieldSet) {
-      Property property = mapper.getProperty(field);
-      if (property == null) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.GENERAL_8),
-            field,
-            modelClass.getSimpleName());
-      }
-      if (property.isCollection()) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.GENERAL_9),
-            field);
-      }
-      if (count != 0) {
-        fields.append(",");
-      }
-      count++;
-      fields.append("cast(self" + "." + field);
-
-      if (property.getTarget() != null) {
-        fields.append(".id");
-      }
-      fields.append(" as string)");
+    if (property.isCollection()) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.GENERAL_9),
+          field);
     }
-    fields.append("))");
-
-    return fields.toString();
-  }
-
-  private String createSubQuery(Class<?> modelClass, String filter, String concatedFields) {
-
-    StringBuilder queryBuilder = new StringBuilder("SELECT ");
-    queryBuilder.append(concatedFields);
-    queryBuilder.append(" FROM ");
-    queryBuilder.append(modelClass.getSimpleName() + " self");
-    if (filter != null) {
-      queryBuilder.append(" WHERE " + filter);
-    }
-    queryBuilder.append(" GROUP BY ");
-    queryBuilder.append(concatedFields);
-    queryBuilder.append(" HAVING COUNT(self) > 1");
-
-    return queryBuilder.toString();
-  }
-
-  private List<?> fetchDuplicatedRecordIds(
-      Class<? extends Model> modelClass, String concatedFields, String subQuery, String filter) {
-
-    log.debug("Fetch duplicated records for: {}", modelClass);
-
-    StringBuilder queryBuilder = new StringBuilder("SELECT self.id FROM ");
-    queryBuilder.append(modelClass.getSimpleName() + " self");
-    queryBuilder.append(" WHERE ");
-    queryBuilder.append(concatedFields);
-    queryBuilder.append(" IN ");
-    queryBuilder.append("(" + subQuery + ")");
-    if (filter != null) {
-      queryBuilder.append(" AND " + filter);
-    }
-
-    Filter securityFilter = getJpaSecurityFilter(modelClass);
-    Object[] params = new Object[] {};
-    if (securityFilter != null) {
-      queryBuilder.append(" AND (" + securityFilter.getQuery() + ")");
-      log.debug("JPA filter query: {}", securityFilter.getQuery());
-      params = securityFilter.getParams().toArray();
-      log.debug("JPA filter params: {}", securityFilter.getParams());
-    }
-
-    String query = queryBuilder.toString();
-
-    log.debug("Final query prepared: {}", query);
-
-    Query finalQuery = JPA.em().createQuery(query);
-
-    for (int i = 0; i < params.length; i++) {
-      finalQuery.setParameter(i, params[i]);
-    }
-
-    return finalQuery.getResultList();
+    return property;
   }
 }
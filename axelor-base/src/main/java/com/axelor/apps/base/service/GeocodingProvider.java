@@ -0,0 +1,46 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.exception.AxelorException;
+import java.math.BigDecimal;
+import java.util.Optional;
+import org.apache.commons.lang3.tuple.Pair;
+import wslite.json.JSONException;
+
+/** Remote service resolving an address into coordinates, used behind the geocode cache. */
+public interface GeocodingProvider {
+
+  /**
+   * Name of the provider, the cached coordinates are kept per provider.
+   *
+   * @return the provider name, {@code null} if no provider is configured
+   */
+  String getName();
+
+  /**
+   * Geocode an address.
+   *
+   * @param address
+   * @return the latitude and longitude, empty if the address is not found
+   * @throws AxelorException if the request fails, the address may then be found by a later one
+   * @throws JSONException
+   */
+  Optional<Pair<BigDecimal, BigDecimal>> geocode(String address)
+      throws AxelorException, JSONException;
+}
@@ -0,0 +1,81 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.apps.base.db.repo.AppBaseRepository;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.exception.AxelorException;
+import com.google.inject.Inject;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.lang3.tuple.Pair;
+import wslite.json.JSONException;
+
+/** Geocoding through the map API selected in the base app (Google or OpenStreetMap). */
+public class GeocodingProviderImpl implements GeocodingProvider {
+
+  protected AppBaseService appBaseService;
+  protected MapService mapService;
+
+  @Inject
+  public GeocodingProviderImpl(AppBaseService appBaseService, MapService mapService) {
+    this.appBaseService = appBaseService;
+    this.mapService = mapService;
+  }
+
+  @Override
+  public String getName() {
+    switch (appBaseService.getAppBase().getMapApiSelect()) {
+      case AppBaseRepository.MAP_API_GOOGLE:
+        return "google";
+
+      case AppBaseRepository.MAP_API_OPEN_STREET_MAP:
+        return "osm";
+
+      default:
+        return null;
+    }
+  }
+
+  @Override
+  public Optional<Pair<BigDecimal, BigDecimal>> geocode(String address)
+      throws AxelorException, JSONException {
+    Map<String, Object> result;
+
+    switch (appBaseService.getAppBase().getMapApiSelect()) {
+      case AppBaseRepository.MAP_API_GOOGLE:
+        result = mapService.getMapGoogle(address);
+        break;
+
+      case AppBaseRepository.MAP_API_OPEN_STREET_MAP:
+        result = mapService.searchOsm(address);
+        break;
+
+      default:
+        result = null;
+    }
+
+    if (result == null) {
+      return Optional.empty();
+    }
+
+    return Optional.of(
+        Pair.of((BigDecimal) result.get("latitude"), (BigDecimal) result.get("longitude")));
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.exception.AxelorException;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.lang3.tuple.Pair;
+import wslite.json.JSONException;
+
+public interface GeocodingService {
+
+  /**
+   * Geocode an address, from the geocode cache when a fresh entry exists, otherwise through the
+   * {@link GeocodingProvider} and the result is cached.
+   *
+   * @param address
+   * @return the latitude and longitude, empty if the address is blank or not found
+   * @throws AxelorException
+   * @throws JSONException
+   */
+  Optional<Pair<BigDecimal, BigDecimal>> geocode(String address)
+      throws AxelorException, JSONException;
+
+  /**
+   * Geocode a set of addresses. Addresses are deduplicated on their normalized form, cached ones
+   * are read with one query per chunk and the remaining ones are requested one at a time, with
+   * the configured delay between two requests. An address failing to geocode is logged and left
+   * out of the result, so that it can be told apart from an address which is not found.
+   *
+   * @param addresses
+   * @return the coordinates of each geocoded address, empty if it is not found, keyed by the given
+   *     address
+   */
+  Map<String, Optional<Pair<BigDecimal, BigDecimal>>> geocode(Collection<String> addresses);
+
+  /**
+   * Normalize an address so that its different spellings share a single cache entry.
+   *
+   * @param address
+   * @return the normalized address
+   */
+  String normalize(String address);
+}
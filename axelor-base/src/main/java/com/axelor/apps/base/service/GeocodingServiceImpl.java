@@ -0,0 +1,262 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.app.AppSettings;
+import com.axelor.apps.base.db.GeocodeCache;
+import com.axelor.apps.base.db.repo.GeocodeCacheRepository;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.common.StringUtils;
+import com.axelor.exception.AxelorException;
+import com.axelor.exception.db.repo.TraceBackRepository;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wslite.json.JSONException;
+
+/**
+ * Geocode cache in front of the {@link GeocodingProvider}.
+ *
+ * <p>Entries expire after {@code geocoding.cache.ttl.days} days (90 by default, 0 to keep them
+ * forever). Requests sent to the provider by batches start {@code geocoding.request.delay}
+ * milliseconds apart, 1000 by default for OpenStreetMap as required by the Nominatim usage policy.
+ * A single address, geocoded on a user action, is requested right away.
+ */
+@Singleton
+public class GeocodingServiceImpl implements GeocodingService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final int CHUNK_SIZE = 500;
+
+  protected GeocodingProvider geocodingProvider;
+  protected GeocodeCacheRepository geocodeCacheRepository;
+  protected AppBaseService appBaseService;
+
+  private long nextRequestMillis;
+
+  @Inject
+  public GeocodingServiceImpl(
+      GeocodingProvider geocodingProvider,
+      GeocodeCacheRepository geocodeCacheRepository,
+      AppBaseService appBaseService) {
+    this.geocodingProvider = geocodingProvider;
+    this.geocodeCacheRepository = geocodeCacheRepository;
+    this.appBaseService = appBaseService;
+  }
+
+  @Override
+  public Optional<Pair<BigDecimal, BigDecimal>> geocode(String address)
+      throws AxelorException, JSONException {
+    String provider = geocodingProvider.getName();
+
+    if (StringUtils.isBlank(address) || provider == null) {
+      return Optional.empty();
+    }
+
+    String normalizedAddress = normalize(address);
+    String addressKey = getAddressKey(normalizedAddress);
+    GeocodeCache geocodeCache =
+        geocodeCacheRepository
+            .all()
+            .filter("self.addressKey = :addressKey AND self.provider = :provider")
+            .bind("addressKey", addressKey)
+            .bind("provider", provider)
+            .fetchOne();
+
+    if (isFresh(geocodeCache)) {
+      return Optional.of(Pair.of(geocodeCache.getLatit(), geocodeCache.getLongit()));
+    }
+
+    Optional<Pair<BigDecimal, BigDecimal>> latLong = geocodingProvider.geocode(address);
+
+    if (latLong.isPresent()) {
+      saveGeocodeCache(provider, addressKey, normalizedAddress, latLong.get());
+    }
+
+    return latLong;
+  }
+
+  @Override
+  public Map<String, Optional<Pair<BigDecimal, BigDecimal>>> geocode(
+      Collection<String> addresses) {
+    Map<String, Optional<Pair<BigDecimal, BigDecimal>>> result = new HashMap<>();
+    String provider = geocodingProvider.getName();
+
+    if (provider == null) {
+      return result;
+    }
+
+    Map<String, List<String>> addressMap = new LinkedHashMap<>();
+    Map<String, String> normalizedAddressMap = new HashMap<>();
+
+    for (String address : addresses) {
+      if (StringUtils.isBlank(address)) {
+        continue;
+      }
+      String normalizedAddress = normalize(address);
+      String addressKey = getAddressKey(normalizedAddress);
+      addressMap.computeIfAbsent(addressKey, key -> new ArrayList<>()).add(address);
+      normalizedAddressMap.putIfAbsent(addressKey, normalizedAddress);
+    }
+
+    for (List<String> addressKeys :
+        Lists.partition(new ArrayList<>(addressMap.keySet()), CHUNK_SIZE)) {
+      Map<String, GeocodeCache> geocodeCacheMap = new HashMap<>();
+      geocodeCacheRepository
+          .all()
+          .filter("self.addressKey IN (:addressKeys) AND self.provider = :provider")
+          .bind("addressKeys", addressKeys)
+          .bind("provider", provider)
+          .fetch()
+          .forEach(geocodeCache -> geocodeCacheMap.put(geocodeCache.getAddressKey(), geocodeCache));
+
+      for (String addressKey : addressKeys) {
+        List<String> addressList = addressMap.get(addressKey);
+        GeocodeCache geocodeCache = geocodeCacheMap.get(addressKey);
+        Optional<Pair<BigDecimal, BigDecimal>> latLong;
+
+        if (isFresh(geocodeCache)) {
+          latLong = Optional.of(Pair.of(geocodeCache.getLatit(), geocodeCache.getLongit()));
+        } else {
+          try {
+            latLong = request(provider, addressList.get(0));
+          } catch (AxelorException | JSONException e) {
+            LOG.warn("Geocoding of {} failed: {}", addressList.get(0), e.getMessage());
+            continue;
+          }
+
+          if (latLong.isPresent()) {
+            saveGeocodeCache(
+                provider, addressKey, normalizedAddressMap.get(addressKey), latLong.get());
+          }
+        }
+
+        for (String address : addressList) {
+          result.put(address, latLong);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public String normalize(String address) {
+    return address
+        .trim()
+        .toLowerCase(Locale.ROOT)
+        .replaceAll("\\s+", " ")
+        .replaceAll(" ?, ?", ", ");
+  }
+
+  protected String getAddressKey(String normalizedAddress) {
+    return Hashing.sha256().hashString(normalizedAddress, StandardCharsets.UTF_8).toString();
+  }
+
+  protected boolean isFresh(GeocodeCache geocodeCache) {
+    if (geocodeCache == null
+        || geocodeCache.getLatit() == null
+        || geocodeCache.getLongit() == null) {
+      return false;
+    }
+
+    int ttlDays = AppSettings.get().getInt("geocoding.cache.ttl.days", 90);
+    ZonedDateTime geocodingDateTime = geocodeCache.getGeocodingDateTime();
+
+    return ttlDays <= 0
+        || (geocodingDateTime != null
+            && geocodingDateTime.isAfter(appBaseService.getTodayDateTime().minusDays(ttlDays)));
+  }
+
+  /**
+   * Request the provider once the next slot is reached. Slots are reserved under a short lock and
+   * waited for outside of it, so that concurrent batches queue up without holding the service.
+   */
+  protected Optional<Pair<BigDecimal, BigDecimal>> request(String provider, String address)
+      throws AxelorException, JSONException {
+    long waitMillis = reserveRequestSlot(getRequestDelay(provider));
+
+    if (waitMillis > 0) {
+      try {
+        Thread.sleep(waitMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AxelorException(e, TraceBackRepository.CATEGORY_INCONSISTENCY);
+      }
+    }
+
+    return geocodingProvider.geocode(address);
+  }
+
+  /** @return the milliseconds to wait before sending the request */
+  protected synchronized long reserveRequestSlot(long delay) {
+    long now = System.currentTimeMillis();
+    long slot = Math.max(now, nextRequestMillis);
+    nextRequestMillis = slot + delay;
+    return slot - now;
+  }
+
+  protected long getRequestDelay(String provider) {
+    return AppSettings.get().getInt("geocoding.request.delay", "osm".equals(provider) ? 1000 : 0);
+  }
+
+  @Transactional
+  protected void saveGeocodeCache(
+      String provider,
+      String addressKey,
+      String normalizedAddress,
+      Pair<BigDecimal, BigDecimal> latLong) {
+    GeocodeCache geocodeCache =
+        geocodeCacheRepository
+            .all()
+            .filter("self.addressKey = :addressKey AND self.provider = :provider")
+            .bind("addressKey", addressKey)
+            .bind("provider", provider)
+            .fetchOne();
+
+    if (geocodeCache == null) {
+      geocodeCache = new GeocodeCache();
+      geocodeCache.setAddressKey(addressKey);
+      geocodeCache.setProvider(provider);
+      geocodeCache.setAddress(normalizedAddress);
+    }
+
+    geocodeCache.setLatit(latLong.getLeft());
+    geocodeCache.setLongit(latLong.getRight());
+    geocodeCache.setGeocodingDateTime(appBaseService.getTodayDateTime());
+    geocodeCacheRepository.save(geocodeCache);
+  }
+}
@@ -26,6 +26,7 @@ import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import groovy.util.XmlSlurper;
@@ -36,6 +37,7 @@ import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Optional;
 import javax.ws.rs.core.UriBuilder;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -47,6 +49,7 @@ import wslite.json.JSONException;
 import wslite.json.JSONObject;
 import wslite.rest.ContentType;
 import wslite.rest.RESTClient;
+import wslite.rest.RESTClientException;
 import wslite.rest.Response;
 
 public class MapService {
@@ -55,6 +58,8 @@ public class MapService {
 
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  private static final String STATUS_ZERO_RESULTS = "ZERO_RESULTS";
+
   private BigDecimal lat;
   private BigDecimal lon;
 
@@ -81,9 +86,22 @@ public class MapService {
     responseMap.put("useCaches", false);
     responseMap.put("sslTrustAllCerts", true);
 
-    JSONObject restResponse = getJSON(restClient.get(responseMap));
+    JSONObject restResponse;
+    try {
+      restResponse = getJSON(restClient.get(responseMap));
+    } catch (RESTClientException e) {
+      throw new AxelorException(
+          e,
+          TraceBackRepository.CATEGORY_INCONSISTENCY,
+          I18n.get(IExceptionMessage.MAP_RESPONSE_ERROR),
+          e.getMessage());
+    }
     LOG.debug("Gmap response: {}", restResponse);
 
+    if (STATUS_ZERO_RESULTS.equalsIgnoreCase(restResponse.getString("status"))) {
+      return null;
+    }
+
     if (restResponse.containsKey("results")) {
       JSONArray results = (JSONArray) restResponse.get("results");
 
@@ -161,12 +179,29 @@ public class MapService {
     return null;
   }
 
-  @SuppressWarnings({"rawtypes", "unchecked"})
   public Map<String, Object> getMapOsm(String qString) {
+    try {
+      return searchOsm(qString);
+    } catch (AxelorException e) {
+      TraceBackService.trace(e);
+    }
+    return null;
+  }
+
+  /**
+   * Geocode an address with OpenStreetMap.
+   *
+   * @param qString
+   * @return the map url, latitude and longitude, {@code null} if the address is not found
+   * @throws AxelorException if the request or the response fails
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public Map<String, Object> searchOsm(String qString) throws AxelorException {
     Map<String, Object> result = new HashMap<>();
+    BigDecimal latitude = BigDecimal.ZERO;
+    BigDecimal longitude = BigDecimal.ZERO;
+    GPathResult searchresults;
     try {
-      BigDecimal latitude = BigDecimal.ZERO;
-      BigDecimal longitude = BigDecimal.ZERO;
       RESTClient restClient = new RESTClient("https://nominatim.openstreetmap.org/");
       Map<String, Object> mapQuery = new HashMap<>();
       mapQuery.put("q", qString);
@@ -183,47 +218,83 @@ public class MapService {
       mapResponse.put("useCaches", false);
       mapResponse.put("sslTrustAllCerts", true);
       Response restResponse = restClient.get(mapResponse);
-      GPathResult searchresults = new XmlSlurper().parseText(restResponse.getContentAsString());
-      Iterator<Node> iterator = searchresults.childNodes();
-      if (iterator.hasNext()) {
-        Node node = iterator.next();
-        Map attributes = node.attributes();
-        if (attributes.containsKey("lat") && attributes.containsKey("lon")) {
-          if (BigDecimal.ZERO.compareTo(latitude) == 0)
-            latitude = new BigDecimal(node.attributes().get("lat").toString());
-          if (BigDecimal.ZERO.compareTo(longitude) == 0)
-            longitude = new BigDecimal(node.attributes().get("lon").toString());
-        }
-      }
-
-      LOG.debug("OSMap qString: {}, latitude: {}, longitude: {}", qString, latitude, longitude);
+      searchresults = new XmlSlurper().parseText(restResponse.getContentAsString());
+    } catch (Exception e) {
+      throw new AxelorException(
+          e,
+          TraceBackRepository.CATEGORY_INCONSISTENCY,
+          I18n.get(IExceptionMessage.MAP_RESPONSE_ERROR),
+          e.getMessage());
+    }
 
-      if (BigDecimal.ZERO.compareTo(latitude) != 0 && BigDecimal.ZERO.compareTo(longitude) != 0) {
-        result.put("url", "map/oneMarker.html?x=" + latitude + "&y=" + longitude + "&z=18");
-        result.put("latitude", latitude);
-        result.put("longitude", longitude);
-        return result;
+    Iterator<Node> iterator = searchresults.childNodes();
+    if (iterator.hasNext()) {
+      Node node = iterator.next();
+      Map attributes = node.attributes();
+      if (attributes.containsKey("lat") && attributes.containsKey("lon")) {
+        latitude = new BigDecimal(node.attributes().get("lat").toString());
+        longitude = new BigDecimal(node.attributes().get("lon").toString());
       }
+    }
 
-    } catch (Exception e) {
-      TraceBackService.trace(e);
+    LOG.debug("OSMap qString: {}, latitude: {}, longitude: {}", qString, latitude, longitude);
+
+    if (BigDecimal.ZERO.compareTo(latitude) != 0 && BigDecimal.ZERO.compareTo(longitude) != 0) {
+      result.put("url", "map/oneMarker.html?x=" + latitude + "&y=" + longitude + "&z=18");
+      result.put("latitude", latitude);
+      result.put("longitude", longitude);
+      return result;
     }
+
     return null;
   }
 
+  /**
+   * Geocode an address through the geocode cache, with the configured map API.
+   *
+   * @param qString
+   * @return the map url, latitude and longitude, {@code null} if the address is not found
+   * @throws AxelorException
+   * @throws JSONException
+   */
   public Map<String, Object> getMap(String qString) throws AxelorException, JSONException {
     LOG.debug("qString = {}", qString);
 
+    Optional<Pair<BigDecimal, BigDecimal>> latLong =
+        Beans.get(GeocodingService.class).geocode(qString);
+
+    if (!latLong.isPresent()) {
+      return null;
+    }
+
+    BigDecimal latitude = latLong.get().getLeft();
+    BigDecimal longitude = latLong.get().getRight();
+    Map<String, Object> result = new HashMap<>();
+
     switch (appBaseService.getAppBase().getMapApiSelect()) {
       case AppBaseRepository.MAP_API_GOOGLE:
-        return getMapGoogle(qString);
+        result.put(
+            "url",
+            "map/gmaps.html?key="
+                + getGoogleMapsApiKey()
+                + "&x="
+                + latitude
+                + "&y="
+                + longitude
+                + "&z=18");
+        break;
 
       case AppBaseRepository.MAP_API_OPEN_STREET_MAP:
-        return getMapOsm(qString);
+        result.put("url", "map/oneMarker.html?x=" + latitude + "&y=" + longitude + "&z=18");
+        break;
 
       default:
         return null;
     }
+
+    result.put("latitude", latitude);
+    result.put("longitude", longitude);
+    return result;
   }
 
   public String getMapUrl(Pair<BigDecimal, BigDecimal> latLong) {
@@ -394,7 +465,8 @@ public class MapService {
     JSONObject json = new JSONObject(response.getContentAsString());
     String status = json.getString("status");
 
-    if (!"OK".equalsIgnoreCase(status)) {
+    // A definite "no result" is not an error, unlike quota or request errors.
+    if (!"OK".equalsIgnoreCase(status) && !STATUS_ZERO_RESULTS.equalsIgnoreCase(status)) {
       String msg =
           json.has("error_message")
               ? String.format("%s: %s", status, json.getString("error_message"))
@@ -0,0 +1,258 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.app.AppSettings;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.tool.StringTool;
+import com.axelor.db.JPA;
+import com.axelor.db.Query;
+import com.axelor.event.Observes;
+import com.axelor.events.StartupEvent;
+import com.axelor.exception.service.TraceBackService;
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains the normalized partner name used by the duplicate checks.
+ *
+ * <p>On startup, partners saved before the column existed are backfilled. When {@code
+ * partner.name.trigram.index} is enabled on PostgreSQL, a pg_trgm GIN index is created on the
+ * column so that similar names can be searched at interactive latency; otherwise similar names
+ * are scored in memory among the partners sharing the same name prefix, read through a
+ * text_pattern_ops index on PostgreSQL.
+ */
+@Singleton
+public class PartnerNameIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final int BACKFILL_CHUNK_SIZE = 1000;
+  protected static final int PREFIX_LENGTH = 3;
+  protected static final int MAX_CANDIDATES = 200;
+  protected static final double DEFAULT_SIMILARITY_THRESHOLD = 0.5;
+
+  protected PartnerService partnerService;
+
+  protected final boolean postgresql;
+  protected final boolean trigramIndexEnabled;
+  protected final double similarityThreshold;
+
+  private volatile boolean trigramIndexAvailable;
+
+  @Inject
+  public PartnerNameIndex(PartnerService partnerService) {
+    this.partnerService = partnerService;
+    AppSettings settings = AppSettings.get();
+    this.postgresql = settings.get("db.default.url", "").startsWith("jdbc:postgresql");
+    this.trigramIndexEnabled =
+        postgresql && settings.getBoolean("partner.name.trigram.index", false);
+    this.similarityThreshold =
+        Double.parseDouble(
+            settings.get(
+                "partner.name.similarity.threshold",
+                String.valueOf(DEFAULT_SIMILARITY_THRESHOLD)));
+  }
+
+  protected void onStartup(@Observes StartupEvent event) {
+    try {
+      backfill();
+      if (postgresql) {
+        createPatternIndex();
+      }
+      if (trigramIndexEnabled) {
+        createTrigramIndex();
+      }
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+    }
+  }
+
+  /** Compute the normalized name of the partners which do not have one yet. */
+  public void backfill() {
+    long lastId = 0;
+    int count = 0;
+    List<Map> rows;
+    do {
+      rows =
+          Query.of(Partner.class)
+              .filter("self.normalizedName IS NULL AND self.id > :lastId")
+              .bind("lastId", lastId)
+              .order("id")
+              .select("simpleFullName")
+              .fetch(BACKFILL_CHUNK_SIZE, 0);
+      if (rows.isEmpty()) {
+        break;
+      }
+      List<Map> chunk = rows;
+      JPA.runInTransaction(
+          () -> {
+            EntityManager em = JPA.em();
+            javax.persistence.Query update =
+                em.createQuery(
+                    "UPDATE Partner self SET self.normalizedName = :normalizedName "
+                        + "WHERE self.id = :id");
+            for (Map row : chunk) {
+              update
+                  .setParameter(
+                      "normalizedName",
+                      partnerService.computeNormalizedName((String) row.get("simpleFullName")))
+                  .setParameter("id", row.get("id"))
+                  .executeUpdate();
+            }
+          });
+      lastId = (Long) rows.get(rows.size() - 1).get("id");
+      count += rows.size();
+    } while (rows.size() == BACKFILL_CHUNK_SIZE);
+
+    if (count > 0) {
+      LOG.debug("Normalized name computed for {} partners", count);
+    }
+  }
+
+  /**
+   * The b-tree index declared on the column follows the database collation, which PostgreSQL can't
+   * use for the LIKE prefix searches of {@link #findSimilarIdsWithPrefix}.
+   */
+  protected void createPatternIndex() {
+    JPA.runInTransaction(
+        () ->
+            JPA.em()
+                .createNativeQuery(
+                    "CREATE INDEX IF NOT EXISTS idx_base_partner_normalized_name_pattern "
+                        + "ON base_partner (normalized_name text_pattern_ops, partner_type_select)")
+                .executeUpdate());
+  }
+
+  protected void createTrigramIndex() {
+    JPA.runInTransaction(
+        () -> {
+          EntityManager em = JPA.em();
+          em.createNativeQuery("CREATE EXTENSION IF NOT EXISTS pg_trgm").executeUpdate();
+          em.createNativeQuery(
+                  "CREATE INDEX IF NOT EXISTS idx_base_partner_normalized_name_trgm "
+                      + "ON base_partner USING gin (normalized_name gin_trgm_ops)")
+              .executeUpdate();
+        });
+    trigramIndexAvailable = true;
+  }
+
+  /**
+   * Find the active partners whose normalized name is similar to the given one, most similar
+   * first. Exact matches are left to the duplicate check.
+   *
+   * @param normalizedName a name normalized with {@link PartnerService#computeNormalizedName}
+   * @param partnerTypeSelect the partner type to search in
+   * @param excludedId the id of the partner being edited, may be null
+   * @param limit the maximum number of partners returned
+   * @return the similar partners
+   */
+  public List<Partner> findSimilar(
+      String normalizedName, Integer partnerTypeSelect, Long excludedId, int limit) {
+    if (Strings.isNullOrEmpty(normalizedName) || limit <= 0) {
+      return Collections.emptyList();
+    }
+    List<Long> ids =
+        trigramIndexAvailable
+            ? findSimilarIdsWithIndex(normalizedName, partnerTypeSelect, excludedId, limit)
+            : findSimilarIdsWithPrefix(normalizedName, partnerTypeSelect, excludedId, limit);
+    if (ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+    EntityManager em = JPA.em();
+    return ids.stream().map(id -> em.find(Partner.class, id)).collect(Collectors.toList());
+  }
+
+  @SuppressWarnings("unchecked")
+  protected List<Long> findSimilarIdsWithIndex(
+      String normalizedName, Integer partnerTypeSelect, Long excludedId, int limit) {
+    List<Number> ids =
+        JPA.em()
+            .createNativeQuery(
+                "SELECT p.id FROM base_partner p "
+                    + "WHERE p.normalized_name % :normalizedName "
+                    + "AND p.normalized_name <> :normalizedName "
+                    + "AND p.partner_type_select = :partnerTypeSelect "
+                    + "AND p.id <> :excludedId "
+                    + "AND (p.archived IS NULL OR p.archived = false) "
+                    + "AND similarity(p.normalized_name, :normalizedName) >= :threshold "
+                    + "ORDER BY similarity(p.normalized_name, :normalizedName) DESC, p.id "
+                    + "LIMIT :limit")
+            .setParameter("normalizedName", normalizedName)
+            .setParameter("partnerTypeSelect", partnerTypeSelect)
+            .setParameter("excludedId", excludedId != null ? excludedId : 0L)
+            .setParameter("threshold", similarityThreshold)
+            .setParameter("limit", limit)
+            .getResultList();
+    return ids.stream().map(Number::longValue).collect(Collectors.toList());
+  }
+
+  /**
+   * Score the partners sharing the prefix of the name. The candidates closest in length are read
+   * first, as the trigram similarity of two names drops with the difference of their lengths.
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Long> findSimilarIdsWithPrefix(
+      String normalizedName, Integer partnerTypeSelect, Long excludedId, int limit) {
+    String prefix = normalizedName.substring(0, Math.min(PREFIX_LENGTH, normalizedName.length()));
+    List<Object[]> candidates =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, self.normalizedName FROM Partner self "
+                    + "WHERE self.normalizedName LIKE :prefix "
+                    + "AND self.normalizedName != :normalizedName "
+                    + "AND self.partnerTypeSelect = :partnerTypeSelect "
+                    + "AND self.id != :excludedId "
+                    + "AND (self.archived IS NULL OR self.archived = false) "
+                    + "ORDER BY ABS(LENGTH(self.normalizedName) - :length), self.id")
+            .setParameter("prefix", prefix + "%")
+            .setParameter("normalizedName", normalizedName)
+            .setParameter("partnerTypeSelect", partnerTypeSelect)
+            .setParameter("excludedId", excludedId != null ? excludedId : 0L)
+            .setParameter("length", normalizedName.length())
+            .setMaxResults(MAX_CANDIDATES)
+            .getResultList();
+
+    Set<String> trigrams = StringTool.trigrams(normalizedName);
+    List<Object[]> scored = new ArrayList<>();
+    for (Object[] candidate : candidates) {
+      double similarity =
+          StringTool.trigramSimilarity(trigrams, StringTool.trigrams((String) candidate[1]));
+      if (similarity >= similarityThreshold) {
+        scored.add(new Object[] {candidate[0], similarity});
+      }
+    }
+    return scored.stream()
+        .sorted(Comparator.comparingDouble(score -> -(double) score[1]))
+        .limit(limit)
+        .map(score -> (Long) score[0])
+        .collect(Collectors.toList());
+  }
+}
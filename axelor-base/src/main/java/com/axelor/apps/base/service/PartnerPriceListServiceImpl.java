@@ -25,9 +25,11 @@ import com.axelor.apps.base.db.repo.PartnerRepository;
 import com.axelor.apps.base.db.repo.PriceListRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.pricelist.PriceListIndex;
 import com.axelor.apps.tool.StringTool;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -43,10 +45,12 @@ import java.util.stream.Collectors;
 public class PartnerPriceListServiceImpl implements PartnerPriceListService {
 
   protected AppBaseService appBaseService;
+  protected PriceListIndex priceListIndex;
 
   @Inject
-  public PartnerPriceListServiceImpl(AppBaseService appBaseService) {
+  public PartnerPriceListServiceImpl(AppBaseService appBaseService, PriceListIndex priceListIndex) {
     this.appBaseService = appBaseService;
+    this.priceListIndex = priceListIndex;
   }
 
   @Override
@@ -92,10 +96,26 @@ public class PartnerPriceListServiceImpl implements PartnerPriceListService {
 
   @Override
   public PriceList getDefaultPriceList(Partner partner, int priceListTypeSelect) {
-    if (partner == null) {
+    if (partner == null || partner.getId() == null) {
       return null;
     }
-    partner = Beans.get(PartnerRepository.class).find(partner.getId());
+    LocalDate today =
+        appBaseService.getTodayDate(
+            Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null));
+    Long partnerId = partner.getId();
+    Long priceListId =
+        priceListIndex.getDefaultPriceListId(
+            partnerId,
+            priceListTypeSelect,
+            today,
+            () -> computeDefaultPriceListId(partnerId, priceListTypeSelect, today));
+    // A reference is only loaded if its fields are read, setting it on a record needs no query.
+    return priceListId != null ? JPA.em().getReference(PriceList.class, priceListId) : null;
+  }
+
+  protected Long computeDefaultPriceListId(
+      Long partnerId, int priceListTypeSelect, LocalDate date) {
+    Partner partner = Beans.get(PartnerRepository.class).find(partnerId);
     PartnerPriceList partnerPriceList = getPartnerPriceList(partner, priceListTypeSelect);
     if (partnerPriceList == null) {
       return null;
@@ -109,26 +129,12 @@ public class PartnerPriceListServiceImpl implements PartnerPriceListService {
             .filter(
                 priceList ->
                     (priceList.getApplicationBeginDate() == null
-                            || priceList
-                                    .getApplicationBeginDate()
-                                    .compareTo(
-                                        appBaseService.getTodayDate(
-                                            Optional.ofNullable(AuthUtils.getUser())
-                                                .map(User::getActiveCompany)
-                                                .orElse(null)))
-                                <= 0)
+                            || priceList.getApplicationBeginDate().compareTo(date) <= 0)
                         && (priceList.getApplicationEndDate() == null
-                            || priceList
-                                    .getApplicationEndDate()
-                                    .compareTo(
-                                        appBaseService.getTodayDate(
-                                            Optional.ofNullable(AuthUtils.getUser())
-                                                .map(User::getActiveCompany)
-                                                .orElse(null)))
-                                >= 0))
+                            || priceList.getApplicationEndDate().compareTo(date) >= 0))
             .collect(Collectors.toList());
     if (priceLists.size() == 1) {
-      return priceLists.get(0);
+      return priceLists.get(0).getId();
     } else {
       return null;
     }
@@ -91,6 +91,24 @@ public interface PartnerService {
 
   void convertToIndividualPartner(Partner partner);
 
+  /**
+   * Normalize a partner name for duplicate detection: lowercased, accents and punctuation removed,
+   * whitespace collapsed and leading or trailing legal forms (SARL, GmbH, Ltd...) dropped.
+   *
+   * @param name a partner name
+   * @return the normalized name, empty if the name is null
+   */
+  String computeNormalizedName(String name);
+
+  /**
+   * Find an active partner by its normalized name.
+   *
+   * @param name a partner name, normalized by this method
+   * @param partnerTypeSelect the partner type
+   * @return the first partner found or null.
+   */
+  Partner findByNormalizedName(String name, Integer partnerTypeSelect);
+
   /**
    * Check if the partner in view has a duplicate.
    *
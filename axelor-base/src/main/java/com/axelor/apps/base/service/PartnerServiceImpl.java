@@ -34,6 +34,7 @@ import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.message.db.EmailAddress;
+import com.axelor.apps.tool.StringTool;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
 import com.axelor.common.StringUtils;
@@ -45,11 +46,13 @@ import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -66,6 +69,12 @@ public class PartnerServiceImpl implements PartnerService {
 
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  /** Legal forms ignored when they start or end a normalized partner name. */
+  protected static final Set<String> LEGAL_FORMS =
+      ImmutableSet.of(
+          "sarl", "sas", "sasu", "sa", "eurl", "sci", "snc", "gmbh", "ltd", "llc", "llp", "lp",
+          "inc", "corp", "co", "bv", "nv", "ag", "spa", "srl", "plc");
+
   protected PartnerRepository partnerRepo;
   protected AppBaseService appBaseService;
 
@@ -266,6 +275,7 @@ public class PartnerServiceImpl implements PartnerService {
   public void setPartnerFullName(Partner partner) {
     partner.setSimpleFullName(this.computeSimpleFullName(partner));
     partner.setFullName(this.computeFullName(partner));
+    partner.setNormalizedName(this.computeNormalizedName(partner.getSimpleFullName()));
   }
 
   @Override
@@ -290,6 +300,40 @@ public class PartnerServiceImpl implements PartnerService {
     }
   }
 
+  @Override
+  public String computeNormalizedName(String name) {
+    String normalized = StringTool.normalizeForComparison(name);
+    if (normalized.isEmpty()) {
+      return normalized;
+    }
+    List<String> words = new ArrayList<>(Arrays.asList(normalized.split(" ")));
+    while (words.size() > 1 && LEGAL_FORMS.contains(words.get(words.size() - 1))) {
+      words.remove(words.size() - 1);
+    }
+    while (words.size() > 1 && LEGAL_FORMS.contains(words.get(0))) {
+      words.remove(0);
+    }
+    return String.join(" ", words);
+  }
+
+  @Override
+  public Partner findByNormalizedName(String name, Integer partnerTypeSelect) {
+    String normalizedName = this.computeNormalizedName(name);
+    if (normalizedName.isEmpty()) {
+      return null;
+    }
+    return partnerRepo
+        .all()
+        .filter(
+            "self.normalizedName = :normalizedName "
+                + "and self.partnerTypeSelect = :partnerTypeSelect "
+                + "and (self.archived != true OR self.archived is null)")
+        .bind("normalizedName", normalizedName)
+        .bind("partnerTypeSelect", partnerTypeSelect)
+        .order("id")
+        .fetchOne();
+  }
+
   @Override
   public Map<String, String> getSocialNetworkUrl(
       String name, String firstName, Integer typeSelect) {
@@ -709,13 +753,13 @@ public class PartnerServiceImpl implements PartnerService {
   }
 
   protected Partner isThereDuplicatePartnerQuery(Partner partner, boolean isInArchived) {
-    String newName = this.computeSimpleFullName(partner);
+    String newName = this.computeNormalizedName(this.computeSimpleFullName(partner));
     if (Strings.isNullOrEmpty(newName)) {
       return null;
     }
     Long partnerId = partner.getId();
     String filter =
-        "lower(self.simpleFullName) = lower(:newName) "
+        "self.normalizedName = :newName "
             + "and self.partnerTypeSelect = :_partnerTypeSelect ";
     if (partner != null) {
       filter += "and self.id != :partnerId ";
@@ -25,10 +25,10 @@ import com.axelor.apps.base.db.repo.PriceListLineRepository;
 import com.axelor.apps.base.db.repo.PriceListRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.pricelist.PriceListIndex;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
-import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
@@ -46,54 +46,60 @@ public class PriceListService {
 
   @Inject protected AppBaseService appBaseService;
 
+  @Inject protected PriceListIndex priceListIndex;
+
+  /**
+   * Find the price list line giving the lowest price for a product and a quantity.
+   *
+   * @return a copy of the line, see {@link #toPriceListLine(PriceListIndex.Line)}
+   */
   public PriceListLine getPriceListLine(
       Product product, BigDecimal qty, PriceList priceList, BigDecimal price) {
 
-    PriceListLine priceListLine = null;
-    List<PriceListLine> priceListLineList = null;
+    if (product == null || priceList == null || priceList.getId() == null) {
+      return null;
+    }
 
+    List<PriceListIndex.Line> lines =
+        priceListIndex.findLines(
+            priceList.getId(),
+            product.getId(),
+            product.getProductCategory() != null ? product.getProductCategory().getId() : null,
+            qty);
+
+    PriceListIndex.Line selectedLine = null;
     BigDecimal tempDiscountPrevious = null;
     BigDecimal tempDiscountCurrent = null;
 
-    if (product != null && priceList != null) {
-      priceListLineList =
-          Beans.get(PriceListLineRepository.class)
-              .all()
-              .filter(
-                  "self.product = ?1 AND self.minQty <= ?2 AND self.priceList.id = ?3 ORDER BY self.minQty DESC",
-                  product,
-                  qty,
-                  priceList.getId())
-              .fetch();
-      if ((priceListLineList == null || priceListLineList.isEmpty())
-          && product.getProductCategory() != null) {
-        priceListLineList =
-            priceListLineRepo
-                .all()
-                .filter(
-                    "self.productCategory = ?1 AND self.minQty <= ?2 AND self.priceList.id = ?3 ORDER BY self.minQty DESC",
-                    product.getProductCategory(),
-                    qty,
-                    priceList.getId())
-                .fetch();
-      }
-    }
-
-    if (priceListLineList != null && !priceListLineList.isEmpty()) {
-      if (priceListLineList.size() > 1) {
-        for (PriceListLine tempPriceListLine : priceListLineList) {
-          tempDiscountCurrent = this.getUnitPriceDiscounted(tempPriceListLine, price);
+    if (lines.size() > 1) {
+      for (PriceListIndex.Line line : lines) {
+        tempDiscountCurrent =
+            this.getUnitPriceDiscounted(
+                line.getTypeSelect(), line.getAmountTypeSelect(), line.getAmount(), price);
 
-          if (tempDiscountPrevious == null
-              || tempDiscountPrevious.compareTo(tempDiscountCurrent) == 1) {
-            tempDiscountPrevious = tempDiscountCurrent;
-            priceListLine = tempPriceListLine;
-          }
+        if (tempDiscountPrevious == null
+            || tempDiscountPrevious.compareTo(tempDiscountCurrent) == 1) {
+          tempDiscountPrevious = tempDiscountCurrent;
+          selectedLine = line;
         }
-      } else {
-        priceListLine = priceListLineList.get(0);
       }
+    } else if (!lines.isEmpty()) {
+      selectedLine = lines.get(0);
     }
+    return selectedLine != null ? toPriceListLine(selectedLine) : null;
+  }
+
+  /**
+   * Copy an indexed line, with the values used to compute prices. The copy is not attached to the
+   * session, so that finding the line of each product doesn't load it from the database.
+   */
+  protected PriceListLine toPriceListLine(PriceListIndex.Line line) {
+    PriceListLine priceListLine = new PriceListLine();
+    priceListLine.setId(line.getId());
+    priceListLine.setMinQty(line.getMinQty());
+    priceListLine.setTypeSelect(line.getTypeSelect());
+    priceListLine.setAmountTypeSelect(line.getAmountTypeSelect());
+    priceListLine.setAmount(line.getAmount());
     return priceListLine;
   }
 
@@ -120,32 +126,37 @@ public class PriceListService {
   }
 
   public BigDecimal getUnitPriceDiscounted(PriceListLine priceListLine, BigDecimal unitPrice) {
+    return getUnitPriceDiscounted(
+        priceListLine.getTypeSelect(),
+        priceListLine.getAmountTypeSelect(),
+        priceListLine.getAmount(),
+        unitPrice);
+  }
 
-    switch (priceListLine.getTypeSelect()) {
+  protected BigDecimal getUnitPriceDiscounted(
+      int typeSelect, int amountTypeSelect, BigDecimal amount, BigDecimal unitPrice) {
+
+    switch (typeSelect) {
       case PriceListLineRepository.TYPE_ADDITIONNAL:
-        if (priceListLine.getAmountTypeSelect() == PriceListLineRepository.AMOUNT_TYPE_FIXED) {
-          return unitPrice.add(priceListLine.getAmount());
-        } else if (priceListLine.getAmountTypeSelect()
-            == PriceListLineRepository.AMOUNT_TYPE_PERCENT) {
-          return unitPrice.multiply(
-              BigDecimal.ONE.add(priceListLine.getAmount().divide(new BigDecimal(100))));
+        if (amountTypeSelect == PriceListLineRepository.AMOUNT_TYPE_FIXED) {
+          return unitPrice.add(amount);
+        } else if (amountTypeSelect == PriceListLineRepository.AMOUNT_TYPE_PERCENT) {
+          return unitPrice.multiply(BigDecimal.ONE.add(amount.divide(new BigDecimal(100))));
         }
 
         return unitPrice;
 
       case PriceListLineRepository.TYPE_DISCOUNT:
-        if (priceListLine.getAmountTypeSelect() == PriceListLineRepository.AMOUNT_TYPE_FIXED) {
-          return unitPrice.subtract(priceListLine.getAmount());
-        } else if (priceListLine.getAmountTypeSelect()
-            == PriceListLineRepository.AMOUNT_TYPE_PERCENT) {
-          return unitPrice.multiply(
-              BigDecimal.ONE.subtract(priceListLine.getAmount().divide(new BigDecimal(100))));
+        if (amountTypeSelect == PriceListLineRepository.AMOUNT_TYPE_FIXED) {
+          return unitPrice.subtract(amount);
+        } else if (amountTypeSelect == PriceListLineRepository.AMOUNT_TYPE_PERCENT) {
+          return unitPrice.multiply(BigDecimal.ONE.subtract(amount.divide(new BigDecimal(100))));
         }
 
         return unitPrice;
 
       case PriceListLineRepository.TYPE_REPLACE:
-        return priceListLine.getAmount();
+        return amount;
 
       default:
         return unitPrice;
@@ -20,6 +20,8 @@ package com.axelor.apps.base.service;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
 import com.axelor.exception.AxelorException;
+import java.util.Collection;
+import java.util.Map;
 
 public interface ProductCompanyService {
 
@@ -36,6 +38,18 @@ public interface ProductCompanyService {
   public Object get(Product originalProduct, String fieldName, Company company)
       throws AxelorException;
 
+  /**
+   * The bulk version of {@link #get(Product, String, Company)}, for batches. The company-specific
+   * versions of the products are fetched with one query per thousand products.
+   *
+   * @param products the products which field we want to get
+   * @param fieldName the field we want to obtain from the products
+   * @param company the company to search for company-specific versions of the products
+   * @return the values of the field by product id
+   */
+  public Map<Long, Object> get(Collection<Product> products, String fieldName, Company company)
+      throws AxelorException;
+
   /**
    * A generic set method. Serves as a setter for any field of a product, which might or might not
    * be overridden by a company-specific version of the product.
@@ -20,29 +20,75 @@ package com.axelor.apps.base.service;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.ProductCompany;
+import com.axelor.apps.base.db.repo.ProductCompanyRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
+import com.axelor.apps.base.service.app.AppBaseConfig;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
 import com.axelor.meta.CallMethod;
-import com.axelor.meta.db.MetaField;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
-import java.util.Set;
+import com.google.inject.Singleton;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+@Singleton
 public class ProductCompanyServiceImpl implements ProductCompanyService {
 
+  protected static final int BULK_FETCH_SIZE = 1000;
+
+  /** Getters of the product fields, resolved once per field. */
+  private static final Map<String, Optional<MethodHandle>> GETTERS = new ConcurrentHashMap<>();
+
   @Inject protected AppBaseService appBaseService;
 
+  @Inject protected ProductCompanyRepository productCompanyRepo;
+
   @Override
   @CallMethod
   public Object get(Product originalProduct, String fieldName, Company company)
       throws AxelorException {
-    Mapper mapper = Mapper.of(Product.class);
     Product product = findAppropriateProductCompany(originalProduct, fieldName, company);
 
-    return mapper.get(product, fieldName);
+    return getValue(product, fieldName);
+  }
+
+  @Override
+  public Map<Long, Object> get(Collection<Product> products, String fieldName, Company company)
+      throws AxelorException {
+    checkFieldName(fieldName, null);
+
+    Map<Long, ProductCompany> productCompanies = Collections.emptyMap();
+    if (company != null && isCompanySpecific(fieldName)) {
+      productCompanies = fetchProductCompanies(products, company);
+    }
+
+    Map<Long, Object> values = new HashMap<>();
+    for (Product product : products) {
+      if (product == null) {
+        continue;
+      }
+      Product appropriateProduct;
+      if (product.getId() == null) {
+        appropriateProduct = findAppropriateProductCompany(product, fieldName, company);
+      } else {
+        appropriateProduct = productCompanies.getOrDefault(product.getId(), product);
+      }
+      values.put(product.getId(), getValue(appropriateProduct, fieldName));
+    }
+    return values;
   }
 
   @Override
@@ -72,31 +118,90 @@ public class ProductCompanyServiceImpl implements ProductCompanyService {
           TraceBackRepository.CATEGORY_MISSING_FIELD,
           I18n.get(IExceptionMessage.PRODUCT_COMPANY_NO_PRODUCT),
           fieldName);
-    } else if (fieldName == null || fieldName.trim().equals("")) {
+    }
+    checkFieldName(fieldName, originalProduct);
+
+    if (company == null
+        || originalProduct.getProductCompanyList() == null
+        || originalProduct.getProductCompanyList().isEmpty()
+        || !isCompanySpecific(fieldName)) {
+      return originalProduct;
+    }
+
+    for (ProductCompany productCompany : originalProduct.getProductCompanyList()) {
+      if (company.equals(productCompany.getCompany())) {
+        return productCompany;
+      }
+    }
+
+    return originalProduct;
+  }
+
+  private void checkFieldName(String fieldName, Product product) throws AxelorException {
+    if (fieldName == null || fieldName.trim().equals("")) {
       throw new AxelorException(
           TraceBackRepository.CATEGORY_MISSING_FIELD,
           I18n.get(IExceptionMessage.PRODUCT_COMPANY_NO_FIELD),
-          originalProduct.getFullName());
+          product != null ? product.getFullName() : null);
+    }
+  }
+
+  protected Object getValue(Product product, String fieldName) {
+    Optional<MethodHandle> getter =
+        GETTERS.computeIfAbsent(fieldName, ProductCompanyServiceImpl::findGetter);
+    if (!getter.isPresent()) {
+      return Mapper.of(Product.class).get(product, fieldName);
+    }
+    try {
+      return getter.get().invoke(product);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
     }
+  }
+
+  private static Optional<MethodHandle> findGetter(String fieldName) {
+    Method method = Mapper.of(Product.class).getGetter(fieldName);
+    if (method == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(MethodHandles.publicLookup().unreflect(method));
+    } catch (IllegalAccessException e) {
+      return Optional.empty();
+    }
+  }
 
-    Product product = originalProduct;
-
-    if (company != null && originalProduct.getProductCompanyList() != null) {
-      for (ProductCompany productCompany : originalProduct.getProductCompanyList()) {
-        if (productCompany.getCompany().getId() == company.getId()) {
-          Set<MetaField> companySpecificFields =
-              appBaseService.getAppBase().getCompanySpecificProductFieldsSet();
-          for (MetaField field : companySpecificFields) {
-            if (field.getName().equals(fieldName)) {
-              product = productCompany;
-              break;
-            }
-          }
-          break;
-        }
+  /** Whether a field is configured as company-specific in the base app. */
+  protected boolean isCompanySpecific(String fieldName) {
+    AppBaseConfig appBaseConfig = appBaseService.getAppBaseConfig();
+    return appBaseConfig != null
+        && appBaseConfig.getCompanySpecificProductFieldNames().contains(fieldName);
+  }
+
+  protected Map<Long, ProductCompany> fetchProductCompanies(
+      Collection<Product> products, Company company) {
+    List<Long> productIds = new ArrayList<>();
+    for (Product product : products) {
+      if (product != null && product.getId() != null) {
+        productIds.add(product.getId());
       }
     }
 
-    return product;
+    Map<Long, ProductCompany> productCompanies = new HashMap<>();
+    for (List<Long> ids : Lists.partition(productIds, BULK_FETCH_SIZE)) {
+      List<ProductCompany> productCompanyList =
+          productCompanyRepo
+              .all()
+              .filter("self.product.id IN (:ids) AND self.company = :company")
+              .bind("ids", ids)
+              .bind("company", company)
+              .fetch();
+      for (ProductCompany productCompany : productCompanyList) {
+        productCompanies.putIfAbsent(productCompany.getProduct().getId(), productCompany);
+      }
+    }
+    return productCompanies;
   }
 }
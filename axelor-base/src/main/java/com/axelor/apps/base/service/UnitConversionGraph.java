@@ -0,0 +1,267 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.UnitConversion;
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
+import com.axelor.apps.base.service.script.GroovyScriptService;
+import com.axelor.apps.base.service.script.TemplateFormula;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Graph of the unit conversions, loaded once and shared between requests.
+ *
+ * <p>Each conversion is an edge from its start unit to its end unit, plus an inverse edge. Paths
+ * between two units are searched breadth first, so a direct conversion is always preferred and
+ * missing ones are resolved through intermediate units (e.g. box to pack to piece). Found paths are
+ * kept with the edges they were searched in, until the graph is invalidated on {@link
+ * UnitConversion} changes. The graph is held by each node.
+ */
+@Singleton
+public class UnitConversionGraph {
+
+  protected static final int DEFAULT_COEFFICIENT_SCALE = 12;
+
+  /** Name of the product in the formulas, as set in the template context. */
+  protected static final String FORMULA_CONTEXT_NAME = "Product";
+
+  protected UnitConversionRepository unitConversionRepo;
+
+  protected GroovyScriptService groovyScriptService;
+
+  private final AtomicLong version = new AtomicLong();
+
+  private volatile Graph graph;
+
+  @Inject
+  public UnitConversionGraph(
+      UnitConversionRepository unitConversionRepo, GroovyScriptService groovyScriptService) {
+    this.unitConversionRepo = unitConversionRepo;
+    this.groovyScriptService = groovyScriptService;
+  }
+
+  /**
+   * Find the conversions to apply to go from a unit to another.
+   *
+   * @param startUnitId the start unit
+   * @param endUnitId the end unit
+   * @param withFormula whether formula conversions can be used, i.e. a product is given
+   * @return the conversion path, or null if the units are not connected
+   */
+  public List<Edge> findPath(Long startUnitId, Long endUnitId, boolean withFormula) {
+    Graph current = getGraph();
+    String key = startUnitId + ">" + endUnitId + (withFormula ? ">f" : "");
+
+    // A path searched while the graph is invalidated is only kept with the edges it was found in.
+    List<Edge> path =
+        current.paths.computeIfAbsent(
+            key, k -> searchPath(current.edges, startUnitId, endUnitId, withFormula));
+
+    return path.isEmpty() ? null : path;
+  }
+
+  public void invalidate() {
+    version.incrementAndGet();
+    graph = null;
+  }
+
+  protected Graph getGraph() {
+    Graph current = graph;
+    if (current == null) {
+      synchronized (this) {
+        current = graph;
+        if (current == null) {
+          long buildVersion = version.get();
+          current = new Graph(build());
+          // A graph built while being invalidated may miss the change, it is only used once.
+          if (buildVersion == version.get()) {
+            graph = current;
+          }
+        }
+      }
+    }
+    return current;
+  }
+
+  protected Map<Long, List<Edge>> build() {
+    Map<Long, List<Edge>> directEdges = new HashMap<>();
+    Map<Long, List<Edge>> inverseEdges = new HashMap<>();
+
+    for (UnitConversion unitConversion : unitConversionRepo.all().fetch()) {
+      Long startUnitId = unitConversion.getStartUnit().getId();
+      Long endUnitId = unitConversion.getEndUnit().getId();
+
+      if (unitConversion.getTypeSelect() == UnitConversionRepository.TYPE_COEFF) {
+        BigDecimal coef = unitConversion.getCoef();
+        directEdges
+            .computeIfAbsent(startUnitId, id -> new ArrayList<>())
+            .add(new Edge(startUnitId, endUnitId, coef, null, false));
+        if (coef.signum() != 0) {
+          BigDecimal inverseCoef =
+              BigDecimal.ONE.divide(coef, DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_EVEN);
+          inverseEdges
+              .computeIfAbsent(endUnitId, id -> new ArrayList<>())
+              .add(new Edge(endUnitId, startUnitId, inverseCoef, null, true));
+        }
+      } else {
+        Formula formula = new Formula(unitConversion.getFormula(), groovyScriptService);
+        directEdges
+            .computeIfAbsent(startUnitId, id -> new ArrayList<>())
+            .add(new Edge(startUnitId, endUnitId, null, formula, false));
+        inverseEdges
+            .computeIfAbsent(endUnitId, id -> new ArrayList<>())
+            .add(new Edge(endUnitId, startUnitId, null, formula, true));
+      }
+    }
+
+    // Direct conversions are explored before inverse ones.
+    inverseEdges.forEach(
+        (unitId, edgeList) ->
+            directEdges.computeIfAbsent(unitId, id -> new ArrayList<>()).addAll(edgeList));
+
+    return directEdges;
+  }
+
+  protected List<Edge> searchPath(
+      Map<Long, List<Edge>> graph, Long startUnitId, Long endUnitId, boolean withFormula) {
+    Map<Long, Edge> reachedBy = new HashMap<>();
+    Deque<Long> queue = new ArrayDeque<>();
+    queue.add(startUnitId);
+    reachedBy.put(startUnitId, null);
+
+    while (!queue.isEmpty()) {
+      Long unitId = queue.poll();
+      for (Edge edge : graph.getOrDefault(unitId, Collections.emptyList())) {
+        if ((edge.isFormula() && !withFormula) || reachedBy.containsKey(edge.getEndUnitId())) {
+          continue;
+        }
+        reachedBy.put(edge.getEndUnitId(), edge);
+        if (edge.getEndUnitId().equals(endUnitId)) {
+          return buildPath(reachedBy, endUnitId);
+        }
+        queue.add(edge.getEndUnitId());
+      }
+    }
+
+    return Collections.emptyList();
+  }
+
+  private List<Edge> buildPath(Map<Long, Edge> reachedBy, Long endUnitId) {
+    LinkedList<Edge> path = new LinkedList<>();
+    Edge edge = reachedBy.get(endUnitId);
+    while (edge != null) {
+      path.addFirst(edge);
+      edge = reachedBy.get(edge.getStartUnitId());
+    }
+    return Collections.unmodifiableList(new ArrayList<>(path));
+  }
+
+  /** The edges of each unit, and the paths found in them. */
+  protected static class Graph {
+
+    private final Map<Long, List<Edge>> edges;
+
+    private final Map<String, List<Edge>> paths = new ConcurrentHashMap<>();
+
+    protected Graph(Map<Long, List<Edge>> edges) {
+      this.edges = edges;
+    }
+  }
+
+  /** A conversion from a unit to the end unit of the edge. */
+  public static class Edge {
+
+    private final Long startUnitId;
+
+    private final Long endUnitId;
+
+    private final BigDecimal coef;
+
+    private final Formula formula;
+
+    private final boolean inverse;
+
+    public Edge(
+        Long startUnitId, Long endUnitId, BigDecimal coef, Formula formula, boolean inverse) {
+      this.startUnitId = startUnitId;
+      this.endUnitId = endUnitId;
+      this.coef = coef;
+      this.formula = formula;
+      this.inverse = inverse;
+    }
+
+    public Long getStartUnitId() {
+      return startUnitId;
+    }
+
+    public Long getEndUnitId() {
+      return endUnitId;
+    }
+
+    public boolean isFormula() {
+      return formula != null;
+    }
+
+    public boolean isInverse() {
+      return inverse;
+    }
+
+    /** Coefficient of the edge, already inverted for the inverse edges of a coefficient. */
+    public BigDecimal getCoef() {
+      return coef;
+    }
+
+    public Formula getFormula() {
+      return formula;
+    }
+  }
+
+  /**
+   * Formula of a conversion, compiled once. Product fields used in the formula are read from the
+   * product given at each evaluation.
+   */
+  public static class Formula extends TemplateFormula {
+
+    public Formula(String source, GroovyScriptService groovyScriptService) {
+      super(source, ImmutableMap.of(FORMULA_CONTEXT_NAME, Product.class), groovyScriptService);
+    }
+
+    public BigDecimal evaluate(Product product) {
+      return new BigDecimal(evaluate(getContext(product)).toString());
+    }
+
+    public Map<String, Object> getContext(Product product) {
+      return Collections.singletonMap(FORMULA_CONTEXT_NAME, product);
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.axelor.apps.base.db.UnitConversion;
 import com.axelor.apps.base.db.repo.UnitConversionRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.script.GroovyScriptService;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
 import com.axelor.exception.AxelorException;
@@ -34,17 +35,14 @@ import com.axelor.i18n.I18n;
 import com.axelor.tool.template.TemplateMaker;
 import com.google.inject.Inject;
 import com.google.inject.servlet.RequestScoped;
-import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import org.codehaus.groovy.control.CompilationFailedException;
-import org.codehaus.groovy.control.CompilerConfiguration;
-import org.codehaus.groovy.control.customizers.ImportCustomizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,6 +59,10 @@ public class UnitConversionService {
 
   @Inject protected UnitConversionRepository unitConversionRepo;
 
+  @Inject protected UnitConversionGraph unitConversionGraph;
+
+  @Inject protected GroovyScriptService groovyScriptService;
+
   /**
    * Convert a value from a unit to another
    *
@@ -97,8 +99,7 @@ public class UnitConversionService {
     if (startUnit.equals(endUnit)) return value;
     else {
       try {
-        BigDecimal coefficient =
-            this.getCoefficient(unitConversionRepo.all().fetch(), startUnit, endUnit, product);
+        BigDecimal coefficient = this.getCoefficient(startUnit, endUnit, product);
 
         return value.multiply(coefficient).setScale(scale, RoundingMode.HALF_EVEN);
       } catch (IOException | ClassNotFoundException e) {
@@ -108,6 +109,138 @@ public class UnitConversionService {
     return value;
   }
 
+  /**
+   * Convert a list of values from a unit to another. The conversion coefficient is only computed
+   * once for the whole list.
+   *
+   * @param startUnit The starting unit
+   * @param endUnit The end unit
+   * @param valueList The values to convert
+   * @param scale The wanted scale of the results
+   * @param product Optional, a product used for complex conversions. Input null if needless.
+   * @return The converted values with the specified scale, in the same order
+   * @throws AxelorException
+   */
+  public List<BigDecimal> convert(
+      Unit startUnit, Unit endUnit, List<BigDecimal> valueList, int scale, Product product)
+      throws AxelorException {
+
+    List<BigDecimal> convertedValueList = new ArrayList<>(valueList.size());
+
+    if (startUnit != null && startUnit.equals(endUnit)) {
+      convertedValueList.addAll(valueList);
+      return convertedValueList;
+    }
+
+    if (startUnit == null || endUnit == null) {
+      for (BigDecimal value : valueList) {
+        convertedValueList.add(this.convert(startUnit, endUnit, value, scale, product));
+      }
+      return convertedValueList;
+    }
+
+    try {
+      BigDecimal coefficient = this.getCoefficient(startUnit, endUnit, product);
+      for (BigDecimal value : valueList) {
+        convertedValueList.add(value.multiply(coefficient).setScale(scale, RoundingMode.HALF_EVEN));
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      TraceBackService.trace(e);
+      convertedValueList.addAll(valueList);
+    }
+    return convertedValueList;
+  }
+
+  /**
+   * Get the conversion coefficient between two units from the conversion graph. When no
+   * conversion exists between the two units, the conversion goes through intermediate units.
+   *
+   * @param startUnit The start unit
+   * @param endUnit The end unit
+   * @param product Optional, a product used for complex conversions. Input null if needless.
+   * @return A conversion coefficient to convert from startUnit to endUnit.
+   * @throws AxelorException The units are not connected by conversions.
+   * @throws ClassNotFoundException
+   * @throws IOException
+   */
+  public BigDecimal getCoefficient(Unit startUnit, Unit endUnit, Product product)
+      throws AxelorException, ClassNotFoundException, IOException {
+
+    List<UnitConversionGraph.Edge> path =
+        unitConversionGraph.findPath(startUnit.getId(), endUnit.getId(), product != null);
+
+    if (path == null) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.UNIT_CONVERSION_1),
+          startUnit.getName(),
+          endUnit.getName());
+    }
+
+    BigDecimal coefficient = BigDecimal.ONE;
+
+    for (UnitConversionGraph.Edge edge : path) {
+      if (!edge.isFormula()) {
+        coefficient = coefficient.multiply(edge.getCoef());
+        continue;
+      }
+
+      BigDecimal result = this.evaluateFormula(edge.getFormula(), product);
+
+      if (!edge.isInverse()) {
+        coefficient = coefficient.multiply(result);
+      } else if (result.compareTo(BigDecimal.ZERO) != 0) {
+        coefficient =
+            coefficient.multiply(
+                BigDecimal.ONE.divide(result, DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_EVEN));
+      } else {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(IExceptionMessage.UNIT_CONVERSION_1),
+            startUnit.getName(),
+            endUnit.getName());
+      }
+    }
+
+    return coefficient;
+  }
+
+  /** Evaluate a conversion formula with the product fields. */
+  protected BigDecimal evaluateFormula(String formula, Product product)
+      throws ClassNotFoundException, IOException {
+    return evaluateFormula(new UnitConversionGraph.Formula(formula, groovyScriptService), product);
+  }
+
+  /**
+   * Evaluate a conversion formula with the product fields. The formulas that can't be compiled are
+   * rendered with the product fields first.
+   */
+  protected BigDecimal evaluateFormula(UnitConversionGraph.Formula formula, Product product)
+      throws ClassNotFoundException, IOException {
+    if (formula.isCompiled()) {
+      return formula.evaluate(product);
+    }
+    this.maker = createTemplateMaker(product);
+    return new BigDecimal(formula.evaluate(formula.getContext(product), maker).toString());
+  }
+
+  protected TemplateMaker createTemplateMaker(Product product) {
+    TemplateMaker templateMaker =
+        new TemplateMaker(
+            Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null)
+                    != null
+                ? Optional.ofNullable(AuthUtils.getUser())
+                    .map(User::getActiveCompany)
+                    .map(Company::getTimezone)
+                    .orElse(null)
+                : "",
+            AppFilter.getLocale(),
+            TEMPLATE_DELIMITER,
+            TEMPLATE_DELIMITER);
+    templateMaker.setContext(product, "Product");
+    return templateMaker;
+  }
+
   /**
    * Get the conversion coefficient between two units from a conversion list. If the start unit and
    * the end unit can not be found in the list, then the units are swapped. If there still isn't any
@@ -130,22 +263,6 @@ public class UnitConversionService {
       Product product)
       throws AxelorException, CompilationFailedException, ClassNotFoundException, IOException {
     /* Looking for the start unit and the end unit in the unitConversionList to get the coefficient */
-    if (product != null) {
-      this.maker =
-          new TemplateMaker(
-              Optional.ofNullable(AuthUtils.getUser()).map(User::getActiveCompany).orElse(null)
-                      != null
-                  ? Optional.ofNullable(AuthUtils.getUser())
-                      .map(User::getActiveCompany)
-                      .map(Company::getTimezone)
-                      .orElse(null)
-                  : "",
-              AppFilter.getLocale(),
-              TEMPLATE_DELIMITER,
-              TEMPLATE_DELIMITER);
-      this.maker.setContext(product, "Product");
-    }
-    String eval = null;
     for (UnitConversion unitConversion : unitConversionList) {
 
       if (unitConversion.getStartUnit().equals(startUnit)
@@ -153,15 +270,7 @@ public class UnitConversionService {
         if (unitConversion.getTypeSelect() == UnitConversionRepository.TYPE_COEFF) {
           return unitConversion.getCoef();
         } else if (product != null) {
-          maker.setTemplate(unitConversion.getFormula());
-          eval = maker.make();
-          CompilerConfiguration conf = new CompilerConfiguration();
-          ImportCustomizer customizer = new ImportCustomizer();
-          customizer.addStaticStars("java.lang.Math");
-          conf.addCompilationCustomizers(customizer);
-          Binding binding = new Binding();
-          GroovyShell shell = new GroovyShell(binding, conf);
-          return new BigDecimal(shell.evaluate(eval).toString());
+          return this.evaluateFormula(unitConversion.getFormula(), product);
         }
       }
 
@@ -174,15 +283,7 @@ public class UnitConversionService {
           return BigDecimal.ONE.divide(
               unitConversion.getCoef(), DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_EVEN);
         } else if (product != null) {
-          maker.setTemplate(unitConversion.getFormula());
-          eval = maker.make();
-          CompilerConfiguration conf = new CompilerConfiguration();
-          ImportCustomizer customizer = new ImportCustomizer();
-          customizer.addStaticStars("java.lang.Math");
-          conf.addCompilationCustomizers(customizer);
-          Binding binding = new Binding();
-          GroovyShell shell = new GroovyShell(binding, conf);
-          BigDecimal result = new BigDecimal(shell.evaluate(eval).toString());
+          BigDecimal result = this.evaluateFormula(unitConversion.getFormula(), product);
           if (result.compareTo(BigDecimal.ZERO) != 0) {
             return BigDecimal.ONE.divide(result, DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_EVEN);
           }
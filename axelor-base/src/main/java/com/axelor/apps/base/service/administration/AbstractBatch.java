@@ -17,31 +17,62 @@
  */
 package com.axelor.apps.base.service.administration;
 
+import com.axelor.app.AppSettings;
 import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.AuditableModel;
 import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
+import com.axelor.db.Query;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.google.common.base.Preconditions;
 import com.google.inject.persist.Transactional;
+import com.google.inject.persist.UnitOfWork;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import javax.inject.Inject;
+import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public abstract class AbstractBatch {
   private static final ThreadLocal<Long> threadBatchId = new ThreadLocal<>();
 
+  private static final ThreadLocal<Boolean> threadPartitionWorker = new ThreadLocal<>();
+
+  private static final Map<Long, AbstractBatch> runningBatches = new ConcurrentHashMap<>();
+
   public static final int FETCH_LIMIT = 10;
 
+  /** Filter to add to keyset paginated queries, see {@link #fetchNextPage(Query)}. */
+  public static final String KEYSET_FILTER = "self.id > :_lastProcessedId";
+
+  /** Partitions created per worker, so that workers finishing early take over remaining work. */
+  protected static final int PARTITIONS_PER_WORKER = 4;
+
   @Inject protected AppBaseService appBaseService;
 
   protected static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -51,19 +82,28 @@ public abstract class AbstractBatch {
 
   @Inject protected BatchRepository batchRepo;
 
-  private int done;
-  private int anomaly;
+  private final AtomicInteger done = new AtomicInteger();
+  private final AtomicInteger anomaly = new AtomicInteger();
+
+  private long lastProcessedId;
+
+  private String pendingComment;
+
+  private int uncheckedCount;
+
+  private long lastCheckPointTime = System.currentTimeMillis();
+
+  private volatile boolean stopped;
+
+  private String associatedFieldName;
 
   protected AbstractBatch() {
     this.batch = new Batch();
 
     this.batch.setStartDate(ZonedDateTime.now());
 
-    this.done = 0;
-    this.anomaly = 0;
-
-    this.batch.setDone(this.done);
-    this.batch.setAnomaly(this.anomaly);
+    this.batch.setDone(done.get());
+    this.batch.setAnomaly(anomaly.get());
 
     JPA.runInTransaction(() -> batch = JPA.persist(batch));
   }
@@ -81,6 +121,24 @@ public abstract class AbstractBatch {
     return JPA.find(Batch.class, getCurrentBatchId());
   }
 
+  /**
+   * Returns the live progress of a batch, read from memory while it runs on this node.
+   *
+   * @param batchId the batch id
+   * @return the progress or <code>null</code> if the batch is not running on this node.
+   */
+  public static BatchProgress getProgress(Long batchId) {
+    AbstractBatch runningBatch = runningBatches.get(batchId);
+    if (runningBatch == null) {
+      return null;
+    }
+    return new BatchProgress(
+        batchId,
+        runningBatch.batch.getStartDate(),
+        runningBatch.done.get(),
+        runningBatch.anomaly.get());
+  }
+
   /**
    * Returns the ID of the currently running batch.
    *
@@ -101,13 +159,22 @@ public abstract class AbstractBatch {
     if (isRunnable(model)) {
       try {
         threadBatchId.set(batch.getId());
+        runningBatches.put(batch.getId(), this);
         start();
         process();
+        // Strategies report the counters in their stop() before calling super.stop().
+        flushProgress();
         stop();
         return batch;
       } catch (Exception e) {
+        try {
+          fail();
+        } catch (Exception failException) {
+          e.addSuppressed(failException);
+        }
         throw new RuntimeException(e);
       } finally {
+        runningBatches.remove(batch.getId());
         threadBatchId.remove();
         unarchived();
       }
@@ -128,6 +195,10 @@ public abstract class AbstractBatch {
 
     model.setArchived(true);
     associateModel();
+    if (isResumable()) {
+      resume();
+    }
+    batch.setHeartbeatDateTime(ZonedDateTime.now());
     checkPoint();
   }
 
@@ -137,47 +208,56 @@ public abstract class AbstractBatch {
    */
   protected void stop() {
     findBatch();
+    applyProgress();
 
     batch.setEndDate(ZonedDateTime.now());
     batch.setDuration(getDuring());
 
     checkPoint();
+    stopped = true;
 
     LOG.info("Fin batch {} ::: {}", model, batch.getEndDate());
   }
 
-  protected void incrementDone() {
+  /**
+   * Write the counters of a failed run and mark it as failed. Its end date is left empty, so that
+   * a resumable strategy resumes it on its next run.
+   */
+  protected void fail() {
     findBatch();
+    applyProgress();
+    batch.setFailed(true);
+    checkPoint();
+  }
+
+  protected void incrementDone() {
     _incrementDone();
   }
 
   protected void _incrementDone() {
-    done += 1;
-    batch.setDone(done);
-    checkPoint();
+    int count = done.incrementAndGet();
+    progress();
 
-    LOG.debug("Done ::: {}", done);
+    LOG.debug("Done ::: {}", count);
   }
 
   protected void incrementAnomaly() {
-    findBatch();
     _incrementAnomaly();
   }
 
   protected void _incrementAnomaly() {
-    anomaly += 1;
-    batch.setAnomaly(anomaly);
-    checkPoint();
+    int count = anomaly.incrementAndGet();
+    progress();
 
-    LOG.debug("Anomaly ::: {}", anomaly);
+    LOG.debug("Anomaly ::: {}", count);
   }
 
   protected void addComment(String comment) {
-    findBatch();
-
-    batch.setComments(comment);
+    pendingComment = comment;
 
-    checkPoint();
+    if (stopped) {
+      flushProgress();
+    }
   }
 
   @Transactional
@@ -185,6 +265,85 @@ public abstract class AbstractBatch {
     return findBatch();
   }
 
+  /**
+   * Commit the changes made by the strategy on the processed record, without touching the batch
+   * record.
+   */
+  @Transactional
+  protected void commit() {}
+
+  /**
+   * Counters are kept in memory and only written on the batch record every {@code
+   * batch.checkpoint.count} records or {@code batch.checkpoint.delay} seconds, whichever comes
+   * first.
+   */
+  protected void progress() {
+    if (isPartitionWorker()) {
+      // Counters of the workers are merged by the main thread.
+      commit();
+      return;
+    }
+
+    uncheckedCount++;
+    if (uncheckedCount >= getCheckPointCount()
+        || System.currentTimeMillis() - lastCheckPointTime >= getCheckPointDelay() * 1000L) {
+      flushProgress();
+    } else {
+      commit();
+    }
+  }
+
+  /** Write the counters and the pending comment on the batch record. */
+  protected void flushProgress() {
+    findBatch();
+    applyProgress();
+    checkPoint();
+  }
+
+  private void applyProgress() {
+    batch.setHeartbeatDateTime(ZonedDateTime.now());
+    batch.setDone(done.get());
+    batch.setAnomaly(anomaly.get());
+    if (pendingComment != null) {
+      batch.setComments(pendingComment);
+      pendingComment = null;
+    }
+    uncheckedCount = 0;
+    lastCheckPointTime = System.currentTimeMillis();
+  }
+
+  protected int getCheckPointCount() {
+    return AppSettings.get().getInt("batch.checkpoint.count", 100);
+  }
+
+  protected int getCheckPointDelay() {
+    return AppSettings.get().getInt("batch.checkpoint.delay", 5);
+  }
+
+  /**
+   * Whether a batch is still running, on this node or another one. A batch is running until it
+   * ends or fails, as long as its counters were written on the batch record in the last {@code
+   * batch.heartbeat.timeout} minutes (30 by default), so that the batch of a stopped node is not
+   * reported running forever.
+   *
+   * @param batch the batch record
+   * @return
+   */
+  public static boolean isRunning(Batch batch) {
+    if (batch.getId() != null && runningBatches.containsKey(batch.getId())) {
+      return true;
+    }
+    if (batch.getEndDate() != null || Boolean.TRUE.equals(batch.getFailed())) {
+      return false;
+    }
+
+    ZonedDateTime heartbeat =
+        batch.getHeartbeatDateTime() != null ? batch.getHeartbeatDateTime() : batch.getStartDate();
+    int timeout = AppSettings.get().getInt("batch.heartbeat.timeout", 30);
+
+    return heartbeat != null && heartbeat.isAfter(ZonedDateTime.now().minusMinutes(timeout));
+  }
+
   @Transactional
   protected void unarchived() {
     try {
@@ -216,6 +375,7 @@ public abstract class AbstractBatch {
         field.setAccessible(true);
         field.set(batch, model);
         field.setAccessible(false);
+        associatedFieldName = field.getName();
 
         break;
       }
@@ -227,10 +387,350 @@ public abstract class AbstractBatch {
   }
 
   protected Batch findBatch() {
+    if (isPartitionWorker()) {
+      // Workers use their own entity manager, the shared batch instance is left untouched.
+      return JPA.find(Batch.class, batch.getId());
+    }
+
     if (!JPA.em().contains(batch)) {
       batch = JPA.find(Batch.class, batch.getId());
     }
 
     return batch;
   }
+
+  /**
+   * Whether the strategy pages its driving query with {@link #fetchNextPage(Query)}, in which case
+   * an interrupted run of the same batch is resumed after its last processed record.
+   *
+   * @return
+   */
+  protected boolean isResumable() {
+    return false;
+  }
+
+  /**
+   * Resume from the cursor of the previous run of the same batch model, when that run failed or
+   * was interrupted before its end and is no longer {@link #isRunning(Batch) running}.
+   */
+  protected void resume() {
+    if (associatedFieldName == null) {
+      return;
+    }
+
+    Batch previousBatch =
+        JPA.all(Batch.class)
+            .filter(String.format("self.%s = :model AND self.id != :id", associatedFieldName))
+            .bind("model", model)
+            .bind("id", batch.getId())
+            .order("-id")
+            .fetchOne();
+
+    if (previousBatch == null
+        || previousBatch.getEndDate() != null
+        || previousBatch.getLastProcessedId() == null
+        || isRunning(previousBatch)) {
+      return;
+    }
+
+    lastProcessedId = previousBatch.getLastProcessedId();
+    batch.setLastProcessedId(lastProcessedId);
+    batch.setResumedBatch(previousBatch);
+
+    LOG.info(
+        "Batch {} resumes batch {} after record {}",
+        batch.getId(),
+        previousBatch.getId(),
+        lastProcessedId);
+  }
+
+  /**
+   * Fetch the next page of a keyset paginated query. The query must be ordered by id and filtered
+   * with {@link #KEYSET_FILTER}, the cursor is then moved forward with {@link
+   * #saveCursor(Model)} once the records of the page are processed.
+   *
+   * <p>Unlike offsets, the cursor keeps each page as cheap as the first one and doesn't skip
+   * records when processed ones leave the query.
+   *
+   * @param query the driving query
+   * @return the next page of records
+   */
+  protected <T extends Model> List<T> fetchNextPage(Query<T> query) {
+    return bindCursor(query).fetch(FETCH_LIMIT);
+  }
+
+  /**
+   * Bind the current cursor on a query filtered with {@link #KEYSET_FILTER}.
+   *
+   * @param query
+   * @return the same query
+   */
+  protected <T extends Model> Query<T> bindCursor(Query<T> query) {
+    return query.bind("_lastProcessedId", lastProcessedId);
+  }
+
+  /**
+   * Move the cursor after the given record and store it on the batch, so that an interrupted run
+   * can be resumed from this point.
+   *
+   * @param lastProcessed the last processed record
+   */
+  protected void saveCursor(Model lastProcessed) {
+    lastProcessedId = lastProcessed.getId();
+    findBatch();
+    batch.setLastProcessedId(lastProcessedId);
+    checkPoint();
+  }
+
+  /**
+   * Property of the driving model used to split records between partitions. Records sharing the
+   * same key value are always processed by the same worker, which avoids concurrent updates on a
+   * common parent (e.g. invoices of a same partner).
+   *
+   * <p>Strategies processing their records with {@link #processRecords(Class, String, Map,
+   * Consumer)} override this method to support the parallel mode, {@code null} keeps the
+   * sequential processing.
+   *
+   * @return the partition key, {@code null} if the strategy can't be processed in parallel
+   */
+  protected String getPartitionKey() {
+    return null;
+  }
+
+  /**
+   * Number of workers used to process the partitions, configured with the {@code
+   * batch.partition.workers} application setting. The parallel mode is disabled by default.
+   *
+   * @return
+   */
+  protected int getPartitionWorkers() {
+    return AppSettings.get().getInt("batch.partition.workers", 1);
+  }
+
+  protected boolean isPartitioned() {
+    return getPartitionKey() != null && getPartitionWorkers() > 1;
+  }
+
+  protected static boolean isPartitionWorker() {
+    return Boolean.TRUE.equals(threadPartitionWorker.get());
+  }
+
+  /**
+   * Process the records of a driving query, by pages ordered by id and moving the {@link
+   * #saveCursor(Model) cursor} after each page. When {@link #isPartitioned()}, the records are
+   * processed in parallel instead, see {@link #processPartitioned(Class, String, Map, Consumer)}.
+   *
+   * <p>Strategies processing their records through this method are switched to the parallel mode
+   * by declaring a {@link #getPartitionKey() partition key}.
+   *
+   * @param klass the driving model
+   * @param filter the filter of the driving query, without {@link #KEYSET_FILTER}
+   * @param params the named parameters of the filter
+   * @param processor the processing of a single record, responsible of its error handling
+   */
+  protected <T extends Model> void processRecords(
+      Class<T> klass, String filter, Map<String, Object> params, Consumer<T> processor) {
+
+    if (isPartitioned()) {
+      processPartitioned(klass, filter, params, processor);
+      return;
+    }
+
+    Query<T> query =
+        JPA.all(klass)
+            .filter(String.format("(%s) AND %s", filter, KEYSET_FILTER))
+            .bind(params)
+            .order("id");
+    List<T> records;
+
+    while (!(records = fetchNextPage(query)).isEmpty()) {
+      findBatch();
+      records.forEach(processor);
+      saveCursor(records.get(records.size() - 1));
+      JPA.clear();
+    }
+  }
+
+  /**
+   * Process the records of a driving query on a pool of workers.
+   *
+   * <p>The records are split in ranges of the partition key, each processed by a worker with its
+   * own entity manager, which loads the records of its range by pages of {@link #FETCH_LIMIT}
+   * ordered by id. Counters are merged on the batch record by the main thread each time a range
+   * ends. The cursor is not moved, an interrupted parallel run starts over.
+   *
+   * @param klass the driving model
+   * @param filter the filter of the driving query, without {@link #KEYSET_FILTER}
+   * @param params the named parameters of the filter
+   * @param processor the processing of a single record, responsible of its error handling
+   */
+  protected <T extends Model> void processPartitioned(
+      Class<T> klass, String filter, Map<String, Object> params, Consumer<T> processor) {
+
+    int workers = getPartitionWorkers();
+    String partitionKey = getPartitionKey();
+    List<PartitionRange> ranges =
+        computePartitions(klass, filter, params, partitionKey, workers * PARTITIONS_PER_WORKER);
+    LOG.debug("Batch {} : {} partitions on {} workers", batch.getId(), ranges.size(), workers);
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+    Long batchId = batch.getId();
+    long firstId = lastProcessedId;
+    Subject subject = AuthUtils.getSubject();
+
+    try {
+      for (PartitionRange range : ranges) {
+        Callable<Integer> task =
+            () -> {
+              threadBatchId.set(batchId);
+              threadPartitionWorker.set(true);
+              try {
+                Query<T> query =
+                    JPA.all(klass)
+                        .filter(
+                            String.format(
+                                "(%s) AND %s AND %s",
+                                filter, range.getFilter(partitionKey), KEYSET_FILTER))
+                        .bind(params)
+                        .bind(range.getParams())
+                        .order("id");
+                long cursor = firstId;
+                int count = 0;
+                List<T> records;
+
+                while (!(records = query.bind("_lastProcessedId", cursor).fetch(FETCH_LIMIT))
+                    .isEmpty()) {
+                  records.forEach(processor);
+                  cursor = records.get(records.size() - 1).getId();
+                  count += records.size();
+                  JPA.clear();
+                }
+                return count;
+              } finally {
+                // Closes the entity manager of the worker.
+                Beans.get(UnitOfWork.class).end();
+                threadPartitionWorker.remove();
+                threadBatchId.remove();
+              }
+            };
+        completionService.submit(subject != null ? subject.associateWith(task) : task);
+      }
+
+      // Counters are also merged while waiting, which keeps the heartbeat of the batch.
+      for (int remaining = ranges.size(); remaining > 0; ) {
+        Future<Integer> future = completionService.poll(getCheckPointDelay(), TimeUnit.SECONDS);
+        if (future != null) {
+          remaining--;
+          try {
+            future.get();
+          } catch (ExecutionException e) {
+            TraceBackService.trace(e.getCause(), null, batchId);
+          }
+        }
+        mergeCounters();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Report the counters incremented by the workers on the batch record. */
+  protected void mergeCounters() {
+    flushProgress();
+  }
+
+  /**
+   * Split the driving query in ranges of the partition key holding a similar number of records.
+   * The boundaries are sampled on the records sorted by the key, with one query per boundary, so
+   * that the records are never loaded at once. Records sharing the same key value are always in
+   * the same range.
+   *
+   * @param klass the driving model
+   * @param filter the filter of the driving query, without {@link #KEYSET_FILTER}
+   * @param params the named parameters of the filter
+   * @param partitionKey the partition key
+   * @param count the expected number of ranges
+   * @return the ranges, sorted on the partition key
+   */
+  @SuppressWarnings("rawtypes")
+  protected <T extends Model> List<PartitionRange> computePartitions(
+      Class<T> klass, String filter, Map<String, Object> params, String partitionKey, int count) {
+
+    Query<T> query =
+        JPA.all(klass)
+            .filter(String.format("(%s) AND %s", filter, KEYSET_FILTER))
+            .bind(params)
+            .bind("_lastProcessedId", lastProcessedId);
+    long total = query.count();
+    query.order(partitionKey);
+
+    List<PartitionRange> ranges = new ArrayList<>();
+    Object start = null;
+
+    for (int i = 1; i < count && total > 0; i++) {
+      List<Map> rows = query.select(partitionKey).fetch(1, (int) (total * i / count));
+      Object boundary = rows.isEmpty() ? null : rows.get(0).get(partitionKey);
+      // Null keys are kept in the first range, a same boundary is only used once.
+      if (boundary != null && !boundary.equals(start)) {
+        ranges.add(new PartitionRange(start, boundary));
+        start = boundary;
+      }
+    }
+    ranges.add(new PartitionRange(start, null));
+
+    return ranges;
+  }
+
+  /**
+   * Range of values of the partition key, from {@code start} included to {@code end} excluded. The
+   * first range has no start and also holds the records without key, the last one has no end.
+   */
+  public static class PartitionRange {
+
+    protected final Object start;
+
+    protected final Object end;
+
+    public PartitionRange(Object start, Object end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    public Object getStart() {
+      return start;
+    }
+
+    public Object getEnd() {
+      return end;
+    }
+
+    protected String getFilter(String partitionKey) {
+      if (start == null && end == null) {
+        return "1 = 1";
+      }
+      if (start == null) {
+        return String.format("(self.%1$s IS NULL OR self.%1$s < :_partitionEnd)", partitionKey);
+      }
+      if (end == null) {
+        return String.format("self.%s >= :_partitionStart", partitionKey);
+      }
+      return String.format(
+          "self.%1$s >= :_partitionStart AND self.%1$s < :_partitionEnd", partitionKey);
+    }
+
+    protected Map<String, Object> getParams() {
+      Map<String, Object> params = new HashMap<>();
+      if (start != null) {
+        params.put("_partitionStart", start);
+      }
+      if (end != null) {
+        params.put("_partitionEnd", end);
+      }
+      return params;
+    }
+  }
 }
@@ -0,0 +1,85 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import java.time.LocalDate;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A block of sequence numbers reserved in database for a sequence version.
+ *
+ * <p>Numbers are handed out in memory until the block is exhausted, the next block is then
+ * reserved by updating the version next number once for the whole block (hi/lo allocation).
+ */
+@ThreadSafe
+public class SequenceBlock {
+
+  private final LocalDate startDate;
+
+  private final LocalDate endDate;
+
+  private final long increment;
+
+  private final long limit;
+
+  private long next;
+
+  /**
+   * @param startDate start date of the reserved sequence version
+   * @param endDate end date of the reserved sequence version, can be null
+   * @param first first number of the block
+   * @param increment value added between two numbers
+   * @param size count of numbers in the block
+   */
+  public SequenceBlock(
+      LocalDate startDate, LocalDate endDate, long first, long increment, long size) {
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.increment = increment;
+    this.next = first;
+    this.limit = first + increment * size;
+  }
+
+  /**
+   * Get the next number of this block.
+   *
+   * @return the next number, or null if the block is exhausted
+   */
+  public synchronized Long next() {
+    if (next >= limit) {
+      return null;
+    }
+    long value = next;
+    next += increment;
+    return value;
+  }
+
+  public synchronized boolean isExhausted() {
+    return next >= limit;
+  }
+
+  /**
+   * Check whether the sequence version of this block applies to the given date.
+   *
+   * @param refDate
+   * @return
+   */
+  public boolean covers(LocalDate refDate) {
+    return !refDate.isBefore(startDate) && (endDate == null || !refDate.isAfter(endDate));
+  }
+}
@@ -17,6 +17,7 @@
  */
 package com.axelor.apps.base.service.administration;
 
+import com.axelor.app.AppSettings;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Sequence;
 import com.axelor.apps.base.db.SequenceLettersTypeSelect;
@@ -46,10 +47,15 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoField;
 import java.time.temporal.IsoFields;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import javax.annotation.concurrent.ThreadSafe;
+import javax.persistence.LockModeType;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,7 +82,13 @@ public class SequenceService {
 
   private final SequenceRepository sequenceRepo;
 
-  protected ExecutorService executor = Executors.newSingleThreadExecutor();
+  /**
+   * Sequences are dispatched on single thread executors according to their id, so numbers of a
+   * same sequence are always computed in order while distinct sequences do not wait each other.
+   */
+  protected ExecutorService[] executors;
+
+  protected ConcurrentMap<Long, List<SequenceBlock>> sequenceBlocks = new ConcurrentHashMap<>();
 
   @Inject
   public SequenceService(
@@ -87,6 +99,12 @@ public class SequenceService {
     this.sequenceVersionRepository = sequenceVersionRepository;
     this.appBaseService = appBaseService;
     this.sequenceRepo = sequenceRepo;
+
+    int stripes = Math.max(1, AppSettings.get().getInt("sequence.executor.stripes", 8));
+    this.executors = new ExecutorService[stripes];
+    for (int i = 0; i < stripes; i++) {
+      executors[i] = Executors.newSingleThreadExecutor();
+    }
   }
 
   public static boolean isYearValid(Sequence sequence) {
@@ -187,28 +205,37 @@ public class SequenceService {
   /**
    * Method returning a sequence number from a given generic sequence and a date
    *
+   * <p>Sequences with an allocation size greater than one get their numbers from blocks reserved
+   * in memory, other sequences are kept gapless and strictly ordered.
+   *
    * @param sequence
    * @param refDate
    * @return
    */
   public String getSequenceNumber(Sequence sequence, LocalDate refDate) {
 
+    if (isBlockAllocated(sequence)) {
+      return getBlockSequenceNumber(sequence, refDate);
+    }
+
     try {
       Future<String> newSeq =
-          executor.submit(
-              () -> {
-                Sequence seq = sequenceRepo.find(sequence.getId());
-                SequenceVersion sequenceVersion = getVersion(seq, refDate);
-                String nextSeq = computeNextSeq(sequenceVersion, seq, refDate);
-                JPA.runInTransaction(
-                    () -> {
-                      sequenceVersion.setNextNum(sequenceVersion.getNextNum() + seq.getToBeAdded());
-                      if (sequenceVersion.getId() == null) {
-                        sequenceVersionRepository.save(sequenceVersion);
-                      }
-                    });
-                return nextSeq;
-              });
+          getExecutor(sequence.getId())
+              .submit(
+                  () -> {
+                    Sequence seq = sequenceRepo.find(sequence.getId());
+                    SequenceVersion sequenceVersion = getVersion(seq, refDate);
+                    String nextSeq = computeNextSeq(seq, sequenceVersion.getNextNum(), refDate);
+                    JPA.runInTransaction(
+                        () -> {
+                          sequenceVersion.setNextNum(
+                              sequenceVersion.getNextNum() + seq.getToBeAdded());
+                          if (sequenceVersion.getId() == null) {
+                            sequenceVersionRepository.save(sequenceVersion);
+                          }
+                        });
+                    return nextSeq;
+                  });
       return newSeq.get();
     } catch (Exception e) {
       TraceBackService.trace(e);
@@ -216,8 +243,132 @@ public class SequenceService {
     }
   }
 
-  private String computeNextSeq(
-      SequenceVersion sequenceVersion, Sequence sequence, LocalDate refDate) {
+  public boolean isBlockAllocated(Sequence sequence) {
+    return sequence.getAllocationSize() > 1;
+  }
+
+  protected ExecutorService getExecutor(Long sequenceId) {
+    return executors[Math.floorMod(Long.hashCode(sequenceId), executors.length)];
+  }
+
+  /**
+   * Get a sequence number from the blocks reserved in memory for the sequence, reserving a new
+   * block when the current one is exhausted.
+   *
+   * @param sequence
+   * @param refDate
+   * @return
+   */
+  protected String getBlockSequenceNumber(Sequence sequence, LocalDate refDate) {
+
+    Long sequenceId = sequence.getId();
+
+    try {
+      while (true) {
+        SequenceBlock block = findBlock(sequenceId, refDate);
+        Long nextNum = block != null ? block.next() : null;
+        if (nextNum != null) {
+          return computeNextSeq(sequence, nextNum, refDate);
+        }
+        getExecutor(sequenceId).submit(() -> reserveBlock(sequenceId, refDate)).get();
+      }
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  protected SequenceBlock findBlock(Long sequenceId, LocalDate refDate) {
+    List<SequenceBlock> blocks = sequenceBlocks.get(sequenceId);
+    if (blocks == null) {
+      return null;
+    }
+    for (SequenceBlock block : blocks) {
+      if (block.covers(refDate) && !block.isExhausted()) {
+        return block;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reserve a new block of numbers on the sequence version matching the given date. The version
+   * next number is updated once for the whole block.
+   *
+   * <p>Must be called from the sequence executor so that reservations of a sequence are serialized
+   * on this node, the version row is locked to serialize them between nodes.
+   *
+   * @param sequenceId
+   * @param refDate
+   */
+  protected void reserveBlock(Long sequenceId, LocalDate refDate) {
+
+    if (findBlock(sequenceId, refDate) != null) {
+      // Another caller already reserved a block while we were waiting.
+      return;
+    }
+
+    // The block is published only once its reservation is committed: if the commit fails, its
+    // numbers are still available in database and must not be issued.
+    SequenceBlock block = allocateBlock(sequenceId, refDate);
+
+    List<SequenceBlock> blocks =
+        sequenceBlocks.computeIfAbsent(sequenceId, id -> new CopyOnWriteArrayList<>());
+    blocks.removeIf(reservedBlock -> reservedBlock.covers(refDate));
+    blocks.add(block);
+  }
+
+  /**
+   * Move the next number of the sequence version matching the given date after a new block, in
+   * its own transaction. The executor threads never have a transaction in progress, so the
+   * reservation is committed when this method returns.
+   *
+   * @param sequenceId
+   * @param refDate
+   * @return the reserved block
+   */
+  protected SequenceBlock allocateBlock(Long sequenceId, LocalDate refDate) {
+    SequenceBlock[] block = new SequenceBlock[1];
+
+    JPA.runInTransaction(
+        () -> {
+          Sequence seq = sequenceRepo.find(sequenceId);
+          SequenceVersion sequenceVersion = getVersion(seq, refDate);
+          if (sequenceVersion.getId() != null) {
+            JPA.em().refresh(sequenceVersion, LockModeType.PESSIMISTIC_WRITE);
+          }
+
+          long increment = seq.getToBeAdded();
+          long size = seq.getAllocationSize();
+          long first = sequenceVersion.getNextNum();
+          sequenceVersion.setNextNum(first + increment * size);
+          sequenceVersionRepository.save(sequenceVersion);
+
+          block[0] =
+              new SequenceBlock(
+                  sequenceVersion.getStartDate(),
+                  sequenceVersion.getEndDate(),
+                  first,
+                  increment,
+                  size);
+        });
+
+    return block[0];
+  }
+
+  /**
+   * Drop the blocks reserved in memory for the given sequence, remaining numbers of these blocks
+   * are lost.
+   *
+   * @param sequenceId
+   */
+  public void invalidateBlocks(Long sequenceId) {
+    if (sequenceId != null) {
+      sequenceBlocks.remove(sequenceId);
+    }
+  }
+
+  private String computeNextSeq(Sequence sequence, long nextNum, LocalDate refDate) {
 
     String seqPrefixe = StringUtils.defaultString(sequence.getPrefixe(), ""),
         seqSuffixe = StringUtils.defaultString(sequence.getSuffixe(), ""),
@@ -225,10 +376,9 @@ public class SequenceService {
 
     if (sequence.getSequenceTypeSelect() == SequenceTypeSelect.NUMBERS) {
       sequenceValue =
-          StringUtils.leftPad(
-              sequenceVersion.getNextNum().toString(), sequence.getPadding(), PADDING_STRING);
+          StringUtils.leftPad(Long.toString(nextNum), sequence.getPadding(), PADDING_STRING);
     } else {
-      sequenceValue = findNextLetterSequence(sequenceVersion);
+      sequenceValue = findNextLetterSequence(nextNum, sequence.getSequenceLettersTypeSelect());
     }
     String nextSeq =
         (seqPrefixe + sequenceValue + seqSuffixe)
@@ -245,16 +395,15 @@ public class SequenceService {
     return nextSeq;
   }
 
-  private String findNextLetterSequence(SequenceVersion sequenceVersion) {
-    long n = sequenceVersion.getNextNum();
+  private String findNextLetterSequence(
+      long n, SequenceLettersTypeSelect sequenceLettersTypeSelect) {
     char[] buf = new char[(int) Math.floor(Math.log(25 * (n + 1)) / Math.log(26))];
     for (int i = buf.length - 1; i >= 0; i--) {
       n--;
       buf[i] = (char) ('A' + n % 26);
       n /= 26;
     }
-    if (sequenceVersion.getSequence().getSequenceLettersTypeSelect()
-        == SequenceLettersTypeSelect.UPPERCASE) {
+    if (sequenceLettersTypeSelect == SequenceLettersTypeSelect.UPPERCASE) {
       return new String(buf);
     }
     return new String(buf).toLowerCase();
@@ -404,13 +553,15 @@ public class SequenceService {
   }
 
   /**
-   * This method calls shutdown on the executor when the application stops.
+   * This method calls shutdown on the executors when the application stops.
    *
    * @param event shutdown event
    */
   protected void onApplicationShutdown(@Observes ShutdownEvent event) {
-    log.debug("Shutting down sequence executor..");
-    executor.shutdown();
-    log.debug("Sequence executor stopped.");
+    log.debug("Shutting down sequence executors..");
+    for (ExecutorService executor : executors) {
+      executor.shutdown();
+    }
+    log.debug("Sequence executors stopped.");
   }
 }
@@ -105,7 +105,11 @@ public class AdvancedImportServiceImpl implements AdvancedImportService {
     DataReaderService reader = dataReaderFactory.getDataReader(extension);
     reader.initialize(advancedImport.getImportFile(), advancedImport.getFileSeparator());
 
-    return this.process(reader, advancedImport);
+    try {
+      return this.process(reader, advancedImport);
+    } finally {
+      reader.close();
+    }
   }
 
   @Transactional
@@ -0,0 +1,383 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.advanced.imports;
+
+import com.axelor.app.AppSettings;
+import com.axelor.apps.tool.ImportReferenceResolver;
+import com.axelor.apps.tool.ImportReferenceResolver.Lookup;
+import com.axelor.auth.AuthUtils;
+import com.axelor.data.Listener;
+import com.axelor.data.XStreamUtils;
+import com.axelor.data.adapter.DataAdapter;
+import com.axelor.data.csv.CSVBind;
+import com.axelor.data.csv.CSVConfig;
+import com.axelor.data.csv.CSVImporter;
+import com.axelor.data.csv.CSVInput;
+import com.axelor.db.Model;
+import com.axelor.db.mapper.Mapper;
+import com.axelor.db.mapper.Property;
+import com.axelor.exception.service.TraceBackService;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.thoughtworks.xstream.XStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.shiro.subject.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Imports the data files of an advanced import tab by chunks.
+ *
+ * <p>The file of a tab is split in chunks of {@code data.import.chunk.size} rows, each imported
+ * by its own {@link CSVImporter}, so with its own transactions: a failing row is reported without
+ * rolling back the other chunks. When the tab allows it, chunks are imported concurrently by
+ * {@code data.import.workers} threads; tabs are still imported one after the other, in their
+ * sequence order. Relations searched on a single string field are resolved per chunk by {@link
+ * ImportReferenceResolver}.
+ */
+public class ChunkedDataImporter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /** Prefix of the context entry collecting the ids of the records created for a tab. */
+  public static final String IMPORTED_RECORDS = "importedRecords";
+
+  protected static final Pattern SEARCH_PATTERN = Pattern.compile("^self\\.(\\w+) = :(\\w+)$");
+
+  protected final File dataDir;
+  protected final char separator;
+  protected final Collection<DataAdapter> adapters;
+  protected final Map<String, Object> context;
+  protected final Listener listener;
+
+  protected final int chunkSize;
+  protected final int workers;
+
+  public ChunkedDataImporter(
+      File dataDir,
+      char separator,
+      Collection<DataAdapter> adapters,
+      Map<String, Object> context,
+      Listener listener) {
+    this.dataDir = dataDir;
+    this.separator = separator;
+    this.adapters = adapters;
+    this.context = context;
+    this.listener = new SynchronizedListener(listener);
+
+    AppSettings settings = AppSettings.get();
+    this.chunkSize = Math.max(1, settings.getInt("data.import.chunk.size", 5000));
+    this.workers = Math.max(1, settings.getInt("data.import.workers", 1));
+  }
+
+  /**
+   * Import the data file of a tab.
+   *
+   * @param input the input of the tab, its bindings may be rewritten to use prefetched relations
+   * @param fileTabId the id of the tab
+   * @param mapper the mapper of the tab model
+   * @param isParallel whether the chunks of the tab can be imported concurrently
+   * @return the ids of the created records, by name of their json field on the tab
+   * @throws IOException
+   */
+  public Map<String, Queue<Long>> importTab(
+      CSVInput input, Long fileTabId, Mapper mapper, boolean isParallel) throws IOException {
+
+    Map<String, Queue<Long>> importedRecords = new ConcurrentHashMap<>();
+    File file = new File(dataDir, input.getFileName());
+    if (!file.exists()) {
+      return importedRecords;
+    }
+
+    long startTime = System.currentTimeMillis();
+    String[] header = readHeader(file);
+    Map<String, Lookup> lookups = prepareLookups(input, header, mapper);
+    List<File> chunks = split(file, header);
+
+    Map<String, Object> tabContext = new HashMap<>(context);
+    tabContext.put(IMPORTED_RECORDS + fileTabId, importedRecords);
+
+    if (isParallel && workers > 1 && chunks.size() > 1) {
+      importParallel(input, chunks, header, lookups, tabContext);
+    } else {
+      for (File chunk : chunks) {
+        importChunk(input, chunk, header, lookups, tabContext);
+      }
+    }
+
+    LOG.info(
+        "Imported {} in {} chunks ({} lookups prefetched) in {} ms",
+        input.getFileName(),
+        chunks.size(),
+        lookups.size(),
+        System.currentTimeMillis() - startTime);
+    return importedRecords;
+  }
+
+  protected void importParallel(
+      CSVInput input,
+      List<File> chunks,
+      String[] header,
+      Map<String, Lookup> lookups,
+      Map<String, Object> tabContext)
+      throws IOException {
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, chunks.size()));
+    CompletionService<File> completionService = new ExecutorCompletionService<>(executor);
+    Subject subject = AuthUtils.getSubject();
+
+    try {
+      for (File chunk : chunks) {
+        Callable<File> task =
+            () -> {
+              importChunk(input, chunk, header, lookups, tabContext);
+              return chunk;
+            };
+        completionService.submit(subject != null ? subject.associateWith(task) : task);
+      }
+
+      for (int i = 0; i < chunks.size(); i++) {
+        try {
+          completionService.take().get();
+        } catch (ExecutionException e) {
+          TraceBackService.trace(e.getCause());
+          listener.handle(
+              null,
+              e.getCause() instanceof Exception ? (Exception) e.getCause() : new Exception(e));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  protected void importChunk(
+      CSVInput input,
+      File chunk,
+      String[] header,
+      Map<String, Lookup> lookups,
+      Map<String, Object> tabContext)
+      throws IOException {
+
+    ImportReferenceResolver references = new ImportReferenceResolver(lookups);
+    if (!lookups.isEmpty()) {
+      collectValues(chunk, header, lookups.keySet()).forEach(references::prefetch);
+    }
+
+    Map<String, Object> chunkContext = new HashMap<>(tabContext);
+    chunkContext.put(ImportReferenceResolver.CONTEXT_KEY, references);
+
+    CSVConfig config = new CSVConfig();
+    config.setInputs(Lists.newArrayList(copyInput(input, chunk.getName())));
+    if (!CollectionUtils.isEmpty(adapters)) {
+      config.getAdapters().addAll(adapters);
+    }
+
+    CSVImporter importer = new CSVImporter(config, dataDir.getAbsolutePath());
+    importer.addListener(listener);
+    importer.setContext(chunkContext);
+    importer.run();
+  }
+
+  /**
+   * Replace the searches of the relations found on a single string field with a call to the
+   * resolver of the chunk. Relations to the model of the tab are left untouched, as they may
+   * target records created by the previous rows.
+   */
+  @SuppressWarnings("unchecked")
+  protected Map<String, Lookup> prepareLookups(CSVInput input, String[] header, Mapper mapper) {
+
+    Map<String, Lookup> lookups = new HashMap<>();
+    if (CollectionUtils.isEmpty(input.getBindings())) {
+      return lookups;
+    }
+
+    List<String> columns = Arrays.asList(header);
+    Set<String> computedColumns =
+        input.getBindings().stream()
+            .map(CSVBind::getField)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+
+    for (CSVBind bind : input.getBindings()) {
+      Matcher matcher = SEARCH_PATTERN.matcher(Strings.nullToEmpty(bind.getSearch()).trim());
+      if (!matcher.matches()
+          || bind.getColumn() != null
+          || bind.getExpression() != null
+          || CollectionUtils.isNotEmpty(bind.getBindings())) {
+        continue;
+      }
+      String field = matcher.group(1);
+      String column = matcher.group(2);
+      if (!columns.contains(column) || computedColumns.contains(column)) {
+        continue;
+      }
+
+      Property property = mapper.getProperty(bind.getField());
+      if (property == null
+          || property.getTarget() == null
+          || property.isCollection()
+          || property.getTarget().getName().equals(input.getTypeName())) {
+        continue;
+      }
+      Property targetProperty = Mapper.of(property.getTarget()).getProperty(field);
+      if (targetProperty == null || targetProperty.getJavaType() != String.class) {
+        continue;
+      }
+
+      lookups.put(column, new Lookup((Class<? extends Model>) property.getTarget(), field));
+      bind.setSearch(null);
+      bind.setExpression(
+          String.format("%s.get('%s', %s)", ImportReferenceResolver.CONTEXT_KEY, column, column));
+    }
+    return lookups;
+  }
+
+  protected String[] readHeader(File file) throws IOException {
+    try (CSVReader reader = new CSVReader(new BufferedReader(new FileReader(file)), separator)) {
+      String[] header = reader.readNext();
+      return header != null ? header : new String[0];
+    }
+  }
+
+  /** Split the file in chunks, each starting with the header. */
+  protected List<File> split(File file, String[] header) throws IOException {
+
+    List<File> chunks = new ArrayList<>();
+    String baseName = Files.getNameWithoutExtension(file.getName());
+
+    try (CSVReader reader = new CSVReader(new BufferedReader(new FileReader(file)), separator)) {
+      reader.readNext();
+      CSVWriter writer = null;
+      int rowCount = 0;
+      try {
+        String[] row;
+        while ((row = reader.readNext()) != null) {
+          if (rowCount % chunkSize == 0) {
+            if (writer != null) {
+              writer.close();
+            }
+            File chunk = new File(dataDir, baseName + "_" + chunks.size() + ".csv");
+            writer = new CSVWriter(new BufferedWriter(new FileWriter(chunk)), separator);
+            writer.writeNext(header);
+            chunks.add(chunk);
+          }
+          writer.writeNext(row);
+          rowCount++;
+        }
+      } finally {
+        if (writer != null) {
+          writer.close();
+        }
+      }
+    }
+    return chunks;
+  }
+
+  protected Map<String, Set<String>> collectValues(
+      File chunk, String[] header, Collection<String> columns) throws IOException {
+
+    Map<String, Integer> indexes = new HashMap<>();
+    Map<String, Set<String>> values = new HashMap<>();
+    for (String column : columns) {
+      indexes.put(column, Arrays.asList(header).indexOf(column));
+      values.put(column, new HashSet<>());
+    }
+
+    try (CSVReader reader = new CSVReader(new BufferedReader(new FileReader(chunk)), separator)) {
+      reader.readNext();
+      String[] row;
+      while ((row = reader.readNext()) != null) {
+        for (Map.Entry<String, Integer> index : indexes.entrySet()) {
+          if (index.getValue() < row.length && !Strings.isNullOrEmpty(row[index.getValue()])) {
+            values.get(index.getKey()).add(row[index.getValue()]);
+          }
+        }
+      }
+    }
+    return values;
+  }
+
+  /** Copy of the input on a chunk file, so that no binding is shared between threads. */
+  protected CSVInput copyInput(CSVInput input, String fileName) {
+    XStream stream = XStreamUtils.createXStream();
+    stream.processAnnotations(CSVInput.class);
+    CSVInput copy = (CSVInput) stream.fromXML(stream.toXML(input));
+    copy.setFileName(fileName);
+    copy.setSearchCall(input.getSearchCall());
+    return copy;
+  }
+
+  /** The import listeners are not thread-safe, events of concurrent chunks are serialized. */
+  protected static class SynchronizedListener implements Listener {
+
+    private final Listener delegate;
+
+    public SynchronizedListener(Listener delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void imported(Model bean) {
+      delegate.imported(bean);
+    }
+
+    @Override
+    public synchronized void imported(Integer total, Integer success) {
+      delegate.imported(total, success);
+    }
+
+    @Override
+    public synchronized void handle(Model bean, Exception e) {
+      delegate.handle(bean, e);
+    }
+  }
+}
@@ -21,25 +21,28 @@ import com.axelor.apps.base.db.AdvancedImport;
 import com.axelor.apps.base.db.FileField;
 import com.axelor.apps.base.db.FileTab;
 import com.axelor.apps.base.db.repo.FileFieldRepository;
+import com.axelor.apps.base.db.repo.FileTabRepository;
 import com.axelor.apps.base.service.imports.listener.ImporterListener;
 import com.axelor.apps.base.service.readers.DataReaderFactory;
 import com.axelor.apps.base.service.readers.DataReaderService;
 import com.axelor.apps.tool.service.TranslationService;
 import com.axelor.common.Inflector;
 import com.axelor.common.StringUtils;
+import com.axelor.csv.script.ImportAdvancedImport;
 import com.axelor.data.XStreamUtils;
 import com.axelor.data.adapter.DataAdapter;
 import com.axelor.data.adapter.JavaTimeAdapter;
 import com.axelor.data.csv.CSVBind;
 import com.axelor.data.csv.CSVConfig;
-import com.axelor.data.csv.CSVImporter;
 import com.axelor.data.csv.CSVInput;
+import com.axelor.db.JPA;
 import com.axelor.db.Model;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.db.mapper.Property;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.meta.MetaFiles;
+import com.axelor.meta.db.MetaField;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.meta.db.MetaModel;
 import com.axelor.meta.db.MetaSelect;
@@ -53,6 +56,7 @@ import com.google.common.io.Files;
 import com.google.inject.Inject;
 import com.opencsv.CSVWriter;
 import com.thoughtworks.xstream.XStream;
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -68,6 +72,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
@@ -101,6 +106,7 @@ public class DataImportServiceImpl implements DataImportService {
   private Map<String, Object> fieldMap;
   private Map<String, Object> titleMap;
   private Map<String, DataAdapter> adapterMap;
+  private Map<CSVInput, Long> fileTabIdMap;
 
   private List<String> ifList;
 
@@ -127,12 +133,17 @@ public class DataImportServiceImpl implements DataImportService {
 
   @Inject private MetaSelectRepository metaSelectRepo;
 
+  @Inject private FileTabRepository fileTabRepo;
+
+  @Inject private ImportAdvancedImport importAdvancedImport;
+
   @Override
   public MetaFile importData(AdvancedImport advancedImport)
       throws IOException, AxelorException, ClassNotFoundException {
 
     adapterMap = new HashMap<String, DataAdapter>();
     importContext = new HashMap<String, Object>();
+    fileTabIdMap = new HashMap<>();
     language = advancedImport.getLanguageSelect();
     dataDir = Files.createTempDir();
 
@@ -141,7 +152,12 @@ public class DataImportServiceImpl implements DataImportService {
     DataReaderService reader = dataReaderFactory.getDataReader(extension);
     reader.initialize(advancedImport.getImportFile(), advancedImport.getFileSeparator());
 
-    List<CSVInput> inputs = this.process(reader, advancedImport);
+    List<CSVInput> inputs;
+    try {
+      inputs = this.process(reader, advancedImport);
+    } finally {
+      reader.close();
+    }
 
     if (advancedImport.getAttachment() != null) {
       this.processAttachments(advancedImport.getAttachment());
@@ -176,7 +192,8 @@ public class DataImportServiceImpl implements DataImportService {
       ifList = new ArrayList<String>();
 
       try (CSVWriter csvWriter =
-          new CSVWriter(new FileWriter(new File(dataDir, fileName)), CSV_SEPRATOR)) {
+          new CSVWriter(
+              new BufferedWriter(new FileWriter(new File(dataDir, fileName))), CSV_SEPRATOR)) {
 
         int totalLines = reader.getTotalLines(fileTab.getName());
         if (totalLines == 0) {
@@ -184,12 +201,11 @@ public class DataImportServiceImpl implements DataImportService {
         }
 
         Mapper mapper = advancedImportService.getMapper(fileTab.getMetaModel().getFullName());
-        List<String[]> allLines = new ArrayList<String[]>();
         int startIndex = isConfig ? 1 : linesToIgnore;
 
         String[] row = reader.read(fileTab.getName(), startIndex, 0);
         String[] headers = this.createHeader(row, fileTab, isConfig, mapper);
-        allLines.add(headers);
+        csvWriter.writeNext(headers);
 
         int tabConfigRowCount = 0;
         if (isTabConfig) {
@@ -209,13 +225,13 @@ public class DataImportServiceImpl implements DataImportService {
             continue;
           }
           String[] data = this.createData(dataRow, fileTab, isConfig, mapper);
-          allLines.add(data);
+          csvWriter.writeNext(data);
         }
-        csvWriter.writeAll(allLines);
         csvWriter.flush();
       }
 
       inputList.add(csvInput);
+      fileTabIdMap.put(csvInput, fileTab.getId());
       importContext.put("ifConditions" + fileTab.getId(), ifList);
       importContext.put("jsonContextValues" + fileTab.getId(), createJsonContext(fileTab));
       importContext.put("actionsToApply" + fileTab.getId(), fileTab.getActions());
@@ -905,22 +921,26 @@ public class DataImportServiceImpl implements DataImportService {
     }
   }
 
-  private MetaFile importData(List<CSVInput> inputs) throws IOException {
+  private MetaFile importData(List<CSVInput> inputs) throws IOException, ClassNotFoundException {
     if (CollectionUtils.isEmpty(inputs)) {
       return null;
     }
 
-    CSVConfig config = new CSVConfig();
-    config.setInputs(inputs);
-    if (!CollectionUtils.isEmpty(adapterMap.values())) {
-      config.getAdapters().addAll(adapterMap.values());
-    }
-
-    CSVImporter importer = new CSVImporter(config, dataDir.getAbsolutePath());
     ImporterListener listener = new ImporterListener("importData");
-    importer.addListener(listener);
-    importer.setContext(importContext);
-    importer.run();
+    ChunkedDataImporter importer =
+        new ChunkedDataImporter(
+            dataDir, CSV_SEPRATOR, adapterMap.values(), importContext, listener);
+
+    for (CSVInput input : inputs) {
+      FileTab fileTab = fileTabRepo.find(fileTabIdMap.get(input));
+      Mapper mapper = advancedImportService.getMapper(input.getTypeName());
+      Map<String, Queue<Long>> importedRecords =
+          importer.importTab(input, fileTab.getId(), mapper, this.isParallelImport(fileTab));
+
+      if (!importedRecords.isEmpty()) {
+        this.addImportedRecords(fileTab.getId(), importedRecords);
+      }
+    }
 
     if (!listener.isImported()) {
       MetaFile logFile = this.createImportLogFile(listener);
@@ -929,6 +949,38 @@ public class DataImportServiceImpl implements DataImportService {
     return null;
   }
 
+  /**
+   * Chunks of a tab can be imported concurrently unless a row may find a record created by another
+   * row: records found or created on the fly, or relations to the model of the tab itself.
+   */
+  private boolean isParallelImport(FileTab fileTab) {
+    if (fileTab.getImportType() == FileFieldRepository.IMPORT_TYPE_FIND_NEW) {
+      return false;
+    }
+
+    for (FileField fileField : fileTab.getFileFieldList()) {
+      MetaField importField = fileField.getImportField();
+      if (importField == null || Strings.isNullOrEmpty(importField.getRelationship())) {
+        continue;
+      }
+      if (fileField.getImportType() == FileFieldRepository.IMPORT_TYPE_FIND_NEW
+          || fileTab.getMetaModel().getName().equals(importField.getTypeName())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void addImportedRecords(Long fileTabId, Map<String, Queue<Long>> importedRecords) {
+    JPA.runInTransaction(
+        () ->
+            importAdvancedImport.addImportedRecords(
+                fileTabRepo.find(fileTabId),
+                (Map<String, Object>) importContext.get("jsonContextValues" + fileTabId),
+                importedRecords));
+  }
+
   private void setImportIf(Property prop, CSVBind bind, String column) {
     if (prop.isRequired()) {
       bind.setCondition(column.toString() + "!= null && !" + column.toString() + ".empty");
@@ -122,7 +122,11 @@ public class ValidatorService {
     DataReaderService reader = dataReaderFactory.getDataReader(extension);
     reader.initialize(advancedImport.getImportFile(), advancedImport.getFileSeparator());
 
-    return validate(reader, advancedImport);
+    try {
+      return validate(reader, advancedImport);
+    } finally {
+      reader.close();
+    }
   }
 
   @Transactional(rollbackOn = {AxelorException.class, Exception.class})
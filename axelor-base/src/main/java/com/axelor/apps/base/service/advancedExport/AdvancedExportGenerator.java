@@ -18,6 +18,7 @@
 package com.axelor.apps.base.service.advancedExport;
 
 import com.axelor.apps.base.db.AdvancedExport;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.itextpdf.text.DocumentException;
 import java.io.File;
@@ -25,7 +26,10 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import javax.persistence.EntityTransaction;
 import javax.persistence.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,9 +52,10 @@ public abstract class AdvancedExportGenerator {
    * This method generate the body of export file.
    *
    * @param dataList
+   * @throws AxelorException
    */
   @SuppressWarnings("rawtypes")
-  public abstract void generateBody(List<List> dataList);
+  public abstract void generateBody(List<List> dataList) throws AxelorException;
 
   /**
    * This method close the object.
@@ -85,15 +90,17 @@ public abstract class AdvancedExportGenerator {
   /**
    * This method is used to generate the export file.
    *
-   * @param advancedExport
-   * @param query
-   * @return
+   * <p>Rows are read page by page and handed to {@link #generateBody(List)} as they come, so that
+   * memory use does not depend on the number of exported records. The last column of each row
+   * must be the record id; it is removed before the row is written.
+   *
+   * @param query the export query
+   * @param keysetParamPosition position of the <code>self.id &gt; ?</code> parameter when the
+   *     query is ordered by id only, null when it is ordered by the export lines
+   * @return the export file
    * @throws AxelorException
-   * @throws IOException
-   * @throws DocumentException
    */
-  @SuppressWarnings({"unchecked", "rawtypes"})
-  public File generateFile(Query query) throws AxelorException {
+  public File generateFile(Query query, Integer keysetParamPosition) throws AxelorException {
 
     AdvancedExport advancedExport = getAdvancedExport();
 
@@ -101,31 +108,139 @@ public abstract class AdvancedExportGenerator {
 
     generateHeader();
 
-    int startPosition = 0;
-    int reachLimit = 0;
     int maxExportLimit = advancedExport.getMaxExportLimit();
     int queryFetchLimit = advancedExport.getQueryFetchSize();
-    List<List> dataList = new ArrayList<>();
-    query.setMaxResults(queryFetchLimit);
+    long startTime = System.currentTimeMillis();
+
+    int exportedRows =
+        keysetParamPosition != null
+            ? generateBodyByKeyset(query, keysetParamPosition, maxExportLimit, queryFetchLimit)
+            : generateBodyByScroll(query, maxExportLimit, queryFetchLimit);
+
+    if (maxExportLimit == exportedRows) {
+      isReachMaxExportLimit = true;
+    }
+    close();
+
+    long duration = Math.max(System.currentTimeMillis() - startTime, 1);
+    log.info(
+        "Exported {} rows to {} in {} ms ({} rows/s)",
+        exportedRows,
+        getFileName(),
+        duration,
+        exportedRows * 1000L / duration);
+
+    return getExportFile();
+  }
+
+  /**
+   * Page on the record id: each page starts after the last id of the previous one, so every page
+   * is an index range scan whatever its position.
+   *
+   * <p>A record joined to a collection has one row per element, so a full page only ends with the
+   * rows of its last record that fit in it: these rows are left for the next page, which starts
+   * after the previous record. A page holding the rows of one record only is read again with a
+   * larger size until the record is complete.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected int generateBodyByKeyset(
+      Query query, int keysetParamPosition, int maxExportLimit, int queryFetchLimit)
+      throws AxelorException {
+
+    long lastId = 0;
+    int exportedRows = 0;
+
+    while (exportedRows < maxExportLimit) {
+      int remainingRows = maxExportLimit - exportedRows;
+      int maxResults = Math.min(queryFetchLimit, remainingRows);
+      List<List> dataList;
+      int pageEnd;
 
-    while (startPosition < maxExportLimit) {
-      if ((maxExportLimit - startPosition) < queryFetchLimit) {
-        query.setMaxResults((maxExportLimit - startPosition));
+      while (true) {
+        query.setParameter(keysetParamPosition, lastId);
+        query.setMaxResults(maxResults);
+        dataList = query.getResultList();
+        pageEnd = dataList.size();
+        if (pageEnd < maxResults || maxResults == remainingRows) {
+          break;
+        }
+        long pageLastId = getRecordId(dataList.get(pageEnd - 1));
+        while (pageEnd > 0 && getRecordId(dataList.get(pageEnd - 1)) == pageLastId) {
+          pageEnd--;
+        }
+        if (pageEnd > 0) {
+          break;
+        }
+        maxResults = (int) Math.min(2L * maxResults, remainingRows);
+      }
+      if (pageEnd == 0) {
+        break;
       }
-      query.setFirstResult(startPosition);
-      dataList = query.getResultList();
-      if (dataList.isEmpty()) break;
 
+      boolean isLastPage = dataList.size() < maxResults;
+      dataList = new ArrayList<>(dataList.subList(0, pageEnd));
+      lastId = getRecordId(dataList.get(pageEnd - 1));
+      for (List row : dataList) {
+        row.remove(row.size() - 1);
+      }
       generateBody(dataList);
 
-      startPosition = startPosition + queryFetchLimit;
-      reachLimit += dataList.size();
+      exportedRows += dataList.size();
+      if (isLastPage) {
+        break;
+      }
     }
-    if (maxExportLimit == reachLimit) {
-      isReachMaxExportLimit = true;
+    return exportedRows;
+  }
+
+  @SuppressWarnings("rawtypes")
+  protected long getRecordId(List row) {
+    return ((Number) row.get(row.size() - 1)).longValue();
+  }
+
+  /**
+   * Read the rows with a forward-only cursor when the export is ordered on its own columns, which
+   * cannot be used as a keyset.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected int generateBodyByScroll(Query query, int maxExportLimit, int queryFetchLimit)
+      throws AxelorException {
+
+    org.hibernate.query.Query<List> hibernateQuery = query.unwrap(org.hibernate.query.Query.class);
+    hibernateQuery.setReadOnly(true);
+    hibernateQuery.setFetchSize(queryFetchLimit);
+    hibernateQuery.setMaxResults(maxExportLimit);
+
+    // PostgreSQL only streams the result set through a cursor inside a transaction.
+    EntityTransaction transaction = JPA.em().getTransaction();
+    boolean isOwnTransaction = !transaction.isActive();
+    if (isOwnTransaction) {
+      transaction.begin();
     }
-    close();
-    return getExportFile();
+
+    int exportedRows = 0;
+    try (ScrollableResults results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY)) {
+      List<List> dataList = new ArrayList<>(queryFetchLimit);
+      while (results.next()) {
+        List row = (List) results.get(0);
+        row.remove(row.size() - 1);
+        dataList.add(row);
+        if (dataList.size() == queryFetchLimit) {
+          generateBody(dataList);
+          exportedRows += dataList.size();
+          dataList = new ArrayList<>(queryFetchLimit);
+        }
+      }
+      if (!dataList.isEmpty()) {
+        generateBody(dataList);
+        exportedRows += dataList.size();
+      }
+    } finally {
+      if (isOwnTransaction) {
+        transaction.rollback();
+      }
+    }
+    return exportedRows;
   }
 
   public boolean getIsReachMaxExportLimit() {
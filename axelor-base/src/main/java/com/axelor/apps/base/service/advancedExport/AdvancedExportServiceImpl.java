@@ -83,6 +83,9 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
   private boolean isReachMaxExportLimit, isNormalField, isSelectionField = false;
   private int msi, mt;
 
+  /** Position of the record id keyset parameter, null when the export has its own order. */
+  private Integer keysetParamPosition;
+
   /**
    * This method split and join the all fields/columns which are selected by user and create the
    * query.
@@ -131,6 +134,8 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
         aliasName = "";
         col++;
       }
+      // The record id is always the last column, used to page by keyset.
+      selectFieldBuilder.append("self.id AS Col_id,");
       if (StringUtils.notEmpty(orderByFieldBuilder)) {
         orderByFieldBuilder.append("self.id asc,");
       }
@@ -316,9 +321,17 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
     params = null;
     String criteria = getCriteria(metaModel, recordIds);
 
-    if (!orderByFieldBuilder.toString().equals(""))
+    boolean isKeysetPaging = orderByFieldBuilder.toString().equals("");
+    if (!isKeysetPaging) {
       orderByCol =
           " ORDER BY " + orderByFieldBuilder.substring(0, orderByFieldBuilder.length() - 1);
+    } else {
+      criteria =
+          (Strings.isNullOrEmpty(criteria) ? " WHERE " : criteria + " AND ") + "self.id > ?";
+      orderByCol = " ORDER BY self.id";
+    }
+    // Set to the last parameter position once the parameters are numbered.
+    keysetParamPosition = isKeysetPaging ? 0 : null;
 
     StringBuilder queryBuilder = new StringBuilder();
     queryBuilder.append("SELECT NEW List(");
@@ -358,7 +371,7 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
         TraceBackService.trace(e, e.getMessage());
       }
       if (recordIds == null) {
-        criteria = " WHERE " + permissionFilter;
+        criteria = " WHERE (" + permissionFilter + ")";
       } else {
         criteria += " AND (" + permissionFilter + ")";
       }
@@ -393,6 +406,9 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
       queryBuilder.replace(i, i + 1, "?" + (++n));
       i = queryBuilder.indexOf("?", i + 1);
     }
+    if (keysetParamPosition != null) {
+      keysetParamPosition = n;
+    }
     log.debug("query : {}", queryBuilder.toString());
     Query query = JPA.em().createQuery(queryBuilder.toString(), List.class);
     if (params != null) {
@@ -441,7 +457,7 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
 
     Query query = getAdvancedExportQuery(advancedExport, recordIds);
 
-    File file = exportGenerator.generateFile(query);
+    File file = exportGenerator.generateFile(query, keysetParamPosition);
     isReachMaxExportLimit = exportGenerator.getIsReachMaxExportLimit();
     exportFileName = exportGenerator.getExportFileName();
     return file;
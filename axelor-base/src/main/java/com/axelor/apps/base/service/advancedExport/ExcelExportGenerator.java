@@ -40,16 +40,24 @@ import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.DateFormatConverter;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 public class ExcelExportGenerator extends AdvancedExportGenerator {
 
-  private Workbook workbook;
+  /** Number of rows kept in memory, older rows are flushed to a temporary file. */
+  protected static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
+  private SXSSFWorkbook workbook;
 
   private Sheet sheet;
 
+  private CellStyle dateCellStyle;
+
+  private CellStyle dateTimeCellStyle;
+
+  private int rowNum;
+
   private AdvancedExport advancedExport;
 
   private File exportFile;
@@ -65,13 +73,15 @@ public class ExcelExportGenerator extends AdvancedExportGenerator {
       TraceBackService.trace(e);
       throw new AxelorException(e, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR);
     }
-    workbook = new XSSFWorkbook();
+    workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW_SIZE);
+    workbook.setCompressTempFiles(true);
     sheet = workbook.createSheet(advancedExport.getMetaModel().getName());
+    createDateCellStyles();
   }
 
   @Override
   public void generateHeader() {
-    Row headerRow = sheet.createRow(sheet.getFirstRowNum());
+    Row headerRow = sheet.createRow(rowNum++);
     int colHeaderNum = 0;
     for (AdvancedExportLine advancedExportLine : advancedExport.getAdvancedExportLineList()) {
       Cell headerCell = headerRow.createCell(colHeaderNum++);
@@ -79,11 +89,10 @@ public class ExcelExportGenerator extends AdvancedExportGenerator {
     }
   }
 
-  @SuppressWarnings("rawtypes")
-  @Override
-  public void generateBody(List<List> dataList) {
-    CellStyle dateCellStyle = workbook.createCellStyle();
-    CellStyle dateTimeCellStyle = workbook.createCellStyle();
+  /** Cell styles are workbook wide and limited in number, so they are created once. */
+  protected void createDateCellStyles() {
+    dateCellStyle = workbook.createCellStyle();
+    dateTimeCellStyle = workbook.createCellStyle();
 
     DateFormat fmt = DateFormat.getDateInstance(DateFormat.SHORT, AppFilter.getLocale());
     if (fmt instanceof SimpleDateFormat) {
@@ -107,21 +116,23 @@ public class ExcelExportGenerator extends AdvancedExportGenerator {
               .createDataFormat()
               .getFormat(DateFormatConverter.convert(AppFilter.getLocale(), pattern)));
     }
+  }
 
+  @SuppressWarnings("rawtypes")
+  @Override
+  public void generateBody(List<List> dataList) {
     for (List listObj : dataList) {
-      Row row = sheet.createRow(sheet.getLastRowNum() + 1);
+      Row row = sheet.createRow(rowNum++);
       for (int colIndex = 0; colIndex < listObj.size(); colIndex++) {
         Object value = listObj.get(colIndex);
         Cell cell = row.createCell(colIndex);
-        String columnValue = null;
         if (!(value == null || value.equals(""))) {
           if (value instanceof LocalDate) {
             cell.setCellStyle(dateCellStyle);
             cell.setCellValue(
                 Date.from(
                     ((LocalDate) value).atStartOfDay().atZone(ZoneId.systemDefault()).toInstant()));
-          }
-          if (value instanceof LocalDateTime) {
+          } else if (value instanceof LocalDateTime) {
             cell.setCellStyle(dateTimeCellStyle);
             cell.setCellValue(
                 Date.from(((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant()));
@@ -143,13 +154,13 @@ public class ExcelExportGenerator extends AdvancedExportGenerator {
 
   @Override
   public void close() throws AxelorException {
-    try {
-      FileOutputStream fout = new FileOutputStream(exportFile);
+    try (FileOutputStream fout = new FileOutputStream(exportFile)) {
       workbook.write(fout);
-      fout.close();
     } catch (IOException e) {
       TraceBackService.trace(e);
       throw new AxelorException(e, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR);
+    } finally {
+      workbook.dispose();
     }
   }
 
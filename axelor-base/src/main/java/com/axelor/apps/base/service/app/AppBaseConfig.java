@@ -0,0 +1,90 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.app;
+
+import com.axelor.apps.base.db.AppBase;
+import com.axelor.meta.db.MetaField;
+import com.google.common.collect.ImmutableSet;
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+
+/** Immutable copy of the values of the base app read on hot paths. */
+public final class AppBaseConfig {
+
+  private final ZonedDateTime today;
+  private final int nbDecimalDigitForUnitPrice;
+  private final int nbDecimalDigitForQty;
+  private final int globalTrackingLogPersistence;
+  private final String defaultPartnerLanguageCode;
+  private final String timeLoggingPreferenceSelect;
+  private final BigDecimal dailyWorkHours;
+  private final ImmutableSet<String> companySpecificProductFieldNames;
+
+  public AppBaseConfig(AppBase appBase) {
+    this.today = appBase.getToday();
+    this.nbDecimalDigitForUnitPrice = appBase.getNbDecimalDigitForUnitPrice();
+    this.nbDecimalDigitForQty = appBase.getNbDecimalDigitForQty();
+    this.globalTrackingLogPersistence = appBase.getGlobalTrackingLogPersistence();
+    this.defaultPartnerLanguageCode =
+        appBase.getDefaultPartnerLanguage() != null
+            ? appBase.getDefaultPartnerLanguage().getCode()
+            : null;
+    this.timeLoggingPreferenceSelect = appBase.getTimeLoggingPreferenceSelect();
+    this.dailyWorkHours = appBase.getDailyWorkHours();
+
+    ImmutableSet.Builder<String> fieldNames = ImmutableSet.builder();
+    if (appBase.getCompanySpecificProductFieldsSet() != null) {
+      for (MetaField field : appBase.getCompanySpecificProductFieldsSet()) {
+        fieldNames.add(field.getName());
+      }
+    }
+    this.companySpecificProductFieldNames = fieldNames.build();
+  }
+
+  public ZonedDateTime getToday() {
+    return today;
+  }
+
+  public int getNbDecimalDigitForUnitPrice() {
+    return nbDecimalDigitForUnitPrice;
+  }
+
+  public int getNbDecimalDigitForQty() {
+    return nbDecimalDigitForQty;
+  }
+
+  public int getGlobalTrackingLogPersistence() {
+    return globalTrackingLogPersistence;
+  }
+
+  public String getDefaultPartnerLanguageCode() {
+    return defaultPartnerLanguageCode;
+  }
+
+  public String getTimeLoggingPreferenceSelect() {
+    return timeLoggingPreferenceSelect;
+  }
+
+  public BigDecimal getDailyWorkHours() {
+    return dailyWorkHours;
+  }
+
+  public ImmutableSet<String> getCompanySpecificProductFieldNames() {
+    return companySpecificProductFieldNames;
+  }
+}
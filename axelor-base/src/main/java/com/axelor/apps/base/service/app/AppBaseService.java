@@ -34,6 +34,14 @@ public interface AppBaseService extends AppService {
 
   public AppBase getAppBase();
 
+  /**
+   * Get an immutable copy of the values of the base app used on hot paths. The copy is replaced
+   * when the base app is saved.
+   *
+   * @return the values of the base app, or null if it isn't installed
+   */
+  public AppBaseConfig getAppBaseConfig();
+
   // Date du jour
 
   /**
@@ -21,13 +21,12 @@ import com.axelor.app.AppSettings;
 import com.axelor.apps.base.db.AppBase;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.CurrencyConversionLine;
-import com.axelor.apps.base.db.Language;
 import com.axelor.apps.base.db.Unit;
 import com.axelor.apps.tool.date.DateTool;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
-import com.axelor.db.Query;
 import com.google.common.base.Strings;
+import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -41,9 +40,21 @@ public class AppBaseServiceImpl extends AppServiceImpl implements AppBaseService
 
   protected static String DEFAULT_LOCALE = "en";
 
+  @Inject protected AppConfigCache appConfigCache;
+
   @Override
   public AppBase getAppBase() {
-    return Query.of(AppBase.class).cacheable().fetchOne();
+    return appConfigCache.find(AppBase.class);
+  }
+
+  @Override
+  public AppBaseConfig getAppBaseConfig() {
+    return appConfigCache.get(
+        AppBaseConfig.class,
+        () -> {
+          AppBase appBase = getAppBase();
+          return appBase != null ? new AppBaseConfig(appBase) : null;
+        });
   }
 
   @Override
@@ -65,9 +76,9 @@ public class AppBaseServiceImpl extends AppServiceImpl implements AppBaseService
       if (user != null && user.getToday() != null) {
         todayDateTime = user.getToday();
       } else {
-        AppBase appBase = getAppBase();
-        if (appBase != null && appBase.getToday() != null) {
-          return appBase.getToday();
+        AppBaseConfig appBaseConfig = getAppBaseConfig();
+        if (appBaseConfig != null && appBaseConfig.getToday() != null) {
+          return appBaseConfig.getToday();
         }
       }
     }
@@ -102,10 +113,10 @@ public class AppBaseServiceImpl extends AppServiceImpl implements AppBaseService
   @Override
   public int getNbDecimalDigitForUnitPrice() {
 
-    AppBase appBase = getAppBase();
+    AppBaseConfig appBaseConfig = getAppBaseConfig();
 
-    if (appBase != null) {
-      return appBase.getNbDecimalDigitForUnitPrice();
+    if (appBaseConfig != null) {
+      return appBaseConfig.getNbDecimalDigitForUnitPrice();
     }
 
     return DEFAULT_NB_DECIMAL_DIGITS;
@@ -113,9 +124,9 @@ public class AppBaseServiceImpl extends AppServiceImpl implements AppBaseService
 
   @Override
   public int getGlobalTrackingLogPersistence() {
-    AppBase appBase = getAppBase();
-    if (appBase != null) {
-      return appBase.getGlobalTrackingLogPersistence();
+    AppBaseConfig appBaseConfig = getAppBaseConfig();
+    if (appBaseConfig != null) {
+      return appBaseConfig.getGlobalTrackingLogPersistence();
     }
     return DEFAULT_TRACKING_MONTHS_PERSISTENCE;
   }
@@ -123,10 +134,10 @@ public class AppBaseServiceImpl extends AppServiceImpl implements AppBaseService
   @Override
   public int getNbDecimalDigitForQty() {
 
-    AppBase appBase = getAppBase();
+    AppBaseConfig appBaseConfig = getAppBaseConfig();
 
-    if (appBase != null) {
-      return appBase.getNbDecimalDigitForQty();
+    if (appBaseConfig != null) {
+      return appBaseConfig.getNbDecimalDigitForQty();
     }
 
     return DEFAULT_NB_DECIMAL_DIGITS;
@@ -135,13 +146,11 @@ public class AppBaseServiceImpl extends AppServiceImpl implements AppBaseService
   @Override
   public String getDefaultPartnerLanguageCode() {
 
-    AppBase appBase = getAppBase();
+    AppBaseConfig appBaseConfig = getAppBaseConfig();
 
-    if (appBase != null) {
-      Language language = appBase.getDefaultPartnerLanguage();
-      if (language != null && !Strings.isNullOrEmpty(language.getCode())) {
-        return language.getCode();
-      }
+    if (appBaseConfig != null
+        && !Strings.isNullOrEmpty(appBaseConfig.getDefaultPartnerLanguageCode())) {
+      return appBaseConfig.getDefaultPartnerLanguageCode();
     }
     return DEFAULT_LOCALE;
   }
@@ -170,13 +179,13 @@ public class AppBaseServiceImpl extends AppServiceImpl implements AppBaseService
       return null;
     }
 
-    AppBase appBase = this.getAppBase();
+    AppBaseConfig appBaseConfig = this.getAppBaseConfig();
 
-    if (appBase != null) {
-      String timePref = appBase.getTimeLoggingPreferenceSelect();
+    if (appBaseConfig != null) {
+      String timePref = appBaseConfig.getTimeLoggingPreferenceSelect();
 
       if (timePref.equals("days")) {
-        duration = duration.multiply(appBase.getDailyWorkHours());
+        duration = duration.multiply(appBaseConfig.getDailyWorkHours());
       } else if (timePref.equals("minutes")) {
         duration = duration.divide(new BigDecimal(60), 2, RoundingMode.HALF_EVEN);
       }
@@ -192,12 +201,12 @@ public class AppBaseServiceImpl extends AppServiceImpl implements AppBaseService
       return null;
     }
 
-    AppBase appBase = getAppBase();
+    AppBaseConfig appBaseConfig = getAppBaseConfig();
 
-    if (appBase != null) {
-      String timePref = appBase.getTimeLoggingPreferenceSelect();
+    if (appBaseConfig != null) {
+      String timePref = appBaseConfig.getTimeLoggingPreferenceSelect();
 
-      BigDecimal dailyWorkHrs = appBase.getDailyWorkHours();
+      BigDecimal dailyWorkHrs = appBaseConfig.getDailyWorkHours();
 
       if (timePref.equals("days")
           && dailyWorkHrs != null
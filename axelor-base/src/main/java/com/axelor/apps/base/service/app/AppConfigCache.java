@@ -0,0 +1,129 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.app;
+
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.db.Query;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Singleton;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Versioned, immutable snapshot of the app records and of the configuration values derived from
+ * them.
+ *
+ * <p>Entries are computed on first use and added by replacing the whole snapshot, so that a read
+ * is a volatile field read and a map lookup. Saving an app record swaps in an empty snapshot of the
+ * next version, at flush time and again once the transaction is over; entries computed against an
+ * older version are dropped.
+ *
+ * <p>The snapshot is held by each node: values derived from an app record saved through another
+ * node are only refreshed once an app record is saved on this node or it restarts.
+ */
+@Singleton
+public class AppConfigCache {
+
+  private final AtomicReference<Snapshot> snapshot =
+      new AtomicReference<>(new Snapshot(0, ImmutableMap.of()));
+
+  /**
+   * Get a value of the snapshot, computing it on first use.
+   *
+   * @param key the key of the value, usually the class of the record it is derived from
+   * @param loader computes the value, may return null
+   * @return the value
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Supplier<T> loader) {
+    Snapshot current = snapshot.get();
+    Optional<Object> value = current.values.get(key);
+    if (value != null) {
+      return (T) value.orElse(null);
+    }
+
+    long loadVersion = current.version;
+    value = Optional.ofNullable(loader.get());
+    for (current = snapshot.get();
+        current.version == loadVersion && !current.values.containsKey(key);
+        current = snapshot.get()) {
+      Snapshot next =
+          new Snapshot(
+              loadVersion,
+              ImmutableMap.<Object, Optional<Object>>builder()
+                  .putAll(current.values)
+                  .put(key, value)
+                  .build());
+      if (snapshot.compareAndSet(current, next)) {
+        break;
+      }
+    }
+    return (T) value.orElse(null);
+  }
+
+  /**
+   * Get the single record of an app, reading its id from the snapshot. The record itself is read
+   * through the entity manager, without running a query.
+   *
+   * @param klass the class of the app
+   * @return the record, or null if the app isn't installed
+   */
+  public <T extends Model> T find(Class<T> klass) {
+    Long id = get(klass, () -> findId(klass));
+    if (id == null) {
+      return null;
+    }
+    T record = JPA.em().find(klass, id);
+    if (record == null) {
+      invalidate();
+      return Query.of(klass).fetchOne();
+    }
+    return record;
+  }
+
+  protected Long findId(Class<? extends Model> klass) {
+    Model record = Query.of(klass).fetchOne();
+    return record != null ? record.getId() : null;
+  }
+
+  public long getVersion() {
+    return snapshot.get().version;
+  }
+
+  public void invalidate() {
+    Snapshot current;
+    do {
+      current = snapshot.get();
+    } while (!snapshot.compareAndSet(
+        current, new Snapshot(current.version + 1, ImmutableMap.of())));
+  }
+
+  private static final class Snapshot {
+
+    private final long version;
+
+    private final ImmutableMap<Object, Optional<Object>> values;
+
+    private Snapshot(long version, ImmutableMap<Object, Optional<Object>> values) {
+      this.version = version;
+      this.values = values;
+    }
+  }
+}
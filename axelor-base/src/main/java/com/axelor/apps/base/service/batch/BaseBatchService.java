@@ -43,6 +43,8 @@ public class BaseBatchService extends AbstractBatchService {
     switch (baseBatch.getActionSelect()) {
       case BaseBatchRepository.ACTION_SYNCHRONIZE_CALENDARS:
         return synchronizeCalendars(baseBatch);
+      case BaseBatchRepository.ACTION_GEOCODE_ADDRESSES:
+        return geocodeAddresses(baseBatch);
       default:
         throw new AxelorException(
             TraceBackRepository.CATEGORY_INCONSISTENCY,
@@ -55,4 +57,8 @@ public class BaseBatchService extends AbstractBatchService {
   public Batch synchronizeCalendars(BaseBatch baseBatch) {
     return Beans.get(BatchCalendarSynchronization.class).run(baseBatch);
   }
+
+  public Batch geocodeAddresses(BaseBatch baseBatch) {
+    return Beans.get(BatchGeocodeAddresses.class).run(baseBatch);
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.batch;
+
+import com.axelor.apps.base.db.Address;
+import com.axelor.apps.base.db.repo.AddressRepository;
+import com.axelor.apps.base.exceptions.IExceptionMessage;
+import com.axelor.apps.base.service.GeocodingService;
+import com.axelor.apps.base.service.MapService;
+import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.db.JPA;
+import com.axelor.db.Query;
+import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Fill the coordinates of the addresses which have none. The addresses of a page are geocoded
+ * together, so that a same address is requested only once and the cached ones are not requested
+ * at all.
+ */
+public class BatchGeocodeAddresses extends AbstractBatch {
+
+  protected GeocodingService geocodingService;
+  protected MapService mapService;
+  protected AddressRepository addressRepository;
+
+  @Inject
+  public BatchGeocodeAddresses(
+      GeocodingService geocodingService,
+      MapService mapService,
+      AddressRepository addressRepository) {
+    this.geocodingService = geocodingService;
+    this.mapService = mapService;
+    this.addressRepository = addressRepository;
+  }
+
+  @Override
+  protected void process() {
+    if (!mapService.isConfigured()) {
+      addComment(I18n.get(IExceptionMessage.BASE_BATCH_GEOCODING_NOT_CONFIGURED));
+      return;
+    }
+
+    Query<Address> query =
+        addressRepository
+            .all()
+            .filter(
+                "self.fullName IS NOT NULL AND self.fullName != '' "
+                    + "AND (self.latit IS NULL OR self.longit IS NULL) "
+                    + "AND self.isValidLatLong = TRUE AND "
+                    + KEYSET_FILTER)
+            .order("id");
+
+    List<Address> addressList;
+
+    while (!(addressList = fetchNextPage(query)).isEmpty()) {
+      findBatch();
+
+      Map<String, Optional<Pair<BigDecimal, BigDecimal>>> latLongMap =
+          geocodingService.geocode(
+              addressList.stream().map(Address::getFullName).collect(Collectors.toSet()));
+
+      for (Address address : addressList) {
+        Optional<Pair<BigDecimal, BigDecimal>> latLong = latLongMap.get(address.getFullName());
+
+        // A failed request leaves the address as is, to be geocoded again by a next run.
+        if (latLong == null) {
+          incrementAnomaly();
+          continue;
+        }
+
+        updateLatLong(address.getId(), latLong.orElse(null));
+        if (latLong.isPresent()) {
+          incrementDone();
+        } else {
+          incrementAnomaly();
+        }
+      }
+
+      saveCursor(addressList.get(addressList.size() - 1));
+      JPA.clear();
+    }
+  }
+
+  /**
+   * Update the coordinates of an address.
+   *
+   * @param addressId
+   * @param latLong the found coordinates, {@code null} if the address is not found, the address
+   *     is then marked as not valid and skipped by the next runs
+   */
+  @Transactional
+  protected void updateLatLong(Long addressId, Pair<BigDecimal, BigDecimal> latLong) {
+    Address address = addressRepository.find(addressId);
+
+    if (latLong == null) {
+      address.setIsValidLatLong(false);
+    } else {
+      address.setIsValidLatLong(true);
+      address.setLatit(latLong.getLeft());
+      address.setLongit(latLong.getRight());
+    }
+
+    addressRepository.save(address);
+  }
+
+  @Override
+  protected void stop() {
+    super.stop();
+    addComment(
+        String.format(
+            I18n.get(IExceptionMessage.BASE_BATCH_GEOCODING_REPORT),
+            batch.getDone(),
+            batch.getAnomaly()));
+  }
+
+  @Override
+  protected boolean isResumable() {
+    return true;
+  }
+}
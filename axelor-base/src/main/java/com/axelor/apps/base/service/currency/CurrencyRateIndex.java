@@ -0,0 +1,251 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.currency;
+
+import com.axelor.apps.base.db.CurrencyConversionLine;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory index of the currency conversion lines of the application configuration.
+ *
+ * <p>Lines are grouped by currency pair and sorted on their start date, so that the rate applying
+ * at a date is found by binary search. Each line is also registered on the inverse pair with its
+ * inverse rate, used when no line exists in the requested direction. When several lines of a
+ * direction apply at a date, the first one of the configuration list wins, as with the previous
+ * sequential lookup.
+ *
+ * <p>The index is built on first use and dropped with {@link #invalidate()} when a conversion
+ * line changes. It is local to each node: a change committed by another node is only seen once the
+ * index of this node is dropped, by a change made on this node or by the currency conversion job.
+ */
+@Singleton
+public class CurrencyRateIndex {
+
+  protected static final int INVERSE_RATE_SCALE = 10;
+
+  protected AppBaseService appBaseService;
+
+  private volatile Map<String, PairRates> index;
+
+  /** Incremented on each invalidation, so that an index built meanwhile is not published. */
+  private final AtomicLong version = new AtomicLong();
+
+  @Inject
+  public CurrencyRateIndex(AppBaseService appBaseService) {
+    this.appBaseService = appBaseService;
+  }
+
+  /**
+   * Find the exchange rate between two currencies at a date.
+   *
+   * @param startCode code of the start currency
+   * @param endCode code of the end currency
+   * @param date the date of the conversion
+   * @return the rate, or null if no conversion line applies
+   */
+  public Rate find(String startCode, String endCode, LocalDate date) {
+    PairRates pairRates = getIndex().get(getKey(startCode, endCode));
+    if (pairRates == null) {
+      return null;
+    }
+    Rate rate = pairRates.direct.find(date);
+    return rate != null ? rate : pairRates.inverse.find(date);
+  }
+
+  public void invalidate() {
+    version.incrementAndGet();
+    index = null;
+  }
+
+  protected Map<String, PairRates> getIndex() {
+    Map<String, PairRates> current = index;
+    if (current == null) {
+      synchronized (this) {
+        current = index;
+        if (current == null) {
+          long buildVersion = version.get();
+          current = build();
+          if (buildVersion == version.get()) {
+            index = current;
+          }
+        }
+      }
+    }
+    return current;
+  }
+
+  protected Map<String, PairRates> build() {
+    Map<String, PairRates> newIndex = new HashMap<>();
+    List<CurrencyConversionLine> currencyConversionLineList =
+        appBaseService.getCurrencyConfigurationLineList();
+
+    if (currencyConversionLineList == null) {
+      return newIndex;
+    }
+
+    for (int position = 0; position < currencyConversionLineList.size(); position++) {
+      CurrencyConversionLine ccl = currencyConversionLineList.get(position);
+      String startCode = ccl.getStartCurrency().getCode();
+      String endCode = ccl.getEndCurrency().getCode();
+      BigDecimal exchangeRate = ccl.getExchangeRate();
+      BigDecimal inverseRate =
+          exchangeRate == null || exchangeRate.signum() == 0
+              ? exchangeRate
+              : BigDecimal.ONE.divide(exchangeRate, INVERSE_RATE_SCALE, RoundingMode.HALF_EVEN);
+
+      newIndex
+          .computeIfAbsent(getKey(startCode, endCode), key -> new PairRates())
+          .direct
+          .add(new Rate(ccl.getFromDate(), ccl.getToDate(), exchangeRate, position));
+      newIndex
+          .computeIfAbsent(getKey(endCode, startCode), key -> new PairRates())
+          .inverse
+          .add(new Rate(ccl.getFromDate(), ccl.getToDate(), inverseRate, position));
+    }
+
+    newIndex.values().forEach(PairRates::sort);
+
+    return newIndex;
+  }
+
+  protected String getKey(String startCode, String endCode) {
+    return startCode + "/" + endCode;
+  }
+
+  protected static class PairRates {
+
+    protected final RateList direct = new RateList();
+
+    protected final RateList inverse = new RateList();
+
+    protected void sort() {
+      direct.sort();
+      inverse.sort();
+    }
+  }
+
+  protected static class RateList {
+
+    private final List<Rate> rates = new ArrayList<>();
+
+    /** Greatest end date of the rates up to each position, null when one of them is open. */
+    private LocalDate[] maxToDates = new LocalDate[0];
+
+    protected void add(Rate rate) {
+      rates.add(rate);
+    }
+
+    protected void sort() {
+      rates.sort(Comparator.comparing(Rate::getFromDate));
+
+      maxToDates = new LocalDate[rates.size()];
+      LocalDate maxToDate = LocalDate.MIN;
+      for (int i = 0; i < rates.size(); i++) {
+        LocalDate toDate = rates.get(i).getToDate();
+        if (maxToDate != null && (toDate == null || toDate.isAfter(maxToDate))) {
+          maxToDate = toDate;
+        }
+        maxToDates[i] = maxToDate;
+      }
+    }
+
+    /**
+     * Search the last rate starting before the date, then go back while a previous range can
+     * still cover the date. When ranges overlap, the rate of the first line in the configuration
+     * list wins.
+     */
+    protected Rate find(LocalDate date) {
+      int low = 0;
+      int high = rates.size() - 1;
+      int last = -1;
+
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        if (rates.get(middle).getFromDate().isAfter(date)) {
+          high = middle - 1;
+        } else {
+          last = middle;
+          low = middle + 1;
+        }
+      }
+
+      Rate found = null;
+
+      for (int i = last; i >= 0 && (maxToDates[i] == null || !maxToDates[i].isBefore(date)); i--) {
+        Rate rate = rates.get(i);
+        if ((rate.getToDate() == null || !rate.getToDate().isBefore(date))
+            && (found == null || rate.getPosition() < found.getPosition())) {
+          found = rate;
+        }
+      }
+
+      return found;
+    }
+  }
+
+  public static class Rate {
+
+    private final LocalDate fromDate;
+
+    private final LocalDate toDate;
+
+    private final BigDecimal exchangeRate;
+
+    private final int position;
+
+    /**
+     * @param fromDate start date of the conversion line
+     * @param toDate end date of the conversion line, can be null
+     * @param exchangeRate the rate
+     * @param position position of the conversion line in the configuration list
+     */
+    public Rate(LocalDate fromDate, LocalDate toDate, BigDecimal exchangeRate, int position) {
+      this.fromDate = fromDate;
+      this.toDate = toDate;
+      this.exchangeRate = exchangeRate;
+      this.position = position;
+    }
+
+    public LocalDate getFromDate() {
+      return fromDate;
+    }
+
+    public LocalDate getToDate() {
+      return toDate;
+    }
+
+    public BigDecimal getExchangeRate() {
+      return exchangeRate;
+    }
+
+    public int getPosition() {
+      return position;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.imports;
+
+import com.axelor.apps.base.db.ImportHistory;
+import com.axelor.meta.db.MetaFile;
+import java.io.IOException;
+
+public interface CityBulkImportService {
+
+  /**
+   * Import the cities of a geonames city file, as produced by {@link
+   * ImportCityService#downloadZip(String)}.
+   *
+   * <p>The file is read as a stream and written by batches. Cities already in the database, found
+   * by country, zip and name, are only updated when their department, canton or population
+   * changed, so importing the same country again only applies the differences.
+   *
+   * @param dataFile the tab separated city file
+   * @return the import history, with the import log
+   * @throws IOException
+   */
+  public ImportHistory importCities(MetaFile dataFile) throws IOException;
+}
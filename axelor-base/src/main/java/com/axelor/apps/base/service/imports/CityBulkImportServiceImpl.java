@@ -0,0 +1,475 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.imports;
+
+import com.axelor.app.AppSettings;
+import com.axelor.apps.base.db.Canton;
+import com.axelor.apps.base.db.City;
+import com.axelor.apps.base.db.Country;
+import com.axelor.apps.base.db.Department;
+import com.axelor.apps.base.db.ImportHistory;
+import com.axelor.apps.base.db.Region;
+import com.axelor.auth.AuthUtils;
+import com.axelor.db.JPA;
+import com.axelor.exception.service.TraceBackService;
+import com.axelor.meta.MetaFiles;
+import com.axelor.meta.db.MetaFile;
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.persistence.EntityManager;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CityBulkImportServiceImpl implements CityBulkImportService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final String SEPARATOR = "\t";
+
+  protected static final int COLUMN_COUNT = 12;
+
+  protected static final int COUNTRY = 0;
+  protected static final int ZIP = 1;
+  protected static final int NAME = 2;
+  protected static final int REGION_NAME = 3;
+  protected static final int REGION_CODE = 4;
+  protected static final int DEPARTMENT_NAME = 5;
+  protected static final int DEPARTMENT_CODE = 6;
+  protected static final int CANTON_NAME = 7;
+  protected static final int CANTON_CODE = 8;
+  protected static final int POPULATION = 11;
+
+  protected final int batchSize = AppSettings.get().getInt("city.import.batch.size", 1000);
+
+  @Inject protected MetaFiles metaFiles;
+
+  @Override
+  public ImportHistory importCities(MetaFile dataFile) throws IOException {
+
+    long startTime = System.currentTimeMillis();
+    LoadContext load = new LoadContext();
+    this.loadReferences(load);
+
+    try (BufferedReader reader =
+        Files.newBufferedReader(MetaFiles.getPath(dataFile), StandardCharsets.UTF_8)) {
+
+      List<String[]> batch = new ArrayList<>(batchSize);
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        String[] values = line.split(SEPARATOR, -1);
+        if (this.isValid(load, values, lineNumber)) {
+          batch.add(values);
+        }
+        if (batch.size() == batchSize) {
+          this.importBatch(load, batch);
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty()) {
+        this.importBatch(load, batch);
+      }
+    }
+
+    this.analyze();
+
+    load.log.append(
+        String.format(
+            "Cities created: %d, updated: %d, unchanged: %d, skipped: %d, failed: %d%n",
+            load.created, load.updated, load.unchanged, load.skipped, load.failed));
+    LOG.info(
+        "City import: {} created, {} updated, {} unchanged in {} ms",
+        load.created,
+        load.updated,
+        load.unchanged,
+        System.currentTimeMillis() - startTime);
+
+    return this.createImportHistory(dataFile, load);
+  }
+
+  protected boolean isValid(LoadContext load, String[] values, int lineNumber) {
+    if (values.length < COLUMN_COUNT) {
+      if (values.length > 1) {
+        load.skip(lineNumber, "wrong number of columns");
+      }
+      return false;
+    }
+    if (value(values, NAME) == null) {
+      load.skip(lineNumber, "no city name");
+      return false;
+    }
+    if (!load.countries.containsKey(value(values, COUNTRY))) {
+      load.skip(lineNumber, "unknown country " + values[COUNTRY]);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Import a batch of rows in its own transaction. On failure the batch is rolled back and the
+   * reference maps reloaded, as they may hold ids of rolled back records. The cities seen by the
+   * previous batches stay marked.
+   */
+  protected void importBatch(LoadContext load, List<String[]> batch) {
+    LoadContext.Counts counts = load.counts();
+    try {
+      JPA.runInTransaction(
+          () -> {
+            EntityManager em = JPA.em();
+            Session session = em.unwrap(Session.class);
+            Integer jdbcBatchSize = session.getJdbcBatchSize();
+            session.setJdbcBatchSize(batchSize);
+            try {
+              for (String[] values : batch) {
+                this.importRow(load, values);
+              }
+              em.flush();
+            } finally {
+              session.setJdbcBatchSize(jdbcBatchSize);
+            }
+          });
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+      load.restore(counts);
+      load.failed += batch.size();
+      load.log.append(
+          String.format(
+              "Batch of %d cities not imported: %s%n",
+              batch.size(), Strings.nullToEmpty(e.getMessage())));
+      this.loadReferences(load);
+    } finally {
+      JPA.clear();
+    }
+  }
+
+  protected void importRow(LoadContext load, String[] values) {
+
+    EntityManager em = JPA.em();
+    Long countryId = load.countries.get(value(values, COUNTRY));
+    Long regionId = this.getRegion(load, countryId, values);
+    Long departmentId = this.getDepartment(load, regionId, values);
+    Long cantonId = this.getCanton(load, departmentId, values);
+    Integer population = this.getPopulation(values);
+
+    Map<String, CityState> cities = this.getCities(load, countryId);
+    String key = cityKey(value(values, ZIP), value(values, NAME));
+    CityState state = cities.get(key);
+
+    if (!load.markSeen(countryId + "|" + key)) {
+      // same zip and name twice in the file, the first row wins
+      load.skipped++;
+
+    } else if (state == null) {
+      City city = new City();
+      city.setName(value(values, NAME));
+      city.setZip(value(values, ZIP));
+      city.setCountry(em.getReference(Country.class, countryId));
+      this.setCityValues(em, city, departmentId, cantonId, population);
+      em.persist(city);
+      cities.put(key, new CityState(city.getId(), departmentId, cantonId, population));
+      load.created++;
+
+    } else if (state.matches(departmentId, cantonId, population)) {
+      load.unchanged++;
+
+    } else {
+      City city = em.find(City.class, state.id);
+      this.setCityValues(em, city, departmentId, cantonId, population);
+      state.departmentId = departmentId;
+      state.cantonId = cantonId;
+      state.population = population;
+      load.updated++;
+    }
+  }
+
+  protected void setCityValues(
+      EntityManager em, City city, Long departmentId, Long cantonId, Integer population) {
+    city.setDepartment(
+        departmentId != null ? em.getReference(Department.class, departmentId) : null);
+    city.setCanton(cantonId != null ? em.getReference(Canton.class, cantonId) : null);
+    city.setNbInhCommune(population);
+  }
+
+  protected Long getRegion(LoadContext load, Long countryId, String[] values) {
+    String code = value(values, REGION_CODE);
+    String name = value(values, REGION_NAME);
+    if (code == null || name == null) {
+      return null;
+    }
+    return load.regions.computeIfAbsent(
+        countryId + "|" + code,
+        key -> {
+          EntityManager em = JPA.em();
+          Region region = new Region();
+          region.setCode(code);
+          region.setName(name);
+          region.setCountry(em.getReference(Country.class, countryId));
+          em.persist(region);
+          return region.getId();
+        });
+  }
+
+  protected Long getDepartment(LoadContext load, Long regionId, String[] values) {
+    String code = value(values, DEPARTMENT_CODE);
+    String name = value(values, DEPARTMENT_NAME);
+    if (code == null || name == null) {
+      return null;
+    }
+    return load.departments.computeIfAbsent(
+        code + "|" + name,
+        key -> {
+          EntityManager em = JPA.em();
+          Department department = new Department();
+          department.setCode(code);
+          department.setName(name);
+          department.setRegion(regionId != null ? em.getReference(Region.class, regionId) : null);
+          em.persist(department);
+          return department.getId();
+        });
+  }
+
+  protected Long getCanton(LoadContext load, Long departmentId, String[] values) {
+    String code = value(values, CANTON_CODE);
+    String name = value(values, CANTON_NAME);
+    if (code == null || name == null) {
+      return null;
+    }
+    return load.cantons.computeIfAbsent(
+        code,
+        key -> {
+          EntityManager em = JPA.em();
+          Canton canton = new Canton();
+          canton.setCode(code);
+          canton.setName(name);
+          canton.setDepartment(
+              departmentId != null ? em.getReference(Department.class, departmentId) : null);
+          em.persist(canton);
+          return canton.getId();
+        });
+  }
+
+  protected Integer getPopulation(String[] values) {
+    String population = value(values, POPULATION);
+    try {
+      return population != null ? Integer.valueOf(population) : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /** The cities of a country, loaded once with a single query when the country is first met. */
+  protected Map<String, CityState> getCities(LoadContext load, Long countryId) {
+    Map<String, CityState> cities = load.cities.get(countryId);
+    if (cities != null) {
+      return cities;
+    }
+
+    cities = new HashMap<>();
+    List<Object[]> rows =
+        JPA.em()
+            .createQuery(
+                "SELECT self.zip, self.name, self.id, department.id, canton.id, self.nbInhCommune "
+                    + "FROM City self "
+                    + "LEFT JOIN self.department department "
+                    + "LEFT JOIN self.canton canton "
+                    + "WHERE self.country.id = :countryId",
+                Object[].class)
+            .setParameter("countryId", countryId)
+            .getResultList();
+    for (Object[] row : rows) {
+      cities.putIfAbsent(
+          cityKey((String) row[0], (String) row[1]),
+          new CityState((Long) row[2], (Long) row[3], (Long) row[4], (Integer) row[5]));
+    }
+    load.cities.put(countryId, cities);
+    return cities;
+  }
+
+  protected void loadReferences(LoadContext load) {
+    EntityManager em = JPA.em();
+    load.countries.clear();
+    load.regions.clear();
+    load.departments.clear();
+    load.cantons.clear();
+    load.cities.clear();
+
+    for (Object[] row :
+        em.createQuery(
+                "SELECT self.alpha2Code, self.id FROM Country self "
+                    + "WHERE self.alpha2Code IS NOT NULL",
+                Object[].class)
+            .getResultList()) {
+      load.countries.putIfAbsent((String) row[0], (Long) row[1]);
+    }
+    for (Object[] row :
+        em.createQuery(
+                "SELECT self.country.id, self.code, self.id FROM Region self", Object[].class)
+            .getResultList()) {
+      load.regions.putIfAbsent(row[0] + "|" + row[1], (Long) row[2]);
+    }
+    for (Object[] row :
+        em.createQuery("SELECT self.code, self.name, self.id FROM Department self", Object[].class)
+            .getResultList()) {
+      load.departments.putIfAbsent(row[0] + "|" + row[1], (Long) row[2]);
+    }
+    for (Object[] row :
+        em.createQuery("SELECT self.code, self.id FROM Canton self", Object[].class)
+            .getResultList()) {
+      load.cantons.putIfAbsent((String) row[0], (Long) row[1]);
+    }
+  }
+
+  /** Refresh the planner statistics of the city table after a large load. */
+  protected void analyze() {
+    if (!AppSettings.get().get("db.default.url", "").startsWith("jdbc:postgresql")) {
+      return;
+    }
+    try {
+      JPA.runInTransaction(() -> JPA.em().createNativeQuery("ANALYZE base_city").executeUpdate());
+    } catch (Exception e) {
+      LOG.warn("Unable to analyze base_city: {}", e.getMessage());
+    }
+  }
+
+  protected ImportHistory createImportHistory(MetaFile dataFile, LoadContext load)
+      throws IOException {
+    ImportHistory importHistory = new ImportHistory(AuthUtils.getUser(), dataFile);
+    MetaFile logMetaFile =
+        metaFiles.upload(
+            new ByteArrayInputStream(load.log.toString().getBytes(StandardCharsets.UTF_8)),
+            "importLog-" + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()) + ".log");
+    importHistory.setLogMetaFile(logMetaFile);
+    return importHistory;
+  }
+
+  /** The value of a column, null when empty or written as "null" by the file conversion. */
+  protected static String value(String[] values, int column) {
+    String value = values[column].trim();
+    return value.isEmpty() || "null".equals(value) ? null : value;
+  }
+
+  protected static String cityKey(String zip, String name) {
+    return Strings.nullToEmpty(zip) + "|" + Strings.nullToEmpty(name);
+  }
+
+  /** The state of an import: reference ids by natural key, counters and log. */
+  protected static class LoadContext {
+
+    protected final Map<String, Long> countries = new HashMap<>();
+    protected final Map<String, Long> regions = new HashMap<>();
+    protected final Map<String, Long> departments = new HashMap<>();
+    protected final Map<String, Long> cantons = new HashMap<>();
+    protected final Map<Long, Map<String, CityState>> cities = new HashMap<>();
+
+    /** Cities already met in the file, kept apart from the entity cache which may be reloaded. */
+    protected final Set<String> seenCities = new HashSet<>();
+
+    /** Cities first met in the current batch, unmarked if it is rolled back. */
+    protected final List<String> batchSeenCities = new ArrayList<>();
+
+    protected final StringBuilder log = new StringBuilder();
+
+    protected int created;
+    protected int updated;
+    protected int unchanged;
+    protected int skipped;
+    protected int failed;
+
+    protected boolean markSeen(String cityKey) {
+      if (!seenCities.add(cityKey)) {
+        return false;
+      }
+      batchSeenCities.add(cityKey);
+      return true;
+    }
+
+    protected void skip(int lineNumber, String reason) {
+      skipped++;
+      log.append(String.format("Line %d skipped: %s%n", lineNumber, reason));
+    }
+
+    /** Start a batch, returning the counters to restore if it fails. */
+    protected Counts counts() {
+      batchSeenCities.clear();
+      return new Counts(created, updated, unchanged, skipped);
+    }
+
+    protected void restore(Counts counts) {
+      seenCities.removeAll(batchSeenCities);
+      batchSeenCities.clear();
+      created = counts.created;
+      updated = counts.updated;
+      unchanged = counts.unchanged;
+      skipped = counts.skipped;
+    }
+
+    protected static class Counts {
+
+      protected final int created;
+      protected final int updated;
+      protected final int unchanged;
+      protected final int skipped;
+
+      protected Counts(int created, int updated, int unchanged, int skipped) {
+        this.created = created;
+        this.updated = updated;
+        this.unchanged = unchanged;
+        this.skipped = skipped;
+      }
+    }
+  }
+
+  /** The values of an existing city compared to decide whether a row changes it. */
+  protected static class CityState {
+
+    protected final Long id;
+    protected Long departmentId;
+    protected Long cantonId;
+    protected Integer population;
+
+    protected CityState(Long id, Long departmentId, Long cantonId, Integer population) {
+      this.id = id;
+      this.departmentId = departmentId;
+      this.cantonId = cantonId;
+      this.population = population;
+    }
+
+    protected boolean matches(Long departmentId, Long cantonId, Integer population) {
+      return Objects.equals(this.departmentId, departmentId)
+          && Objects.equals(this.cantonId, cantonId)
+          && Objects.equals(this.population, population);
+    }
+  }
+}
@@ -32,6 +32,7 @@ import com.axelor.meta.db.MetaFile;
 import com.google.common.io.Files;
 import com.google.inject.Inject;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -39,6 +40,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
 import java.net.UnknownHostException;
@@ -62,6 +64,10 @@ public class ImportCityServiceImpl implements ImportCityService {
 
   @Inject private MetaFiles metaFiles;
 
+  @Inject private CityBulkImportService cityBulkImportService;
+
+  protected static final String GEONAMES = "geonames";
+
   protected static final String CITYTEXTFILE = "cityTextFile.txt";
 
   protected static final String FEATURE_CLASS_FOR_CANTON_REGION_DEPARTMENT = "A";
@@ -91,6 +97,9 @@ public class ImportCityServiceImpl implements ImportCityService {
       if (dataFile.getFileType().equals("application/zip")) {
         dataFile = this.extractCityZip(dataFile);
       }
+      if (GEONAMES.equals(typeSelect)) {
+        return cityBulkImportService.importCities(dataFile);
+      }
       File configXmlFile = this.getConfigXmlFile(typeSelect);
       File dataCsvFile = this.getDataCsvFile(dataFile);
 
@@ -229,7 +238,7 @@ public class ImportCityServiceImpl implements ImportCityService {
       LOG.debug("path for downloaded zip file : " + downloadFile.getPath());
 
       try (ZipFile zipFile = new ZipFile(downloadFile.getPath());
-          FileWriter writer = new FileWriter(cityTextFile)) {
+          BufferedWriter writer = new BufferedWriter(new FileWriter(cityTextFile))) {
 
         Enumeration<? extends ZipEntry> entries = zipFile.entries();
 
@@ -240,12 +249,8 @@ public class ImportCityServiceImpl implements ImportCityService {
             BufferedReader stream =
                 new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry)));
 
-            StringBuilder buffer = this.extractDataFromDownloadedFile(stream);
-
-            cityTextFile.createNewFile();
-
+            this.extractDataFromDownloadedFile(stream, writer);
             writer.flush();
-            writer.write(buffer.toString().replace("\"", ""));
 
             LOG.debug("Length of file : " + cityTextFile.length());
             break;
@@ -299,8 +304,8 @@ public class ImportCityServiceImpl implements ImportCityService {
     return metaFile;
   }
 
-  private StringBuilder extractDataFromDownloadedFile(BufferedReader downloadedCityFileStream)
-      throws IOException {
+  private void extractDataFromDownloadedFile(
+      BufferedReader downloadedCityFileStream, Writer writer) throws IOException {
 
     HashMap<String, String> regionMap = new HashMap<>();
     HashMap<String, String> departmentMap = new HashMap<>();
@@ -349,16 +354,16 @@ public class ImportCityServiceImpl implements ImportCityService {
       }
     }
 
-    return this.createCityFile(regionMap, departmentMap, cantonMap, cityList);
+    this.createCityFile(regionMap, departmentMap, cantonMap, cityList, writer);
   }
 
-  private StringBuilder createCityFile(
+  private void createCityFile(
       HashMap<String, String> regionMap,
       HashMap<String, String> departmentMap,
       HashMap<String, String> cantonMap,
-      List<String> cityList) {
-
-    StringBuilder buffer = new StringBuilder();
+      List<String> cityList,
+      Writer writer)
+      throws IOException {
 
     Set<String> checkDuplicateCitySet = new HashSet<>();
 
@@ -366,24 +371,23 @@ public class ImportCityServiceImpl implements ImportCityService {
       String[] values = value.split(SEPERATOR);
 
       if (checkDuplicateCitySet.add(values[1].toLowerCase().concat(values[2].toLowerCase()))) {
-        buffer.append(
+        writer.write(
             String.format(
-                "%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s%n",
-                values[0],
-                values[1],
-                values[2],
-                regionMap.get(values[3]),
-                values[3],
-                departmentMap.get(values[4]),
-                values[4],
-                cantonMap.get(values[5]),
-                values[5],
-                values[6],
-                values[7],
-                values[8]));
+                    "%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s%n",
+                    values[0],
+                    values[1],
+                    values[2],
+                    regionMap.get(values[3]),
+                    values[3],
+                    departmentMap.get(values[4]),
+                    values[4],
+                    cantonMap.get(values[5]),
+                    values[5],
+                    values[6],
+                    values[7],
+                    values[8])
+                .replace("\"", ""));
       }
     }
-
-    return buffer;
   }
 }
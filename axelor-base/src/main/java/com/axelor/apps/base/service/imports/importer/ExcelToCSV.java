@@ -22,7 +22,6 @@ import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
@@ -33,12 +32,13 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,25 +47,28 @@ public class ExcelToCSV {
 
   public List<Map> generateExcelSheets(File file) throws IOException {
     List<Map> newSheets = new ArrayList<>();
-    Object sheet = new Object();
 
-    FileInputStream inputStream;
-    Workbook workBook = null;
+    // Only the workbook part is needed for the sheet names, the sheets themselves are not parsed.
+    OPCPackage pkg = null;
 
     try {
 
-      inputStream = new FileInputStream(file);
-      workBook = new XSSFWorkbook(inputStream);
-
-      for (int i = 0; i < workBook.getNumberOfSheets(); i++) {
-        sheet = workBook.getSheetAt(i).getSheetName();
+      pkg = OPCPackage.open(file, PackageAccess.READ);
+      XSSFReader.SheetIterator sheets =
+          (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+      while (sheets.hasNext()) {
+        sheets.next().close();
         Map<String, Object> newSheet = new HashMap<>();
-        newSheet.put("name", sheet);
+        newSheet.put("name", sheets.getSheetName());
         newSheets.add(newSheet);
       }
 
     } catch (Exception e) {
       LOG.error(e.getMessage());
+    } finally {
+      if (pkg != null) {
+        pkg.revert();
+      }
     }
 
     return newSheets;
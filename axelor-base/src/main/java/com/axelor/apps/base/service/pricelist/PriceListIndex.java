@@ -0,0 +1,259 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.pricelist;
+
+import com.axelor.apps.base.db.PriceListLine;
+import com.axelor.apps.base.db.repo.PriceListLineRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In memory index of price list lines and of the default price list of partners.
+ *
+ * <p>The lines of a price list are loaded on first use and grouped by product and by product
+ * category, sorted on their minimum quantity, so that the lines applying to a quantity are found
+ * without querying the database. The default price lists of a partner are cached by partner, then
+ * by type and date.
+ *
+ * <p>Entity listeners drop the entries depending on a price list, a price list line, a partner
+ * price list or a partner when it changes. The index is held by each node.
+ */
+@Singleton
+public class PriceListIndex {
+
+  /** Number of partners whose default price lists are kept. */
+  protected static final int DEFAULT_PRICE_LIST_CACHE_SIZE = 10000;
+
+  protected PriceListLineRepository priceListLineRepo;
+
+  private final Map<Long, PriceListLines> lineIndex = new ConcurrentHashMap<>();
+
+  /**
+   * Default price lists of each partner. An invalidation drops the map of the partner, so that a
+   * price list computed meanwhile is only kept in the dropped map.
+   */
+  private final Cache<Long, Map<DefaultPriceListKey, Optional<Long>>> defaultPriceLists =
+      CacheBuilder.newBuilder().maximumSize(DEFAULT_PRICE_LIST_CACHE_SIZE).build();
+
+  /** Incremented on each price list invalidation, so that lines loaded meanwhile aren't kept. */
+  private final AtomicLong generation = new AtomicLong();
+
+  @Inject
+  public PriceListIndex(PriceListLineRepository priceListLineRepo) {
+    this.priceListLineRepo = priceListLineRepo;
+  }
+
+  /**
+   * Find the lines of a price list applying to a product and a quantity. Lines of the product are
+   * used if any, otherwise lines of its category.
+   *
+   * @param priceListId id of the price list
+   * @param productId id of the product
+   * @param productCategoryId id of the category of the product, may be null
+   * @param qty the quantity
+   * @return the applicable lines, by decreasing minimum quantity
+   */
+  public List<Line> findLines(
+      Long priceListId, Long productId, Long productCategoryId, BigDecimal qty) {
+    PriceListLines lines = getLines(priceListId);
+    List<Line> result = lines.find(lines.byProduct.get(productId), qty);
+    if (result.isEmpty() && productCategoryId != null) {
+      result = lines.find(lines.byProductCategory.get(productCategoryId), qty);
+    }
+    return result;
+  }
+
+  /**
+   * Get the default price list of a partner at a date, computing it on first use.
+   *
+   * @param partnerId id of the partner
+   * @param priceListTypeSelect sale or purchase
+   * @param date the date at which the price list applies
+   * @param loader computes the id of the price list, or null if there is none
+   * @return the id of the default price list, or null
+   */
+  public Long getDefaultPriceListId(
+      Long partnerId, int priceListTypeSelect, LocalDate date, Supplier<Long> loader) {
+    Map<DefaultPriceListKey, Optional<Long>> partnerPriceLists =
+        defaultPriceLists.asMap().computeIfAbsent(partnerId, id -> new ConcurrentHashMap<>());
+    DefaultPriceListKey key = new DefaultPriceListKey(priceListTypeSelect, date);
+    Optional<Long> priceListId = partnerPriceLists.get(key);
+    if (priceListId == null) {
+      priceListId = Optional.ofNullable(loader.get());
+      partnerPriceLists.put(key, priceListId);
+    }
+    return priceListId.orElse(null);
+  }
+
+  public void invalidatePriceList(Long priceListId) {
+    generation.incrementAndGet();
+    if (priceListId == null) {
+      lineIndex.clear();
+    } else {
+      lineIndex.remove(priceListId);
+    }
+    defaultPriceLists.invalidateAll();
+  }
+
+  public void invalidatePartner(Long partnerId) {
+    defaultPriceLists.invalidate(partnerId);
+  }
+
+  public void invalidateDefaultPriceLists() {
+    defaultPriceLists.invalidateAll();
+  }
+
+  protected PriceListLines getLines(Long priceListId) {
+    PriceListLines lines = lineIndex.get(priceListId);
+    if (lines == null) {
+      long currentGeneration = generation.get();
+      lines =
+          build(priceListLineRepo.all().filter("self.priceList.id = ?1", priceListId).fetch());
+      if (currentGeneration == generation.get()) {
+        lineIndex.putIfAbsent(priceListId, lines);
+      }
+    }
+    return lines;
+  }
+
+  protected PriceListLines build(List<PriceListLine> priceListLineList) {
+    PriceListLines lines = new PriceListLines();
+    for (PriceListLine priceListLine : priceListLineList) {
+      if (priceListLine.getMinQty() == null) {
+        continue;
+      }
+      Line line = new Line(priceListLine);
+      if (priceListLine.getProduct() != null) {
+        lines
+            .byProduct
+            .computeIfAbsent(priceListLine.getProduct().getId(), id -> new ArrayList<>())
+            .add(line);
+      }
+      if (priceListLine.getProductCategory() != null) {
+        lines
+            .byProductCategory
+            .computeIfAbsent(priceListLine.getProductCategory().getId(), id -> new ArrayList<>())
+            .add(line);
+      }
+    }
+    Comparator<Line> byMinQtyDesc = Comparator.comparing(Line::getMinQty).reversed();
+    lines.byProduct.values().forEach(list -> list.sort(byMinQtyDesc));
+    lines.byProductCategory.values().forEach(list -> list.sort(byMinQtyDesc));
+    return lines;
+  }
+
+  protected static class PriceListLines {
+
+    protected final Map<Long, List<Line>> byProduct = new HashMap<>();
+
+    protected final Map<Long, List<Line>> byProductCategory = new HashMap<>();
+
+    /** Lines are sorted by decreasing minimum quantity, the applicable ones are a suffix. */
+    protected List<Line> find(List<Line> lines, BigDecimal qty) {
+      if (lines == null || qty == null) {
+        return Collections.emptyList();
+      }
+      int start = 0;
+      while (start < lines.size() && lines.get(start).getMinQty().compareTo(qty) > 0) {
+        start++;
+      }
+      return lines.subList(start, lines.size());
+    }
+  }
+
+  /** Values of a price list line used to compute prices. */
+  public static class Line {
+
+    private final Long id;
+    private final BigDecimal minQty;
+    private final int typeSelect;
+    private final int amountTypeSelect;
+    private final BigDecimal amount;
+
+    protected Line(PriceListLine priceListLine) {
+      this.id = priceListLine.getId();
+      this.minQty = priceListLine.getMinQty();
+      this.typeSelect = priceListLine.getTypeSelect();
+      this.amountTypeSelect = priceListLine.getAmountTypeSelect();
+      this.amount = priceListLine.getAmount();
+    }
+
+    public Long getId() {
+      return id;
+    }
+
+    public BigDecimal getMinQty() {
+      return minQty;
+    }
+
+    public int getTypeSelect() {
+      return typeSelect;
+    }
+
+    public int getAmountTypeSelect() {
+      return amountTypeSelect;
+    }
+
+    public BigDecimal getAmount() {
+      return amount;
+    }
+  }
+
+  private static final class DefaultPriceListKey {
+
+    private final int priceListTypeSelect;
+    private final LocalDate date;
+
+    private DefaultPriceListKey(int priceListTypeSelect, LocalDate date) {
+      this.priceListTypeSelect = priceListTypeSelect;
+      this.date = date;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof DefaultPriceListKey)) {
+        return false;
+      }
+      DefaultPriceListKey other = (DefaultPriceListKey) obj;
+      return priceListTypeSelect == other.priceListTypeSelect && Objects.equals(date, other.date);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(priceListTypeSelect, date);
+    }
+  }
+}
@@ -100,4 +100,9 @@ public class CSVReaderService implements DataReaderService {
 
     return sheets;
   }
+
+  @Override
+  public void close() {
+    totalRows = new ArrayList<>();
+  }
 }
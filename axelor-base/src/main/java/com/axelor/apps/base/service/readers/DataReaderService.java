@@ -53,4 +53,7 @@ public interface DataReaderService {
    * @return
    */
   public String[] getSheetNames();
+
+  /** Release the resources held on the input file. */
+  public void close();
 }
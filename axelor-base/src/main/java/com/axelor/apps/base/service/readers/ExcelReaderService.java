@@ -21,19 +21,61 @@ import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaFile;
 import com.google.common.base.Strings;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import org.apache.poi.ss.usermodel.Cell;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
 import org.apache.poi.ss.usermodel.DataFormatter;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 
+/**
+ * Streaming reader of xlsx files.
+ *
+ * <p>Sheets are pulled row by row from their XML part instead of being loaded as a workbook, so
+ * memory does not grow with the number of rows. Callers read rows in ascending order; the first
+ * rows of each sheet (headers and configuration) are kept so that they can be read again, and
+ * going back further reopens the sheet.
+ */
 public class ExcelReaderService implements DataReaderService {
 
-  private XSSFWorkbook book = null;
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /** Number of rows of each sheet kept in memory once read. */
+  protected static final int HEAD_ROW_COUNT = 100;
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+  private OPCPackage pkg = null;
+  private XSSFReader xssfReader = null;
+  private StylesTable styles = null;
+  private ReadOnlySharedStringsTable sharedStrings = null;
   private DataFormatter formatter = null;
 
+  private String[] sheetNames = null;
+  private Map<String, Map<Integer, String[]>> headRows = new HashMap<>();
+  private Map<String, Integer> totalLines = new HashMap<>();
+  private SheetCursor cursor = null;
+
   @Override
   public boolean initialize(MetaFile input, String separator) {
 
@@ -41,20 +83,34 @@ public class ExcelReaderService implements DataReaderService {
       return false;
     }
 
-    File inFile = MetaFiles.getPath(input).toFile();
+    return initialize(MetaFiles.getPath(input).toFile());
+  }
+
+  protected boolean initialize(File inFile) {
+
     if (!inFile.exists()) {
       return false;
     }
 
     try {
-      FileInputStream inSteam = new FileInputStream(inFile);
-      book = new XSSFWorkbook(inSteam);
-      if (book.getNumberOfSheets() == 0) {
+      pkg = OPCPackage.open(inFile, PackageAccess.READ);
+      xssfReader = new XSSFReader(pkg);
+      styles = xssfReader.getStylesTable();
+      formatter = new DataFormatter();
+
+      List<String> names = new ArrayList<>();
+      XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+      while (sheets.hasNext()) {
+        try (InputStream sheet = sheets.next()) {
+          names.add(sheets.getSheetName());
+        }
+      }
+      if (names.isEmpty()) {
         return false;
       }
-      formatter = new DataFormatter();
-    } catch (IOException e) {
-      e.printStackTrace();
+      sheetNames = names.toArray(new String[0]);
+    } catch (IOException | OpenXML4JException e) {
+      LOG.error(e.getMessage(), e);
       return false;
     }
 
@@ -64,63 +120,288 @@ public class ExcelReaderService implements DataReaderService {
   @Override
   public String[] read(String sheetName, int index, int headerSize) {
 
-    if (sheetName == null || book == null) {
+    if (sheetName == null || !hasSheet(sheetName)) {
       return null;
     }
 
-    XSSFSheet sheet = book.getSheet(sheetName);
-    if (sheet == null) {
+    try {
+      String[] values = headRows.getOrDefault(sheetName, new HashMap<>()).get(index);
+      if (values == null && !isHeadRead(sheetName, index)) {
+        values = readFromCursor(sheetName, index);
+      }
+      return values == null ? null : resize(values, headerSize);
+    } catch (IOException | XMLStreamException | OpenXML4JException | SAXException e) {
+      LOG.error(e.getMessage(), e);
       return null;
     }
+  }
 
-    XSSFRow row = sheet.getRow(index);
-    if (row == null) {
-      return null;
+  @Override
+  public String[] getSheetNames() {
+    return sheetNames;
+  }
+
+  @Override
+  public int getTotalLines(String sheetName) {
+
+    if (sheetName == null || !hasSheet(sheetName)) {
+      return 0;
     }
 
-    if (headerSize == 0) {
-      headerSize = row.getLastCellNum();
+    return totalLines.computeIfAbsent(sheetName, this::countLines);
+  }
+
+  @Override
+  public void close() {
+    closeCursor();
+    if (pkg != null) {
+      pkg.revert();
+      pkg = null;
     }
+  }
 
-    String[] vals = new String[headerSize];
+  protected boolean hasSheet(String sheetName) {
+    return sheetNames != null && Arrays.asList(sheetNames).contains(sheetName);
+  }
 
-    for (int i = 0; i < headerSize; i++) {
-      Cell cell = row.getCell(i);
-      if (cell == null) {
-        continue;
-      }
-      vals[i] = formatter.formatCellValue(cell);
-      if (Strings.isNullOrEmpty(vals[i])) {
-        vals[i] = null;
+  /** Whether the cursor already went past the given head row, which was then found empty. */
+  protected boolean isHeadRead(String sheetName, int index) {
+    return index < HEAD_ROW_COUNT
+        && cursor != null
+        && cursor.sheetName.equals(sheetName)
+        && index < cursor.nextIndex;
+  }
+
+  protected String[] readFromCursor(String sheetName, int index)
+      throws IOException, XMLStreamException, OpenXML4JException, SAXException {
+
+    if (cursor == null || !cursor.sheetName.equals(sheetName) || index < cursor.nextIndex) {
+      closeCursor();
+      cursor = new SheetCursor(sheetName);
+    }
+
+    while (!cursor.isEnd && (cursor.pending == null || cursor.pendingIndex < index)) {
+      cursor.next();
+      if (cursor.pending != null && cursor.pendingIndex < HEAD_ROW_COUNT) {
+        headRows
+            .computeIfAbsent(sheetName, key -> new HashMap<>())
+            .put(cursor.pendingIndex, cursor.pending);
       }
     }
+    cursor.nextIndex = index;
 
-    return vals;
+    return cursor.pending != null && cursor.pendingIndex == index ? cursor.pending : null;
   }
 
-  @Override
-  public String[] getSheetNames() {
+  /**
+   * Total lines of a sheet, as the number of rows present in its XML like {@code
+   * getPhysicalNumberOfRows()} of a loaded sheet. The cells are skipped, not parsed.
+   */
+  protected int countLines(String sheetName) {
+    try (SheetCursor counter = new SheetCursor(sheetName)) {
+      return counter.countRows();
+    } catch (IOException | XMLStreamException | OpenXML4JException | SAXException e) {
+      LOG.error(e.getMessage(), e);
+      return 0;
+    }
+  }
 
-    if (book == null) {
-      return null;
+  protected void closeCursor() {
+    if (cursor != null) {
+      cursor.close();
+      cursor = null;
     }
+  }
 
-    String[] sheets = new String[book.getNumberOfSheets()];
+  protected String[] resize(String[] values, int headerSize) {
+    return Arrays.copyOf(values, headerSize == 0 ? values.length : headerSize);
+  }
 
-    for (int count = 0; count < sheets.length; count++) {
-      sheets[count] = book.getSheetName(count);
+  protected String getSharedString(int index) throws IOException, SAXException {
+    if (sharedStrings == null) {
+      sharedStrings = new ReadOnlySharedStringsTable(pkg);
     }
+    return sharedStrings.getEntryAt(index);
+  }
 
-    return sheets;
+  protected String formatNumber(String value, String styleIndex) {
+    XSSFCellStyle style =
+        Strings.isNullOrEmpty(styleIndex) || styles == null
+            ? null
+            : styles.getStyleAt(Integer.parseInt(styleIndex));
+    if (style == null) {
+      return formatter.formatRawCellContents(
+          Double.parseDouble(value), 0, BuiltinFormats.getBuiltinFormat(0));
+    }
+    short formatIndex = style.getDataFormat();
+    String formatString = style.getDataFormatString();
+    if (formatString == null) {
+      formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+    }
+    return formatter.formatRawCellContents(Double.parseDouble(value), formatIndex, formatString);
   }
 
-  @Override
-  public int getTotalLines(String sheetName) {
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
 
-    if (book == null || sheetName == null || book.getSheet(sheetName) == null) {
-      return 0;
+  /** Forward-only position in the XML of a sheet, holding the last parsed row. */
+  protected class SheetCursor implements AutoCloseable {
+
+    protected final String sheetName;
+    protected final InputStream inputStream;
+    protected final XMLStreamReader xml;
+
+    protected boolean isEnd;
+
+    /** Rows before this index have been skipped. */
+    protected int nextIndex;
+
+    protected String[] pending;
+    protected int pendingIndex = -1;
+
+    protected SheetCursor(String sheetName)
+        throws IOException, XMLStreamException, OpenXML4JException {
+      this.sheetName = sheetName;
+      this.inputStream = openSheet(sheetName);
+      this.xml = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+      readToSheetData();
+    }
+
+    protected InputStream openSheet(String sheetName) throws IOException, OpenXML4JException {
+      XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+      while (sheets.hasNext()) {
+        InputStream sheet = sheets.next();
+        if (sheets.getSheetName().equals(sheetName)) {
+          return sheet;
+        }
+        sheet.close();
+      }
+      throw new IOException("Sheet not found: " + sheetName);
+    }
+
+    protected void readToSheetData() throws XMLStreamException {
+      while (xml.hasNext()) {
+        if (xml.next() == XMLStreamConstants.START_ELEMENT
+            && "sheetData".equals(xml.getLocalName())) {
+          return;
+        }
+      }
+      isEnd = true;
     }
 
-    return book.getSheet(sheetName).getPhysicalNumberOfRows();
+    /** Count the remaining rows, leaving the cursor at the end of the sheet. */
+    protected int countRows() throws XMLStreamException {
+      int count = 0;
+      while (!isEnd && xml.hasNext()) {
+        int event = xml.next();
+        if (event == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+          count++;
+        } else if (event == XMLStreamConstants.END_ELEMENT
+            && "sheetData".equals(xml.getLocalName())) {
+          break;
+        }
+      }
+      isEnd = true;
+      return count;
+    }
+
+    /** Parse the next row into {@link #pending}, or set {@link #isEnd}. */
+    protected void next() throws XMLStreamException, IOException, SAXException {
+      pending = null;
+      while (xml.hasNext()) {
+        int event = xml.next();
+        if (event == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+          String rowNum = xml.getAttributeValue(null, "r");
+          pendingIndex = rowNum != null ? Integer.parseInt(rowNum) - 1 : pendingIndex + 1;
+          pending = readRow();
+          return;
+        }
+        if (event == XMLStreamConstants.END_ELEMENT && "sheetData".equals(xml.getLocalName())) {
+          break;
+        }
+      }
+      isEnd = true;
+    }
+
+    protected String[] readRow() throws XMLStreamException, IOException, SAXException {
+      Map<Integer, String> cells = new LinkedHashMap<>();
+      int column = -1;
+      int lastColumn = -1;
+      while (xml.hasNext()) {
+        int event = xml.next();
+        if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+          break;
+        }
+        if (event != XMLStreamConstants.START_ELEMENT || !"c".equals(xml.getLocalName())) {
+          continue;
+        }
+        String ref = xml.getAttributeValue(null, "r");
+        column = ref != null ? new CellReference(ref).getCol() : column + 1;
+        String value = readCell();
+        if (!Strings.isNullOrEmpty(value)) {
+          cells.put(column, value);
+          lastColumn = Math.max(lastColumn, column);
+        }
+      }
+      String[] values = new String[lastColumn + 1];
+      cells.forEach((col, value) -> values[col] = value);
+      return values;
+    }
+
+    protected String readCell() throws XMLStreamException, IOException, SAXException {
+      String type = xml.getAttributeValue(null, "t");
+      String styleIndex = xml.getAttributeValue(null, "s");
+      String rawValue = null;
+      StringBuilder inlineValue = null;
+
+      while (xml.hasNext()) {
+        int event = xml.next();
+        if (event == XMLStreamConstants.END_ELEMENT && "c".equals(xml.getLocalName())) {
+          break;
+        }
+        if (event != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        String name = xml.getLocalName();
+        if ("v".equals(name)) {
+          rawValue = xml.getElementText();
+        } else if ("t".equals(name) && "inlineStr".equals(type)) {
+          inlineValue = inlineValue == null ? new StringBuilder() : inlineValue;
+          inlineValue.append(xml.getElementText());
+        }
+      }
+
+      if (inlineValue != null) {
+        return inlineValue.toString();
+      }
+      if (Strings.isNullOrEmpty(rawValue)) {
+        return null;
+      }
+      if (type == null || "n".equals(type)) {
+        return formatNumber(rawValue, styleIndex);
+      }
+      switch (type) {
+        case "s":
+          return getSharedString(Integer.parseInt(rawValue));
+        case "b":
+          return "0".equals(rawValue) ? "FALSE" : "TRUE";
+        default:
+          return rawValue;
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        xml.close();
+        inputStream.close();
+      } catch (XMLStreamException | IOException e) {
+        LOG.error(e.getMessage(), e);
+      }
+    }
   }
 }
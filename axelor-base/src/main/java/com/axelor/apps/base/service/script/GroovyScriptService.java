@@ -0,0 +1,53 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.script;
+
+import com.google.common.cache.CacheStats;
+import groovy.lang.Binding;
+import groovy.lang.Script;
+import java.util.Map;
+
+/**
+ * Compiles Groovy formulas once and keeps the compiled classes in a bounded cache shared by all
+ * modules. Formulas are compiled with the static methods of {@link Math} imported.
+ */
+public interface GroovyScriptService {
+
+  /**
+   * Get the compiled class of a formula, compiling it on first use.
+   *
+   * @param source the formula
+   * @return the script class
+   */
+  Class<? extends Script> compile(String source);
+
+  /** Evaluate a formula without variables. */
+  Object evaluate(String source);
+
+  /** Evaluate a formula with the given variables. */
+  Object evaluate(String source, Map<String, Object> variables);
+
+  /** Evaluate a formula with the given binding. */
+  Object evaluate(String source, Binding binding);
+
+  /** Hits, misses and evictions of the compiled script cache. */
+  CacheStats getStats();
+
+  /** Remove all the compiled scripts. */
+  void clear();
+}
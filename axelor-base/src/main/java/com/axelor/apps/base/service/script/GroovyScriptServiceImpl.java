@@ -0,0 +1,114 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.script;
+
+import com.axelor.app.AppSettings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Singleton;
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Singleton
+public class GroovyScriptServiceImpl implements GroovyScriptService {
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final int DEFAULT_CACHE_SIZE = 500;
+
+  private final CompilerConfiguration conf;
+
+  private final Cache<HashCode, Class<? extends Script>> scriptCache;
+
+  public GroovyScriptServiceImpl() {
+    this.conf = new CompilerConfiguration();
+    ImportCustomizer customizer = new ImportCustomizer();
+    customizer.addStaticStars("java.lang.Math");
+    conf.addCompilationCustomizers(customizer);
+
+    this.scriptCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(AppSettings.get().getInt("script.cache.size", DEFAULT_CACHE_SIZE))
+            .recordStats()
+            .build();
+  }
+
+  @Override
+  public Class<? extends Script> compile(String source) {
+    HashCode key = Hashing.sha256().hashString(source, StandardCharsets.UTF_8);
+    try {
+      return scriptCache.get(key, () -> parse(source));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      // Let compilation errors reach the caller as if the script was parsed directly.
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Each script is compiled in its own class loader, so that it can be unloaded once evicted from
+   * the cache.
+   */
+  protected Class<? extends Script> parse(String source) {
+    log.debug("Compiling script {}", source);
+    return new GroovyShell(getClass().getClassLoader(), conf).parse(source).getClass();
+  }
+
+  @Override
+  public Object evaluate(String source) {
+    return evaluate(source, new Binding());
+  }
+
+  @Override
+  public Object evaluate(String source, Map<String, Object> variables) {
+    return evaluate(source, new Binding(new HashMap<>(variables)));
+  }
+
+  @Override
+  public Object evaluate(String source, Binding binding) {
+    return InvokerHelper.createScript(compile(source), binding).run();
+  }
+
+  @Override
+  public CacheStats getStats() {
+    return scriptCache.stats();
+  }
+
+  @Override
+  public void clear() {
+    log.debug("Clearing script cache, {}", scriptCache.stats());
+    scriptCache.invalidateAll();
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.script;
+
+import com.axelor.db.EntityHelper;
+import com.axelor.db.Model;
+import com.axelor.db.mapper.Mapper;
+import com.axelor.db.mapper.Property;
+import com.axelor.tool.template.TemplateMaker;
+import com.google.common.base.Strings;
+import groovy.lang.Binding;
+import groovy.lang.Script;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * A Groovy formula written as a template, as {@code $Product.netMass$ * 2}, compiled once.
+ *
+ * <p>The fields used in the formula are read from the context given at each evaluation, and bound
+ * as the template engine rendered them: empty fields are bound as an empty string, and fields used
+ * in a string literal are appended to it. Formulas using other template features than plain field
+ * references, selection fields or relation fields, rendered as text by the template engine, are
+ * not compiled and are rendered by the template engine at each evaluation.
+ */
+public class TemplateFormula {
+
+  /** Fields used in a formula, as {@code $Product.netMass$}. */
+  protected static final Pattern VARIABLE_PATTERN =
+      Pattern.compile("\\$([A-Za-z_][A-Za-z0-9_.]*)\\$");
+
+  private final String source;
+
+  private final Map<String, Class<?>> contextTypes;
+
+  private final GroovyScriptService groovyScriptService;
+
+  private final List<String[]> variables = new ArrayList<>();
+
+  private final Class<? extends Script> scriptClass;
+
+  /**
+   * @param source the formula
+   * @param contextTypes the type of each name of the context, a model or a plain value
+   * @param groovyScriptService the service compiling the formula
+   */
+  public TemplateFormula(
+      String source, Map<String, Class<?>> contextTypes, GroovyScriptService groovyScriptService) {
+    this.source = source;
+    this.contextTypes = contextTypes;
+    this.groovyScriptService = groovyScriptService;
+    this.scriptClass = compile();
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public boolean isCompiled() {
+    return scriptClass != null;
+  }
+
+  /** Evaluate a compiled formula. */
+  public Object evaluate(Map<String, Object> context) {
+    if (scriptClass == null) {
+      throw new IllegalStateException("Formula not compiled: " + source);
+    }
+
+    Map<String, Object> values = new HashMap<>();
+    for (int i = 0; i < variables.size(); i++) {
+      Object value = resolve(context, variables.get(i));
+      values.put(getVariableName(i), value != null ? value : "");
+    }
+    return InvokerHelper.createScript(scriptClass, new Binding(values)).run();
+  }
+
+  /** Evaluate the formula, rendering it with the given template maker if it is not compiled. */
+  public Object evaluate(Map<String, Object> context, TemplateMaker maker) {
+    if (scriptClass != null) {
+      return evaluate(context);
+    }
+
+    maker.addInContext(context);
+    maker.setTemplate(source);
+    return groovyScriptService.evaluate(maker.make());
+  }
+
+  protected Object resolve(Map<String, Object> context, String[] path) {
+    Object value = context.get(path[0]);
+    for (int i = 1; i < path.length && value != null; i++) {
+      value = Mapper.of(EntityHelper.getEntityClass((Model) value)).get(value, path[i]);
+    }
+    return value;
+  }
+
+  protected Class<? extends Script> compile() {
+    if (source == null) {
+      return null;
+    }
+
+    StringBuilder script = new StringBuilder();
+    int index = 0;
+    while (index < source.length()) {
+      char c = source.charAt(index);
+      if (c == '\'' || c == '"') {
+        String tripleQuote = String.valueOf(new char[] {c, c, c});
+        String quote = source.startsWith(tripleQuote, index) ? tripleQuote : String.valueOf(c);
+        int end = findLiteralEnd(index + quote.length(), quote);
+        if (end < 0) {
+          return null;
+        }
+        String literal = source.substring(index + quote.length(), end);
+        if (!appendLiteral(script, literal, quote)) {
+          return null;
+        }
+        index = end + quote.length();
+        continue;
+      }
+
+      if (c == '$') {
+        Matcher matcher = VARIABLE_PATTERN.matcher(source);
+        if (matcher.region(index, source.length()).lookingAt()) {
+          String variable = addVariable(matcher.group(1));
+          if (variable == null) {
+            return null;
+          }
+          script.append('(').append(variable).append(')');
+          index = matcher.end();
+          continue;
+        }
+      }
+
+      script.append(c);
+      index++;
+    }
+
+    if (script.indexOf("$") >= 0) {
+      return null;
+    }
+
+    try {
+      return groovyScriptService.compile(script.toString());
+    } catch (CompilationFailedException e) {
+      // Errors are reported when the formula is evaluated.
+      return null;
+    }
+  }
+
+  private int findLiteralEnd(int from, String quote) {
+    for (int i = from; i < source.length(); i++) {
+      if (source.charAt(i) == '\\') {
+        i++;
+      } else if (source.startsWith(quote, i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Append a string literal, concatenated with the fields it contains. */
+  private boolean appendLiteral(StringBuilder script, String literal, String quote) {
+    Matcher matcher = VARIABLE_PATTERN.matcher(literal);
+    if (!matcher.find()) {
+      script.append(quote).append(literal).append(quote);
+      return true;
+    }
+
+    int index = 0;
+    script.append('(');
+    do {
+      String variable = addVariable(matcher.group(1));
+      if (variable == null) {
+        return false;
+      }
+      script.append(quote).append(literal, index, matcher.start()).append(quote);
+      script.append(" + ").append(variable).append(" + ");
+      index = matcher.end();
+    } while (matcher.find());
+    script.append(quote).append(literal.substring(index)).append(quote).append(')');
+    return true;
+  }
+
+  /**
+   * Register a field used in the formula.
+   *
+   * @return the name of the variable bound to the field, or null if the field can't be bound as
+   *     the template engine renders it
+   */
+  private String addVariable(String name) {
+    String[] path = name.split("\\.");
+    Class<?> beanClass = contextTypes.get(path[0]);
+    if (beanClass == null) {
+      return null;
+    }
+
+    if (!Model.class.isAssignableFrom(beanClass)) {
+      if (path.length > 1) {
+        return null;
+      }
+    } else if (path.length < 2) {
+      return null;
+    }
+
+    for (int i = 1; i < path.length; i++) {
+      Property property = Mapper.of(beanClass).getProperty(path[i]);
+      if (property == null || !Strings.isNullOrEmpty(property.getSelection())) {
+        return null;
+      }
+      if (i < path.length - 1) {
+        if (property.getTarget() == null) {
+          return null;
+        }
+        beanClass = property.getTarget();
+      } else if (property.getTarget() != null) {
+        // The template engine renders relations as text, they are not bound as values.
+        return null;
+      }
+    }
+
+    variables.add(path);
+    return getVariableName(variables.size() - 1);
+  }
+
+  private String getVariableName(int index) {
+    return "_formulaVar" + index;
+  }
+}
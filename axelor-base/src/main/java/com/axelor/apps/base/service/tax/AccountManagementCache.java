@@ -0,0 +1,183 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.tax;
+
+import com.axelor.app.AppSettings;
+import com.axelor.apps.account.db.FiscalPosition;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Product;
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.exception.AxelorException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Singleton;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoized results of the account management resolution (account, tax and tax line of a product).
+ *
+ * <p>Results are cached by id in one map per product, then by company, fiscal position, purchase or
+ * sale side, fixed asset flag and date, and are read back through the entity manager. Entity
+ * listeners invalidate the cache when an account management, a tax, a tax line, a fiscal position
+ * or one of its equivalences changes, and drop the map of a product when it is updated. The cache
+ * is held by each node.
+ */
+@Singleton
+public class AccountManagementCache {
+
+  /** Number of products whose results are kept. */
+  protected static final int DEFAULT_CACHE_SIZE = 10000;
+
+  /**
+   * Results of each product. An invalidation drops the map of the product, so that a result
+   * computed meanwhile is only kept in the dropped map.
+   */
+  private final Cache<Long, Map<Key, Long>> cache =
+      CacheBuilder.newBuilder()
+          .maximumSize(
+              AppSettings.get().getInt("account.management.cache.size", DEFAULT_CACHE_SIZE))
+          .build();
+
+  @FunctionalInterface
+  public interface Loader<T> {
+    T load() throws AxelorException;
+  }
+
+  /**
+   * Get a resolved record, computing it on first use. Nothing is cached when the loader returns
+   * null or throws, nor when the product, the company or the fiscal position isn't saved yet.
+   *
+   * @param klass the type of the resolved record
+   * @param product
+   * @param company
+   * @param fiscalPosition may be null
+   * @param isPurchase
+   * @param fixedAsset
+   * @param date may be null if the result doesn't depend on a date
+   * @param loader computes the record
+   * @return the resolved record
+   * @throws AxelorException if the loader fails
+   */
+  public <T extends Model> T get(
+      Class<T> klass,
+      Product product,
+      Company company,
+      FiscalPosition fiscalPosition,
+      boolean isPurchase,
+      boolean fixedAsset,
+      LocalDate date,
+      Loader<T> loader)
+      throws AxelorException {
+
+    if (product == null
+        || product.getId() == null
+        || company == null
+        || company.getId() == null
+        || (fiscalPosition != null && fiscalPosition.getId() == null)) {
+      return loader.load();
+    }
+
+    Map<Key, Long> productResults =
+        cache.asMap().computeIfAbsent(product.getId(), id -> new ConcurrentHashMap<>());
+    Key key =
+        new Key(
+            klass,
+            company.getId(),
+            fiscalPosition != null ? fiscalPosition.getId() : null,
+            isPurchase,
+            fixedAsset,
+            date);
+
+    Long id = productResults.get(key);
+    if (id != null) {
+      T result = find(klass, id);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    T result = loader.load();
+    if (result != null && result.getId() != null) {
+      productResults.put(key, result.getId());
+    }
+    return result;
+  }
+
+  protected <T extends Model> T find(Class<T> klass, Long id) {
+    return JPA.em().find(klass, id);
+  }
+
+  public void invalidate() {
+    cache.invalidateAll();
+  }
+
+  public void invalidateProduct(Long productId) {
+    cache.invalidate(productId);
+  }
+
+  private static final class Key {
+
+    private final Class<?> klass;
+    private final Long companyId;
+    private final Long fiscalPositionId;
+    private final boolean isPurchase;
+    private final boolean fixedAsset;
+    private final LocalDate date;
+
+    private Key(
+        Class<?> klass,
+        Long companyId,
+        Long fiscalPositionId,
+        boolean isPurchase,
+        boolean fixedAsset,
+        LocalDate date) {
+      this.klass = klass;
+      this.companyId = companyId;
+      this.fiscalPositionId = fiscalPositionId;
+      this.isPurchase = isPurchase;
+      this.fixedAsset = fixedAsset;
+      this.date = date;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return klass.equals(other.klass)
+          && companyId.equals(other.companyId)
+          && Objects.equals(fiscalPositionId, other.fiscalPositionId)
+          && isPurchase == other.isPurchase
+          && fixedAsset == other.fixedAsset
+          && Objects.equals(date, other.date);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(klass, companyId, fiscalPositionId, isPurchase, fixedAsset, date);
+    }
+  }
+}
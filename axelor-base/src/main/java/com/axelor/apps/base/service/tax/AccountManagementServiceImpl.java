@@ -46,11 +46,16 @@ public class AccountManagementServiceImpl implements AccountManagementService {
 
   private TaxService taxService;
 
+  protected AccountManagementCache accountManagementCache;
+
   @Inject
   public AccountManagementServiceImpl(
-      FiscalPositionService fiscalPositionService, TaxService taxService) {
+      FiscalPositionService fiscalPositionService,
+      TaxService taxService,
+      AccountManagementCache accountManagementCache) {
     this.fiscalPositionService = fiscalPositionService;
     this.taxService = taxService;
+    this.accountManagementCache = accountManagementCache;
   }
 
   /**
@@ -145,6 +150,21 @@ public class AccountManagementServiceImpl implements AccountManagementService {
       Product product, Company company, FiscalPosition fiscalPosition, boolean isPurchase)
       throws AxelorException {
 
+    return accountManagementCache.get(
+        Tax.class,
+        product,
+        company,
+        fiscalPosition,
+        isPurchase,
+        false,
+        null,
+        () -> computeProductTax(product, company, fiscalPosition, isPurchase));
+  }
+
+  protected Tax computeProductTax(
+      Product product, Company company, FiscalPosition fiscalPosition, boolean isPurchase)
+      throws AxelorException {
+
     LOG.debug(
         "Get the tax for the product {} (company : {}, purchase : {}, fiscal position : {})",
         new Object[] {
@@ -220,6 +240,25 @@ public class AccountManagementServiceImpl implements AccountManagementService {
       boolean isPurchase)
       throws AxelorException {
 
+    return accountManagementCache.get(
+        TaxLine.class,
+        product,
+        company,
+        fiscalPosition,
+        isPurchase,
+        false,
+        date,
+        () -> computeTaxLine(date, product, company, fiscalPosition, isPurchase));
+  }
+
+  protected TaxLine computeTaxLine(
+      LocalDate date,
+      Product product,
+      Company company,
+      FiscalPosition fiscalPosition,
+      boolean isPurchase)
+      throws AxelorException {
+
     TaxLine taxLine =
         taxService.getTaxLine(
             this.getProductTax(product, company, fiscalPosition, isPurchase), date);
@@ -47,6 +47,7 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.hibernate.Transaction;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
 import org.hibernate.type.Type;
 
 @SuppressWarnings("serial")
@@ -95,6 +96,9 @@ public class GlobalAuditInterceptor extends AuditInterceptor {
 
   @Override
   public void afterTransactionCompletion(Transaction tx) {
+    if (tx.getStatus() == TransactionStatus.COMMITTED) {
+      globalTracker.get().publish();
+    }
     globalTracker.get().clear();
     globalTracker.remove();
     super.afterTransactionCompletion(tx);
@@ -17,11 +17,11 @@
  */
 package com.axelor.apps.base.tracking;
 
-import com.axelor.apps.base.db.GlobalTrackingConfigurationLine;
 import com.axelor.apps.base.db.GlobalTrackingLog;
 import com.axelor.apps.base.db.GlobalTrackingLogLine;
-import com.axelor.apps.base.db.repo.GlobalTrackingConfigurationLineRepository;
 import com.axelor.apps.base.db.repo.GlobalTrackingLogRepository;
+import com.axelor.apps.base.tracking.GlobalTrackingConfigurationIndex.FieldConfig;
+import com.axelor.apps.base.tracking.GlobalTrackingConfigurationIndex.ModelConfig;
 import com.axelor.auth.AuditInterceptor;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.AuditableModel;
@@ -29,15 +29,16 @@ import com.axelor.auth.db.User;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
 import com.axelor.inject.Beans;
-import com.axelor.meta.db.repo.MetaFieldRepository;
-import com.axelor.meta.db.repo.MetaModelRepository;
+import com.axelor.meta.db.MetaField;
+import com.axelor.meta.db.MetaModel;
 import com.axelor.script.GroovyScriptHelper;
 import com.axelor.script.ScriptBindings;
-import com.google.common.base.Strings;
+import com.axelor.script.ScriptHelper;
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.time.LocalDateTime;
@@ -53,11 +54,18 @@ import org.hibernate.Transaction;
 import org.hibernate.collection.internal.AbstractPersistentCollection;
 import org.hibernate.collection.internal.PersistentBag;
 import org.hibernate.collection.internal.PersistentSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class GlobalAuditTracker {
 
+  private static final Logger logger =
+      LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
   private static final ThreadLocal<List<GlobalTrackingLog>> LOGS = new ThreadLocal<>();
 
+  private final List<GlobalTrackingEvent> events = new ArrayList<>();
+
   /**
    * This method should be called from {@link
    * AuditInterceptor#beforeTransactionCompletion(Transaction)} method to finish change recording.
@@ -73,70 +81,63 @@ public class GlobalAuditTracker {
       return;
     }
 
-    MetaModelRepository modelRepo = Beans.get(MetaModelRepository.class);
-    MetaFieldRepository fieldRepo = Beans.get(MetaFieldRepository.class);
+    GlobalTrackingConfigurationIndex configIndex =
+        Beans.get(GlobalTrackingConfigurationIndex.class);
     GlobalTrackingLogRepository logRepo = Beans.get(GlobalTrackingLogRepository.class);
-    GlobalTrackingConfigurationLineRepository configLineRepo =
-        Beans.get(GlobalTrackingConfigurationLineRepository.class);
-    GlobalTrackingConfigurationLine configLine;
-    List<GlobalTrackingConfigurationLine> configLineList;
-    ScriptBindings bindings;
 
     for (GlobalTrackingLog log : logList) {
 
-      configLineList =
-          configLineRepo.all().filter("self.metaModel.name = ?", log.getMetaModelName()).fetch();
+      ModelConfig modelConfig = configIndex.find(log.getMetaModelName());
 
-      if (configLineList.isEmpty()) {
+      if (modelConfig == null) {
         continue;
       }
 
-      log.setMetaModel(modelRepo.findByName(log.getMetaModelName()));
+      log.setMetaModel(JPA.em().getReference(MetaModel.class, modelConfig.getMetaModelId()));
 
       List<GlobalTrackingLogLine> logLinesToSave = new ArrayList<>();
 
       if ((CollectionUtils.isNotEmpty(log.getGlobalTrackingLogLineList()))) {
-        try {
-          bindings =
-              new ScriptBindings(
-                  this.getContext(
-                      JPA.find(
-                          (Class<Model>) Class.forName(log.getMetaModel().getFullName()),
-                          log.getRelatedId())));
-        } catch (Exception e) {
-          continue;
-        }
+        ScriptHelper scriptHelper = null;
+        boolean scriptHelperFailed = false;
         for (GlobalTrackingLogLine line : log.getGlobalTrackingLogLineList()) {
 
-          configLine =
-              configLineList.stream()
-                  .filter(l -> l.getMetaField().getName().equals(line.getMetaFieldName()))
-                  .findFirst()
-                  .orElse(null);
-
-          if (configLine == null
-              || !this.canTrack(configLine, log.getTypeSelect())
-              || (!Strings.isNullOrEmpty(configLine.getTrackingCondition())
-                  && !Boolean.TRUE.equals(
-                      new GroovyScriptHelper(bindings).eval(configLine.getTrackingCondition())))) {
+          FieldConfig fieldConfig = modelConfig.getField(line.getMetaFieldName());
+
+          if (fieldConfig == null || !fieldConfig.canTrack(log.getTypeSelect())) {
             continue;
           }
 
-          line.setMetaField(
-              fieldRepo
-                  .all()
-                  .filter(
-                      "self.metaModel.id = ? AND self.name = ?",
-                      log.getMetaModel().getId(),
-                      line.getMetaFieldName())
-                  .fetchOne());
+          if (fieldConfig.hasTrackingCondition()) {
+            if (scriptHelper == null && !scriptHelperFailed) {
+              try {
+                scriptHelper = createScriptHelper(modelConfig, log.getRelatedId());
+              } catch (Exception e) {
+                logger.error(
+                    "Cannot evaluate the tracking conditions of {} #{}",
+                    modelConfig.getFullName(),
+                    log.getRelatedId(),
+                    e);
+                scriptHelperFailed = true;
+              }
+            }
+            if (scriptHelper == null
+                || !evalTrackingCondition(scriptHelper, fieldConfig, line.getMetaFieldName())) {
+              continue;
+            }
+          }
+
+          line.setMetaField(JPA.em().getReference(MetaField.class, fieldConfig.getMetaFieldId()));
           logLinesToSave.add(line);
         }
       }
       if (!logLinesToSave.isEmpty()
           || (GlobalTrackingLogRepository.TYPE_DELETE == log.getTypeSelect()
-              && configLineList.stream()
-                  .anyMatch(l -> Boolean.TRUE.equals(l.getTrackDeletion())))) {
+              && modelConfig.isTrackDeletion())) {
+        if (modelConfig.isAsyncTracking()) {
+          events.add(GlobalTrackingEvent.of(log, logLinesToSave, user));
+          continue;
+        }
         log.getGlobalTrackingLogLineList().stream().forEach(l -> l.setGlobalTrackingLog(null));
         logLinesToSave.stream().forEach(l -> l.setGlobalTrackingLog(log));
         log.setUser(user);
@@ -145,24 +146,33 @@ public class GlobalAuditTracker {
     }
   }
 
-  private boolean canTrack(GlobalTrackingConfigurationLine confLine, int typeSelect) {
-
-    switch (typeSelect) {
-      case GlobalTrackingLogRepository.TYPE_CREATE:
-        return confLine.getTrackCreation();
-      case GlobalTrackingLogRepository.TYPE_READ:
-        return confLine.getTrackReading();
-      case GlobalTrackingLogRepository.TYPE_UPDATE:
-        return confLine.getTrackUpdate();
-      case GlobalTrackingLogRepository.TYPE_DELETE:
-        return confLine.getTrackDeletion();
-      case GlobalTrackingLogRepository.TYPE_EXPORT:
-        return confLine.getTrackExport();
-      default:
-        return false;
+  /** A condition failing to evaluate doesn't track its field, without dropping the whole log. */
+  protected boolean evalTrackingCondition(
+      ScriptHelper scriptHelper, FieldConfig fieldConfig, String fieldName) {
+    try {
+      return Boolean.TRUE.equals(scriptHelper.eval(fieldConfig.getTrackingCondition()));
+    } catch (Exception e) {
+      logger.error(
+          "Cannot evaluate the tracking condition of field {}: {}",
+          fieldName,
+          fieldConfig.getTrackingCondition(),
+          e);
+      return false;
     }
   }
 
+  /**
+   * Create the helper evaluating the tracking conditions on the tracked record. It is only built
+   * when a changed field has a condition, as it reloads the record and reads all its properties.
+   */
+  @SuppressWarnings("unchecked")
+  protected ScriptHelper createScriptHelper(ModelConfig modelConfig, Long relatedId)
+      throws ClassNotFoundException, IntrospectionException, InvocationTargetException,
+          IllegalAccessException {
+    Model entity = JPA.find((Class<Model>) Class.forName(modelConfig.getFullName()), relatedId);
+    return new GroovyScriptHelper(new ScriptBindings(this.getContext(entity)));
+  }
+
   private Map<String, Object> getContext(Object obj)
       throws IntrospectionException, InvocationTargetException, IllegalAccessException,
           IllegalArgumentException {
@@ -188,6 +198,20 @@ public class GlobalAuditTracker {
    */
   protected void clear() {
     LOGS.remove();
+    events.clear();
+  }
+
+  /**
+   * This method should be called once the transaction is committed, to hand the logs of the models
+   * tracked asynchronously to the {@link GlobalTrackingLogWriter}.
+   */
+  protected void publish() {
+    if (events.isEmpty()) {
+      return;
+    }
+    GlobalTrackingLogWriter writer = Beans.get(GlobalTrackingLogWriter.class);
+    events.forEach(writer::submit);
+    events.clear();
   }
 
   protected void addLog(GlobalTrackingLog log) {
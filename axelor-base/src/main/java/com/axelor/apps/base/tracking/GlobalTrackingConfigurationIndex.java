@@ -0,0 +1,188 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.tracking;
+
+import com.axelor.apps.base.db.GlobalTrackingConfigurationLine;
+import com.axelor.apps.base.db.repo.GlobalTrackingConfigurationLineRepository;
+import com.axelor.apps.base.db.repo.GlobalTrackingLogRepository;
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory index of the global tracking configuration, grouped by model name and field name.
+ *
+ * <p>The index is built with a single query on first use and dropped with {@link #invalidate()}
+ * when a configuration line changes, so that recording the changes of a transaction doesn't hit
+ * the database for every tracked entity and field.
+ */
+@Singleton
+public class GlobalTrackingConfigurationIndex {
+
+  protected GlobalTrackingConfigurationLineRepository configLineRepo;
+
+  private volatile Map<String, ModelConfig> index;
+
+  /** Incremented on each invalidation, so that an index built meanwhile is not published. */
+  private final AtomicLong version = new AtomicLong();
+
+  @Inject
+  public GlobalTrackingConfigurationIndex(
+      GlobalTrackingConfigurationLineRepository configLineRepo) {
+    this.configLineRepo = configLineRepo;
+  }
+
+  /**
+   * Get the tracking configuration of a model.
+   *
+   * @param modelName the simple name of the model
+   * @return the configuration, or null if the model isn't tracked
+   */
+  public ModelConfig find(String modelName) {
+    return getIndex().get(modelName);
+  }
+
+  public void invalidate() {
+    version.incrementAndGet();
+    index = null;
+  }
+
+  protected Map<String, ModelConfig> getIndex() {
+    Map<String, ModelConfig> current = index;
+    if (current == null) {
+      synchronized (this) {
+        current = index;
+        if (current == null) {
+          long buildVersion = version.get();
+          current = build(configLineRepo.all().fetch());
+          if (buildVersion == version.get()) {
+            index = current;
+          }
+        }
+      }
+    }
+    return current;
+  }
+
+  protected Map<String, ModelConfig> build(List<GlobalTrackingConfigurationLine> configLineList) {
+    Map<String, ModelConfig> models = new HashMap<>();
+    for (GlobalTrackingConfigurationLine configLine : configLineList) {
+      ModelConfig model =
+          models.computeIfAbsent(
+              configLine.getMetaModel().getName(),
+              name ->
+                  new ModelConfig(
+                      configLine.getMetaModel().getId(), configLine.getMetaModel().getFullName()));
+      model.fields.put(configLine.getMetaField().getName(), new FieldConfig(configLine));
+      model.trackDeletion |= Boolean.TRUE.equals(configLine.getTrackDeletion());
+      model.asyncTracking |= Boolean.TRUE.equals(configLine.getAsyncTracking());
+    }
+    return Collections.unmodifiableMap(models);
+  }
+
+  public static class ModelConfig {
+
+    private final Long metaModelId;
+    private final String fullName;
+    private final Map<String, FieldConfig> fields = new HashMap<>();
+    private boolean trackDeletion;
+    private boolean asyncTracking;
+
+    protected ModelConfig(Long metaModelId, String fullName) {
+      this.metaModelId = metaModelId;
+      this.fullName = fullName;
+    }
+
+    public Long getMetaModelId() {
+      return metaModelId;
+    }
+
+    public String getFullName() {
+      return fullName;
+    }
+
+    /** Whether at least one configuration line of the model tracks deletion. */
+    public boolean isTrackDeletion() {
+      return trackDeletion;
+    }
+
+    /** Whether the logs of the model are written by {@link GlobalTrackingLogWriter}. */
+    public boolean isAsyncTracking() {
+      return asyncTracking;
+    }
+
+    public FieldConfig getField(String fieldName) {
+      return fields.get(fieldName);
+    }
+  }
+
+  public static class FieldConfig {
+
+    private final Long metaFieldId;
+    private final boolean trackCreation;
+    private final boolean trackReading;
+    private final boolean trackUpdate;
+    private final boolean trackDeletion;
+    private final boolean trackExport;
+    private final String trackingCondition;
+
+    protected FieldConfig(GlobalTrackingConfigurationLine configLine) {
+      this.metaFieldId = configLine.getMetaField().getId();
+      this.trackCreation = Boolean.TRUE.equals(configLine.getTrackCreation());
+      this.trackReading = Boolean.TRUE.equals(configLine.getTrackReading());
+      this.trackUpdate = Boolean.TRUE.equals(configLine.getTrackUpdate());
+      this.trackDeletion = Boolean.TRUE.equals(configLine.getTrackDeletion());
+      this.trackExport = Boolean.TRUE.equals(configLine.getTrackExport());
+      this.trackingCondition = Strings.emptyToNull(configLine.getTrackingCondition());
+    }
+
+    public Long getMetaFieldId() {
+      return metaFieldId;
+    }
+
+    public String getTrackingCondition() {
+      return trackingCondition;
+    }
+
+    public boolean hasTrackingCondition() {
+      return trackingCondition != null;
+    }
+
+    public boolean canTrack(int typeSelect) {
+      switch (typeSelect) {
+        case GlobalTrackingLogRepository.TYPE_CREATE:
+          return trackCreation;
+        case GlobalTrackingLogRepository.TYPE_READ:
+          return trackReading;
+        case GlobalTrackingLogRepository.TYPE_UPDATE:
+          return trackUpdate;
+        case GlobalTrackingLogRepository.TYPE_DELETE:
+          return trackDeletion;
+        case GlobalTrackingLogRepository.TYPE_EXPORT:
+          return trackExport;
+        default:
+          return false;
+      }
+    }
+  }
+}
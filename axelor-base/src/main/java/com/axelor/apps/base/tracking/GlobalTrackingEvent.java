@@ -0,0 +1,158 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.tracking;
+
+import com.axelor.apps.base.db.GlobalTrackingLog;
+import com.axelor.apps.base.db.GlobalTrackingLogLine;
+import com.axelor.auth.db.User;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable copy of a {@link GlobalTrackingLog} and its lines, referencing the related records by
+ * id, so that it can be written outside of the transaction which recorded it.
+ */
+public final class GlobalTrackingEvent {
+
+  private final Long metaModelId;
+  private final Long relatedId;
+  private final int typeSelect;
+  private final Long userId;
+  private final LocalDateTime dateT;
+  private final List<Line> lines;
+
+  @JsonCreator
+  public GlobalTrackingEvent(
+      @JsonProperty("metaModelId") Long metaModelId,
+      @JsonProperty("relatedId") Long relatedId,
+      @JsonProperty("typeSelect") int typeSelect,
+      @JsonProperty("userId") Long userId,
+      @JsonProperty("dateT") String dateT,
+      @JsonProperty("lines") List<Line> lines) {
+    this(
+        metaModelId,
+        relatedId,
+        typeSelect,
+        userId,
+        dateT == null ? null : LocalDateTime.parse(dateT),
+        lines);
+  }
+
+  public GlobalTrackingEvent(
+      Long metaModelId,
+      Long relatedId,
+      int typeSelect,
+      Long userId,
+      LocalDateTime dateT,
+      List<Line> lines) {
+    this.metaModelId = metaModelId;
+    this.relatedId = relatedId;
+    this.typeSelect = typeSelect;
+    this.userId = userId;
+    this.dateT = dateT;
+    this.lines = lines == null ? Collections.emptyList() : Collections.unmodifiableList(lines);
+  }
+
+  /**
+   * Capture a tracking log.
+   *
+   * @param log the log, with its meta model set
+   * @param logLines the lines to keep, with their meta field set
+   * @param user the user who made the changes
+   * @return the event
+   */
+  public static GlobalTrackingEvent of(
+      GlobalTrackingLog log, List<GlobalTrackingLogLine> logLines, User user) {
+    return new GlobalTrackingEvent(
+        log.getMetaModel().getId(),
+        log.getRelatedId(),
+        log.getTypeSelect(),
+        user == null ? null : user.getId(),
+        log.getDateT(),
+        logLines.stream()
+            .map(
+                line ->
+                    new Line(
+                        line.getMetaField().getId(), line.getPreviousValue(), line.getNewValue()))
+            .collect(Collectors.toList()));
+  }
+
+  public Long getMetaModelId() {
+    return metaModelId;
+  }
+
+  public Long getRelatedId() {
+    return relatedId;
+  }
+
+  public int getTypeSelect() {
+    return typeSelect;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  @JsonIgnore
+  public LocalDateTime getDateT() {
+    return dateT;
+  }
+
+  @JsonProperty("dateT")
+  protected String getDateTValue() {
+    return dateT == null ? null : dateT.toString();
+  }
+
+  public List<Line> getLines() {
+    return lines;
+  }
+
+  public static final class Line {
+
+    private final Long metaFieldId;
+    private final String previousValue;
+    private final String newValue;
+
+    @JsonCreator
+    public Line(
+        @JsonProperty("metaFieldId") Long metaFieldId,
+        @JsonProperty("previousValue") String previousValue,
+        @JsonProperty("newValue") String newValue) {
+      this.metaFieldId = metaFieldId;
+      this.previousValue = previousValue;
+      this.newValue = newValue;
+    }
+
+    public Long getMetaFieldId() {
+      return metaFieldId;
+    }
+
+    public String getPreviousValue() {
+      return previousValue;
+    }
+
+    public String getNewValue() {
+      return newValue;
+    }
+  }
+}
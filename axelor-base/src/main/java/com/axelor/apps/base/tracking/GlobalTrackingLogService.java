@@ -26,7 +26,13 @@ public interface GlobalTrackingLogService {
 
   public GlobalTrackingLog createExportLog(MetaModel model, MetaFile metaFile);
 
-  public void deleteOldGlobalTrackingLog(int months);
+  /**
+   * Delete the logs older than the given number of months, with their lines.
+   *
+   * @param months retention period of the logs
+   * @return the number of deleted rows, logs and lines
+   */
+  public long deleteOldGlobalTrackingLog(int months);
 
   public void removeGlobalTrackingLogs(List<GlobalTrackingLog> globalTrackingLogList);
 }
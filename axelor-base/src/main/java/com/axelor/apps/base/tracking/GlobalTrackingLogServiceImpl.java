@@ -17,6 +17,7 @@
  */
 package com.axelor.apps.base.tracking;
 
+import com.axelor.app.AppSettings;
 import com.axelor.apps.base.db.GlobalTrackingLog;
 import com.axelor.apps.base.db.repo.GlobalTrackingLogRepository;
 import com.axelor.auth.AuthUtils;
@@ -33,6 +34,8 @@ import java.util.List;
 
 public class GlobalTrackingLogServiceImpl implements GlobalTrackingLogService {
 
+  protected static final int DEFAULT_PURGE_CHUNK_SIZE = 1000;
+
   protected GlobalTrackingLogRepository globalTrackingLogRepo;
   protected MetaFileRepository metaFileRepo;
 
@@ -57,19 +60,76 @@ public class GlobalTrackingLogServiceImpl implements GlobalTrackingLogService {
   }
 
   @Override
-  public void deleteOldGlobalTrackingLog(int months) {
+  public long deleteOldGlobalTrackingLog(int months) {
     final int FETCH_LIMIT = 5;
+    final LocalDateTime dateLimit = LocalDateTime.now().minusMonths(months);
+
+    // Export logs own a file, they are removed one by one to delete it too.
     final Query<GlobalTrackingLog> query =
         globalTrackingLogRepo
             .all()
-            .filter("self.createdOn <= :dateLimit")
-            .bind("dateLimit", LocalDateTime.now().minusMonths(months));
+            .filter("self.createdOn <= :dateLimit AND self.metaFile IS NOT NULL")
+            .bind("dateLimit", dateLimit);
 
+    long purged = 0;
     for (List<GlobalTrackingLog> globalTrackingLogList;
         !(globalTrackingLogList = query.fetch(FETCH_LIMIT)).isEmpty(); ) {
       removeGlobalTrackingLogs(globalTrackingLogList);
+      purged += globalTrackingLogList.size();
       JPA.clear();
     }
+
+    final int chunkSize = getPurgeChunkSize();
+    long lastId = 0;
+    for (List<Long> idList; !(idList = findOldLogIds(dateLimit, lastId, chunkSize)).isEmpty(); ) {
+      purged += purgeGlobalTrackingLogs(idList);
+      lastId = idList.get(idList.size() - 1);
+    }
+    return purged;
+  }
+
+  protected int getPurgeChunkSize() {
+    return AppSettings.get().getInt("global.tracking.purge.chunk.size", DEFAULT_PURGE_CHUNK_SIZE);
+  }
+
+  protected List<Long> findOldLogIds(LocalDateTime dateLimit, long lastId, int limit) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id FROM GlobalTrackingLog self"
+                + " WHERE self.createdOn <= :dateLimit AND self.id > :lastId"
+                + " ORDER BY self.id",
+            Long.class)
+        .setParameter("dateLimit", dateLimit)
+        .setParameter("lastId", lastId)
+        .setMaxResults(limit)
+        .getResultList();
+  }
+
+  /**
+   * Delete a chunk of logs with their lines, using one bulk statement per table in its own
+   * transaction.
+   *
+   * @param idList ids of the logs to delete
+   * @return the number of deleted rows
+   */
+  protected int purgeGlobalTrackingLogs(List<Long> idList) {
+    final int[] deleted = {0};
+    JPA.runInTransaction(
+        () -> {
+          deleted[0] +=
+              JPA.em()
+                  .createQuery(
+                      "DELETE FROM GlobalTrackingLogLine self"
+                          + " WHERE self.globalTrackingLog.id IN (:idList)")
+                  .setParameter("idList", idList)
+                  .executeUpdate();
+          deleted[0] +=
+              JPA.em()
+                  .createQuery("DELETE FROM GlobalTrackingLog self WHERE self.id IN (:idList)")
+                  .setParameter("idList", idList)
+                  .executeUpdate();
+        });
+    return deleted[0];
   }
 
   @Override
@@ -0,0 +1,426 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.tracking;
+
+import com.axelor.app.AppSettings;
+import com.axelor.apps.base.db.GlobalTrackingLog;
+import com.axelor.apps.base.db.GlobalTrackingLogLine;
+import com.axelor.auth.db.User;
+import com.axelor.db.JPA;
+import com.axelor.event.Observes;
+import com.axelor.events.ShutdownEvent;
+import com.axelor.events.StartupEvent;
+import com.axelor.meta.db.MetaField;
+import com.axelor.meta.db.MetaModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Singleton;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background writer of the tracking logs of models configured for asynchronous tracking.
+ *
+ * <p>Events are queued in a bounded queue and written by a single thread, in transactions of up to
+ * {@code global.tracking.async.batch.size} logs using JDBC batching. When the queue is full, the
+ * caller waits up to {@code global.tracking.async.offer.timeout} milliseconds, then the event is
+ * appended to a spill file instead. The spill file is replayed once the queue is drained, including
+ * after a restart. The default spill file is named after the host, as the upload directory may be
+ * shared between the nodes of a cluster. Spilled events which still can't be written after {@link
+ * #MAX_REPLAY_ATTEMPTS} replays are moved to a quarantine file next to it, which can be renamed to
+ * the spill file to be replayed again.
+ */
+@Singleton
+public class GlobalTrackingLogWriter {
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final int DEFAULT_QUEUE_SIZE = 10000;
+  protected static final int DEFAULT_BATCH_SIZE = 500;
+  protected static final int DEFAULT_OFFER_TIMEOUT = 100;
+  protected static final long POLL_TIMEOUT = 1;
+  protected static final long SHUTDOWN_TIMEOUT = 30;
+  protected static final String SPILL_FILE_PREFIX = "global-tracking-";
+  protected static final String SPILL_FILE_SUFFIX = ".spill";
+  protected static final String QUARANTINE_FILE_SUFFIX = ".failed";
+  protected static final int MAX_REPLAY_ATTEMPTS = 3;
+
+  private final BlockingQueue<GlobalTrackingEvent> queue;
+  private final int batchSize;
+  private final int offerTimeout;
+  private final Path spillFile;
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final Object spillLock = new Object();
+
+  private Thread writerThread;
+  private volatile boolean running;
+  private boolean stopped;
+
+  /** Failed replays of the current batch of the spill file, only used by the writer thread. */
+  private int replayFailures;
+
+  public GlobalTrackingLogWriter() {
+    this(AppSettings.get());
+  }
+
+  private GlobalTrackingLogWriter(AppSettings settings) {
+    this(
+        settings.getInt("global.tracking.async.queue.size", DEFAULT_QUEUE_SIZE),
+        settings.getInt("global.tracking.async.batch.size", DEFAULT_BATCH_SIZE),
+        settings.getInt("global.tracking.async.offer.timeout", DEFAULT_OFFER_TIMEOUT),
+        Paths.get(
+            settings.get(
+                "global.tracking.async.spill.file",
+                Paths.get(
+                        settings.get("file.upload.dir", System.getProperty("java.io.tmpdir")),
+                        SPILL_FILE_PREFIX + getNodeName() + SPILL_FILE_SUFFIX)
+                    .toString())));
+  }
+
+  protected GlobalTrackingLogWriter(
+      int queueSize, int batchSize, int offerTimeout, Path spillFile) {
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.batchSize = batchSize;
+    this.offerTimeout = offerTimeout;
+    this.spillFile = spillFile;
+  }
+
+  /** Name of this node, stable across restarts so that a node replays its own spill file. */
+  protected static String getNodeName() {
+    try {
+      return InetAddress.getLocalHost().getHostName().replaceAll("[^A-Za-z0-9._-]", "_");
+    } catch (UnknownHostException e) {
+      return "localhost";
+    }
+  }
+
+  /**
+   * Queue an event to be written. Blocks up to the offer timeout when the queue is full, then
+   * spills the event to disk. Once the writer is stopped, the event is spilled directly.
+   *
+   * @param event the event to write
+   */
+  public void submit(GlobalTrackingEvent event) {
+    if (start()) {
+      try {
+        if (queue.offer(event, offerTimeout, TimeUnit.MILLISECONDS)) {
+          if (!running) {
+            // Queued while stopping, possibly after the remaining events were drained.
+            spillQueue();
+          }
+          return;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    spill(Collections.singletonList(event));
+  }
+
+  /**
+   * Start the writer thread, unless it is already started or stopped.
+   *
+   * @return whether the writer is running
+   */
+  protected synchronized boolean start() {
+    if (writerThread == null && !stopped) {
+      running = true;
+      writerThread = new Thread(this::run, "global-tracking-writer");
+      writerThread.setDaemon(true);
+      writerThread.start();
+    }
+    return running;
+  }
+
+  /**
+   * Start the writer with the application, so that the events spilled before a restart are
+   * replayed without waiting for a new event.
+   *
+   * @param event startup event
+   */
+  protected void onApplicationStartup(@Observes StartupEvent event) {
+    start();
+  }
+
+  protected void run() {
+    List<GlobalTrackingEvent> events = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        GlobalTrackingEvent event = queue.poll(POLL_TIMEOUT, TimeUnit.SECONDS);
+        if (event == null) {
+          replaySpill();
+          continue;
+        }
+        events.add(event);
+        queue.drainTo(events, batchSize - 1);
+        write(events);
+      } catch (InterruptedException e) {
+        // Woken up by the shutdown, the remaining events are drained before stopping.
+      } catch (Exception e) {
+        log.error("Unable to write {} tracking logs, spilling them to disk", events.size(), e);
+        spill(events);
+      } finally {
+        events.clear();
+      }
+    }
+  }
+
+  /**
+   * Write events in a single transaction. Logs are inserted before their lines, so that each kind
+   * of insert is sent in JDBC batches.
+   */
+  protected void write(List<GlobalTrackingEvent> events) {
+    try {
+      JPA.runInTransaction(
+          () -> {
+            EntityManager em = JPA.em();
+            em.unwrap(Session.class).setJdbcBatchSize(batchSize);
+
+            List<GlobalTrackingLog> logs = new ArrayList<>(events.size());
+            for (GlobalTrackingEvent event : events) {
+              GlobalTrackingLog log = new GlobalTrackingLog();
+              log.setMetaModel(em.getReference(MetaModel.class, event.getMetaModelId()));
+              log.setRelatedId(event.getRelatedId());
+              log.setTypeSelect(event.getTypeSelect());
+              log.setDateT(event.getDateT());
+              if (event.getUserId() != null) {
+                log.setUser(em.getReference(User.class, event.getUserId()));
+              }
+              em.persist(log);
+              logs.add(log);
+            }
+            em.flush();
+
+            for (int i = 0; i < events.size(); i++) {
+              for (GlobalTrackingEvent.Line eventLine : events.get(i).getLines()) {
+                GlobalTrackingLogLine line = new GlobalTrackingLogLine();
+                line.setGlobalTrackingLog(logs.get(i));
+                line.setMetaField(em.getReference(MetaField.class, eventLine.getMetaFieldId()));
+                line.setPreviousValue(eventLine.getPreviousValue());
+                line.setNewValue(eventLine.getNewValue());
+                em.persist(line);
+              }
+            }
+            em.flush();
+          });
+    } finally {
+      // Entities of a failed transaction must not be flushed again with the next one.
+      JPA.clear();
+    }
+  }
+
+  protected void spill(Collection<GlobalTrackingEvent> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    List<String> lines = new ArrayList<>(events.size());
+    try {
+      for (GlobalTrackingEvent event : events) {
+        lines.add(mapper.writeValueAsString(event));
+      }
+      append(spillFile, lines);
+    } catch (IOException e) {
+      log.error("Unable to spill {} tracking logs to {}", events.size(), spillFile, e);
+    }
+  }
+
+  protected void spillQueue() {
+    List<GlobalTrackingEvent> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    spill(remaining);
+  }
+
+  protected void quarantine(String line) {
+    Path quarantineFile = getSiblingFile(QUARANTINE_FILE_SUFFIX);
+    try {
+      append(quarantineFile, Collections.singletonList(line));
+    } catch (IOException e) {
+      log.error("Unable to quarantine a spilled tracking log to {}: {}", quarantineFile, line, e);
+    }
+  }
+
+  protected void append(Path file, List<String> lines) throws IOException {
+    synchronized (spillLock) {
+      try (BufferedWriter writer =
+          Files.newBufferedWriter(
+              file,
+              StandardCharsets.UTF_8,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.APPEND,
+              StandardOpenOption.DSYNC)) {
+        for (String line : lines) {
+          writer.write(line);
+          writer.newLine();
+        }
+      }
+    }
+  }
+
+  protected Path getSiblingFile(String suffix) {
+    return spillFile.resolveSibling(spillFile.getFileName() + suffix);
+  }
+
+  /**
+   * Write the spilled events. The spill file is first moved aside, so that new events can be
+   * spilled while it is replayed. The number of lines already written is saved after each
+   * transaction, so a replay which fails is resumed after the last written batch on next idle
+   * time. Unreadable lines are quarantined right away.
+   */
+  protected void replaySpill() {
+    Path replayFile = getSiblingFile(".replay");
+    Path offsetFile = getSiblingFile(".offset");
+    try {
+      synchronized (spillLock) {
+        if (!Files.exists(replayFile)) {
+          if (!Files.exists(spillFile)) {
+            return;
+          }
+          Files.deleteIfExists(offsetFile);
+          Files.move(spillFile, replayFile);
+        }
+      }
+
+      long offset = readOffset(offsetFile);
+      log.debug("Replaying spilled tracking logs from {}, line {}", replayFile, offset);
+      List<GlobalTrackingEvent> events = new ArrayList<>(batchSize);
+      List<String> lines = new ArrayList<>(batchSize);
+      long lineNumber = 0;
+      try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+        for (String line; (line = reader.readLine()) != null; ) {
+          if (++lineNumber <= offset || line.isEmpty()) {
+            continue;
+          }
+          GlobalTrackingEvent event;
+          try {
+            event = mapper.readValue(line, GlobalTrackingEvent.class);
+          } catch (IOException e) {
+            // The lines before are written first, so that the line is quarantined once.
+            replay(events, lines, offsetFile, lineNumber - 1);
+            log.error("Quarantining unreadable spilled tracking log at line {}", lineNumber, e);
+            quarantine(line);
+            writeOffset(offsetFile, lineNumber);
+            continue;
+          }
+          events.add(event);
+          lines.add(line);
+          if (events.size() >= batchSize) {
+            replay(events, lines, offsetFile, lineNumber);
+          }
+        }
+      }
+      replay(events, lines, offsetFile, lineNumber);
+      Files.delete(replayFile);
+      Files.deleteIfExists(offsetFile);
+    } catch (Exception e) {
+      log.error("Unable to replay spilled tracking logs from {}", replayFile, e);
+    }
+  }
+
+  /**
+   * Write a batch of spilled events and save the offset of its last line. A batch which keeps
+   * failing is written event by event, and the events which still fail are quarantined.
+   */
+  protected void replay(
+      List<GlobalTrackingEvent> events, List<String> lines, Path offsetFile, long lineNumber)
+      throws IOException {
+    if (events.isEmpty()) {
+      return;
+    }
+    try {
+      write(events);
+    } catch (RuntimeException e) {
+      if (++replayFailures < MAX_REPLAY_ATTEMPTS) {
+        throw e;
+      }
+      log.error("Writing {} spilled tracking logs one by one", events.size(), e);
+      for (int i = 0; i < events.size(); i++) {
+        try {
+          write(Collections.singletonList(events.get(i)));
+        } catch (RuntimeException eventException) {
+          log.error("Quarantining spilled tracking log {}", lines.get(i), eventException);
+          quarantine(lines.get(i));
+        }
+      }
+    }
+    replayFailures = 0;
+    events.clear();
+    lines.clear();
+    writeOffset(offsetFile, lineNumber);
+  }
+
+  protected long readOffset(Path offsetFile) throws IOException {
+    if (!Files.exists(offsetFile)) {
+      return 0;
+    }
+    String offset = new String(Files.readAllBytes(offsetFile), StandardCharsets.UTF_8).trim();
+    return offset.isEmpty() ? 0 : Long.parseLong(offset);
+  }
+
+  protected void writeOffset(Path offsetFile, long offset) throws IOException {
+    Files.write(
+        offsetFile,
+        String.valueOf(offset).getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.DSYNC);
+  }
+
+  /**
+   * Stop the writer when the application stops, writing the queued events first. Events which
+   * can't be written in time are spilled to disk.
+   *
+   * @param event shutdown event
+   */
+  protected void onApplicationShutdown(@Observes ShutdownEvent event) {
+    Thread thread;
+    synchronized (this) {
+      thread = writerThread;
+      running = false;
+      stopped = true;
+    }
+    if (thread == null) {
+      return;
+    }
+    thread.interrupt();
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    spillQueue();
+  }
+}
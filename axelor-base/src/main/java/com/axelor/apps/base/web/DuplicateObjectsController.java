@@ -17,8 +17,11 @@
  */
 package com.axelor.apps.base.web;
 
+import com.axelor.apps.base.db.DuplicateBlockingKey;
 import com.axelor.apps.base.db.Wizard;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
+import com.axelor.apps.base.service.DuplicateFinderService;
+import com.axelor.apps.base.service.DuplicateFinderService.DuplicateSearch;
 import com.axelor.apps.base.service.DuplicateObjectsService;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
@@ -34,6 +37,7 @@ import com.axelor.rpc.Context;
 import com.google.common.base.Joiner;
 import com.google.inject.Singleton;
 import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -160,11 +164,21 @@ public class DuplicateObjectsController {
 
     if (fields.size() > 0) {
 
-      String filter = findDuplicated(request, fields, modelClass);
+      DuplicateFinderService duplicateFinderService = Beans.get(DuplicateFinderService.class);
+      DuplicateSearch search = findDuplicated(request, fields, modelClass);
 
-      if (filter == null) {
+      if (!search.getSkippedBlocks().isEmpty()) {
+        response.setNotify(
+            String.format(
+                I18n.get(IExceptionMessage.GENERAL_12),
+                search.getSkippedBlocks().size(),
+                duplicateFinderService.getMaxBlockSize()));
+      }
+
+      if (search.getSearchKey() == null) {
         response.setFlash(I18n.get(IExceptionMessage.GENERAL_1));
       } else {
+        String filter = duplicateFinderService.getDomain();
         response.setView(
             ActionView.define(I18n.get(IExceptionMessage.GENERAL_2))
                 .model(modelClass.getName())
@@ -172,6 +186,7 @@ public class DuplicateObjectsController {
                 .add("form")
                 .domain(filter)
                 .context("_domain", filter)
+                .context(DuplicateFinderService.SEARCH_KEY_PARAM, search.getSearchKey())
                 .map());
 
         if (context.get("_contextModel") != null) {
@@ -185,21 +200,24 @@ public class DuplicateObjectsController {
     }
   }
 
-  private String findDuplicated(
+  private DuplicateSearch findDuplicated(
       ActionRequest request, Set<String> fields, Class<? extends Model> modelClass)
       throws AxelorException {
 
     LOG.debug("Duplicate finder fields: {}", fields);
 
-    List<?> ids =
-        Beans.get(DuplicateObjectsService.class)
-            .findDuplicatedRecordIds(fields, modelClass, getCriteria(request, modelClass));
-
-    if (ids.isEmpty()) {
-      return null;
-    }
-
-    return "self.id in (" + Joiner.on(",").join(ids) + ")";
+    Context context = request.getContext();
+    int method =
+        context.get("duplicateMethodSelect") != null
+            ? Integer.parseInt(context.get("duplicateMethodSelect").toString())
+            : DuplicateBlockingKey.METHOD_EXACT;
+    double threshold =
+        context.get("similarityThreshold") != null
+            ? new BigDecimal(context.get("similarityThreshold").toString()).doubleValue()
+            : DuplicateFinderService.DEFAULT_SIMILARITY_THRESHOLD;
+
+    return Beans.get(DuplicateFinderService.class)
+        .findDuplicates(fields, modelClass, getCriteria(request, modelClass), method, threshold);
   }
 
   private Class<? extends Model> extractModel(ActionRequest request, Set<String> fields) {
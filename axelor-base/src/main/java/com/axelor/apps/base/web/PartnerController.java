@@ -31,6 +31,7 @@ import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.report.IReport;
 import com.axelor.apps.base.service.BankDetailsService;
 import com.axelor.apps.base.service.MapService;
+import com.axelor.apps.base.service.PartnerNameIndex;
 import com.axelor.apps.base.service.PartnerService;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.base.service.app.AppBaseService;
@@ -63,6 +64,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 import org.eclipse.birt.core.exception.BirtException;
 import org.iban4j.IbanFormatException;
 import org.iban4j.InvalidCheckDigitException;
@@ -75,6 +77,8 @@ public class PartnerController {
 
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  private static final int SIMILAR_PARTNER_LIMIT = 5;
+
   public void setPartnerSequence(ActionRequest request, ActionResponse response)
       throws AxelorException {
     Partner partner = request.getContext().asType(Partner.class);
@@ -371,10 +375,24 @@ public class PartnerController {
   public void checkPartnerName(ActionRequest request, ActionResponse response) {
     try {
       Partner partner = request.getContext().asType(Partner.class);
-      response.setAttr(
-          "duplicatePartnerText",
-          "hidden",
-          !Beans.get(PartnerService.class).isThereDuplicatePartner(partner));
+      PartnerService partnerService = Beans.get(PartnerService.class);
+      boolean isThereDuplicate = partnerService.isThereDuplicatePartner(partner);
+      response.setAttr("duplicatePartnerText", "hidden", !isThereDuplicate);
+
+      List<Partner> similarPartners =
+          isThereDuplicate
+              ? new ArrayList<>()
+              : Beans.get(PartnerNameIndex.class)
+                  .findSimilar(
+                      partnerService.computeNormalizedName(
+                          partnerService.computeSimpleFullName(partner)),
+                      partner.getPartnerTypeSelect(),
+                      partner.getId(),
+                      SIMILAR_PARTNER_LIMIT);
+      response.setValue(
+          "$similarPartnersText",
+          similarPartners.stream().map(Partner::getFullName).collect(Collectors.joining(", ")));
+      response.setAttr("$similarPartnersText", "hidden", similarPartners.isEmpty());
     } catch (Exception e) {
       TraceBackService.trace(e);
     }
@@ -20,6 +20,7 @@ package com.axelor.csv.script;
 import com.axelor.apps.base.db.FileTab;
 import com.axelor.apps.base.db.repo.FileTabRepository;
 import com.axelor.apps.base.service.advanced.imports.ActionService;
+import com.axelor.apps.base.service.advanced.imports.ChunkedDataImporter;
 import com.axelor.apps.base.service.advanced.imports.ValidatorService;
 import com.axelor.common.Inflector;
 import com.axelor.common.ObjectUtils;
@@ -42,9 +43,15 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -77,7 +84,18 @@ public class ImportAdvancedImport {
       }
     }
 
-    if (((Model) bean).getId() == null) {
+    Map<String, Queue<Long>> importedRecords =
+        (Map<String, Queue<Long>>)
+            values.get(ChunkedDataImporter.IMPORTED_RECORDS + fileTab.getId());
+
+    if (((Model) bean).getId() == null && importedRecords != null) {
+      List<Property> propList = this.getProperties(bean);
+      JPA.save((Model) bean);
+      this.collectRecord(bean, fileTab.getMetaModel().getFullName(), importedRecords);
+      for (Property prop : propList) {
+        this.collectRecord(prop.get(bean), prop.getTarget().getName(), importedRecords);
+      }
+    } else if (((Model) bean).getId() == null) {
       List<Property> propList = this.getProperties(bean);
       JPA.save((Model) bean);
       this.addJsonObjectRecord(bean, fileTab, fileTab.getMetaModel().getName(), values);
@@ -122,18 +140,62 @@ public class ImportAdvancedImport {
     return propList;
   }
 
+  private void collectRecord(
+      Object bean, String targetModelName, Map<String, Queue<Long>> importedRecords) {
+    importedRecords
+        .computeIfAbsent(targetModelName, key -> new ConcurrentLinkedQueue<>())
+        .add(((Model) bean).getId());
+  }
+
+  /**
+   * Add the records collected during the chunked import of a tab to its json fields.
+   *
+   * @param fileTab the imported tab
+   * @param jsonContextValues the json context of the tab
+   * @param importedRecords the ids of the created records, by full name of their model
+   */
+  public void addImportedRecords(
+      FileTab fileTab,
+      Map<String, Object> jsonContextValues,
+      Map<String, Queue<Long>> importedRecords) {
+
+    String modelName = fileTab.getMetaModel().getFullName();
+    int fieldSeq = 2;
+    int btnSeq = 3;
+    for (Entry<String, Queue<Long>> entry : new TreeMap<>(importedRecords).entrySet()) {
+      if (!entry.getKey().equals(modelName)) {
+        validatorService.createCustomObjectSet(
+            fileTab.getClass().getName(), entry.getKey(), fieldSeq++);
+        validatorService.createCustomButton(fileTab.getClass().getName(), entry.getKey(), btnSeq++);
+      }
+      this.addJsonObjectRecords(
+          fileTab,
+          StringUtils.substringAfterLast(entry.getKey(), "."),
+          entry.getValue(),
+          jsonContextValues);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private void addJsonObjectRecord(
       Object bean, FileTab fileTab, String fieldName, Map<String, Object> values) {
 
-    String field = Inflector.getInstance().camelize(fieldName, true) + "Set";
-    List<Object> recordList;
+    this.addJsonObjectRecords(
+        fileTab,
+        fieldName,
+        Collections.singletonList(((Model) bean).getId()),
+        (Map<String, Object>) values.get("jsonContextValues" + fileTab.getId()));
+  }
 
-    Map<String, Object> recordMap = new HashMap<String, Object>();
-    recordMap.put("id", ((Model) bean).getId());
+  @SuppressWarnings("unchecked")
+  private void addJsonObjectRecords(
+      FileTab fileTab,
+      String fieldName,
+      Collection<Long> ids,
+      Map<String, Object> jsonContextValues) {
 
-    Map<String, Object> jsonContextValues =
-        (Map<String, Object>) values.get("jsonContextValues" + fileTab.getId());
+    String field = Inflector.getInstance().camelize(fieldName, true) + "Set";
+    List<Object> recordList;
 
     JsonContext jsonContext = (JsonContext) jsonContextValues.get("jsonContext");
     Context context = (Context) jsonContextValues.get("context");
@@ -155,7 +217,11 @@ public class ImportAdvancedImport {
                       })
                   .collect(Collectors.toList());
     }
-    recordList.add(recordMap);
+    for (Long id : ids) {
+      Map<String, Object> recordMap = new HashMap<String, Object>();
+      recordMap.put("id", id);
+      recordList.add(recordMap);
+    }
     jsonContext.put(field, recordList);
 
     fileTab.setAttrs(context.get("attrs").toString());
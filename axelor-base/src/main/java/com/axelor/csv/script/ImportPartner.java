@@ -65,6 +65,34 @@ public class ImportPartner {
     return bean;
   }
 
+  /**
+   * Search call for the advanced import: find the partner to update with its normalized name, so
+   * that "ACME SARL" and "Acme" are matched with an index lookup.
+   *
+   * <p>Usable as {@code com.axelor.csv.script.ImportPartner:searchPartner} in a file tab.
+   */
+  public Object searchPartner(Map<String, Object> values) {
+
+    String name = (String) values.get("name");
+    String firstName = (String) values.get("firstName");
+    if (Strings.isNullOrEmpty(name) && Strings.isNullOrEmpty(firstName)) {
+      return null;
+    }
+
+    Partner partner = new Partner();
+    partner.setName(name);
+    partner.setFirstName(firstName);
+
+    Object partnerTypeSelect = values.get("partnerTypeSelect");
+    Integer partnerType =
+        partnerTypeSelect == null || Strings.isNullOrEmpty(partnerTypeSelect.toString())
+            ? PartnerRepository.PARTNER_TYPE_COMPANY
+            : Integer.valueOf(partnerTypeSelect.toString());
+
+    return partnerService.findByNormalizedName(
+        partnerService.computeSimpleFullName(partner), partnerType);
+  }
+
   public Object updateContacts(Object bean, Map<String, Object> values) {
 
     assert bean instanceof Partner;
@@ -0,0 +1,88 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.web;
+
+import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.db.repo.BatchRepository;
+import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.BatchProgress;
+import com.axelor.db.JpaSecurity;
+import com.axelor.inject.Beans;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+@Path("/batch")
+public class BatchProgressRest {
+
+  @Inject private BatchRepository batchRepo;
+
+  JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+
+  /**
+   * Live progress of a batch. Counters of a batch running on this node are read from memory, the
+   * batch record is only read once the batch is over or when it runs on another node, see {@link
+   * AbstractBatch#isRunning(Batch)}.
+   *
+   * @param id the batch id
+   * @return
+   */
+  @Path("/{id}/progress")
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public JsonNode getProgress(@PathParam("id") long id) {
+    Beans.get(JpaSecurity.class).check(JpaSecurity.CAN_READ, Batch.class, id);
+
+    ObjectNode mainNode = nodeFactory.objectNode();
+    BatchProgress progress = AbstractBatch.getProgress(id);
+
+    if (progress != null) {
+      mainNode.put("id", id);
+      mainNode.put("running", true);
+      mainNode.put("startDate", progress.getStartDate().toString());
+      mainNode.put("done", progress.getDone());
+      mainNode.put("anomaly", progress.getAnomaly());
+      return mainNode;
+    }
+
+    Batch batch = batchRepo.find(id);
+    if (batch == null) {
+      mainNode.put("status", -1);
+      return mainNode;
+    }
+
+    mainNode.put("id", id);
+    mainNode.put("running", AbstractBatch.isRunning(batch));
+    mainNode.put("failed", Boolean.TRUE.equals(batch.getFailed()));
+    if (batch.getStartDate() != null) {
+      mainNode.put("startDate", batch.getStartDate().toString());
+    }
+    if (batch.getEndDate() != null) {
+      mainNode.put("endDate", batch.getEndDate().toString());
+    }
+    mainNode.put("done", batch.getDone());
+    mainNode.put("anomaly", batch.getAnomaly());
+    return mainNode;
+  }
+}
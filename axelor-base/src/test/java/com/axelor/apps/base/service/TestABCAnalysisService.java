@@ -0,0 +1,224 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.ABCAnalysis;
+import com.axelor.apps.base.db.ABCAnalysisClass;
+import com.axelor.apps.base.db.ABCAnalysisLine;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.repo.ABCAnalysisClassRepository;
+import com.axelor.apps.base.db.repo.ABCAnalysisLineRepository;
+import com.axelor.apps.base.db.repo.ABCAnalysisRepository;
+import com.axelor.apps.base.db.repo.ProductRepository;
+import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.apps.base.test.BaseTestModule;
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import com.google.inject.Inject;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import org.hibernate.Session;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GuiceRunner.class)
+@GuiceModules({BaseTestModule.class})
+public class TestABCAnalysisService {
+
+  private Unit piece;
+  private Unit box;
+  private Product product1;
+  private Product product2;
+  private Product product3;
+  private Product emptyProduct;
+  private Product otherProduct;
+  private ABCAnalysis abcAnalysis;
+
+  private TestABCAnalysisService abcAnalysisService;
+
+  /** Reads the summed values from the test instead of the documents of a module. */
+  public static class TestABCAnalysisService extends ABCAnalysisServiceImpl {
+
+    private List<Object[]> aggregatedValues = new ArrayList<>();
+
+    @Inject
+    public TestABCAnalysisService(
+        ABCAnalysisLineRepository abcAnalysisLineRepository,
+        UnitConversionService unitConversionService,
+        ABCAnalysisRepository abcAnalysisRepository,
+        ProductRepository productRepository,
+        ABCAnalysisClassRepository abcAnalysisClassRepository,
+        SequenceService sequenceService) {
+      super(
+          abcAnalysisLineRepository,
+          unitConversionService,
+          abcAnalysisRepository,
+          productRepository,
+          abcAnalysisClassRepository,
+          sequenceService);
+    }
+
+    @Override
+    protected List<Object[]> getAggregatedValues(ABCAnalysis abcAnalysis) {
+      return aggregatedValues;
+    }
+  }
+
+  @Before
+  public void prepare() throws Exception {
+    String prefix = "TEST-ABC-" + UUID.randomUUID() + "-";
+    JPA.runInTransaction(
+        () -> {
+          piece = new Unit();
+          piece.setName(prefix + "piece");
+          piece = JPA.save(piece);
+          box = new Unit();
+          box.setName(prefix + "box");
+          box = JPA.save(box);
+
+          List<Product> products = new ArrayList<>();
+          for (String name : Arrays.asList("1", "2", "3", "empty", "other")) {
+            Product product = new Product();
+            product.setName(prefix + name);
+            product.setCode(prefix + name);
+            product.setUnit(piece);
+            products.add(JPA.save(product));
+          }
+          product1 = products.get(0);
+          product2 = products.get(1);
+          product3 = products.get(2);
+          emptyProduct = products.get(3);
+          otherProduct = products.get(4);
+
+          abcAnalysis = new ABCAnalysis();
+          abcAnalysis.setName(prefix);
+          abcAnalysis.setProductSet(
+              new HashSet<>(Arrays.asList(product1, product2, product3, emptyProduct)));
+          abcAnalysis.setProductCategorySet(new HashSet<>());
+          abcAnalysis.setProductFamilySet(new HashSet<>());
+          JPA.save(abcAnalysis);
+
+          abcAnalysisService = Beans.get(TestABCAnalysisService.class);
+          for (ABCAnalysisClass abcAnalysisClass : abcAnalysisService.initABCClasses()) {
+            abcAnalysisClass.setAbcAnalysis(abcAnalysis);
+            JPA.save(abcAnalysisClass);
+          }
+        });
+
+    // A box holds 12 pieces.
+    abcAnalysisService.unitConversionService = mock(UnitConversionService.class);
+    when(abcAnalysisService.unitConversionService.convert(any(), any(), any(), anyInt(), any()))
+        .then(invocation -> invocation.<BigDecimal>getArgument(2).multiply(BigDecimal.valueOf(12)));
+
+    abcAnalysisService.aggregatedValues =
+        Arrays.asList(
+            row(product1, piece, 20, 800),
+            row(product2, box, 2, 100),
+            row(product2, piece, 6, 50),
+            row(product3, piece, 50, 50),
+            row(emptyProduct, piece, 0, 0),
+            row(otherProduct, piece, 1000, 10000));
+  }
+
+  @Test
+  public void testLinesAreAggregatedAndClassified() throws Exception {
+    abcAnalysisService.runAnalysis(abcAnalysis);
+
+    JPA.clear();
+    List<ABCAnalysisLine> lines =
+        JPA.all(ABCAnalysisLine.class)
+            .filter("self.abcAnalysis.id = ?", abcAnalysis.getId())
+            .order("-decimalWorth")
+            .fetch();
+
+    Assert.assertEquals(3, lines.size());
+    assertLine(lines.get(0), product1, "20", "800", "20.000", "80.000", "A");
+    assertLine(lines.get(1), product2, "30", "150", "50.000", "95.000", "B");
+    assertLine(lines.get(2), product3, "50", "50", "100.000", "100.000", "C");
+
+    verify(abcAnalysisService.unitConversionService, times(1))
+        .convert(any(), any(), any(), anyInt(), any());
+    Assert.assertEquals(
+        ABCAnalysisRepository.STATUS_FINISHED,
+        (int) JPA.find(ABCAnalysis.class, abcAnalysis.getId()).getStatusSelect());
+  }
+
+  @Test
+  public void testJdbcBatchSizeIsRestored() throws Exception {
+    Session session = JPA.em().unwrap(Session.class);
+    Integer jdbcBatchSize = session.getJdbcBatchSize();
+
+    abcAnalysisService.runAnalysis(abcAnalysis);
+
+    Assert.assertEquals(jdbcBatchSize, JPA.em().unwrap(Session.class).getJdbcBatchSize());
+  }
+
+  @Test
+  public void testRunAgainReplacesLines() throws Exception {
+    abcAnalysisService.runAnalysis(abcAnalysis);
+    abcAnalysisService.runAnalysis(JPA.find(ABCAnalysis.class, abcAnalysis.getId()));
+
+    Assert.assertEquals(
+        3,
+        JPA.all(ABCAnalysisLine.class)
+            .filter("self.abcAnalysis.id = ?", abcAnalysis.getId())
+            .count());
+  }
+
+  private void assertLine(
+      ABCAnalysisLine line,
+      Product product,
+      String decimalQty,
+      String decimalWorth,
+      String cumulatedQty,
+      String cumulatedWorth,
+      String className) {
+    Assert.assertEquals(product.getId(), line.getProduct().getId());
+    Assert.assertEquals(0, new BigDecimal(decimalQty).compareTo(line.getDecimalQty()));
+    Assert.assertEquals(0, new BigDecimal(decimalWorth).compareTo(line.getDecimalWorth()));
+    Assert.assertEquals(0, new BigDecimal(cumulatedQty).compareTo(line.getCumulatedQty()));
+    Assert.assertEquals(0, new BigDecimal(cumulatedWorth).compareTo(line.getCumulatedWorth()));
+    Assert.assertEquals(className, line.getAbcAnalysisClass().getName());
+  }
+
+  private Object[] row(Product product, Unit unit, long qty, long worth) {
+    return new Object[] {
+      product.getId(),
+      piece.getId(),
+      unit.getId(),
+      BigDecimal.valueOf(qty),
+      BigDecimal.valueOf(worth)
+    };
+  }
+}
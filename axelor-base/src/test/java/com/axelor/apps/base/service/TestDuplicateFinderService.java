@@ -0,0 +1,101 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.base.db.DuplicateBlockingKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDuplicateFinderService {
+
+  private DuplicateFinderService duplicateFinderService;
+
+  @Before
+  public void prepare() {
+    duplicateFinderService = new DuplicateFinderService(mock(DuplicateObjectsService.class));
+  }
+
+  @Test
+  public void testSimilarRecordsAreMatched() {
+    Set<Long> matchedIds = new HashSet<>();
+    List<String> skippedBlocks = new ArrayList<>();
+
+    duplicateFinderService.matchBlock(
+        "J500",
+        Arrays.asList(row("J500", 1L, "john smith"), row("J500", 2L, "jon smith")),
+        DuplicateBlockingKey.METHOD_TRIGRAM,
+        0.5,
+        matchedIds,
+        skippedBlocks);
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), matchedIds);
+    Assert.assertTrue(skippedBlocks.isEmpty());
+  }
+
+  @Test
+  public void testOversizedBlockIsReported() {
+    List<Object[]> block = new ArrayList<>();
+    for (long id = 1; id <= duplicateFinderService.getMaxBlockSize() + 1; id++) {
+      block.add(row("S530", id, "smith"));
+    }
+    Set<Long> matchedIds = new HashSet<>();
+    List<String> skippedBlocks = new ArrayList<>();
+
+    duplicateFinderService.matchBlock(
+        "S530", block, DuplicateBlockingKey.METHOD_TRIGRAM, 0.5, matchedIds, skippedBlocks);
+
+    Assert.assertTrue(matchedIds.isEmpty());
+    Assert.assertEquals(Arrays.asList("S530"), skippedBlocks);
+  }
+
+  @Test
+  public void testExactBlockIsNeverSkipped() {
+    List<Object[]> block = new ArrayList<>();
+    for (long id = 1; id <= duplicateFinderService.getMaxBlockSize() + 1; id++) {
+      block.add(row("smith", id, "smith"));
+    }
+    Set<Long> matchedIds = new HashSet<>();
+    List<String> skippedBlocks = new ArrayList<>();
+
+    duplicateFinderService.matchBlock(
+        "smith", block, DuplicateBlockingKey.METHOD_EXACT, 0.5, matchedIds, skippedBlocks);
+
+    Assert.assertEquals(block.size(), matchedIds.size());
+    Assert.assertTrue(skippedBlocks.isEmpty());
+  }
+
+  @Test
+  public void testSearchKeyIsBound() {
+    String domain = duplicateFinderService.getDomain();
+
+    Assert.assertTrue(domain.contains(":" + DuplicateFinderService.SEARCH_KEY_PARAM));
+    Assert.assertFalse(domain.contains("'"));
+  }
+
+  private Object[] row(String blockingKey, Long recordId, String normalizedValue) {
+    return new Object[] {blockingKey, recordId, normalizedValue};
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.AppBase;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.ProductCompany;
+import com.axelor.apps.base.db.repo.ProductCompanyRepository;
+import com.axelor.apps.base.service.app.AppBaseConfig;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.db.Query;
+import com.axelor.exception.AxelorException;
+import com.axelor.meta.db.MetaField;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestProductCompanyService {
+
+  private final Company company1 = new Company();
+
+  private final Company company2 = new Company();
+
+  private final Product product1 = new Product();
+
+  private final Product product2 = new Product();
+
+  private final List<ProductCompany> productCompanyRecords = new ArrayList<>();
+
+  private ProductCompanyServiceImpl productCompanyService;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void prepare() {
+    company1.setId(1000L);
+    company2.setId(2000L);
+    product1.setId(1L);
+    product1.setCode("P1");
+    product1.setCostPrice(new BigDecimal("10"));
+    product2.setId(2L);
+    product2.setCode("P2");
+    product2.setCostPrice(new BigDecimal("20"));
+
+    AppBase appBase = new AppBase();
+    MetaField costPrice = new MetaField();
+    costPrice.setName("costPrice");
+    appBase.setCompanySpecificProductFieldsSet(new HashSet<>(Arrays.asList(costPrice)));
+    AppBaseService appBaseService = mock(AppBaseService.class);
+    when(appBaseService.getAppBaseConfig()).thenReturn(new AppBaseConfig(appBase));
+
+    ProductCompanyRepository productCompanyRepo = mock(ProductCompanyRepository.class);
+    Query<ProductCompany> query = mock(Query.class);
+    when(productCompanyRepo.all()).thenReturn(query);
+    when(query.filter(anyString())).thenReturn(query);
+    when(query.bind(anyString(), any())).thenReturn(query);
+    when(query.fetch()).thenAnswer(invocation -> new ArrayList<>(productCompanyRecords));
+
+    productCompanyService = new ProductCompanyServiceImpl();
+    productCompanyService.appBaseService = appBaseService;
+    productCompanyService.productCompanyRepo = productCompanyRepo;
+  }
+
+  @Test
+  public void testGet() throws AxelorException {
+    addProductCompany(product1, company1, "12");
+
+    Assert.assertEquals(new BigDecimal("12"), getCostPrice(product1, company1));
+    Assert.assertEquals(new BigDecimal("10"), getCostPrice(product1, company2));
+    Assert.assertEquals(new BigDecimal("10"), getCostPrice(product1, null));
+    // Fields which are not company-specific are read from the product.
+    Assert.assertEquals("P1", productCompanyService.get(product1, "code", company1));
+  }
+
+  /** Changes to the company-specific versions are seen by the next read. */
+  @Test
+  public void testGetAfterChange() throws AxelorException {
+    addProductCompany(product1, company1, "12");
+    Assert.assertEquals(new BigDecimal("12"), getCostPrice(product1, company1));
+
+    product1.getProductCompanyList().get(0).setCompany(company2);
+    Assert.assertEquals(new BigDecimal("10"), getCostPrice(product1, company1));
+    Assert.assertEquals(new BigDecimal("12"), getCostPrice(product1, company2));
+  }
+
+  @Test
+  public void testSet() throws AxelorException {
+    ProductCompany productCompany = addProductCompany(product1, company1, "12");
+
+    productCompanyService.set(product1, "costPrice", new BigDecimal("15"), company1);
+    Assert.assertEquals(new BigDecimal("15"), productCompany.getCostPrice());
+    Assert.assertEquals(new BigDecimal("10"), product1.getCostPrice());
+  }
+
+  @Test
+  public void testGetCollection() throws AxelorException {
+    addProductCompany(product1, company1, "12");
+    productCompanyRecords.addAll(product1.getProductCompanyList());
+
+    Map<Long, Object> values =
+        productCompanyService.get(Arrays.asList(product1, product2), "costPrice", company1);
+    Assert.assertEquals(new BigDecimal("12"), values.get(1L));
+    Assert.assertEquals(new BigDecimal("20"), values.get(2L));
+  }
+
+  @Test(expected = AxelorException.class)
+  public void testMissingField() throws AxelorException {
+    productCompanyService.get(product1, " ", company1);
+  }
+
+  private Object getCostPrice(Product product, Company company) throws AxelorException {
+    return productCompanyService.get(product, "costPrice", company);
+  }
+
+  private ProductCompany addProductCompany(Product product, Company company, String costPrice) {
+    ProductCompany productCompany = new ProductCompany();
+    productCompany.setId(product.getId() * 100 + company.getId());
+    productCompany.setProduct(product);
+    productCompany.setCompany(company);
+    productCompany.setCostPrice(new BigDecimal(costPrice));
+    if (product.getProductCompanyList() == null) {
+      product.setProductCompanyList(new ArrayList<>());
+    }
+    product.getProductCompanyList().add(productCompany);
+    return productCompany;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.UnitConversion;
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
+import com.axelor.apps.base.service.script.GroovyScriptService;
+import groovy.lang.GroovyShell;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestUnitConversionGraph {
+
+  private final Unit box = new Unit();
+
+  private final Unit pack = new Unit();
+
+  private final Unit piece = new Unit();
+
+  private final List<UnitConversion> conversionList = new ArrayList<>();
+
+  private GroovyScriptService groovyScriptService;
+
+  private UnitConversionGraph unitConversionGraph;
+
+  private Runnable onSearch;
+
+  private Runnable onFetch;
+
+  @Before
+  public void prepare() {
+    box.setId(1L);
+    pack.setId(2L);
+    piece.setId(3L);
+
+    UnitConversionRepository unitConversionRepo =
+        mock(UnitConversionRepository.class, RETURNS_DEEP_STUBS);
+    when(unitConversionRepo.all().fetch())
+        .thenAnswer(
+            invocation -> {
+              List<UnitConversion> fetched = new ArrayList<>(conversionList);
+              if (onFetch != null) {
+                Runnable action = onFetch;
+                onFetch = null;
+                action.run();
+              }
+              return fetched;
+            });
+
+    groovyScriptService = mock(GroovyScriptService.class);
+    when(groovyScriptService.compile(anyString()))
+        .thenAnswer(
+            invocation -> new GroovyShell().parse(invocation.<String>getArgument(0)).getClass());
+
+    unitConversionGraph =
+        new UnitConversionGraph(unitConversionRepo, groovyScriptService) {
+          @Override
+          protected List<Edge> searchPath(
+              Map<Long, List<Edge>> graph,
+              Long startUnitId,
+              Long endUnitId,
+              boolean withFormula) {
+            if (onSearch != null) {
+              Runnable action = onSearch;
+              onSearch = null;
+              action.run();
+            }
+            return super.searchPath(graph, startUnitId, endUnitId, withFormula);
+          }
+        };
+  }
+
+  @Test
+  public void testPathThroughIntermediateUnit() {
+    addCoefConversion(box, pack, "10");
+    addCoefConversion(pack, piece, "6");
+
+    List<UnitConversionGraph.Edge> path = unitConversionGraph.findPath(1L, 3L, false);
+    Assert.assertEquals(2, path.size());
+    Assert.assertEquals(
+        new BigDecimal("60"), path.get(0).getCoef().multiply(path.get(1).getCoef()));
+
+    List<UnitConversionGraph.Edge> inversePath = unitConversionGraph.findPath(3L, 1L, false);
+    Assert.assertEquals(2, inversePath.size());
+    Assert.assertTrue(inversePath.get(0).isInverse());
+    Assert.assertEquals(new BigDecimal("0.166666666667"), inversePath.get(0).getCoef());
+  }
+
+  @Test
+  public void testFormulaNeedsProduct() {
+    addFormulaConversion(box, piece, "$Product.netMass$ * 2");
+
+    Assert.assertNull(unitConversionGraph.findPath(1L, 3L, false));
+    Assert.assertEquals(1, unitConversionGraph.findPath(1L, 3L, true).size());
+  }
+
+  @Test
+  public void testInvalidate() {
+    addCoefConversion(box, pack, "10");
+    Assert.assertNotNull(unitConversionGraph.findPath(1L, 2L, false));
+
+    conversionList.clear();
+    Assert.assertNotNull(unitConversionGraph.findPath(1L, 2L, false));
+
+    unitConversionGraph.invalidate();
+    Assert.assertNull(unitConversionGraph.findPath(1L, 2L, false));
+  }
+
+  /** A graph built while being invalidated must not be kept. */
+  @Test
+  public void testInvalidateDuringBuild() {
+    addCoefConversion(box, pack, "10");
+    onFetch =
+        () -> {
+          conversionList.clear();
+          unitConversionGraph.invalidate();
+        };
+
+    Assert.assertNotNull(unitConversionGraph.findPath(1L, 2L, false));
+    Assert.assertNull(unitConversionGraph.findPath(1L, 2L, false));
+  }
+
+  /** A path searched while the graph is invalidated must not be used after the invalidation. */
+  @Test
+  public void testInvalidateDuringSearch() {
+    addCoefConversion(box, pack, "10");
+    onSearch =
+        () -> {
+          conversionList.clear();
+          unitConversionGraph.invalidate();
+        };
+
+    Assert.assertNotNull(unitConversionGraph.findPath(1L, 2L, false));
+    Assert.assertNull(unitConversionGraph.findPath(1L, 2L, false));
+  }
+
+  @Test
+  public void testFormulaFields() {
+    UnitConversionGraph.Formula formula =
+        new UnitConversionGraph.Formula("$Product.netMass$ * 2", groovyScriptService);
+    Assert.assertTrue(formula.isCompiled());
+
+    Product product = new Product();
+    product.setNetMass(new BigDecimal("1.5"));
+    Assert.assertEquals(0, new BigDecimal("3").compareTo(formula.evaluate(product)));
+  }
+
+  /** Empty fields are bound as the empty string the template engine rendered. */
+  @Test
+  public void testFormulaEmptyFields() {
+    UnitConversionGraph.Formula formula =
+        new UnitConversionGraph.Formula("'$Product.code$' == '' ? 1 : 2", groovyScriptService);
+    Assert.assertTrue(formula.isCompiled());
+
+    Product product = new Product();
+    Assert.assertEquals(BigDecimal.ONE, formula.evaluate(product));
+
+    product.setCode("PCS");
+    Assert.assertEquals(new BigDecimal("2"), formula.evaluate(product));
+
+    UnitConversionGraph.Formula concatenation =
+        new UnitConversionGraph.Formula("('1$Product.code$').size()", groovyScriptService);
+    Assert.assertEquals(new BigDecimal("4"), concatenation.evaluate(product));
+  }
+
+  @Test
+  public void testFormulaNotCompiled() {
+    Assert.assertFalse(
+        new UnitConversionGraph.Formula("$__date__$.year", groovyScriptService).isCompiled());
+    Assert.assertFalse(
+        new UnitConversionGraph.Formula("$Product.unknownField$", groovyScriptService)
+            .isCompiled());
+    Assert.assertFalse(
+        new UnitConversionGraph.Formula(
+                "$if(Product.netMass)$1$else$2$endif$", groovyScriptService)
+            .isCompiled());
+  }
+
+  private void addCoefConversion(Unit startUnit, Unit endUnit, String coef) {
+    UnitConversion unitConversion = new UnitConversion();
+    unitConversion.setStartUnit(startUnit);
+    unitConversion.setEndUnit(endUnit);
+    unitConversion.setTypeSelect(UnitConversionRepository.TYPE_COEFF);
+    unitConversion.setCoef(new BigDecimal(coef));
+    conversionList.add(unitConversion);
+  }
+
+  private void addFormulaConversion(Unit startUnit, Unit endUnit, String formula) {
+    UnitConversion unitConversion = new UnitConversion();
+    unitConversion.setStartUnit(startUnit);
+    unitConversion.setEndUnit(endUnit);
+    unitConversion.setTypeSelect(UnitConversionRepository.TYPE_FORMULA);
+    unitConversion.setFormula(formula);
+    conversionList.add(unitConversion);
+  }
+}
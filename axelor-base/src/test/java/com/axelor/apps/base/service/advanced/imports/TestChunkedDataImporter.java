@@ -0,0 +1,186 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.advanced.imports;
+
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.base.db.City;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.tool.ImportReferenceResolver;
+import com.axelor.data.Listener;
+import com.axelor.data.csv.CSVBind;
+import com.axelor.data.csv.CSVInput;
+import com.axelor.db.mapper.Mapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestChunkedDataImporter {
+
+  @Rule public TemporaryFolder dataDir = new TemporaryFolder();
+
+  private ChunkedDataImporter importer;
+
+  @Before
+  public void prepare() {
+    importer =
+        new ChunkedDataImporter(
+            dataDir.getRoot(), ';', null, new HashMap<>(), mock(Listener.class));
+  }
+
+  @Test
+  public void testSplitKeepsHeaderAndRows() throws IOException {
+    String[] header = {"name", "country"};
+    List<String[]> rows = new ArrayList<>();
+    for (int i = 0; i < importer.chunkSize * 2 + 1; i++) {
+      rows.add(new String[] {"City " + i, "FR"});
+    }
+    File file = writeFile("city.csv", header, rows);
+
+    List<File> chunks = importer.split(file, importer.readHeader(file));
+
+    Assert.assertEquals(3, chunks.size());
+    List<String[]> chunkRows = new ArrayList<>();
+    for (File chunk : chunks) {
+      List<String[]> lines = readFile(chunk);
+      Assert.assertArrayEquals(header, lines.get(0));
+      chunkRows.addAll(lines.subList(1, lines.size()));
+    }
+    Assert.assertEquals(importer.chunkSize, readFile(chunks.get(0)).size() - 1);
+    Assert.assertEquals(rows.size(), chunkRows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      Assert.assertArrayEquals(rows.get(i), chunkRows.get(i));
+    }
+  }
+
+  @Test
+  public void testSplitEmptyFile() throws IOException {
+    File file = writeFile("city.csv", new String[] {"name"}, Collections.emptyList());
+
+    Assert.assertTrue(importer.split(file, importer.readHeader(file)).isEmpty());
+  }
+
+  @Test
+  public void testCollectValues() throws IOException {
+    File file =
+        writeFile(
+            "city.csv",
+            new String[] {"name", "country"},
+            Arrays.asList(
+                new String[] {"Paris", "FR"},
+                new String[] {"Lyon", "FR"},
+                new String[] {"Berlin", "DE"},
+                new String[] {"Nowhere", ""}));
+
+    Map<String, Set<String>> values =
+        importer.collectValues(
+            file, importer.readHeader(file), Collections.singletonList("country"));
+
+    Assert.assertEquals(Sets.newHashSet("FR", "DE"), values.get("country"));
+  }
+
+  @Test
+  public void testSearchOnStringFieldIsResolved() {
+    CSVBind bind = createBind("country", "self.alpha2Code = :country");
+    CSVInput input = createInput(City.class, bind);
+
+    Map<String, ImportReferenceResolver.Lookup> lookups =
+        importer.prepareLookups(input, new String[] {"name", "country"}, Mapper.of(City.class));
+
+    Assert.assertEquals(Collections.singleton("country"), lookups.keySet());
+    Assert.assertNull(bind.getSearch());
+    Assert.assertEquals("__references__.get('country', country)", bind.getExpression());
+  }
+
+  @Test
+  public void testSearchesKeptWhenNotResolvable() {
+    CSVBind missingColumn = createBind("country", "self.alpha2Code = :countryCode");
+    CSVBind notString = createBind("country", "self.id = :country");
+    CSVBind twoFields = createBind("country", "self.alpha2Code = :country AND self.id > 0");
+    CSVInput input = createInput(City.class, missingColumn, notString, twoFields);
+
+    Map<String, ImportReferenceResolver.Lookup> lookups =
+        importer.prepareLookups(input, new String[] {"name", "country"}, Mapper.of(City.class));
+
+    Assert.assertTrue(lookups.isEmpty());
+    Assert.assertEquals("self.alpha2Code = :countryCode", missingColumn.getSearch());
+    Assert.assertEquals("self.id = :country", notString.getSearch());
+    Assert.assertNull(notString.getExpression());
+  }
+
+  @Test
+  public void testSearchOnTabModelIsKept() {
+    CSVBind bind = createBind("parentPartner", "self.partnerSeq = :parent");
+    CSVInput input = createInput(Partner.class, bind);
+
+    Map<String, ImportReferenceResolver.Lookup> lookups =
+        importer.prepareLookups(input, new String[] {"name", "parent"}, Mapper.of(Partner.class));
+
+    Assert.assertTrue(lookups.isEmpty());
+    Assert.assertEquals("self.partnerSeq = :parent", bind.getSearch());
+  }
+
+  private CSVBind createBind(String field, String search) {
+    CSVBind bind = new CSVBind();
+    bind.setField(field);
+    bind.setSearch(search);
+    return bind;
+  }
+
+  private CSVInput createInput(Class<?> klass, CSVBind... binds) {
+    CSVInput input = new CSVInput();
+    input.setFileName(klass.getSimpleName() + ".csv");
+    input.setTypeName(klass.getName());
+    input.setBindings(Lists.newArrayList(binds));
+    return input;
+  }
+
+  private File writeFile(String name, String[] header, List<String[]> rows) throws IOException {
+    File file = new File(dataDir.getRoot(), name);
+    try (CSVWriter writer = new CSVWriter(new FileWriter(file), ';')) {
+      writer.writeNext(header);
+      for (String[] row : rows) {
+        writer.writeNext(row);
+      }
+    }
+    return file;
+  }
+
+  private List<String[]> readFile(File file) throws IOException {
+    try (CSVReader reader = new CSVReader(new FileReader(file), ';')) {
+      return reader.readAll();
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.advancedExport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.AdvancedExport;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.Query;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAdvancedExportGenerator {
+
+  private static final int KEYSET_PARAM_POSITION = 1;
+
+  /** Rows of the export query ordered by record id: an exported column, then the record id. */
+  @SuppressWarnings("rawtypes")
+  private List<List> tableRows;
+
+  @SuppressWarnings("rawtypes")
+  private List<List> exportedRows;
+
+  private long lastId;
+
+  private int maxResults;
+
+  private Query query;
+
+  private AdvancedExportGenerator exportGenerator;
+
+  @Before
+  public void prepare() {
+    tableRows = new ArrayList<>();
+    exportedRows = new ArrayList<>();
+
+    query = mock(Query.class);
+    when(query.setParameter(anyInt(), any()))
+        .then(
+            invocation -> {
+              lastId = invocation.getArgument(1);
+              return query;
+            });
+    when(query.setMaxResults(anyInt()))
+        .then(
+            invocation -> {
+              maxResults = invocation.getArgument(0);
+              return query;
+            });
+    when(query.getResultList()).then(invocation -> fetchPage());
+
+    exportGenerator = new TestExportGenerator();
+  }
+
+  @Test
+  public void testCollectionRowsSpanningPageBoundary() throws Exception {
+    addRecord(1L, "a");
+    addRecord(2L, "b1", "b2", "b3");
+    addRecord(3L, "c");
+
+    int count = exportGenerator.generateBodyByKeyset(query, KEYSET_PARAM_POSITION, 100, 3);
+
+    Assert.assertEquals(5, count);
+    Assert.assertEquals(Arrays.asList("a", "b1", "b2", "b3", "c"), getExportedValues());
+  }
+
+  @Test
+  public void testRecordLargerThanPage() throws Exception {
+    addRecord(1L, "a1", "a2", "a3", "a4", "a5");
+    addRecord(2L, "b");
+
+    int count = exportGenerator.generateBodyByKeyset(query, KEYSET_PARAM_POSITION, 100, 2);
+
+    Assert.assertEquals(6, count);
+    Assert.assertEquals(Arrays.asList("a1", "a2", "a3", "a4", "a5", "b"), getExportedValues());
+  }
+
+  @Test
+  public void testMaxExportLimit() throws Exception {
+    addRecord(1L, "a");
+    addRecord(2L, "b1", "b2");
+    addRecord(3L, "c");
+
+    int count = exportGenerator.generateBodyByKeyset(query, KEYSET_PARAM_POSITION, 2, 10);
+
+    Assert.assertEquals(2, count);
+    Assert.assertEquals(Arrays.asList("a", "b1"), getExportedValues());
+  }
+
+  @Test
+  public void testRecordIdIsRemoved() throws Exception {
+    addRecord(1L, "a");
+
+    exportGenerator.generateBodyByKeyset(query, KEYSET_PARAM_POSITION, 100, 10);
+
+    Assert.assertEquals(1, exportedRows.get(0).size());
+  }
+
+  private void addRecord(Long id, String... values) {
+    for (String value : values) {
+      tableRows.add(Arrays.asList(value, id));
+    }
+  }
+
+  @SuppressWarnings("rawtypes")
+  private List<List> fetchPage() {
+    return tableRows.stream()
+        .filter(row -> (Long) row.get(1) > lastId)
+        .limit(maxResults)
+        .map(row -> (List) new ArrayList<>(row))
+        .collect(Collectors.toList());
+  }
+
+  private List<Object> getExportedValues() {
+    return exportedRows.stream().map(row -> row.get(0)).collect(Collectors.toList());
+  }
+
+  private class TestExportGenerator extends AdvancedExportGenerator {
+
+    @Override
+    public void generateHeader() {}
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void generateBody(List<List> dataList) {
+      exportedRows.addAll(dataList);
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public AdvancedExport getAdvancedExport() {
+      return new AdvancedExport();
+    }
+
+    @Override
+    public File getExportFile() {
+      return null;
+    }
+
+    @Override
+    public String getFileName() {
+      return "export";
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.app;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAppConfigCache {
+
+  private final AppConfigCache appConfigCache = new AppConfigCache();
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  public void testCached() {
+    Assert.assertEquals("a", get("key1", "a"));
+    Assert.assertEquals("a", get("key1", "b"));
+    Assert.assertNull(get("key2", null));
+    Assert.assertNull(get("key2", "c"));
+    Assert.assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testInvalidate() {
+    get("key1", "a");
+    long version = appConfigCache.getVersion();
+
+    appConfigCache.invalidate();
+    Assert.assertEquals(version + 1, appConfigCache.getVersion());
+    Assert.assertEquals("b", get("key1", "b"));
+    Assert.assertEquals(2, loads.get());
+  }
+
+  /** A value computed while an app record is saved is not kept in the next snapshot. */
+  @Test
+  public void testInvalidateDuringLoad() {
+    String value =
+        appConfigCache.get(
+            "key1",
+            () -> {
+              appConfigCache.invalidate();
+              return "a";
+            });
+    Assert.assertEquals("a", value);
+
+    Assert.assertEquals("b", get("key1", "b"));
+    Assert.assertEquals(1, loads.get());
+  }
+
+  /**
+   * A value computed while an app record is saved is not kept either when other values were added
+   * to the next snapshot in the meantime.
+   */
+  @Test
+  public void testInvalidateAndLoadDuringLoad() {
+    String value =
+        appConfigCache.get(
+            "key1",
+            () -> {
+              appConfigCache.invalidate();
+              get("key2", "b");
+              return "a";
+            });
+    Assert.assertEquals("a", value);
+
+    Assert.assertEquals("c", get("key1", "c"));
+    Assert.assertEquals("b", get("key2", "d"));
+    Assert.assertEquals(2, loads.get());
+  }
+
+  private String get(String key, String value) {
+    return appConfigCache.get(
+        key,
+        () -> {
+          loads.incrementAndGet();
+          return value;
+        });
+  }
+}
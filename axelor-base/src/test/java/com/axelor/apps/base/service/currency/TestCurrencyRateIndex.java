@@ -0,0 +1,156 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.currency;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.CurrencyConversionLine;
+import com.axelor.apps.base.service.app.AppBaseService;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCurrencyRateIndex {
+
+  private final Currency eur = new Currency();
+
+  private final Currency usd = new Currency();
+
+  private final List<CurrencyConversionLine> lineList = new ArrayList<>();
+
+  private CurrencyRateIndex currencyRateIndex;
+
+  @Before
+  public void prepare() {
+    eur.setCode("EUR");
+    usd.setCode("USD");
+
+    AppBaseService appBaseService = mock(AppBaseService.class);
+    when(appBaseService.getCurrencyConfigurationLineList()).thenReturn(lineList);
+    currencyRateIndex = new CurrencyRateIndex(appBaseService);
+  }
+
+  @Test
+  public void testDateRanges() {
+    addLine(eur, usd, "1.10", LocalDate.of(2021, 1, 1), LocalDate.of(2021, 1, 31));
+    addLine(eur, usd, "1.20", LocalDate.of(2021, 2, 1), null);
+
+    Assert.assertNull(find(eur, usd, LocalDate.of(2020, 12, 31)));
+    Assert.assertEquals(new BigDecimal("1.10"), find(eur, usd, LocalDate.of(2021, 1, 31)));
+    Assert.assertEquals(new BigDecimal("1.20"), find(eur, usd, LocalDate.of(2021, 2, 1)));
+    Assert.assertEquals(new BigDecimal("1.20"), find(eur, usd, LocalDate.of(2030, 1, 1)));
+  }
+
+  @Test
+  public void testInverseRate() {
+    addLine(eur, usd, "2", LocalDate.of(2021, 1, 1), null);
+
+    Assert.assertEquals(new BigDecimal("0.5000000000"), find(usd, eur, LocalDate.of(2021, 6, 1)));
+  }
+
+  @Test
+  public void testDirectLineBeforeInverseLine() {
+    addLine(usd, eur, "0.8", LocalDate.of(2021, 1, 1), null);
+    addLine(eur, usd, "1.30", LocalDate.of(2021, 1, 1), null);
+
+    Assert.assertEquals(new BigDecimal("1.30"), find(eur, usd, LocalDate.of(2021, 6, 1)));
+    Assert.assertEquals(new BigDecimal("0.8"), find(usd, eur, LocalDate.of(2021, 6, 1)));
+  }
+
+  /** Overlapping lines: the first one of the configuration list applies, whatever its dates. */
+  @Test
+  public void testOverlappingLines() {
+    addLine(eur, usd, "1.10", LocalDate.of(2021, 1, 1), null);
+    addLine(eur, usd, "1.20", LocalDate.of(2021, 3, 1), LocalDate.of(2021, 3, 31));
+    addLine(eur, usd, "1.30", LocalDate.of(2020, 1, 1), null);
+
+    Assert.assertEquals(new BigDecimal("1.10"), find(eur, usd, LocalDate.of(2021, 3, 15)));
+    Assert.assertEquals(new BigDecimal("1.30"), find(eur, usd, LocalDate.of(2020, 6, 1)));
+  }
+
+  @Test
+  public void testInvalidate() {
+    addLine(eur, usd, "1.10", LocalDate.of(2021, 1, 1), null);
+    Assert.assertEquals(new BigDecimal("1.10"), find(eur, usd, LocalDate.of(2021, 6, 1)));
+
+    lineList.add(0, createLine(eur, usd, "1.50", LocalDate.of(2021, 1, 1), null));
+    Assert.assertEquals(new BigDecimal("1.10"), find(eur, usd, LocalDate.of(2021, 6, 1)));
+
+    currencyRateIndex.invalidate();
+    Assert.assertEquals(new BigDecimal("1.50"), find(eur, usd, LocalDate.of(2021, 6, 1)));
+  }
+
+  /** An index built while the lines change is used once, but not kept. */
+  @Test
+  public void testInvalidatedDuringBuild() {
+    addLine(eur, usd, "1.10", LocalDate.of(2021, 1, 1), null);
+    AppBaseService appBaseService = mock(AppBaseService.class);
+    currencyRateIndex = new CurrencyRateIndex(appBaseService);
+    when(appBaseService.getCurrencyConfigurationLineList())
+        .thenAnswer(
+            invocation -> {
+              currencyRateIndex.invalidate();
+              return new ArrayList<>(lineList);
+            })
+        .thenReturn(lineList);
+
+    Assert.assertEquals(new BigDecimal("1.10"), find(eur, usd, LocalDate.of(2021, 6, 1)));
+
+    lineList.set(0, createLine(eur, usd, "1.50", LocalDate.of(2021, 1, 1), null));
+    Assert.assertEquals(new BigDecimal("1.50"), find(eur, usd, LocalDate.of(2021, 6, 1)));
+    verify(appBaseService, times(2)).getCurrencyConfigurationLineList();
+  }
+
+  private BigDecimal find(Currency startCurrency, Currency endCurrency, LocalDate date) {
+    CurrencyRateIndex.Rate rate =
+        currencyRateIndex.find(startCurrency.getCode(), endCurrency.getCode(), date);
+    return rate != null ? rate.getExchangeRate() : null;
+  }
+
+  private void addLine(
+      Currency startCurrency,
+      Currency endCurrency,
+      String exchangeRate,
+      LocalDate fromDate,
+      LocalDate toDate) {
+    lineList.add(createLine(startCurrency, endCurrency, exchangeRate, fromDate, toDate));
+  }
+
+  private CurrencyConversionLine createLine(
+      Currency startCurrency,
+      Currency endCurrency,
+      String exchangeRate,
+      LocalDate fromDate,
+      LocalDate toDate) {
+    CurrencyConversionLine line = new CurrencyConversionLine();
+    line.setStartCurrency(startCurrency);
+    line.setEndCurrency(endCurrency);
+    line.setExchangeRate(new BigDecimal(exchangeRate));
+    line.setFromDate(fromDate);
+    line.setToDate(toDate);
+    return line;
+  }
+}
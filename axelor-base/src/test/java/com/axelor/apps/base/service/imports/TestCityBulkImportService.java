@@ -0,0 +1,248 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.imports;
+
+import com.axelor.apps.base.db.City;
+import com.axelor.apps.base.db.Country;
+import com.axelor.apps.base.service.imports.CityBulkImportServiceImpl.LoadContext;
+import com.axelor.apps.base.test.BaseTestModule;
+import com.axelor.db.JPA;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GuiceRunner.class)
+@GuiceModules({BaseTestModule.class})
+public class TestCityBulkImportService {
+
+  private CityBulkImportServiceImpl cityBulkImportService;
+
+  private String countryCode;
+
+  private Long countryId;
+
+  private String suffix;
+
+  @Before
+  public void prepare() {
+    cityBulkImportService = new CityBulkImportServiceImpl();
+    suffix = UUID.randomUUID().toString().substring(0, 8);
+    countryCode = findFreeCountryCode();
+
+    Country country = new Country();
+    country.setName("Test country " + suffix);
+    country.setAlpha2Code(countryCode);
+    JPA.runInTransaction(() -> JPA.save(country));
+    countryId = country.getId();
+  }
+
+  @After
+  public void cleanup() {
+    JPA.clear();
+    JPA.runInTransaction(
+        () -> {
+          deleteAll("DELETE FROM City self WHERE self.country.id = :countryId");
+          deleteAll(
+              "DELETE FROM Canton self WHERE self.department.id IN "
+                  + "(SELECT d.id FROM Department d WHERE d.region.country.id = :countryId)");
+          deleteAll(
+              "DELETE FROM Department self WHERE self.region.id IN "
+                  + "(SELECT r.id FROM Region r WHERE r.country.id = :countryId)");
+          deleteAll("DELETE FROM Region self WHERE self.country.id = :countryId");
+          deleteAll("DELETE FROM Country self WHERE self.id = :countryId");
+        });
+  }
+
+  @Test
+  public void testSecondImportOnlyAppliesDifferences() {
+    List<String[]> rows =
+        Arrays.asList(
+            row("1000", "Alpha", "100"), row("2000", "Beta", "200"), row("3000", "Gamma", ""));
+
+    LoadContext firstLoad = importRows(rows);
+    Assert.assertEquals(3, firstLoad.created);
+    Assert.assertEquals(3, countCities());
+
+    LoadContext secondLoad =
+        importRows(
+            Arrays.asList(
+                row("1000", "Alpha", "100"), row("2000", "Beta", "250"), row("3000", "Gamma", "")));
+    Assert.assertEquals(0, secondLoad.created);
+    Assert.assertEquals(1, secondLoad.updated);
+    Assert.assertEquals(2, secondLoad.unchanged);
+    Assert.assertEquals(3, countCities());
+
+    City beta =
+        JPA.all(City.class)
+            .filter("self.country.id = :countryId AND self.name = 'Beta'")
+            .bind("countryId", countryId)
+            .fetchOne();
+    Assert.assertEquals(Integer.valueOf(250), beta.getNbInhCommune());
+    Assert.assertEquals("D-" + suffix, beta.getDepartment().getName());
+    Assert.assertEquals("C-" + suffix, beta.getCanton().getCode());
+  }
+
+  @Test
+  public void testDuplicatedRowIsSkipped() {
+    LoadContext load =
+        importRows(Arrays.asList(row("1000", "Alpha", "100"), row("1000", "Alpha", "999")));
+
+    Assert.assertEquals(1, load.created);
+    Assert.assertEquals(1, load.skipped);
+    Assert.assertEquals(1, countCities());
+  }
+
+  @Test
+  public void testNameCaseIsMatched() {
+    LoadContext load =
+        importRows(Arrays.asList(row("1000", "Alpha", "100"), row("1000", "ALPHA", "999")));
+
+    Assert.assertEquals(2, load.created);
+    Assert.assertEquals(0, load.skipped);
+    Assert.assertEquals(2, countCities());
+  }
+
+  @Test
+  public void testFailedBatchKeepsSeenCities() {
+    cityBulkImportService =
+        new CityBulkImportServiceImpl() {
+          @Override
+          protected void importRow(LoadContext load, String[] values) {
+            super.importRow(load, values);
+            if ("Failing".equals(values[NAME])) {
+              throw new IllegalStateException("Failing row");
+            }
+          }
+        };
+    LoadContext load = new LoadContext();
+    cityBulkImportService.loadReferences(load);
+
+    cityBulkImportService.importBatch(load, Arrays.asList(row("1000", "Alpha", "100")));
+    cityBulkImportService.importBatch(
+        load, Arrays.asList(row("2000", "Beta", "200"), row("3000", "Failing", "300")));
+    Assert.assertEquals(2, load.failed);
+
+    cityBulkImportService.importBatch(
+        load, Arrays.asList(row("1000", "Alpha", "999"), row("2000", "Beta", "200")));
+    Assert.assertEquals(2, load.created);
+    Assert.assertEquals(1, load.skipped);
+    Assert.assertEquals(2, countCities());
+
+    City alpha =
+        JPA.all(City.class)
+            .filter("self.country.id = :countryId AND self.name = 'Alpha'")
+            .bind("countryId", countryId)
+            .fetchOne();
+    Assert.assertEquals(Integer.valueOf(100), alpha.getNbInhCommune());
+  }
+
+  @Test
+  public void testJdbcBatchSizeIsRestored() {
+    Integer jdbcBatchSize = JPA.em().unwrap(Session.class).getJdbcBatchSize();
+
+    importRows(Arrays.asList(row("1000", "Alpha", "100")));
+
+    Assert.assertEquals(jdbcBatchSize, JPA.em().unwrap(Session.class).getJdbcBatchSize());
+  }
+
+  @Test
+  public void testInvalidRowsAreSkipped() {
+    LoadContext load = new LoadContext();
+    cityBulkImportService.loadReferences(load);
+
+    String[] unknownCountry = row("1000", "Alpha", "100");
+    unknownCountry[CityBulkImportServiceImpl.COUNTRY] = "??";
+    String[] noName = row("1000", "", "100");
+
+    Assert.assertFalse(cityBulkImportService.isValid(load, unknownCountry, 1));
+    Assert.assertFalse(cityBulkImportService.isValid(load, noName, 2));
+    Assert.assertFalse(cityBulkImportService.isValid(load, new String[] {"a", "b"}, 3));
+    Assert.assertFalse(cityBulkImportService.isValid(load, new String[] {""}, 4));
+    Assert.assertTrue(cityBulkImportService.isValid(load, row("1000", "Alpha", "100"), 5));
+    Assert.assertEquals(3, load.skipped);
+  }
+
+  private LoadContext importRows(List<String[]> rows) {
+    LoadContext load = new LoadContext();
+    cityBulkImportService.loadReferences(load);
+    List<String[]> batch = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i++) {
+      if (cityBulkImportService.isValid(load, rows.get(i), i + 1)) {
+        batch.add(rows.get(i));
+      }
+    }
+    cityBulkImportService.importBatch(load, batch);
+    Assert.assertEquals(0, load.failed);
+    return load;
+  }
+
+  private void deleteAll(String query) {
+    JPA.em().createQuery(query).setParameter("countryId", countryId).executeUpdate();
+  }
+
+  private String[] row(String zip, String name, String population) {
+    return new String[] {
+      countryCode,
+      zip,
+      name,
+      "R-" + suffix,
+      "R",
+      "D-" + suffix,
+      suffix,
+      "Canton " + suffix,
+      "C-" + suffix,
+      "",
+      "",
+      population
+    };
+  }
+
+  private long countCities() {
+    return JPA.all(City.class).filter("self.country.id = ?", countryId).count();
+  }
+
+  private String findFreeCountryCode() {
+    Set<String> usedCodes =
+        new HashSet<>(
+            JPA.em()
+                .createQuery(
+                    "SELECT self.alpha2Code FROM Country self WHERE self.alpha2Code IS NOT NULL",
+                    String.class)
+                .getResultList());
+    for (char first = 'X'; first <= 'Z'; first++) {
+      for (char second = 'A'; second <= 'Z'; second++) {
+        String code = "" + first + second;
+        if (!usedCodes.contains(code)) {
+          return code;
+        }
+      }
+    }
+    throw new IllegalStateException("No free country code");
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.pricelist;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.PriceListLine;
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.ProductCategory;
+import com.axelor.apps.base.db.repo.PriceListLineRepository;
+import com.axelor.db.Query;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPriceListIndex {
+
+  private static final LocalDate TODAY = LocalDate.of(2021, 6, 1);
+
+  private final Map<Long, List<PriceListLine>> priceListLines = new HashMap<>();
+
+  private final AtomicInteger lineQueries = new AtomicInteger();
+
+  private PriceListIndex priceListIndex;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void prepare() {
+    PriceListLineRepository priceListLineRepo = mock(PriceListLineRepository.class);
+    Query<PriceListLine> all = mock(Query.class);
+    when(priceListLineRepo.all()).thenReturn(all);
+    when(all.filter(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              Long priceListId = invocation.getArgument(1);
+              Query<PriceListLine> query = mock(Query.class);
+              when(query.fetch())
+                  .thenAnswer(
+                      fetch -> {
+                        lineQueries.incrementAndGet();
+                        return new ArrayList<>(
+                            priceListLines.getOrDefault(priceListId, new ArrayList<>()));
+                      });
+              return query;
+            });
+    priceListIndex = new PriceListIndex(priceListLineRepo);
+  }
+
+  @Test
+  public void testFindLines() {
+    addLine(1L, 10L, null, "0", "1");
+    addLine(1L, 10L, null, "10", "2");
+    addLine(1L, null, 100L, "0", "3");
+
+    List<PriceListIndex.Line> lines = priceListIndex.findLines(1L, 10L, 100L, new BigDecimal("5"));
+    Assert.assertEquals(1, lines.size());
+    Assert.assertEquals(new BigDecimal("1"), lines.get(0).getAmount());
+
+    lines = priceListIndex.findLines(1L, 10L, 100L, new BigDecimal("10"));
+    Assert.assertEquals(2, lines.size());
+    Assert.assertEquals(new BigDecimal("2"), lines.get(0).getAmount());
+
+    // Lines of the category when the product has none.
+    lines = priceListIndex.findLines(1L, 20L, 100L, new BigDecimal("5"));
+    Assert.assertEquals(1, lines.size());
+    Assert.assertEquals(new BigDecimal("3"), lines.get(0).getAmount());
+
+    Assert.assertTrue(priceListIndex.findLines(1L, 20L, null, BigDecimal.ONE).isEmpty());
+    Assert.assertEquals(1, lineQueries.get());
+  }
+
+  @Test
+  public void testInvalidatePriceList() {
+    addLine(1L, 10L, null, "0", "1");
+    Assert.assertEquals(1, priceListIndex.findLines(1L, 10L, null, BigDecimal.ONE).size());
+
+    addLine(1L, 10L, null, "0", "2");
+    Assert.assertEquals(1, priceListIndex.findLines(1L, 10L, null, BigDecimal.ONE).size());
+
+    priceListIndex.invalidatePriceList(1L);
+    Assert.assertEquals(2, priceListIndex.findLines(1L, 10L, null, BigDecimal.ONE).size());
+    Assert.assertEquals(2, lineQueries.get());
+  }
+
+  /** A partner change only drops the default price lists of this partner. */
+  @Test
+  public void testInvalidatePartner() {
+    AtomicInteger loads = new AtomicInteger();
+
+    Assert.assertEquals(Long.valueOf(5), getDefault(1L, 5L, loads));
+    Assert.assertEquals(Long.valueOf(5), getDefault(1L, 6L, loads));
+    Assert.assertNull(getDefault(2L, null, loads));
+    Assert.assertNull(getDefault(2L, 7L, loads));
+    Assert.assertEquals(2, loads.get());
+
+    priceListIndex.invalidatePartner(1L);
+    Assert.assertEquals(Long.valueOf(6), getDefault(1L, 6L, loads));
+    Assert.assertNull(getDefault(2L, 7L, loads));
+    Assert.assertEquals(3, loads.get());
+
+    priceListIndex.invalidateDefaultPriceLists();
+    Assert.assertEquals(Long.valueOf(7), getDefault(2L, 7L, loads));
+    Assert.assertEquals(4, loads.get());
+  }
+
+  /** A default price list computed while the partner changes is not kept. */
+  @Test
+  public void testInvalidateDuringLoad() {
+    Long priceListId =
+        priceListIndex.getDefaultPriceListId(
+            1L,
+            1,
+            TODAY,
+            () -> {
+              priceListIndex.invalidatePartner(1L);
+              return 5L;
+            });
+    Assert.assertEquals(Long.valueOf(5), priceListId);
+
+    AtomicInteger loads = new AtomicInteger();
+    Assert.assertEquals(Long.valueOf(6), getDefault(1L, 6L, loads));
+    Assert.assertEquals(1, loads.get());
+  }
+
+  private Long getDefault(Long partnerId, Long priceListId, AtomicInteger loads) {
+    return priceListIndex.getDefaultPriceListId(
+        partnerId,
+        1,
+        TODAY,
+        () -> {
+          loads.incrementAndGet();
+          return priceListId;
+        });
+  }
+
+  private void addLine(
+      Long priceListId, Long productId, Long productCategoryId, String minQty, String amount) {
+    PriceListLine line = new PriceListLine();
+    line.setId((long) (priceListLines.values().stream().mapToInt(List::size).sum() + 1));
+    if (productId != null) {
+      Product product = new Product();
+      product.setId(productId);
+      line.setProduct(product);
+    }
+    if (productCategoryId != null) {
+      ProductCategory productCategory = new ProductCategory();
+      productCategory.setId(productCategoryId);
+      line.setProductCategory(productCategory);
+    }
+    line.setMinQty(new BigDecimal(minQty));
+    line.setAmount(new BigDecimal(amount));
+    line.setTypeSelect(1);
+    line.setAmountTypeSelect(1);
+    priceListLines.computeIfAbsent(priceListId, id -> new ArrayList<>()).add(line);
+  }
+}
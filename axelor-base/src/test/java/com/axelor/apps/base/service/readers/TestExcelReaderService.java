@@ -0,0 +1,192 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.readers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestExcelReaderService {
+
+  private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+  private static final String RELS_NS =
+      "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+  private static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ExcelReaderService excelReaderService = new ExcelReaderService();
+
+  @After
+  public void close() {
+    excelReaderService.close();
+  }
+
+  @Test
+  public void testSharedAndInlineStrings() throws IOException {
+    open(
+        "<dimension ref=\"A1:D1\"/>"
+            + "<sheetData>"
+            + "<row r=\"1\">"
+            + "<c r=\"A1\" t=\"s\"><v>1</v></c>"
+            + "<c r=\"B1\" t=\"inlineStr\"><is><t>inline</t></is></c>"
+            + "<c r=\"C1\"><v>12</v></c>"
+            + "<c r=\"D1\" t=\"b\"><v>1</v></c>"
+            + "</row>"
+            + "</sheetData>",
+        "first",
+        "second");
+
+    Assert.assertArrayEquals(
+        new String[] {"second", "inline", "12", "TRUE"}, excelReaderService.read("Sheet1", 0, 0));
+  }
+
+  @Test
+  public void testEmptyAndMissingCells() throws IOException {
+    open(
+        "<dimension ref=\"A1:C4\"/>"
+            + "<sheetData>"
+            + "<row r=\"1\"><c r=\"A1\" t=\"s\"><v>0</v></c><c r=\"C1\" t=\"s\"><v>0</v></c></row>"
+            + "<row r=\"2\"><c r=\"A2\"/><c r=\"B2\" t=\"inlineStr\"><is><t></t></is></c></row>"
+            + "<row r=\"4\"><c t=\"s\"><v>0</v></c><c><v>2</v></c></row>"
+            + "</sheetData>",
+        "value");
+
+    Assert.assertArrayEquals(
+        new String[] {"value", null, "value"}, excelReaderService.read("Sheet1", 0, 0));
+    Assert.assertArrayEquals(
+        new String[] {null, null, null}, excelReaderService.read("Sheet1", 1, 3));
+    Assert.assertNull(excelReaderService.read("Sheet1", 2, 3));
+    Assert.assertArrayEquals(new String[] {"value", "2"}, excelReaderService.read("Sheet1", 3, 0));
+    Assert.assertNull(excelReaderService.read("Sheet1", 4, 3));
+
+    // Head rows are read again without reopening the sheet.
+    Assert.assertArrayEquals(
+        new String[] {"value", null, "value"}, excelReaderService.read("Sheet1", 0, 0));
+  }
+
+  @Test
+  public void testTotalLines() throws IOException {
+    open(
+        "<dimension ref=\"A1:A10\"/>"
+            + "<sheetData>"
+            + "<row r=\"1\"><c r=\"A1\"><v>1</v></c></row>"
+            + "<row r=\"3\"><c r=\"A3\"><v>3</v></c></row>"
+            + "</sheetData>");
+
+    Assert.assertEquals(2, excelReaderService.getTotalLines("Sheet1"));
+    Assert.assertEquals(0, excelReaderService.getTotalLines("Missing"));
+  }
+
+  @Test
+  public void testNoDimension() throws IOException {
+    open(
+        "<sheetData>"
+            + "<row><c><v>1</v></c></row>"
+            + "<row><c><v>2</v></c></row>"
+            + "<row><c><v>3</v></c></row>"
+            + "</sheetData>");
+
+    Assert.assertEquals(3, excelReaderService.getTotalLines("Sheet1"));
+    Assert.assertArrayEquals(new String[] {"3"}, excelReaderService.read("Sheet1", 2, 0));
+    Assert.assertArrayEquals(new String[] {"1"}, excelReaderService.read("Sheet1", 0, 0));
+  }
+
+  /** Write a workbook holding a single sheet named Sheet1, then open it. */
+  private void open(String sheetContent, String... sharedStrings) throws IOException {
+    StringBuilder strings = new StringBuilder();
+    for (String sharedString : sharedStrings) {
+      strings.append("<si><t>").append(sharedString).append("</t></si>");
+    }
+
+    File file = folder.newFile("workbook.xlsx");
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+      addEntry(
+          zip,
+          "[Content_Types].xml",
+          "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+              + "<Default Extension=\"rels\""
+              + " ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+              + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+              + "<Override PartName=\"/xl/workbook.xml\""
+              + " ContentType=\""
+              + CONTENT_TYPE
+              + ".spreadsheetml.sheet.main+xml\"/>"
+              + "<Override PartName=\"/xl/worksheets/sheet1.xml\""
+              + " ContentType=\""
+              + CONTENT_TYPE
+              + ".spreadsheetml.worksheet+xml\"/>"
+              + "<Override PartName=\"/xl/sharedStrings.xml\""
+              + " ContentType=\""
+              + CONTENT_TYPE
+              + ".spreadsheetml.sharedStrings+xml\"/>"
+              + "</Types>");
+      addEntry(
+          zip,
+          "_rels/.rels",
+          "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+              + "<Relationship Id=\"rId1\" Type=\""
+              + RELS_NS
+              + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+              + "</Relationships>");
+      addEntry(
+          zip,
+          "xl/workbook.xml",
+          "<workbook xmlns=\""
+              + MAIN_NS
+              + "\" xmlns:r=\""
+              + RELS_NS
+              + "\"><sheets><sheet name=\"Sheet1\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+              + "</workbook>");
+      addEntry(
+          zip,
+          "xl/_rels/workbook.xml.rels",
+          "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+              + "<Relationship Id=\"rId1\" Type=\""
+              + RELS_NS
+              + "/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+              + "<Relationship Id=\"rId2\" Type=\""
+              + RELS_NS
+              + "/sharedStrings\" Target=\"sharedStrings.xml\"/>"
+              + "</Relationships>");
+      addEntry(
+          zip,
+          "xl/worksheets/sheet1.xml",
+          "<worksheet xmlns=\"" + MAIN_NS + "\">" + sheetContent + "</worksheet>");
+      addEntry(zip, "xl/sharedStrings.xml", "<sst xmlns=\"" + MAIN_NS + "\">" + strings + "</sst>");
+    }
+
+    Assert.assertTrue(excelReaderService.initialize(file));
+  }
+
+  private void addEntry(ZipOutputStream zip, String name, String content) throws IOException {
+    zip.putNextEntry(new ZipEntry(name));
+    zip.write(content.getBytes(StandardCharsets.UTF_8));
+    zip.closeEntry();
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.script;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.google.common.collect.ImmutableMap;
+import groovy.lang.GroovyShell;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTemplateFormula {
+
+  private static final Map<String, Class<?>> CONTEXT_TYPES =
+      ImmutableMap.of("Product", Product.class, "age", Integer.class);
+
+  private GroovyScriptService groovyScriptService;
+
+  @Before
+  public void prepare() {
+    groovyScriptService = mock(GroovyScriptService.class);
+    when(groovyScriptService.compile(anyString()))
+        .thenAnswer(
+            invocation -> new GroovyShell().parse(invocation.<String>getArgument(0)).getClass());
+  }
+
+  /** The formula is compiled once, the values of each row are bound at evaluation. */
+  @Test
+  public void testCompiledOnce() {
+    TemplateFormula formula =
+        new TemplateFormula(
+            "$age$ > 30 && $Product.netMass$ > 1", CONTEXT_TYPES, groovyScriptService);
+    Assert.assertTrue(formula.isCompiled());
+
+    for (int age = 25; age < 40; age++) {
+      Product product = new Product();
+      product.setNetMass(new BigDecimal("2"));
+      Map<String, Object> context = new HashMap<>();
+      context.put("Product", product);
+      context.put("age", age);
+      Assert.assertEquals(age > 30, formula.evaluate(context));
+    }
+
+    verify(groovyScriptService, times(1)).compile(anyString());
+  }
+
+  @Test
+  public void testUnknownNames() {
+    Assert.assertFalse(
+        new TemplateFormula("$Employee.name$ == ''", CONTEXT_TYPES, groovyScriptService)
+            .isCompiled());
+    Assert.assertFalse(
+        new TemplateFormula("$age.value$ > 1", CONTEXT_TYPES, groovyScriptService).isCompiled());
+    Assert.assertFalse(
+        new TemplateFormula("$Product$ != null", CONTEXT_TYPES, groovyScriptService)
+            .isCompiled());
+  }
+
+  /** Relations are rendered as text by the template engine, only their fields are bound. */
+  @Test
+  public void testRelationFields() {
+    Assert.assertFalse(
+        new TemplateFormula("$Product.unit$ != ''", CONTEXT_TYPES, groovyScriptService)
+            .isCompiled());
+
+    TemplateFormula formula =
+        new TemplateFormula("'$Product.unit.name$' == 'Box'", CONTEXT_TYPES, groovyScriptService);
+    Assert.assertTrue(formula.isCompiled());
+
+    Product product = new Product();
+    Map<String, Object> context = new HashMap<>();
+    context.put("Product", product);
+    Assert.assertEquals(false, formula.evaluate(context));
+
+    Unit unit = new Unit();
+    unit.setName("Box");
+    product.setUnit(unit);
+    Assert.assertEquals(true, formula.evaluate(context));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNotCompiled() {
+    new TemplateFormula("$__date__$", CONTEXT_TYPES, groovyScriptService)
+        .evaluate(new HashMap<>());
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.tax;
+
+import com.axelor.apps.account.db.Tax;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Product;
+import com.axelor.db.Model;
+import com.axelor.exception.AxelorException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAccountManagementCache {
+
+  private static final LocalDate TODAY = LocalDate.of(2021, 6, 1);
+
+  private final Map<Long, Tax> taxes = new HashMap<>();
+
+  private final Company company = new Company();
+
+  private final Product product1 = new Product();
+
+  private final Product product2 = new Product();
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private AccountManagementCache accountManagementCache;
+
+  @Before
+  public void prepare() {
+    company.setId(1L);
+    product1.setId(1L);
+    product2.setId(2L);
+
+    accountManagementCache =
+        new AccountManagementCache() {
+          @Override
+          protected <T extends Model> T find(Class<T> klass, Long id) {
+            return klass.cast(taxes.get(id));
+          }
+        };
+  }
+
+  @Test
+  public void testCached() throws AxelorException {
+    Assert.assertEquals(Long.valueOf(10), getTax(product1, false, 10L).getId());
+    Assert.assertEquals(Long.valueOf(10), getTax(product1, false, 11L).getId());
+    Assert.assertEquals(Long.valueOf(12), getTax(product1, true, 12L).getId());
+    Assert.assertEquals(2, loads.get());
+
+    // A record which can't be read back is resolved again.
+    taxes.remove(10L);
+    Assert.assertEquals(Long.valueOf(13), getTax(product1, false, 13L).getId());
+    Assert.assertEquals(3, loads.get());
+  }
+
+  @Test
+  public void testNotCachedForUnsavedProduct() throws AxelorException {
+    Product product = new Product();
+    getTax(product, false, 10L);
+    getTax(product, false, 10L);
+    Assert.assertEquals(2, loads.get());
+  }
+
+  /** A product change only drops the results of this product. */
+  @Test
+  public void testInvalidateProduct() throws AxelorException {
+    getTax(product1, false, 10L);
+    getTax(product2, false, 20L);
+
+    accountManagementCache.invalidateProduct(1L);
+    Assert.assertEquals(Long.valueOf(11), getTax(product1, false, 11L).getId());
+    Assert.assertEquals(Long.valueOf(20), getTax(product2, false, 21L).getId());
+    Assert.assertEquals(3, loads.get());
+
+    accountManagementCache.invalidate();
+    Assert.assertEquals(Long.valueOf(21), getTax(product2, false, 21L).getId());
+    Assert.assertEquals(4, loads.get());
+  }
+
+  /** A result computed while the product changes is not kept. */
+  @Test
+  public void testInvalidateDuringLoad() throws AxelorException {
+    accountManagementCache.get(
+        Tax.class,
+        product1,
+        company,
+        null,
+        false,
+        false,
+        TODAY,
+        () -> {
+          accountManagementCache.invalidateProduct(1L);
+          return storeTax(10L);
+        });
+
+    Assert.assertEquals(Long.valueOf(11), getTax(product1, false, 11L).getId());
+    Assert.assertEquals(1, loads.get());
+  }
+
+  private Tax getTax(Product product, boolean isPurchase, Long taxId) throws AxelorException {
+    return accountManagementCache.get(
+        Tax.class,
+        product,
+        company,
+        null,
+        isPurchase,
+        false,
+        TODAY,
+        () -> {
+          loads.incrementAndGet();
+          return storeTax(taxId);
+        });
+  }
+
+  /** Resolve a tax, which the cache can then read back. */
+  private Tax storeTax(Long id) {
+    Tax tax = new Tax();
+    tax.setId(id);
+    taxes.put(id, tax);
+    return tax;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.app.AppModule;
+import com.axelor.app.AxelorModule;
+import com.axelor.apps.base.module.AdminModule;
+import com.axelor.apps.base.module.BaseModule;
+import com.axelor.apps.message.module.MessageModule;
+import com.axelor.apps.tool.module.ToolModule;
+import com.axelor.inject.Beans;
+
+/** Modules of the base application, for the tests running against the test database. */
+public class BaseTestModule extends AxelorModule {
+
+  @Override
+  protected void configure() {
+    bind(Beans.class).asEagerSingleton();
+    install(new ToolModule());
+    install(new MessageModule());
+    install(new AdminModule());
+    install(new BaseModule());
+    install(new AppModule());
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.db.BaseBatch;
+import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.db.JPA;
+import com.axelor.db.Query;
+import com.axelor.inject.Beans;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import com.google.inject.persist.Transactional;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GuiceRunner.class)
+@GuiceModules({BaseTestModule.class})
+public class TestBatchKeyset {
+
+  private static final int UNIT_COUNT = 35;
+
+  private String prefix;
+
+  /** Renames the processed units, which makes them leave the driving query. */
+  public static class RenameUnitBatch extends AbstractBatch {
+
+    private String prefix;
+
+    private int failAfterPages = -1;
+
+    private final List<Long> processedIds = new ArrayList<>();
+
+    @Override
+    protected void process() {
+      Query<Unit> query =
+          JPA.all(Unit.class)
+              .filter("self.name LIKE :prefix AND " + KEYSET_FILTER)
+              .bind("prefix", prefix + "%")
+              .order("id");
+
+      List<Unit> unitList;
+      int pages = 0;
+
+      while (!(unitList = fetchNextPage(query)).isEmpty()) {
+        if (pages++ == failAfterPages) {
+          throw new IllegalStateException("Interrupted");
+        }
+        for (Unit unit : unitList) {
+          rename(unit.getId());
+          processedIds.add(unit.getId());
+          incrementDone();
+        }
+        saveCursor(unitList.get(unitList.size() - 1));
+        JPA.clear();
+      }
+    }
+
+    @Transactional
+    protected void rename(Long unitId) {
+      Unit unit = JPA.find(Unit.class, unitId);
+      unit.setName("DONE-" + unit.getName());
+    }
+
+    @Override
+    protected boolean isResumable() {
+      return true;
+    }
+  }
+
+  @Before
+  public void prepare() {
+    prefix = "TEST-KEYSET-" + UUID.randomUUID() + "-";
+    JPA.runInTransaction(
+        () -> {
+          for (int i = 0; i < UNIT_COUNT; i++) {
+            Unit unit = new Unit();
+            unit.setName(prefix + i);
+            JPA.save(unit);
+          }
+        });
+  }
+
+  @Test
+  public void testRecordsLeavingTheQueryAreNotSkipped() {
+    RenameUnitBatch renameUnitBatch = Beans.get(RenameUnitBatch.class);
+    renameUnitBatch.prefix = prefix;
+    renameUnitBatch.run(TestBatchProgress.createBaseBatch());
+
+    Assert.assertEquals(UNIT_COUNT, renameUnitBatch.processedIds.size());
+    Assert.assertEquals(0, countRemainingUnits());
+  }
+
+  @Test
+  public void testInterruptedRunIsResumed() {
+    BaseBatch baseBatch = TestBatchProgress.createBaseBatch();
+
+    RenameUnitBatch firstRun = Beans.get(RenameUnitBatch.class);
+    firstRun.prefix = prefix;
+    firstRun.failAfterPages = 2;
+    try {
+      firstRun.run(baseBatch);
+      Assert.fail("The first run should be interrupted");
+    } catch (RuntimeException e) {
+      // expected
+    }
+    Assert.assertEquals(2 * AbstractBatch.FETCH_LIMIT, firstRun.processedIds.size());
+
+    JPA.clear();
+    Batch firstBatch = JPA.find(Batch.class, firstRun.getBatch().getId());
+    Assert.assertNull(firstBatch.getEndDate());
+    Assert.assertTrue(firstBatch.getFailed());
+    Assert.assertFalse(AbstractBatch.isRunning(firstBatch));
+    Long cursor = firstBatch.getLastProcessedId();
+    Assert.assertEquals(firstRun.processedIds.get(firstRun.processedIds.size() - 1), cursor);
+
+    RenameUnitBatch secondRun = Beans.get(RenameUnitBatch.class);
+    secondRun.prefix = prefix;
+    Batch secondBatch = secondRun.run(JPA.find(BaseBatch.class, baseBatch.getId()));
+
+    JPA.clear();
+    secondBatch = JPA.find(Batch.class, secondBatch.getId());
+    Assert.assertEquals(firstBatch.getId(), secondBatch.getResumedBatch().getId());
+    secondRun.processedIds.forEach(id -> Assert.assertTrue(id > cursor));
+
+    Set<Long> processedIds = new HashSet<>(firstRun.processedIds);
+    processedIds.addAll(secondRun.processedIds);
+    Assert.assertEquals(UNIT_COUNT, processedIds.size());
+    Assert.assertEquals(0, countRemainingUnits());
+  }
+
+  private long countRemainingUnits() {
+    return JPA.all(Unit.class)
+        .filter("self.name LIKE :prefix")
+        .bind("prefix", prefix + "%")
+        .count();
+  }
+}
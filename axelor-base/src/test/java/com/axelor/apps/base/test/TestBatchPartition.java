@@ -0,0 +1,182 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GuiceRunner.class)
+@GuiceModules({BaseTestModule.class})
+public class TestBatchPartition {
+
+  private static final int UNIT_COUNT = 40;
+
+  private static final int KEY_COUNT = 7;
+
+  private String prefix;
+
+  public static class UnitBatch extends AbstractBatch {
+
+    private String prefix;
+
+    private int workers = 4;
+
+    private final Map<Long, AtomicInteger> processCount = new ConcurrentHashMap<>();
+
+    private final Map<Long, String> processThread = new ConcurrentHashMap<>();
+
+    @Override
+    protected void process() {
+      processRecords(
+          Unit.class,
+          "self.name LIKE :prefix",
+          ImmutableMap.of("prefix", prefix + "%"),
+          unit -> {
+            processCount.computeIfAbsent(unit.getId(), id -> new AtomicInteger()).incrementAndGet();
+            processThread.put(unit.getId(), Thread.currentThread().getName());
+            incrementDone();
+          });
+    }
+
+    List<PartitionRange> computePartitions(int count) {
+      return computePartitions(
+          Unit.class,
+          "self.name LIKE :prefix",
+          ImmutableMap.of("prefix", prefix + "%"),
+          getPartitionKey(),
+          count);
+    }
+
+    /** Index of the ranges holding the given key. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static List<Integer> findRanges(List<PartitionRange> ranges, String key) {
+      List<Integer> indexes = new ArrayList<>();
+      for (int i = 0; i < ranges.size(); i++) {
+        Comparable start = (Comparable) ranges.get(i).getStart();
+        Comparable end = (Comparable) ranges.get(i).getEnd();
+        if ((start == null || start.compareTo(key) <= 0)
+            && (end == null || end.compareTo(key) > 0)) {
+          indexes.add(i);
+        }
+      }
+      return indexes;
+    }
+
+    @Override
+    protected String getPartitionKey() {
+      return "labelToPrinting";
+    }
+
+    @Override
+    protected int getPartitionWorkers() {
+      return workers;
+    }
+  }
+
+  @Before
+  public void prepare() {
+    prefix = "TEST-PARTITION-" + UUID.randomUUID() + "-";
+    JPA.runInTransaction(
+        () -> {
+          for (int i = 0; i < UNIT_COUNT; i++) {
+            Unit unit = new Unit();
+            unit.setName(prefix + i);
+            unit.setLabelToPrinting("KEY-" + (i % KEY_COUNT));
+            JPA.save(unit);
+          }
+        });
+  }
+
+  @Test
+  public void testPartitionsKeepKeysTogether() {
+    UnitBatch unitBatch = Beans.get(UnitBatch.class);
+    unitBatch.prefix = prefix;
+    List<AbstractBatch.PartitionRange> ranges = unitBatch.computePartitions(4);
+
+    Assert.assertTrue(ranges.size() > 1);
+    Assert.assertTrue(ranges.size() <= 4);
+    Assert.assertNull(ranges.get(0).getStart());
+    Assert.assertNull(ranges.get(ranges.size() - 1).getEnd());
+
+    // Each key, so each record sharing it, belongs to exactly one range
+    for (int i = 0; i < KEY_COUNT; i++) {
+      Assert.assertEquals(1, UnitBatch.findRanges(ranges, "KEY-" + i).size());
+    }
+  }
+
+  @Test
+  public void testSequentialRun() {
+    UnitBatch unitBatch = Beans.get(UnitBatch.class);
+    unitBatch.prefix = prefix;
+    unitBatch.workers = 1;
+    Long batchId = unitBatch.run(TestBatchProgress.createBaseBatch()).getId();
+
+    Assert.assertEquals(UNIT_COUNT, unitBatch.processCount.size());
+    unitBatch.processCount.values().forEach(count -> Assert.assertEquals(1, count.get()));
+    Assert.assertEquals(1, new HashSet<>(unitBatch.processThread.values()).size());
+
+    JPA.clear();
+    Batch batch = JPA.find(Batch.class, batchId);
+    Assert.assertEquals(Integer.valueOf(UNIT_COUNT), batch.getDone());
+    Assert.assertNotNull(batch.getLastProcessedId());
+  }
+
+  @Test
+  public void testPartitionedRun() {
+    UnitBatch unitBatch = Beans.get(UnitBatch.class);
+    unitBatch.prefix = prefix;
+    Long batchId = unitBatch.run(TestBatchProgress.createBaseBatch()).getId();
+
+    Assert.assertEquals(UNIT_COUNT, unitBatch.processCount.size());
+    unitBatch.processCount.values().forEach(count -> Assert.assertEquals(1, count.get()));
+
+    // Records sharing a key are processed by the same worker
+    Map<String, String> threadByKey = new HashMap<>();
+    JPA.all(Unit.class)
+        .filter("self.name LIKE :prefix")
+        .bind("prefix", prefix + "%")
+        .fetch()
+        .forEach(
+            unit -> {
+              String thread = unitBatch.processThread.get(unit.getId());
+              threadByKey.putIfAbsent(unit.getLabelToPrinting(), thread);
+              Assert.assertEquals(threadByKey.get(unit.getLabelToPrinting()), thread);
+            });
+
+    JPA.clear();
+    Assert.assertEquals(Integer.valueOf(UNIT_COUNT), JPA.find(Batch.class, batchId).getDone());
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.db.BaseBatch;
+import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.db.repo.BaseBatchRepository;
+import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.BatchProgress;
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GuiceRunner.class)
+@GuiceModules({BaseTestModule.class})
+public class TestBatchProgress {
+
+  public static class CountingBatch extends AbstractBatch {
+
+    private Integer storedDone;
+
+    private BatchProgress liveProgress;
+
+    @Override
+    protected void process() {
+      for (int i = 0; i < 5; i++) {
+        incrementDone();
+      }
+      for (int i = 0; i < 2; i++) {
+        incrementAnomaly();
+      }
+
+      storedDone =
+          JPA.em()
+              .createQuery("SELECT self.done FROM Batch self WHERE self.id = :id", Integer.class)
+              .setParameter("id", batch.getId())
+              .getSingleResult();
+      liveProgress = getProgress(batch.getId());
+    }
+
+    @Override
+    protected void stop() {
+      super.stop();
+      addComment("Counting batch over");
+    }
+
+    @Override
+    protected int getCheckPointCount() {
+      return 1000;
+    }
+
+    @Override
+    protected int getCheckPointDelay() {
+      return 3600;
+    }
+  }
+
+  @Test
+  public void testCountersFlushedByStop() {
+    BaseBatch baseBatch = createBaseBatch();
+    CountingBatch countingBatch = Beans.get(CountingBatch.class);
+    Long batchId = countingBatch.run(baseBatch).getId();
+
+    // Counters are kept in memory while the batch runs
+    Assert.assertEquals(Integer.valueOf(0), countingBatch.storedDone);
+    Assert.assertEquals(5, countingBatch.liveProgress.getDone());
+    Assert.assertEquals(2, countingBatch.liveProgress.getAnomaly());
+
+    JPA.clear();
+    Batch batch = JPA.find(Batch.class, batchId);
+    Assert.assertEquals(Integer.valueOf(5), batch.getDone());
+    Assert.assertEquals(Integer.valueOf(2), batch.getAnomaly());
+    Assert.assertEquals("Counting batch over", batch.getComments());
+    Assert.assertNotNull(batch.getEndDate());
+    Assert.assertNull(AbstractBatch.getProgress(batchId));
+  }
+
+  @Test
+  public void testRunningState() {
+    Batch batch = new Batch();
+    batch.setStartDate(ZonedDateTime.now().minusHours(2));
+    batch.setHeartbeatDateTime(ZonedDateTime.now().minusMinutes(1));
+    Assert.assertTrue(AbstractBatch.isRunning(batch));
+
+    // The node running the batch stopped
+    batch.setHeartbeatDateTime(ZonedDateTime.now().minusHours(1));
+    Assert.assertFalse(AbstractBatch.isRunning(batch));
+
+    batch.setHeartbeatDateTime(ZonedDateTime.now());
+    batch.setFailed(true);
+    Assert.assertFalse(AbstractBatch.isRunning(batch));
+
+    batch.setFailed(false);
+    batch.setEndDate(ZonedDateTime.now());
+    Assert.assertFalse(AbstractBatch.isRunning(batch));
+  }
+
+  static BaseBatch createBaseBatch() {
+    BaseBatch baseBatch = new BaseBatch();
+    baseBatch.setCode("TEST-" + UUID.randomUUID());
+    baseBatch.setActionSelect(BaseBatchRepository.ACTION_SYNCHRONIZE_CALENDARS);
+    JPA.runInTransaction(() -> JPA.save(baseBatch));
+    return JPA.find(BaseBatch.class, baseBatch.getId());
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.GeocodeCache;
+import com.axelor.apps.base.db.repo.GeocodeCacheRepository;
+import com.axelor.apps.base.service.GeocodingProvider;
+import com.axelor.apps.base.service.GeocodingServiceImpl;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.db.JPA;
+import com.axelor.exception.AxelorException;
+import com.axelor.exception.db.repo.TraceBackRepository;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GuiceRunner.class)
+@GuiceModules({BaseTestModule.class})
+public class TestGeocodingService {
+
+  private static final String NOT_FOUND = "Nowhere";
+
+  private static final String FAILING = "Unreachable";
+
+  private static final Pair<BigDecimal, BigDecimal> LAT_LONG =
+      Pair.of(new BigDecimal("48.8686"), new BigDecimal("2.3314"));
+
+  /** Provider counting its requests, which does not find nor reach some addresses. */
+  private static class StubGeocodingProvider implements GeocodingProvider {
+
+    private final String name;
+
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    StubGeocodingProvider(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public Optional<Pair<BigDecimal, BigDecimal>> geocode(String address)
+        throws AxelorException {
+      requests.add(address);
+
+      if (address.contains(FAILING)) {
+        throw new AxelorException(TraceBackRepository.CATEGORY_INCONSISTENCY, "Quota exceeded");
+      }
+
+      return address.contains(NOT_FOUND) ? Optional.empty() : Optional.of(LAT_LONG);
+    }
+  }
+
+  /** Saves the cache entries in their own transaction, as the service is not built by Guice. */
+  private static class TransactionalGeocodingService extends GeocodingServiceImpl {
+
+    private long requestDelay;
+
+    TransactionalGeocodingService(
+        GeocodingProvider geocodingProvider,
+        GeocodeCacheRepository geocodeCacheRepository,
+        AppBaseService appBaseService) {
+      super(geocodingProvider, geocodeCacheRepository, appBaseService);
+    }
+
+    @Override
+    protected void saveGeocodeCache(
+        String provider,
+        String addressKey,
+        String normalizedAddress,
+        Pair<BigDecimal, BigDecimal> latLong) {
+      JPA.runInTransaction(
+          () -> super.saveGeocodeCache(provider, addressKey, normalizedAddress, latLong));
+    }
+
+    @Override
+    protected long getRequestDelay(String provider) {
+      return requestDelay;
+    }
+  }
+
+  private StubGeocodingProvider geocodingProvider;
+
+  private TransactionalGeocodingService geocodingService;
+
+  private ZonedDateTime now;
+
+  @Before
+  public void prepare() {
+    now = ZonedDateTime.now();
+    AppBaseService appBaseService = mock(AppBaseService.class);
+    when(appBaseService.getTodayDateTime()).thenAnswer(invocation -> now);
+
+    geocodingProvider = new StubGeocodingProvider("test-" + UUID.randomUUID());
+    geocodingService =
+        new TransactionalGeocodingService(
+            geocodingProvider, new GeocodeCacheRepository(), appBaseService);
+  }
+
+  @After
+  public void cleanup() {
+    JPA.clear();
+    JPA.runInTransaction(
+        () ->
+            JPA.em()
+                .createQuery("DELETE FROM GeocodeCache self WHERE self.provider = :provider")
+                .setParameter("provider", geocodingProvider.getName())
+                .executeUpdate());
+  }
+
+  @Test
+  public void testNormalization() {
+    Assert.assertEquals(
+        "1 rue de la paix, 75002 paris",
+        geocodingService.normalize("  1 Rue de la Paix ,\n75002  PARIS "));
+    Assert.assertEquals(
+        geocodingService.normalize("1 rue de la Paix, 75002 Paris"),
+        geocodingService.normalize("1 RUE DE LA PAIX,75002 PARIS"));
+  }
+
+  @Test
+  public void testNoProvider() throws Exception {
+    GeocodingServiceImpl noProviderService =
+        new GeocodingServiceImpl(new StubGeocodingProvider(null), null, null);
+
+    Assert.assertFalse(noProviderService.geocode("1 rue de la Paix, 75002 Paris").isPresent());
+    Assert.assertTrue(noProviderService.geocode(Arrays.asList("a", "b")).isEmpty());
+  }
+
+  @Test
+  public void testCacheHit() throws Exception {
+    Assert.assertEquals(
+        Optional.of(LAT_LONG), geocodingService.geocode("1 rue de la Paix, 75002 Paris"));
+    Assert.assertEquals(
+        Optional.of(LAT_LONG), geocodingService.geocode("1 RUE DE LA PAIX,  75002 PARIS"));
+    Assert.assertEquals(1, geocodingProvider.requests.size());
+    Assert.assertEquals(1, countGeocodeCaches());
+  }
+
+  @Test
+  public void testExpiredEntryIsRequestedAgain() throws Exception {
+    geocodingService.geocode("1 rue de la Paix, 75002 Paris");
+
+    now = now.plusDays(30);
+    geocodingService.geocode("1 rue de la Paix, 75002 Paris");
+    Assert.assertEquals(1, geocodingProvider.requests.size());
+
+    now = now.plusDays(90);
+    geocodingService.geocode("1 rue de la Paix, 75002 Paris");
+    Assert.assertEquals(2, geocodingProvider.requests.size());
+    Assert.assertEquals(1, countGeocodeCaches());
+
+    JPA.clear();
+    GeocodeCache geocodeCache =
+        JPA.all(GeocodeCache.class)
+            .filter("self.provider = :provider")
+            .bind("provider", geocodingProvider.getName())
+            .fetchOne();
+    Assert.assertEquals(
+        now.toInstant().getEpochSecond(),
+        geocodeCache.getGeocodingDateTime().toInstant().getEpochSecond());
+  }
+
+  @Test
+  public void testAddressesAreDeduplicated() {
+    Map<String, Optional<Pair<BigDecimal, BigDecimal>>> result =
+        geocodingService.geocode(
+            Arrays.asList(
+                "1 rue de la Paix, 75002 Paris",
+                "1 RUE DE LA PAIX,75002 PARIS",
+                "  1 Rue de la Paix , 75002  Paris",
+                "2 rue de la Paix, 75002 Paris"));
+
+    Assert.assertEquals(2, geocodingProvider.requests.size());
+    Assert.assertEquals(4, result.size());
+    Assert.assertEquals(Optional.of(LAT_LONG), result.get("1 RUE DE LA PAIX,75002 PARIS"));
+
+    geocodingService.geocode(
+        Arrays.asList("1 rue de la paix, 75002 paris", "2 rue de la paix, 75002 paris"));
+    Assert.assertEquals(2, geocodingProvider.requests.size());
+  }
+
+  @Test
+  public void testNotFoundAndFailedAddresses() {
+    String notFound = "1 rue " + NOT_FOUND;
+    String failing = "1 rue " + FAILING;
+
+    Map<String, Optional<Pair<BigDecimal, BigDecimal>>> result =
+        geocodingService.geocode(Arrays.asList(notFound, failing));
+
+    Assert.assertEquals(Optional.empty(), result.get(notFound));
+    Assert.assertFalse(result.containsKey(failing));
+    Assert.assertEquals(0, countGeocodeCaches());
+  }
+
+  @Test
+  public void testBatchRequestsAreSpaced() {
+    geocodingService.requestDelay = 100;
+
+    long start = System.currentTimeMillis();
+    geocodingService.geocode(Arrays.asList("1 rue A", "2 rue A", "3 rue A"));
+
+    Assert.assertEquals(3, geocodingProvider.requests.size());
+    Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+  }
+
+  @Test
+  public void testConcurrentBatchesShareTheDelay() throws InterruptedException {
+    geocodingService.requestDelay = 100;
+
+    long start = System.currentTimeMillis();
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    for (String street : Arrays.asList("rue A", "rue B")) {
+      pool.submit(() -> geocodingService.geocode(Arrays.asList("1 " + street, "2 " + street)));
+    }
+    pool.shutdown();
+    Assert.assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+    Assert.assertEquals(4, geocodingProvider.requests.size());
+    Assert.assertTrue(System.currentTimeMillis() - start >= 300);
+  }
+
+  @Test
+  public void testSingleAddressIsNotDelayed() throws Exception {
+    geocodingService.requestDelay = TimeUnit.MINUTES.toMillis(1);
+    geocodingService.geocode(Arrays.asList("1 rue A"));
+
+    long start = System.currentTimeMillis();
+    Assert.assertEquals(Optional.of(LAT_LONG), geocodingService.geocode("2 rue A"));
+    Assert.assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10));
+  }
+
+  private long countGeocodeCaches() {
+    return JPA.all(GeocodeCache.class)
+        .filter("self.provider = :provider")
+        .bind("provider", geocodingProvider.getName())
+        .count();
+  }
+}
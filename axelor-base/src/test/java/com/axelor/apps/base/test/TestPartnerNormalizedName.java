@@ -0,0 +1,46 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.service.PartnerService;
+import com.axelor.apps.base.service.PartnerServiceImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPartnerNormalizedName {
+
+  private final PartnerService partnerService = new PartnerServiceImpl(null, null);
+
+  @Test
+  public void testNormalization() {
+    Assert.assertEquals(
+        "societe generale", partnerService.computeNormalizedName("Société  Générale"));
+    Assert.assertEquals("acme", partnerService.computeNormalizedName("ACME, SA."));
+    Assert.assertEquals("", partnerService.computeNormalizedName(null));
+  }
+
+  @Test
+  public void testLegalFormRemoval() {
+    Assert.assertEquals("acme", partnerService.computeNormalizedName("ACME SARL"));
+    Assert.assertEquals("acme", partnerService.computeNormalizedName("SAS Acme"));
+    Assert.assertEquals("acme", partnerService.computeNormalizedName("Acme GmbH & Co"));
+    Assert.assertEquals("sarl", partnerService.computeNormalizedName("SARL"));
+    Assert.assertEquals(
+        "acme sa holding", partnerService.computeNormalizedName("Acme SA Holding Ltd"));
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.db.SequenceTypeSelect;
+import com.axelor.apps.base.service.administration.SequenceBlock;
+import com.axelor.apps.base.service.administration.SequenceService;
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestSequenceBlock {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int NUMBERS_PER_CALLER = 2000;
+
+  private static final int BLOCK_SIZE = 50;
+
+  private final LocalDate startDate = LocalDate.of(2021, 1, 1);
+
+  private final LocalDate endDate = LocalDate.of(2021, 12, 31);
+
+  private TestSequenceService sequenceService;
+
+  private Sequence sequence;
+
+  /** Sequence service reserving its blocks on an in-memory version instead of the database. */
+  private class TestSequenceService extends SequenceService {
+
+    /** Next number of the sequence version as it would be stored in database. */
+    private long nextNum = 1;
+
+    private final AtomicInteger failingCommits = new AtomicInteger();
+
+    private final AtomicInteger reservations = new AtomicInteger();
+
+    /** Numbers per reserved block. */
+    private int blockSize = BLOCK_SIZE;
+
+    /** Simulated duration of the locked version update of a reservation. */
+    private long reservationMillis;
+
+    TestSequenceService() {
+      super(null, null, null);
+    }
+
+    void shutdown() {
+      onApplicationShutdown(null);
+    }
+
+    @Override
+    protected SequenceBlock allocateBlock(Long sequenceId, LocalDate refDate) {
+      long first = nextNum;
+      SequenceBlock block = new SequenceBlock(startDate, endDate, first, 1, blockSize);
+      if (failingCommits.getAndDecrement() > 0) {
+        // Rolled back: the version keeps its next number.
+        throw new IllegalStateException("Commit failed");
+      }
+      if (reservationMillis > 0) {
+        try {
+          Thread.sleep(reservationMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      nextNum = first + blockSize;
+      reservations.incrementAndGet();
+      return block;
+    }
+  }
+
+  @Before
+  public void prepare() {
+    sequenceService = new TestSequenceService();
+    sequence = new Sequence();
+    sequence.setId(1L);
+    sequence.setSequenceTypeSelect(SequenceTypeSelect.NUMBERS);
+    sequence.setPadding(0);
+    sequence.setToBeAdded(1);
+    sequence.setAllocationSize(BLOCK_SIZE);
+  }
+
+  @After
+  public void cleanup() {
+    sequenceService.shutdown();
+  }
+
+  @Test
+  public void testNext() {
+    SequenceBlock sequenceBlock = new SequenceBlock(startDate, endDate, 10, 2, 3);
+    Assert.assertEquals(Long.valueOf(10), sequenceBlock.next());
+    Assert.assertEquals(Long.valueOf(12), sequenceBlock.next());
+    Assert.assertEquals(Long.valueOf(14), sequenceBlock.next());
+    Assert.assertTrue(sequenceBlock.isExhausted());
+    Assert.assertNull(sequenceBlock.next());
+  }
+
+  @Test
+  public void testCovers() {
+    SequenceBlock sequenceBlock = new SequenceBlock(startDate, endDate, 1, 1, 1);
+    Assert.assertTrue(sequenceBlock.covers(startDate));
+    Assert.assertTrue(sequenceBlock.covers(endDate));
+    Assert.assertFalse(sequenceBlock.covers(startDate.minusDays(1)));
+    Assert.assertFalse(sequenceBlock.covers(endDate.plusDays(1)));
+    Assert.assertTrue(new SequenceBlock(startDate, null, 1, 1, 1).covers(endDate.plusYears(5)));
+  }
+
+  @Test
+  public void testBlockReservation() {
+    LocalDate refDate = LocalDate.of(2021, 6, 1);
+    List<String> numbers = new ArrayList<>();
+    for (int i = 0; i < BLOCK_SIZE + 1; i++) {
+      numbers.add(sequenceService.getSequenceNumber(sequence, refDate));
+    }
+
+    Assert.assertEquals("1", numbers.get(0));
+    Assert.assertEquals(String.valueOf(BLOCK_SIZE + 1), numbers.get(BLOCK_SIZE));
+    Assert.assertEquals(2, sequenceService.reservations.get());
+  }
+
+  @Test
+  public void testFailedReservationIsNotPublished() {
+    LocalDate refDate = LocalDate.of(2021, 6, 1);
+    sequenceService.failingCommits.set(1);
+
+    try {
+      sequenceService.getSequenceNumber(sequence, refDate);
+      Assert.fail("The failed reservation should be reported");
+    } catch (Exception e) {
+      // expected
+    }
+
+    Assert.assertEquals("1", sequenceService.getSequenceNumber(sequence, refDate));
+    Assert.assertEquals("2", sequenceService.getSequenceNumber(sequence, refDate));
+    Assert.assertEquals(1, sequenceService.reservations.get());
+  }
+
+  @Test
+  public void testConcurrentCallers() throws InterruptedException {
+    LocalDate refDate = LocalDate.of(2021, 6, 1);
+    int callers = 8;
+    Set<String> numbers = ConcurrentHashMap.newKeySet();
+
+    ExecutorService pool = Executors.newFixedThreadPool(callers);
+    for (int i = 0; i < callers; i++) {
+      pool.submit(
+          () -> {
+            for (int j = 0; j < NUMBERS_PER_CALLER; j++) {
+              numbers.add(sequenceService.getSequenceNumber(sequence, refDate));
+            }
+          });
+    }
+    pool.shutdown();
+    Assert.assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+    Assert.assertEquals(callers * NUMBERS_PER_CALLER, numbers.size());
+    Assert.assertEquals(
+        callers * NUMBERS_PER_CALLER / BLOCK_SIZE, sequenceService.reservations.get());
+  }
+
+  /**
+   * Numbers per second for 1, 8 and 32 concurrent callers, with one number per reservation as
+   * before block allocation and with blocks of {@link #BLOCK_SIZE} numbers. Each reservation
+   * waits one millisecond, as the locked update of the sequence version would.
+   */
+  @Test
+  @Ignore("Benchmark, run manually")
+  public void benchmarkConcurrentCallers() throws InterruptedException {
+    LocalDate refDate = LocalDate.of(2021, 6, 1);
+
+    for (int blockSize : new int[] {1, BLOCK_SIZE}) {
+      for (int callers : new int[] {1, 8, 32}) {
+        sequenceService.shutdown();
+        sequenceService = new TestSequenceService();
+        sequenceService.blockSize = blockSize;
+        sequenceService.reservationMillis = 1;
+        int numbersPerCaller = NUMBERS_PER_CALLER / callers;
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        for (int i = 0; i < callers; i++) {
+          pool.submit(
+              () -> {
+                for (int j = 0; j < numbersPerCaller; j++) {
+                  sequenceService.getSequenceNumber(sequence, refDate);
+                }
+              });
+        }
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES));
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        LOG.info(
+            "Block size {}, {} concurrent callers: {} numbers/sec",
+            blockSize,
+            callers,
+            callers * numbersPerCaller * TimeUnit.SECONDS.toNanos(1) / elapsed);
+      }
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.tracking;
+
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.base.db.GlobalTrackingConfigurationLine;
+import com.axelor.apps.base.db.repo.GlobalTrackingConfigurationLineRepository;
+import com.axelor.apps.base.db.repo.GlobalTrackingLogRepository;
+import com.axelor.meta.db.MetaField;
+import com.axelor.meta.db.MetaModel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGlobalTrackingConfigurationIndex {
+
+  private final List<GlobalTrackingConfigurationLine> lineList = new ArrayList<>();
+
+  private GlobalTrackingConfigurationLineRepository configLineRepo;
+
+  private GlobalTrackingConfigurationIndex configIndex;
+
+  private Runnable onFetch;
+
+  @Before
+  public void prepare() {
+    configLineRepo = mock(GlobalTrackingConfigurationLineRepository.class, RETURNS_DEEP_STUBS);
+    when(configLineRepo.all().fetch())
+        .thenAnswer(
+            invocation -> {
+              List<GlobalTrackingConfigurationLine> fetched = new ArrayList<>(lineList);
+              if (onFetch != null) {
+                Runnable action = onFetch;
+                onFetch = null;
+                action.run();
+              }
+              return fetched;
+            });
+    configIndex = new GlobalTrackingConfigurationIndex(configLineRepo);
+  }
+
+  /** The lines are grouped by model, deletion and asynchronous tracking apply to the model. */
+  @Test
+  public void testBuild() {
+    addLine("Partner", "name", false, false).setTrackDeletion(true);
+    addLine("Partner", "fullName", false, false).setAsyncTracking(true);
+    addLine("Product", "code", false, false);
+
+    GlobalTrackingConfigurationIndex.ModelConfig partner = configIndex.find("Partner");
+    Assert.assertEquals("com.axelor.apps.base.db.Partner", partner.getFullName());
+    Assert.assertTrue(partner.isTrackDeletion());
+    Assert.assertTrue(partner.isAsyncTracking());
+    Assert.assertNotNull(partner.getField("name"));
+    Assert.assertNotNull(partner.getField("fullName"));
+    Assert.assertNull(partner.getField("code"));
+
+    GlobalTrackingConfigurationIndex.ModelConfig product = configIndex.find("Product");
+    Assert.assertFalse(product.isTrackDeletion());
+    Assert.assertFalse(product.isAsyncTracking());
+
+    Assert.assertNull(configIndex.find("Company"));
+    verify(configLineRepo.all(), times(1)).fetch();
+  }
+
+  @Test
+  public void testCanTrack() {
+    GlobalTrackingConfigurationLine line = addLine("Partner", "name", true, false);
+    line.setTrackUpdate(true);
+    line.setTrackingCondition("");
+
+    GlobalTrackingConfigurationIndex.FieldConfig field =
+        configIndex.find("Partner").getField("name");
+    Assert.assertTrue(field.canTrack(GlobalTrackingLogRepository.TYPE_CREATE));
+    Assert.assertFalse(field.canTrack(GlobalTrackingLogRepository.TYPE_READ));
+    Assert.assertTrue(field.canTrack(GlobalTrackingLogRepository.TYPE_UPDATE));
+    Assert.assertFalse(field.canTrack(GlobalTrackingLogRepository.TYPE_DELETE));
+    Assert.assertFalse(field.canTrack(GlobalTrackingLogRepository.TYPE_EXPORT));
+    Assert.assertFalse(field.canTrack(0));
+    Assert.assertFalse(field.hasTrackingCondition());
+  }
+
+  @Test
+  public void testCanTrackReadingAndExport() {
+    GlobalTrackingConfigurationLine line = addLine("Partner", "name", false, true);
+    line.setTrackExport(true);
+    line.setTrackingCondition("self.isCustomer");
+
+    GlobalTrackingConfigurationIndex.FieldConfig field =
+        configIndex.find("Partner").getField("name");
+    Assert.assertFalse(field.canTrack(GlobalTrackingLogRepository.TYPE_CREATE));
+    Assert.assertTrue(field.canTrack(GlobalTrackingLogRepository.TYPE_READ));
+    Assert.assertFalse(field.canTrack(GlobalTrackingLogRepository.TYPE_UPDATE));
+    Assert.assertTrue(field.canTrack(GlobalTrackingLogRepository.TYPE_EXPORT));
+    Assert.assertEquals("self.isCustomer", field.getTrackingCondition());
+  }
+
+  @Test
+  public void testInvalidate() {
+    addLine("Partner", "name", true, false);
+    Assert.assertNotNull(configIndex.find("Partner"));
+
+    lineList.clear();
+    Assert.assertNotNull(configIndex.find("Partner"));
+
+    configIndex.invalidate();
+    Assert.assertNull(configIndex.find("Partner"));
+  }
+
+  /** An index built while being invalidated is used once, but not kept. */
+  @Test
+  public void testInvalidatedDuringBuild() {
+    addLine("Partner", "name", true, false);
+    onFetch =
+        () -> {
+          lineList.clear();
+          configIndex.invalidate();
+        };
+
+    Assert.assertNotNull(configIndex.find("Partner"));
+    Assert.assertNull(configIndex.find("Partner"));
+    Assert.assertNull(configIndex.find("Partner"));
+    verify(configLineRepo.all(), times(2)).fetch();
+  }
+
+  private GlobalTrackingConfigurationLine addLine(
+      String modelName, String fieldName, boolean trackCreation, boolean trackReading) {
+    MetaModel metaModel = new MetaModel();
+    metaModel.setName(modelName);
+    metaModel.setFullName("com.axelor.apps.base.db." + modelName);
+    MetaField metaField = new MetaField();
+    metaField.setName(fieldName);
+
+    GlobalTrackingConfigurationLine line = new GlobalTrackingConfigurationLine();
+    line.setMetaModel(metaModel);
+    line.setMetaField(metaField);
+    line.setTrackCreation(trackCreation);
+    line.setTrackReading(trackReading);
+    line.setTrackUpdate(false);
+    line.setTrackDeletion(false);
+    line.setTrackExport(false);
+    line.setAsyncTracking(false);
+    lineList.add(line);
+    return line;
+  }
+}
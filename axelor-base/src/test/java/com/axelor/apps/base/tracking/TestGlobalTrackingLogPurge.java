@@ -0,0 +1,190 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.tracking;
+
+import com.axelor.apps.base.db.GlobalTrackingLog;
+import com.axelor.apps.base.db.GlobalTrackingLogLine;
+import com.axelor.apps.base.db.repo.GlobalTrackingLogRepository;
+import com.axelor.apps.base.test.BaseTestModule;
+import com.axelor.db.JPA;
+import com.axelor.inject.Beans;
+import com.axelor.meta.db.repo.MetaFileRepository;
+import com.axelor.test.GuiceModules;
+import com.axelor.test.GuiceRunner;
+import com.google.inject.Inject;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GuiceRunner.class)
+@GuiceModules({BaseTestModule.class})
+public class TestGlobalTrackingLogPurge {
+
+  private static final int CHUNK_SIZE = 2;
+
+  private static final int RETENTION_MONTHS = 6;
+
+  /** Purges in small chunks, keeping the ids of each chunk. */
+  public static class ChunkedPurgeService extends GlobalTrackingLogServiceImpl {
+
+    private final List<List<Long>> chunks = new ArrayList<>();
+
+    @Inject
+    public ChunkedPurgeService(
+        GlobalTrackingLogRepository globalTrackingLogRepo, MetaFileRepository metaFileRepo) {
+      super(globalTrackingLogRepo, metaFileRepo);
+    }
+
+    @Override
+    protected int getPurgeChunkSize() {
+      return CHUNK_SIZE;
+    }
+
+    @Override
+    protected int purgeGlobalTrackingLogs(List<Long> idList) {
+      chunks.add(new ArrayList<>(idList));
+      return super.purgeGlobalTrackingLogs(idList);
+    }
+  }
+
+  /** Related id shared by the logs of the test, to tell them apart. */
+  private long relatedId;
+
+  private final List<Long> oldLogIds = new ArrayList<>();
+
+  private final List<Long> recentLogIds = new ArrayList<>();
+
+  @Before
+  public void prepare() {
+    relatedId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    JPA.runInTransaction(
+        () -> {
+          for (int i = 0; i < 5; i++) {
+            oldLogIds.add(createLog(i == 0 ? 3 : 0));
+          }
+          for (int i = 0; i < 2; i++) {
+            recentLogIds.add(createLog(1));
+          }
+        });
+    // The creation date is set on save, the old logs are moved back past the retention period.
+    backdate(oldLogIds, LocalDateTime.now().minusMonths(RETENTION_MONTHS + 1));
+    backdate(recentLogIds, LocalDateTime.now().minusMonths(RETENTION_MONTHS - 1));
+  }
+
+  @After
+  public void cleanup() {
+    JPA.runInTransaction(
+        () -> {
+          JPA.em()
+              .createQuery(
+                  "DELETE FROM GlobalTrackingLogLine self WHERE self.globalTrackingLog.id IN"
+                      + " (SELECT log.id FROM GlobalTrackingLog log"
+                      + " WHERE log.relatedId = :relatedId)")
+              .setParameter("relatedId", relatedId)
+              .executeUpdate();
+          JPA.em()
+              .createQuery("DELETE FROM GlobalTrackingLog self WHERE self.relatedId = :relatedId")
+              .setParameter("relatedId", relatedId)
+              .executeUpdate();
+        });
+  }
+
+  /** Logs older than the retention period are purged with their lines, the others are kept. */
+  @Test
+  public void testRetentionCutoff() {
+    long purged = Beans.get(ChunkedPurgeService.class).deleteOldGlobalTrackingLog(RETENTION_MONTHS);
+
+    Assert.assertTrue(purged >= oldLogIds.size() + 3);
+    Assert.assertEquals(recentLogIds, findLogIds());
+    Assert.assertEquals(recentLogIds.size(), countLines());
+  }
+
+  /** Each chunk holds at most the chunk size, and chunks follow each other in id order. */
+  @Test
+  public void testChunkBoundaries() {
+    ChunkedPurgeService purgeService = Beans.get(ChunkedPurgeService.class);
+    purgeService.deleteOldGlobalTrackingLog(RETENTION_MONTHS);
+
+    List<Long> purgedIds = new ArrayList<>();
+    for (List<Long> chunk : purgeService.chunks) {
+      Assert.assertFalse(chunk.isEmpty());
+      Assert.assertTrue(chunk.size() <= CHUNK_SIZE);
+      purgedIds.addAll(chunk);
+    }
+    for (int i = 1; i < purgedIds.size(); i++) {
+      Assert.assertTrue(purgedIds.get(i - 1) < purgedIds.get(i));
+    }
+    Assert.assertTrue(purgedIds.containsAll(oldLogIds));
+    recentLogIds.forEach(id -> Assert.assertFalse(purgedIds.contains(id)));
+    Assert.assertTrue(purgeService.chunks.size() >= 3);
+  }
+
+  private Long createLog(int lineCount) {
+    GlobalTrackingLog log = new GlobalTrackingLog();
+    log.setRelatedId(relatedId);
+    log.setTypeSelect(GlobalTrackingLogRepository.TYPE_UPDATE);
+    log.setDateT(LocalDateTime.now());
+    JPA.em().persist(log);
+    for (int i = 0; i < lineCount; i++) {
+      GlobalTrackingLogLine line = new GlobalTrackingLogLine();
+      line.setGlobalTrackingLog(log);
+      line.setNewValue(String.valueOf(i));
+      JPA.em().persist(line);
+    }
+    JPA.em().flush();
+    return log.getId();
+  }
+
+  private void backdate(List<Long> idList, LocalDateTime createdOn) {
+    JPA.runInTransaction(
+        () ->
+            JPA.em()
+                .createQuery(
+                    "UPDATE GlobalTrackingLog self SET self.createdOn = :createdOn"
+                        + " WHERE self.id IN (:idList)")
+                .setParameter("createdOn", createdOn)
+                .setParameter("idList", idList)
+                .executeUpdate());
+  }
+
+  private List<Long> findLogIds() {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id FROM GlobalTrackingLog self"
+                + " WHERE self.relatedId = :relatedId ORDER BY self.id",
+            Long.class)
+        .setParameter("relatedId", relatedId)
+        .getResultList();
+  }
+
+  private long countLines() {
+    return JPA.em()
+        .createQuery(
+            "SELECT COUNT(self) FROM GlobalTrackingLogLine self"
+                + " WHERE self.globalTrackingLog.relatedId = :relatedId",
+            Long.class)
+        .setParameter("relatedId", relatedId)
+        .getSingleResult();
+  }
+}
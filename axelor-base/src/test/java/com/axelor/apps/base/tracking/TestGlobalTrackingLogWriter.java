@@ -0,0 +1,225 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.tracking;
+
+import com.axelor.apps.base.db.repo.GlobalTrackingLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.PersistenceException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestGlobalTrackingLogWriter {
+
+  private static final long WAIT_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  /** Related ids of the written events. */
+  private final List<Long> written = new CopyOnWriteArrayList<>();
+
+  /** Related ids of the events which fail to be written. */
+  private final Set<Long> failing = Collections.synchronizedSet(new HashSet<>());
+
+  private Path spillFile;
+
+  private CountDownLatch writing;
+
+  private CountDownLatch release;
+
+  private GlobalTrackingLogWriter writer;
+
+  @Before
+  public void prepare() {
+    spillFile = folder.getRoot().toPath().resolve("global-tracking-test.spill");
+  }
+
+  @After
+  public void cleanup() {
+    if (writer != null) {
+      writer.onApplicationShutdown(null);
+    }
+  }
+
+  /** Events which don't fit in the queue are spilled, then replayed once the queue is drained. */
+  @Test
+  public void testQueueFull() throws Exception {
+    writer = createWriter(1, 10);
+    writing = new CountDownLatch(1);
+    release = new CountDownLatch(1);
+
+    writer.submit(createEvent(1L));
+    Assert.assertTrue(writing.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+    writer.submit(createEvent(2L));
+    writer.submit(createEvent(3L));
+    Assert.assertEquals(Collections.singletonList(3L), readIds(spillFile));
+
+    release.countDown();
+    awaitWritten(1L, 2L, 3L);
+    Assert.assertFalse(Files.exists(spillFile));
+  }
+
+  /** A replay which fails is resumed after the last written batch. */
+  @Test
+  public void testReplayResumed() throws Exception {
+    writer = createWriter(10, 2);
+    spill(1L, 2L, 3L, 4L, 5L);
+    failing.add(3L);
+
+    writer.replaySpill();
+    Assert.assertEquals(Arrays.asList(1L, 2L), written);
+
+    failing.clear();
+    writer.replaySpill();
+    Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), written);
+    Assert.assertFalse(Files.exists(writer.getSiblingFile(".replay")));
+    Assert.assertFalse(Files.exists(writer.getSiblingFile(".offset")));
+  }
+
+  /** Events which keep failing and unreadable lines are quarantined, the others are written. */
+  @Test
+  public void testReplayQuarantine() throws Exception {
+    writer = createWriter(10, 2);
+    spill(1L, 2L);
+    Files.write(spillFile, Collections.singletonList("{unreadable"), StandardOpenOption.APPEND);
+    spill(3L);
+    failing.add(2L);
+
+    for (int i = 1; i < GlobalTrackingLogWriter.MAX_REPLAY_ATTEMPTS; i++) {
+      writer.replaySpill();
+      Assert.assertTrue(written.isEmpty());
+    }
+    writer.replaySpill();
+
+    Assert.assertEquals(Arrays.asList(1L, 3L), written);
+    List<String> quarantined =
+        Files.readAllLines(
+            writer.getSiblingFile(GlobalTrackingLogWriter.QUARANTINE_FILE_SUFFIX),
+            StandardCharsets.UTF_8);
+    Assert.assertEquals(2, quarantined.size());
+    GlobalTrackingEvent event = mapper.readValue(quarantined.get(0), GlobalTrackingEvent.class);
+    Assert.assertEquals(Long.valueOf(2L), event.getRelatedId());
+    Assert.assertEquals("{unreadable", quarantined.get(1));
+    Assert.assertFalse(Files.exists(writer.getSiblingFile(".replay")));
+  }
+
+  /** Events submitted once the writer is stopped are spilled, to be written after a restart. */
+  @Test
+  public void testSubmitAfterShutdown() throws Exception {
+    writer = createWriter(10, 10);
+    writer.submit(createEvent(1L));
+    awaitWritten(1L);
+
+    writer.onApplicationShutdown(null);
+    writer.submit(createEvent(2L));
+    Assert.assertEquals(Collections.singletonList(2L), readIds(spillFile));
+
+    writer = createWriter(10, 10);
+    writer.onApplicationShutdown(null);
+    writer.submit(createEvent(3L));
+    Assert.assertEquals(Arrays.asList(2L, 3L), readIds(spillFile));
+    Assert.assertEquals(Collections.singletonList(1L), written);
+  }
+
+  /** The events spilled before a restart are replayed without waiting for a new event. */
+  @Test
+  public void testStartupReplay() throws Exception {
+    spill(1L, 2L);
+    writer = createWriter(10, 10);
+
+    writer.onApplicationStartup(null);
+    awaitWritten(1L, 2L);
+  }
+
+  private GlobalTrackingLogWriter createWriter(int queueSize, int batchSize) {
+    return new GlobalTrackingLogWriter(queueSize, batchSize, 10, spillFile) {
+      @Override
+      protected void write(List<GlobalTrackingEvent> events) {
+        if (writing != null) {
+          writing.countDown();
+          try {
+            release.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        for (GlobalTrackingEvent event : events) {
+          if (failing.contains(event.getRelatedId())) {
+            throw new PersistenceException("Unable to write " + event.getRelatedId());
+          }
+        }
+        for (GlobalTrackingEvent event : events) {
+          written.add(event.getRelatedId());
+        }
+      }
+    };
+  }
+
+  private GlobalTrackingEvent createEvent(Long relatedId) {
+    return new GlobalTrackingEvent(
+        1L, relatedId, GlobalTrackingLogRepository.TYPE_UPDATE, null, (String) null, null);
+  }
+
+  private void spill(Long... relatedIds) throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (Long relatedId : relatedIds) {
+      lines.add(mapper.writeValueAsString(createEvent(relatedId)));
+    }
+    Files.write(
+        spillFile,
+        lines,
+        StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+  private List<Long> readIds(Path file) throws IOException {
+    List<Long> relatedIds = new ArrayList<>();
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      relatedIds.add(mapper.readValue(line, GlobalTrackingEvent.class).getRelatedId());
+    }
+    return relatedIds;
+  }
+
+  private void awaitWritten(Long... relatedIds) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+    while (written.size() < relatedIds.length && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    Assert.assertEquals(Arrays.asList(relatedIds), written);
+  }
+}
@@ -21,14 +21,11 @@ import com.axelor.apps.base.service.batch.BatchStrategy;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractBatchRepository;
 import com.axelor.apps.contract.db.repo.ContractRepository;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
-import java.util.List;
 
 public class BatchContract extends BatchStrategy {
 
@@ -64,37 +61,41 @@ public class BatchContract extends BatchStrategy {
               I18n.get("Action %s has no Batch implementation."),
               batch.getContractBatch().getActionSelect()));
 
-      Query<Contract> query = factory.prepare(batch);
-      List<Contract> contracts;
-
-      while (!(contracts = query.fetch(FETCH_LIMIT)).isEmpty()) {
-        findBatch();
-        for (Contract contract : contracts) {
-          try {
-            factory.process(contract);
-            incrementDone(contract);
-          } catch (Exception e) {
-            TraceBackService.trace(e);
-            incrementAnomaly(contract);
-          }
-        }
-        JPA.clear();
-      }
+      processRecords(
+          Contract.class,
+          factory.getFilter(),
+          factory.getParams(batch),
+          contract -> process(factory, contract));
     } catch (Exception e) {
       TraceBackService.trace(e);
       LOG.error(e.getMessage());
     }
   }
 
+  @Override
+  protected String getPartitionKey() {
+    return "id";
+  }
+
+  protected void process(BatchContractFactory factory, Contract contract) {
+    try {
+      factory.process(contract);
+      incrementDone(contract);
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+      incrementAnomaly(contract);
+    }
+  }
+
   protected void incrementDone(Contract contract) {
-    contract.addBatchSetItem(batch);
+    contract.addBatchSetItem(findBatch());
     super.incrementDone();
   }
 
   protected void incrementAnomaly(Contract contract) {
     findBatch();
     contract = repository.find(contract.getId());
-    contract.addBatchSetItem(batch);
+    contract.addBatchSetItem(findBatch());
     super.incrementAnomaly();
   }
 
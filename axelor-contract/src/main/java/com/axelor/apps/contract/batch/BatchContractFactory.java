@@ -22,9 +22,11 @@ import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
 
 abstract class BatchContractFactory {
   ContractRepository repository;
@@ -39,7 +41,29 @@ abstract class BatchContractFactory {
     this.baseService = baseService;
   }
 
-  abstract Query<Contract> prepare(Batch batch);
+  /**
+   * Filter of the contracts to process, without the batch keyset filter.
+   *
+   * @return the filter
+   */
+  abstract String getFilter();
+
+  /**
+   * Named parameters of the {@link #getFilter() filter}.
+   *
+   * @param batch
+   * @return the parameters
+   */
+  Map<String, Object> getParams(Batch batch) {
+    Map<String, Object> params = new HashMap<>();
+    params.put(
+        "date",
+        baseService
+            .getTodayDate(batch.getContractBatch().getCompany())
+            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+    params.put("batch", batch);
+    return params;
+  }
 
   abstract void process(Contract contract) throws AxelorException;
 }
@@ -17,15 +17,12 @@
  */
 package com.axelor.apps.contract.batch;
 
-import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
-import java.time.format.DateTimeFormatter;
 
 public class BatchContractFactoryInvoicing extends BatchContractFactory {
 
@@ -36,20 +33,11 @@ public class BatchContractFactoryInvoicing extends BatchContractFactory {
   }
 
   @Override
-  public Query<Contract> prepare(Batch batch) {
-    return repository
-        .all()
-        .filter(
-            "self.isInvoicingManagement = TRUE "
-                + "AND self.currentContractVersion.automaticInvoicing = TRUE "
-                + "AND self.invoicingDate <= :date "
-                + "AND :batch NOT MEMBER of self.batchSet")
-        .bind(
-            "date",
-            baseService
-                .getTodayDate(batch.getContractBatch().getCompany())
-                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd")))
-        .bind("batch", batch);
+  public String getFilter() {
+    return "self.isInvoicingManagement = TRUE "
+        + "AND self.currentContractVersion.automaticInvoicing = TRUE "
+        + "AND self.invoicingDate <= :date "
+        + "AND :batch NOT MEMBER of self.batchSet";
   }
 
   @Override
@@ -23,10 +23,9 @@ import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.db.repo.ContractVersionRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
-import java.time.format.DateTimeFormatter;
+import java.util.Map;
 
 public class BatchContractFactoryNextActivation extends BatchContractFactory {
 
@@ -37,20 +36,17 @@ public class BatchContractFactoryNextActivation extends BatchContractFactory {
   }
 
   @Override
-  Query<Contract> prepare(Batch batch) {
-    return repository
-        .all()
-        .filter(
-            "self.nextVersion.supposedActivationDate <= :date "
-                + "AND self.nextVersion.statusSelect = :status "
-                + "AND :batch NOT MEMBER of self.batchSet")
-        .bind(
-            "date",
-            baseService
-                .getTodayDate(batch.getContractBatch().getCompany())
-                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd")))
-        .bind("status", ContractVersionRepository.WAITING_VERSION)
-        .bind("batch", batch);
+  String getFilter() {
+    return "self.nextVersion.supposedActivationDate <= :date "
+        + "AND self.nextVersion.statusSelect = :status "
+        + "AND :batch NOT MEMBER of self.batchSet";
+  }
+
+  @Override
+  Map<String, Object> getParams(Batch batch) {
+    Map<String, Object> params = super.getParams(batch);
+    params.put("status", ContractVersionRepository.WAITING_VERSION);
+    return params;
   }
 
   @Override
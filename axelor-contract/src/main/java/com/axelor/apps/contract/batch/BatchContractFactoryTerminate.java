@@ -22,10 +22,9 @@ import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
-import java.time.format.DateTimeFormatter;
+import java.util.Map;
 
 public class BatchContractFactoryTerminate extends BatchContractFactory {
 
@@ -36,21 +35,18 @@ public class BatchContractFactoryTerminate extends BatchContractFactory {
   }
 
   @Override
-  Query<Contract> prepare(Batch batch) {
-    return repository
-        .all()
-        .filter(
-            "(self.terminatedDate <= :date "
-                + " OR self.currentContractVersion.supposedEndDate <= :date)"
-                + " AND self.statusSelect = :status"
-                + " AND :batch NOT MEMBER of self.batchSet")
-        .bind(
-            "date",
-            baseService
-                .getTodayDate(batch.getContractBatch().getCompany())
-                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd")))
-        .bind("status", ContractRepository.ACTIVE_CONTRACT)
-        .bind("batch", batch);
+  String getFilter() {
+    return "(self.terminatedDate <= :date "
+        + " OR self.currentContractVersion.supposedEndDate <= :date)"
+        + " AND self.statusSelect = :status"
+        + " AND :batch NOT MEMBER of self.batchSet";
+  }
+
+  @Override
+  Map<String, Object> getParams(Batch batch) {
+    Map<String, Object> params = super.getParams(batch);
+    params.put("status", ContractRepository.ACTIVE_CONTRACT);
+    return params;
   }
 
   @Override
@@ -19,6 +19,8 @@ package com.axelor.apps.hr.service;
 
 import com.axelor.app.internal.AppFilter;
 import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.service.script.GroovyScriptService;
+import com.axelor.apps.base.service.script.TemplateFormula;
 import com.axelor.apps.hr.db.Employee;
 import com.axelor.apps.hr.db.EmployeeBonusMgt;
 import com.axelor.apps.hr.db.EmployeeBonusMgtLine;
@@ -35,16 +37,16 @@ import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.tool.template.TemplateMaker;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
-import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import org.codehaus.groovy.control.CompilerConfiguration;
-import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class EmployeeBonusService {
 
@@ -54,8 +56,31 @@ public class EmployeeBonusService {
 
   @Inject EmployeeServiceImpl employeeService;
 
+  @Inject GroovyScriptService groovyScriptService;
+
   private static final char TEMPLATE_DELIMITER = '$';
 
+  /** Names the HR variables of the formulas are bound to. */
+  protected static final String LENGTH_OF_SERVICE_VARIABLE = "lengthOfService";
+
+  protected static final String AGE_VARIABLE = "age";
+
+  protected static final String WORKING_DAYS_VARIABLE = "workingDayNumber";
+
+  protected static final String TOTAL_WORKING_DAYS_VARIABLE = "totalWorkingDayNumber";
+
+  protected static final Map<String, Class<?>> FORMULA_CONTEXT_TYPES =
+      ImmutableMap.<String, Class<?>>builder()
+          .put("Employee", Employee.class)
+          .put("EmployeeBonusMgtLine", EmployeeBonusMgtLine.class)
+          .put(LENGTH_OF_SERVICE_VARIABLE, Integer.class)
+          .put(AGE_VARIABLE, Integer.class)
+          .put(WORKING_DAYS_VARIABLE, BigDecimal.class)
+          .put(TOTAL_WORKING_DAYS_VARIABLE, BigDecimal.class)
+          .build();
+
+  private static final Pattern LEADING_VARIABLE_PATTERN = Pattern.compile("\\$(\\w+)\\$.+");
+
   @Transactional(rollbackOn = {Exception.class})
   public void compute(EmployeeBonusMgt bonus) throws AxelorException {
     Map<Employee, EmployeeBonusMgtLine> employeeStatus = new HashMap<>();
@@ -74,13 +99,21 @@ public class EmployeeBonusService {
             AppFilter.getLocale(),
             TEMPLATE_DELIMITER,
             TEMPLATE_DELIMITER);
-    String eval;
-    CompilerConfiguration conf = new CompilerConfiguration();
-    ImportCustomizer customizer = new ImportCustomizer();
-    customizer.addStaticStars("java.lang.Math");
-    conf.addCompilationCustomizers(customizer);
-    Binding binding = new Binding();
-    GroovyShell shell = new GroovyShell(binding, conf);
+
+    // The formulas are compiled once, the values of each employee are bound at evaluation.
+    HRConfig hrConfig = bonus.getCompany().getHrConfig();
+    TemplateFormula condition = null;
+    try {
+      condition = compileFormula(bonus.getEmployeeBonusType().getApplicationCondition(), hrConfig);
+    } catch (AxelorException e) {
+      TraceBackService.trace(e);
+    }
+    TemplateFormula formula = null;
+    try {
+      formula = compileFormula(bonus.getEmployeeBonusType().getFormula(), hrConfig);
+    } catch (AxelorException e) {
+      TraceBackService.trace(e);
+    }
 
     Integer employeeBonusStatus = EmployeeBonusMgtRepository.STATUS_CALCULATED;
     for (Employee employee : allEmployee) {
@@ -97,34 +130,26 @@ public class EmployeeBonusService {
         }
       }
 
-      maker.setContext(employee, "Employee");
       EmployeeBonusMgtLine line = new EmployeeBonusMgtLine();
       line.setEmployeeBonusMgt(bonus);
       line.setEmployee(employee);
-      maker.addInContext("EmployeeBonusMgtLine", line);
-      String formula = bonus.getEmployeeBonusType().getApplicationCondition();
       Integer lineStatus = EmployeeBonusMgtLineRepository.STATUS_CALCULATED;
+      Map<String, Object> context = null;
       try {
-        formula =
-            replaceExpressionInFormula(
-                formula, bonus.getCompany().getHrConfig(), employee, bonus.getPayPeriod());
+        context = createFormulaContext(hrConfig, employee, line, bonus.getPayPeriod());
       } catch (Exception e) {
         TraceBackService.trace(e);
-        formula = "true";
+      }
+
+      boolean applicable = true;
+      if (context == null || condition == null) {
         lineStatus = EmployeeBonusMgtLineRepository.STATUS_ANOMALY;
+      } else {
+        applicable = condition.evaluate(context, maker).toString().equals("true");
       }
-      maker.setTemplate(formula);
-      eval = maker.make();
-
-      if (shell.evaluate(eval).toString().equals("true")) {
-        try {
-          formula =
-              replaceExpressionInFormula(
-                  bonus.getEmployeeBonusType().getFormula(),
-                  bonus.getCompany().getHrConfig(),
-                  employee,
-                  bonus.getPayPeriod());
-        } catch (Exception e) {
+
+      if (applicable) {
+        if (formula == null) {
           lineStatus = EmployeeBonusMgtLineRepository.STATUS_ANOMALY;
         }
 
@@ -140,9 +165,7 @@ public class EmployeeBonusService {
         line.setCoef(employee.getBonusCoef());
         line.setWeeklyPlanning(employee.getWeeklyPlanning());
 
-        maker.setTemplate(formula);
-        eval = maker.make();
-        line.setAmount(new BigDecimal(shell.evaluate(eval).toString()));
+        line.setAmount(new BigDecimal(formula.evaluate(context, maker).toString()));
 
         employeeBonusMgtLineRepo.save(line);
       }
@@ -151,45 +174,75 @@ public class EmployeeBonusService {
     employeeBonusMgtRepo.save(bonus);
   }
 
-  public String replaceExpressionInFormula(
-      String formula, HRConfig hrConfig, Employee employee, Period period) throws AxelorException {
+  /**
+   * Compile a bonus formula, with the HR variables of the configuration replaced by the names they
+   * are bound to.
+   */
+  protected TemplateFormula compileFormula(String formula, HRConfig hrConfig)
+      throws AxelorException {
+    Map<String, String> variableNames = getVariableNames(hrConfig);
+    for (Map.Entry<String, String> variableName : variableNames.entrySet()) {
+      formula = formula.replace(variableName.getKey(), "$" + variableName.getValue() + "$");
+    }
 
+    // For checking that formula contains variables like $*$
+    Matcher matcher = LEADING_VARIABLE_PATTERN.matcher(formula);
+    if (matcher.matches() && !variableNames.containsValue(matcher.group(1))) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_MISSING_FIELD,
+          I18n.get(IExceptionMessage.HR_CONFIG_FORMULA_VARIABLE_MISSING),
+          hrConfig.getCompany().getName());
+    }
+
+    return new TemplateFormula(formula, FORMULA_CONTEXT_TYPES, groovyScriptService);
+  }
+
+  /** The HR variables set in the configuration, with the names they are bound to. */
+  protected Map<String, String> getVariableNames(HRConfig hrConfig) {
+    Map<String, String> variableNames = new LinkedHashMap<>();
     if (!Strings.isNullOrEmpty(hrConfig.getAgeVariableName())) {
-      formula =
-          formula.replace(
-              hrConfig.getAgeVariableName(),
-              String.valueOf(employeeService.getAge(employee, period.getFromDate())));
+      variableNames.put(hrConfig.getAgeVariableName(), AGE_VARIABLE);
     }
     if (!Strings.isNullOrEmpty(hrConfig.getSeniorityVariableName())) {
-      formula =
-          formula.replace(
-              hrConfig.getSeniorityVariableName(),
-              String.valueOf(employeeService.getLengthOfService(employee, period.getFromDate())));
+      variableNames.put(hrConfig.getSeniorityVariableName(), LENGTH_OF_SERVICE_VARIABLE);
     }
     if (!Strings.isNullOrEmpty(hrConfig.getWorkingDaysVariableName())) {
-      formula =
-          formula.replace(
-              hrConfig.getWorkingDaysVariableName(),
-              String.valueOf(
-                  employeeService.getDaysWorkedInPeriod(
-                      employee, period.getFromDate(), period.getToDate())));
+      variableNames.put(hrConfig.getWorkingDaysVariableName(), WORKING_DAYS_VARIABLE);
     }
     if (!Strings.isNullOrEmpty(hrConfig.getTotalWorkingDaysVariableName())) {
-      formula =
-          formula.replace(
-              hrConfig.getTotalWorkingDaysVariableName(),
-              String.valueOf(
-                  employeeService.getDaysWorksInPeriod(
-                      employee, period.getFromDate(), period.getToDate())));
+      variableNames.put(hrConfig.getTotalWorkingDaysVariableName(), TOTAL_WORKING_DAYS_VARIABLE);
     }
+    return variableNames;
+  }
 
-    // For checking that formula contains variables like $*$
-    if (formula.matches("(\\$\\w+\\$).+")) {
-      throw new AxelorException(
-          TraceBackRepository.CATEGORY_MISSING_FIELD,
-          I18n.get(IExceptionMessage.HR_CONFIG_FORMULA_VARIABLE_MISSING),
-          hrConfig.getCompany().getName());
+  protected Map<String, Object> createFormulaContext(
+      HRConfig hrConfig, Employee employee, EmployeeBonusMgtLine line, Period period)
+      throws AxelorException {
+    Map<String, Object> context = new HashMap<>();
+    context.put("Employee", employee);
+    context.put("EmployeeBonusMgtLine", line);
+
+    Map<String, String> variableNames = getVariableNames(hrConfig);
+    if (variableNames.containsValue(AGE_VARIABLE)) {
+      context.put(AGE_VARIABLE, employeeService.getAge(employee, period.getFromDate()));
+    }
+    if (variableNames.containsValue(LENGTH_OF_SERVICE_VARIABLE)) {
+      context.put(
+          LENGTH_OF_SERVICE_VARIABLE,
+          employeeService.getLengthOfService(employee, period.getFromDate()));
+    }
+    if (variableNames.containsValue(WORKING_DAYS_VARIABLE)) {
+      context.put(
+          WORKING_DAYS_VARIABLE,
+          employeeService.getDaysWorkedInPeriod(
+              employee, period.getFromDate(), period.getToDate()));
+    }
+    if (variableNames.containsValue(TOTAL_WORKING_DAYS_VARIABLE)) {
+      context.put(
+          TOTAL_WORKING_DAYS_VARIABLE,
+          employeeService.getDaysWorksInPeriod(
+              employee, period.getFromDate(), period.getToDate()));
     }
-    return formula;
+    return context;
   }
 }
@@ -21,9 +21,6 @@ import com.axelor.apps.base.db.AppExpense;
 import com.axelor.apps.base.db.AppLeave;
 import com.axelor.apps.base.db.AppTimesheet;
 import com.axelor.apps.base.db.Company;
-import com.axelor.apps.base.db.repo.AppExpenseRepository;
-import com.axelor.apps.base.db.repo.AppLeaveRepository;
-import com.axelor.apps.base.db.repo.AppTimesheetRepository;
 import com.axelor.apps.base.db.repo.CompanyRepository;
 import com.axelor.apps.base.service.app.AppBaseServiceImpl;
 import com.axelor.apps.hr.db.HRConfig;
@@ -41,37 +38,23 @@ import java.util.Map;
 public class AppHumanResourceServiceImpl extends AppBaseServiceImpl
     implements AppHumanResourceService {
 
-  private AppTimesheetRepository appTimesheetRepo;
-  private AppLeaveRepository appLeaveRepo;
-  private AppExpenseRepository appExpenseRepo;
-
   @Inject private CompanyRepository companyRepo;
 
   @Inject private HRConfigRepository hrConfigRepo;
 
-  @Inject
-  public AppHumanResourceServiceImpl(
-      AppTimesheetRepository appTimesheetRepo,
-      AppLeaveRepository appLeaveRepo,
-      AppExpenseRepository appExpense) {
-    this.appTimesheetRepo = appTimesheetRepo;
-    this.appLeaveRepo = appLeaveRepo;
-    this.appExpenseRepo = appExpense;
-  }
-
   @Override
   public AppTimesheet getAppTimesheet() {
-    return appTimesheetRepo.all().fetchOne();
+    return appConfigCache.find(AppTimesheet.class);
   }
 
   @Override
   public AppLeave getAppLeave() {
-    return appLeaveRepo.all().fetchOne();
+    return appConfigCache.find(AppLeave.class);
   }
 
   @Override
   public AppExpense getAppExpense() {
-    return appExpenseRepo.all().fetchOne();
+    return appConfigCache.find(AppExpense.class);
   }
 
   @Override
@@ -33,6 +33,8 @@
 package com.axelor.apps.hr.service.batch;
 
 import com.axelor.app.internal.AppFilter;
+import com.axelor.apps.base.service.script.GroovyScriptService;
+import com.axelor.apps.base.service.script.TemplateFormula;
 import com.axelor.apps.hr.db.Employee;
 import com.axelor.apps.hr.db.EmploymentContract;
 import com.axelor.apps.hr.db.HRConfig;
@@ -55,14 +57,14 @@ import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.tool.template.TemplateMaker;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
-import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
-import org.codehaus.groovy.control.CompilerConfiguration;
-import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import java.util.Map;
 
 public class BatchSeniorityLeaveManagement extends BatchStrategy {
 
@@ -71,9 +73,27 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
   int confAnomaly;
 
   private static final char TEMPLATE_DELIMITER = '$';
+
+  /** Names the HR variables of the rule formulas are bound to. */
+  protected static final String LENGTH_OF_SERVICE_VARIABLE = "lengthOfService";
+
+  protected static final String AGE_VARIABLE = "age";
+
+  protected static final Map<String, Class<?>> FORMULA_CONTEXT_TYPES =
+      ImmutableMap.of(
+          "Employee",
+          Employee.class,
+          LENGTH_OF_SERVICE_VARIABLE,
+          Integer.class,
+          AGE_VARIABLE,
+          Integer.class);
+
   protected TemplateMaker maker;
   protected HRConfig hrConfig;
 
+  /** Rule formulas, compiled once for all the employees. */
+  protected Map<String, TemplateFormula> formulas = new HashMap<>();
+
   protected LeaveLineRepository leaveLineRepository;
   protected LeaveManagementRepository leaveManagementRepository;
 
@@ -167,7 +187,6 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
 
     batch = batchRepo.find(batch.getId());
     int count = 0;
-    String eval = null;
     LeaveLine leaveLine = null;
     BigDecimal quantity = BigDecimal.ZERO;
 
@@ -215,29 +234,19 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
               .getLeaveManagementBatchRuleList()) {
 
         if (rule.getExecutiveStatusSelect().equals(executiveStatusSelect)) {
-          maker.setContext(employee, "Employee");
-          String formula = rule.getFormula();
-          formula =
-              formula.replace(
-                  hrConfig.getSeniorityVariableName(),
-                  String.valueOf(
-                      Beans.get(EmployeeService.class)
-                          .getLengthOfService(employee, batch.getHrBatch().getReferentialDate())));
-          formula =
-              formula.replace(
-                  hrConfig.getAgeVariableName(),
-                  String.valueOf(
-                      Beans.get(EmployeeService.class)
-                          .getAge(employee, batch.getHrBatch().getReferentialDate())));
-          maker.setTemplate(formula);
-          eval = maker.make();
-          CompilerConfiguration conf = new CompilerConfiguration();
-          ImportCustomizer customizer = new ImportCustomizer();
-          customizer.addStaticStars("java.lang.Math");
-          conf.addCompilationCustomizers(customizer);
-          Binding binding = new Binding();
-          GroovyShell shell = new GroovyShell(binding, conf);
-          if (shell.evaluate(eval).toString().equals("true")) {
+          TemplateFormula formula =
+              formulas.computeIfAbsent(rule.getFormula(), this::compileFormula);
+          Map<String, Object> context = new HashMap<>();
+          context.put("Employee", employee);
+          context.put(
+              LENGTH_OF_SERVICE_VARIABLE,
+              Beans.get(EmployeeService.class)
+                  .getLengthOfService(employee, batch.getHrBatch().getReferentialDate()));
+          context.put(
+              AGE_VARIABLE,
+              Beans.get(EmployeeService.class)
+                  .getAge(employee, batch.getHrBatch().getReferentialDate()));
+          if (formula.evaluate(context, maker).toString().equals("true")) {
             quantity = rule.getLeaveDayNumber();
             break;
           }
@@ -266,6 +275,20 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
     }
   }
 
+  /** Compile a rule formula, with the HR variables replaced by the names they are bound to. */
+  protected TemplateFormula compileFormula(String formula) {
+    if (!Strings.isNullOrEmpty(hrConfig.getSeniorityVariableName())) {
+      formula =
+          formula.replace(
+              hrConfig.getSeniorityVariableName(), "$" + LENGTH_OF_SERVICE_VARIABLE + "$");
+    }
+    if (!Strings.isNullOrEmpty(hrConfig.getAgeVariableName())) {
+      formula = formula.replace(hrConfig.getAgeVariableName(), "$" + AGE_VARIABLE + "$");
+    }
+    return new TemplateFormula(
+        formula, FORMULA_CONTEXT_TYPES, Beans.get(GroovyScriptService.class));
+  }
+
   @Override
   protected void stop() {
 
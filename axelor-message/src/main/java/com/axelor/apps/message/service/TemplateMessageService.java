@@ -40,6 +40,20 @@ public interface TemplateMessageService {
       throws ClassNotFoundException, InstantiationException, IllegalAccessException,
           AxelorException, IOException;
 
+  /**
+   * Generate one message per record from the same template, parsing its fields only once.
+   *
+   * @param objectIds ids of the records
+   * @param model full name of the model of the records
+   * @param tag name of the record in the template context
+   * @param template the message template
+   * @return the generated messages, in the order of the ids
+   */
+  public List<Message> generateMessages(
+      List<Long> objectIds, String model, String tag, Template template)
+      throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+          AxelorException, IOException;
+
   public Message generateAndSendMessage(Model model, Template template)
       throws MessagingException, IOException, AxelorException, ClassNotFoundException,
           InstantiationException, IllegalAccessException;
@@ -30,6 +30,7 @@ import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
 import com.axelor.db.Query;
+import com.axelor.db.mapper.Mapper;
 import com.axelor.dms.db.DMSFile;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
@@ -46,6 +47,7 @@ import com.axelor.text.StringTemplates;
 import com.axelor.text.Templates;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -53,6 +55,7 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -66,6 +69,18 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
   private static final String RECIPIENT_SEPARATOR = ";|,";
   private static final char TEMPLATE_DELIMITER = '$';
 
+  /** Fields of a message template holding a text to render. */
+  protected static final List<String> TEMPLATE_FIELDS =
+      ImmutableList.of(
+          "content",
+          "addressBlock",
+          "subject",
+          "replyToRecipients",
+          "toRecipients",
+          "ccRecipients",
+          "bccRecipients",
+          "signature");
+
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   protected MessageService messageService;
@@ -92,15 +107,27 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
   public Message generateMessage(Long objectId, String model, String tag, Template template)
       throws ClassNotFoundException, InstantiationException, IllegalAccessException,
           AxelorException, IOException {
+    Templates templates = getTemplates(template);
+    return generateMessage(
+        objectId, model, tag, template, templates, parseFields(template, templates));
+  }
 
-    Templates templates;
-    Map<String, Object> templatesContext = Maps.newHashMap();
+  /**
+   * Generate a message from the fields of the template parsed beforehand.
+   *
+   * @param fields the parsed fields of the template, by field name
+   */
+  protected Message generateMessage(
+      Long objectId,
+      String model,
+      String tag,
+      Template template,
+      Templates templates,
+      Map<String, com.axelor.text.Template> fields)
+      throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+          AxelorException, IOException {
 
-    if (template.getTemplateEngineSelect() == TemplateRepository.TEMPLATE_ENGINE_GROOVY_TEMPLATE) {
-      templates = Beans.get(GroovyTemplates.class);
-    } else {
-      templates = new StringTemplates(TEMPLATE_DELIMITER, TEMPLATE_DELIMITER);
-    }
+    Map<String, Object> templatesContext = Maps.newHashMap();
 
     Object modelObj = template.getIsJson() ? template.getMetaJsonModel() : template.getMetaModel();
 
@@ -141,37 +168,35 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
     String signature = "";
 
     if (!Strings.isNullOrEmpty(template.getContent())) {
-      content = templates.fromText(template.getContent()).make(templatesContext).render();
+      content = render(fields, "content", templatesContext);
     }
 
     if (!Strings.isNullOrEmpty(template.getAddressBlock())) {
-      addressBlock = templates.fromText(template.getAddressBlock()).make(templatesContext).render();
+      addressBlock = render(fields, "addressBlock", templatesContext);
     }
 
     if (!Strings.isNullOrEmpty(template.getSubject())) {
-      subject = templates.fromText(template.getSubject()).make(templatesContext).render();
+      subject = render(fields, "subject", templatesContext);
       log.debug("Subject ::: {}", subject);
     }
 
     if (!Strings.isNullOrEmpty(template.getReplyToRecipients())) {
-      replyToRecipients =
-          templates.fromText(template.getReplyToRecipients()).make(templatesContext).render();
+      replyToRecipients = render(fields, "replyToRecipients", templatesContext);
       log.debug("Reply to ::: {}", replyToRecipients);
     }
 
     if (template.getToRecipients() != null) {
-      toRecipients = templates.fromText(template.getToRecipients()).make(templatesContext).render();
+      toRecipients = render(fields, "toRecipients", templatesContext);
       log.debug("To ::: {}", toRecipients);
     }
 
     if (template.getCcRecipients() != null) {
-      ccRecipients = templates.fromText(template.getCcRecipients()).make(templatesContext).render();
+      ccRecipients = render(fields, "ccRecipients", templatesContext);
       log.debug("CC ::: {}", ccRecipients);
     }
 
     if (template.getBccRecipients() != null) {
-      bccRecipients =
-          templates.fromText(template.getBccRecipients()).make(templatesContext).render();
+      bccRecipients = render(fields, "bccRecipients", templatesContext);
       log.debug("BCC ::: {}", bccRecipients);
     }
 
@@ -179,7 +204,7 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
     log.debug("Media ::: {}", mediaTypeSelect);
 
     if (template.getSignature() != null) {
-      signature = templates.fromText(template.getSignature()).make(templatesContext).render();
+      signature = render(fields, "signature", templatesContext);
       log.debug("Signature ::: {}", signature);
     }
     EmailAccount mailAccount = getMailAccount();
@@ -218,6 +243,57 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
     return message;
   }
 
+  @Override
+  @Transactional(rollbackOn = {Exception.class})
+  public List<Message> generateMessages(
+      List<Long> objectIds, String model, String tag, Template template)
+      throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+          AxelorException, IOException {
+
+    Templates templates = getTemplates(template);
+    Map<String, com.axelor.text.Template> fields = parseFields(template, templates);
+
+    List<Message> messages = new ArrayList<>(objectIds.size());
+    for (Long objectId : objectIds) {
+      messages.add(generateMessage(objectId, model, tag, template, templates, fields));
+    }
+    return messages;
+  }
+
+  protected Templates getTemplates(Template template) {
+    if (template.getTemplateEngineSelect() == TemplateRepository.TEMPLATE_ENGINE_GROOVY_TEMPLATE) {
+      return Beans.get(GroovyTemplates.class);
+    }
+    return new StringTemplates(TEMPLATE_DELIMITER, TEMPLATE_DELIMITER);
+  }
+
+  /**
+   * Parse the text fields of the template, to render them for each message.
+   *
+   * @param template the message template
+   * @param templates the template engine
+   * @return the parsed fields which are not empty, by field name
+   */
+  protected Map<String, com.axelor.text.Template> parseFields(
+      Template template, Templates templates) {
+    Map<String, com.axelor.text.Template> fields = new HashMap<>();
+    for (String fieldName : TEMPLATE_FIELDS) {
+      String text = (String) Mapper.of(Template.class).get(template, fieldName);
+      if (!Strings.isNullOrEmpty(text)) {
+        fields.put(fieldName, templates.fromText(text));
+      }
+    }
+    return fields;
+  }
+
+  protected String render(
+      Map<String, com.axelor.text.Template> fields,
+      String fieldName,
+      Map<String, Object> templatesContext) {
+    com.axelor.text.Template field = fields.get(fieldName);
+    return field == null ? "" : field.make(templatesContext).render();
+  }
+
   @Override
   public Message generateAndSendMessage(Model model, Template template)
       throws MessagingException, IOException, AxelorException, ClassNotFoundException,
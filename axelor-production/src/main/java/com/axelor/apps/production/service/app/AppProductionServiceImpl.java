@@ -35,7 +35,7 @@ public class AppProductionServiceImpl extends AppBaseServiceImpl implements AppP
 
   @Override
   public AppProduction getAppProduction() {
-    return Query.of(AppProduction.class).cacheable().fetchOne();
+    return appConfigCache.find(AppProduction.class);
   }
 
   @Override
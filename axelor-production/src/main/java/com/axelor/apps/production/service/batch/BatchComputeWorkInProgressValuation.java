@@ -86,14 +86,15 @@ public class BatchComputeWorkInProgressValuation extends AbstractBatch {
     }
 
     Query<ManufOrder> manufOrderQuery =
-        Beans.get(ManufOrderRepository.class).all().filter(domain).bind(bindValues);
+        Beans.get(ManufOrderRepository.class)
+            .all()
+            .filter(domain + " AND " + KEYSET_FILTER)
+            .bind(bindValues)
+            .order("id");
 
-    int offset = 0;
-
-    while (!(manufOrderList = manufOrderQuery.order("id").fetch(FETCH_LIMIT, offset)).isEmpty()) {
+    while (!(manufOrderList = fetchNextPage(manufOrderQuery)).isEmpty()) {
 
       for (ManufOrder manufOrder : manufOrderList) {
-        ++offset;
         try {
           costSheetService.computeCostPrice(
               manufOrder, CostSheetRepository.CALCULATION_WORK_IN_PROGRESS, valuationDate);
@@ -103,10 +104,16 @@ public class BatchComputeWorkInProgressValuation extends AbstractBatch {
           TraceBackService.trace(e, ExceptionOriginRepository.COST_SHEET, batch.getId());
         }
       }
+      saveCursor(manufOrderList.get(manufOrderList.size() - 1));
       JPA.clear();
     }
   }
 
+  @Override
+  protected boolean isResumable() {
+    return true;
+  }
+
   @Override
   protected void stop() {
 
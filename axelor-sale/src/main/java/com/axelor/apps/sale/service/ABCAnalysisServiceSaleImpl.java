@@ -17,13 +17,10 @@
  */
 package com.axelor.apps.sale.service;
 
-import static com.axelor.apps.base.service.administration.AbstractBatch.FETCH_LIMIT;
 import static com.axelor.apps.tool.date.DateTool.toDate;
 import static com.axelor.apps.tool.date.DateTool.toLocalDateT;
 
 import com.axelor.apps.base.db.ABCAnalysis;
-import com.axelor.apps.base.db.ABCAnalysisLine;
-import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.repo.ABCAnalysisClassRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisLineRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisRepository;
@@ -31,16 +28,12 @@ import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.service.ABCAnalysisServiceImpl;
 import com.axelor.apps.base.service.UnitConversionService;
 import com.axelor.apps.base.service.administration.SequenceService;
-import com.axelor.apps.sale.db.SaleOrderLine;
 import com.axelor.apps.sale.db.repo.SaleOrderLineRepository;
 import com.axelor.apps.sale.db.repo.SaleOrderRepository;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
-import java.math.BigDecimal;
 import java.util.List;
-import java.util.Optional;
 
 public class ABCAnalysisServiceSaleImpl extends ABCAnalysisServiceImpl {
   protected SaleOrderLineRepository saleOrderLineRepository;
@@ -67,59 +60,30 @@ public class ABCAnalysisServiceSaleImpl extends ABCAnalysisServiceImpl {
   }
 
   @Override
-  protected Optional<ABCAnalysisLine> createABCAnalysisLine(
-      ABCAnalysis abcAnalysis, Product product) throws AxelorException {
-    ABCAnalysisLine abcAnalysisLine = null;
-    BigDecimal productQty = BigDecimal.ZERO;
-    BigDecimal productWorth = BigDecimal.ZERO;
-    List<SaleOrderLine> saleOrderLineList;
-    int offset = 0;
-
-    Query<SaleOrderLine> saleOrderLineQuery =
-        saleOrderLineRepository
-            .all()
-            .filter(
-                "(self.saleOrder.statusSelect = :statusConfirmed OR self.saleOrder.statusSelect = :statusCompleted) AND self.saleOrder.confirmationDateTime >= :startDate AND self.saleOrder.confirmationDateTime <= :endDate AND self.product.id = :productId")
-            .bind("statusConfirmed", SaleOrderRepository.STATUS_ORDER_CONFIRMED)
-            .bind("statusCompleted", SaleOrderRepository.STATUS_ORDER_COMPLETED)
-            .bind("startDate", toLocalDateT(toDate(abcAnalysis.getStartDate())))
-            .bind(
-                "endDate",
-                toLocalDateT(toDate(abcAnalysis.getEndDate()))
-                    .withHour(23)
-                    .withMinute(59)
-                    .withSecond(59))
-            .bind("productId", product.getId())
-            .order("id");
-
-    while (!(saleOrderLineList = saleOrderLineQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      offset += saleOrderLineList.size();
-      abcAnalysis = abcAnalysisRepository.find(abcAnalysis.getId());
-
-      if (abcAnalysisLine == null) {
-        abcAnalysisLine = super.createABCAnalysisLine(abcAnalysis, product).get();
-      }
-
-      for (SaleOrderLine saleOrderLine : saleOrderLineList) {
-        BigDecimal convertedQty =
-            unitConversionService.convert(
-                saleOrderLine.getUnit(), product.getUnit(), saleOrderLine.getQty(), 5, product);
-        productQty = productQty.add(convertedQty);
-        productWorth = productWorth.add(saleOrderLine.getCompanyExTaxTotal());
-      }
-
-      super.incTotalQty(productQty);
-      super.incTotalWorth(productWorth);
-
-      JPA.clear();
-    }
-
-    if (abcAnalysisLine != null) {
-      setQtyWorth(
-          abcAnalysisLineRepository.find(abcAnalysisLine.getId()), productQty, productWorth);
-    }
-
-    return Optional.ofNullable(abcAnalysisLine);
+  protected List<Object[]> getAggregatedValues(ABCAnalysis abcAnalysis) throws AxelorException {
+    return JPA.em()
+        .createQuery(
+            "SELECT product.id, productUnit.id, unit.id, SUM(self.qty), SUM(self.companyExTaxTotal)"
+                + " FROM SaleOrderLine self"
+                + " JOIN self.saleOrder saleOrder"
+                + " JOIN self.product product"
+                + " LEFT JOIN product.unit productUnit"
+                + " LEFT JOIN self.unit unit"
+                + " WHERE saleOrder.statusSelect IN (:statusConfirmed, :statusCompleted)"
+                + " AND saleOrder.confirmationDateTime >= :startDate"
+                + " AND saleOrder.confirmationDateTime <= :endDate"
+                + " GROUP BY product.id, productUnit.id, unit.id",
+            Object[].class)
+        .setParameter("statusConfirmed", SaleOrderRepository.STATUS_ORDER_CONFIRMED)
+        .setParameter("statusCompleted", SaleOrderRepository.STATUS_ORDER_COMPLETED)
+        .setParameter("startDate", toLocalDateT(toDate(abcAnalysis.getStartDate())))
+        .setParameter(
+            "endDate",
+            toLocalDateT(toDate(abcAnalysis.getEndDate()))
+                .withHour(23)
+                .withMinute(59)
+                .withSecond(59))
+        .getResultList();
   }
 
   @Override
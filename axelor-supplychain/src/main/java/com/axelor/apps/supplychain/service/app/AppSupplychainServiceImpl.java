@@ -19,7 +19,6 @@ package com.axelor.apps.supplychain.service.app;
 
 import com.axelor.apps.base.db.AppSupplychain;
 import com.axelor.apps.base.db.Company;
-import com.axelor.apps.base.db.repo.AppSupplychainRepository;
 import com.axelor.apps.base.db.repo.CompanyRepository;
 import com.axelor.apps.base.service.app.AppBaseServiceImpl;
 import com.axelor.apps.supplychain.db.SupplyChainConfig;
@@ -32,15 +31,13 @@ import java.util.List;
 @Singleton
 public class AppSupplychainServiceImpl extends AppBaseServiceImpl implements AppSupplychainService {
 
-  @Inject private AppSupplychainRepository appSupplychainRepo;
-
   @Inject private CompanyRepository companyRepo;
 
   @Inject private SupplyChainConfigRepository supplyChainConfigRepo;
 
   @Override
   public AppSupplychain getAppSupplychain() {
-    return appSupplychainRepo.all().fetchOne();
+    return appConfigCache.find(AppSupplychain.class);
   }
 
   @Override
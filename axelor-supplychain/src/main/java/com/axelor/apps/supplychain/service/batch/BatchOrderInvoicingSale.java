@@ -21,66 +21,68 @@ import com.axelor.apps.account.db.repo.InvoiceRepository;
 import com.axelor.apps.base.db.repo.BlockingRepository;
 import com.axelor.apps.base.service.BlockingService;
 import com.axelor.apps.sale.db.SaleOrder;
-import com.axelor.apps.sale.db.repo.SaleOrderRepository;
 import com.axelor.apps.supplychain.db.SupplychainBatch;
 import com.axelor.apps.supplychain.service.SaleOrderInvoiceService;
 import com.axelor.apps.tool.StringTool;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.db.repo.ExceptionOriginRepository;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.inject.Beans;
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class BatchOrderInvoicingSale extends BatchOrderInvoicing {
 
+  @Override
+  protected String getPartitionKey() {
+    // Orders of a same customer are invoiced by the same worker.
+    return "clientPartner.id";
+  }
+
   @Override
   protected void process() {
     SupplychainBatch supplychainBatch = batch.getSupplychainBatch();
     List<String> filterList = new ArrayList<>();
-    Query<SaleOrder> query = Beans.get(SaleOrderRepository.class).all();
+    Map<String, Object> params = new HashMap<>();
 
     if (supplychainBatch.getCompany() != null) {
       filterList.add("self.company = :company");
-      query.bind("company", supplychainBatch.getCompany());
+      params.put("company", supplychainBatch.getCompany());
     }
 
     if (supplychainBatch.getSalespersonOrBuyerSet() != null
         && !supplychainBatch.getSalespersonOrBuyerSet().isEmpty()) {
       filterList.add("self.salespersonUser IN (:salespersonSet)");
-      query.bind("salespersonSet", supplychainBatch.getSalespersonOrBuyerSet());
+      params.put("salespersonSet", supplychainBatch.getSalespersonOrBuyerSet());
     }
 
     if (supplychainBatch.getTeam() != null) {
       filterList.add(
           "self.team = :team "
               + "OR self.team IS NULL AND self.salespersonUser IS NOT NULL AND self.salespersonUser.activeTeam = :team");
-      query.bind("team", supplychainBatch.getTeam());
+      params.put("team", supplychainBatch.getTeam());
     }
 
     if (!Strings.isNullOrEmpty(supplychainBatch.getDeliveryOrReceiptState())) {
       List<Integer> delivereyStateList =
           StringTool.getIntegerList(supplychainBatch.getDeliveryOrReceiptState());
       filterList.add("self.deliveryState IN (:delivereyStateList)");
-      query.bind("delivereyStateList", delivereyStateList);
+      params.put("delivereyStateList", delivereyStateList);
     }
 
     if (!Strings.isNullOrEmpty(supplychainBatch.getStatusSelect())) {
       List<Integer> statusSelectList =
           StringTool.getIntegerList(supplychainBatch.getStatusSelect());
       filterList.add("self.statusSelect IN (:statusSelectList)");
-      query.bind("statusSelectList", statusSelectList);
+      params.put("statusSelectList", statusSelectList);
     }
 
     if (supplychainBatch.getOrderUpToDate() != null) {
       filterList.add("self.orderDate <= :orderUpToDate");
-      query.bind("orderUpToDate", supplychainBatch.getOrderUpToDate());
+      params.put("orderUpToDate", supplychainBatch.getOrderUpToDate());
     }
 
     filterList.add("self.amountInvoiced < self.exTaxTotal");
@@ -98,43 +100,27 @@ public class BatchOrderInvoicingSale extends BatchOrderInvoicing {
                     supplychainBatch.getCompany(), BlockingRepository.INVOICING_BLOCKING)
             + ")");
 
-    query.bind("invoiceStatusSelect", InvoiceRepository.STATUS_CANCELED);
-
-    List<Long> anomalyList = Lists.newArrayList(0L);
-    filterList.add("self.id NOT IN (:anomalyList)");
-    query.bind("anomalyList", anomalyList);
+    params.put("invoiceStatusSelect", InvoiceRepository.STATUS_CANCELED);
 
     String filter =
         filterList.stream()
             .map(item -> String.format("(%s)", item))
             .collect(Collectors.joining(" AND "));
-    query.filter(filter);
 
     SaleOrderInvoiceService saleOrderInvoiceService = Beans.get(SaleOrderInvoiceService.class);
-    Set<Long> treatedSet = new HashSet<>();
-
-    for (List<SaleOrder> saleOrderList;
-        !(saleOrderList = query.fetch(FETCH_LIMIT)).isEmpty();
-        JPA.clear()) {
-      for (SaleOrder saleOrder : saleOrderList) {
-        if (treatedSet.contains(saleOrder.getId())) {
-          throw new IllegalArgumentException("Invoice generation error");
-        }
-
-        treatedSet.add(saleOrder.getId());
-
-        try {
-          saleOrderInvoiceService.generateInvoice(saleOrder);
-          incrementDone();
-        } catch (Exception e) {
-          incrementAnomaly();
-          anomalyList.add(saleOrder.getId());
-          query.bind("anomalyList", anomalyList);
-          TraceBackService.trace(e, ExceptionOriginRepository.INVOICE_ORIGIN, batch.getId());
-          e.printStackTrace();
-          break;
-        }
-      }
-    }
+
+    processRecords(
+        SaleOrder.class,
+        filter,
+        params,
+        saleOrder -> {
+          try {
+            saleOrderInvoiceService.generateInvoice(saleOrder);
+            incrementDone();
+          } catch (Exception e) {
+            incrementAnomaly();
+            TraceBackService.trace(e, ExceptionOriginRepository.INVOICE_ORIGIN, batch.getId());
+          }
+        });
   }
 }
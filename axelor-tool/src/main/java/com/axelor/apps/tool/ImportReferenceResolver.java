@@ -0,0 +1,111 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.tool;
+
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the relations of a csv import from maps prefetched with one query per relation, instead
+ * of one search query per row.
+ *
+ * <p>Bindings searching a relation on a single string field are rewritten to call {@link
+ * #get(String, Object)} from their expression, the resolver being put in the import context under
+ * {@link #CONTEXT_KEY}. An instance is confined to the thread importing its file.
+ */
+public class ImportReferenceResolver {
+
+  /** Name of the resolver in the import context. */
+  public static final String CONTEXT_KEY = "__references__";
+
+  protected static final int QUERY_IN_LIMIT = 1000;
+
+  protected final Map<String, Lookup> lookups;
+
+  protected final Map<String, Map<String, Long>> idsByValue = new HashMap<>();
+
+  public ImportReferenceResolver(Map<String, Lookup> lookups) {
+    this.lookups = lookups;
+  }
+
+  /**
+   * Load the ids of the records matching the given values of a lookup.
+   *
+   * @param column the column of the lookup
+   * @param values the distinct values of the column in the chunk
+   */
+  public void prefetch(String column, Collection<String> values) {
+    Lookup lookup = lookups.get(column);
+    Map<String, Long> ids = idsByValue.computeIfAbsent(column, key -> new HashMap<>());
+    if (lookup == null || values.isEmpty()) {
+      return;
+    }
+
+    String query =
+        String.format(
+            "SELECT self.%s, self.id FROM %s self WHERE self.%s IN (:values) ORDER BY self.id",
+            lookup.field, lookup.target.getSimpleName(), lookup.field);
+    for (List<String> part : Lists.partition(new ArrayList<>(values), QUERY_IN_LIMIT)) {
+      List<Object[]> rows =
+          JPA.em().createQuery(query, Object[].class).setParameter("values", part).getResultList();
+      for (Object[] row : rows) {
+        ids.putIfAbsent((String) row[0], (Long) row[1]);
+      }
+    }
+  }
+
+  /**
+   * Get the record matching a value, as the search of the binding would have.
+   *
+   * @param column the column of the lookup
+   * @param value the value of the column in the current row
+   * @return a reference to the record, null if there is none
+   */
+  public Model get(String column, Object value) {
+    Lookup lookup = lookups.get(column);
+    if (lookup == null || value == null || Strings.isNullOrEmpty(value.toString())) {
+      return null;
+    }
+    Map<String, Long> ids = idsByValue.get(column);
+    if (ids == null) {
+      prefetch(column, Lists.newArrayList(value.toString()));
+      ids = idsByValue.get(column);
+    }
+    Long id = ids.get(value.toString());
+    return id == null ? null : JPA.em().getReference(lookup.target, id);
+  }
+
+  /** A relation searched on a single string field of its target. */
+  public static class Lookup {
+
+    protected final Class<? extends Model> target;
+    protected final String field;
+
+    public Lookup(Class<? extends Model> target, String field) {
+      this.target = target;
+      this.field = field;
+    }
+  }
+}
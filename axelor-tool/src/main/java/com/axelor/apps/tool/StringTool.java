@@ -22,7 +22,10 @@ import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -32,6 +35,7 @@ public final class StringTool {
       new String[] {"*", "\"", "/", "\\", "?", "%", ":", "|", "<", ">"};
   private static final String[] FILENAME_REPLACEMENT_LIST =
       new String[] {"#", "'", "_", "_", "_", "_", "_", "_", "_", "_"};
+  private static final String SOUNDEX_DIGITS = "01230120022455012623010202";
 
   private StringTool() {}
 
@@ -301,4 +305,111 @@ public final class StringTool {
       return str;
     }
   }
+
+  /**
+   * Normalize a string to compare it with others: lower case, without accents, with punctuation
+   * replaced by spaces and whitespaces collapsed.
+   *
+   * @param s the string, may be null
+   * @return the normalized string, empty if s is null
+   */
+  public static String normalizeForComparison(String s) {
+    if (s == null) {
+      return "";
+    }
+    String normalized =
+        Normalizer.normalize(s, Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "")
+            .toLowerCase(Locale.ROOT);
+    return normalized.replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+  }
+
+  /**
+   * Sort the words of a normalized string, so that "doe john" and "john doe" give the same key.
+   *
+   * @param normalized a string normalized with {@link #normalizeForComparison(String)}
+   * @return the words in alphabetical order, separated by a space
+   */
+  public static String sortWords(String normalized) {
+    if (normalized.isEmpty()) {
+      return normalized;
+    }
+    String[] words = normalized.split(" ");
+    Arrays.sort(words);
+    return String.join(" ", words);
+  }
+
+  /**
+   * Soundex code of a lower case word, numbers are kept as is.
+   *
+   * @param word a lower case word
+   * @return the soundex code, such as "r163" for "robert" and "rupert"
+   */
+  public static String soundex(String word) {
+    if (word == null || word.isEmpty() || isDigital(word)) {
+      return word;
+    }
+    StringBuilder code = new StringBuilder(4);
+    char first = word.charAt(0);
+    code.append(first);
+    char last = soundexDigit(first);
+    for (int i = 1; i < word.length() && code.length() < 4; i++) {
+      char c = word.charAt(i);
+      char digit = soundexDigit(c);
+      if (digit != '0' && digit != last) {
+        code.append(digit);
+      }
+      if (c != 'h' && c != 'w') {
+        last = digit;
+      }
+    }
+    while (code.length() < 4) {
+      code.append('0');
+    }
+    return code.toString();
+  }
+
+  private static char soundexDigit(char c) {
+    return c >= 'a' && c <= 'z' ? SOUNDEX_DIGITS.charAt(c - 'a') : '0';
+  }
+
+  /**
+   * Trigrams of a normalized string, computed like the PostgreSQL pg_trgm extension: each word is
+   * padded with two spaces before and one space after.
+   *
+   * @param normalized a string normalized with {@link #normalizeForComparison(String)}
+   * @return the set of trigrams
+   */
+  public static Set<String> trigrams(String normalized) {
+    Set<String> trigrams = new HashSet<>();
+    if (normalized.isEmpty()) {
+      return trigrams;
+    }
+    for (String word : normalized.split(" ")) {
+      String padded = "  " + word + " ";
+      for (int i = 0; i + 3 <= padded.length(); i++) {
+        trigrams.add(padded.substring(i, i + 3));
+      }
+    }
+    return trigrams;
+  }
+
+  /**
+   * Similarity of two sets of trigrams: the number of shared trigrams divided by the number of
+   * distinct trigrams.
+   *
+   * @return a number between 0 (nothing in common) and 1 (same trigrams)
+   */
+  public static double trigramSimilarity(Set<String> trigrams1, Set<String> trigrams2) {
+    if (trigrams1.isEmpty() || trigrams2.isEmpty()) {
+      return trigrams1.isEmpty() && trigrams2.isEmpty() ? 1 : 0;
+    }
+    int shared = 0;
+    for (String trigram : trigrams1) {
+      if (trigrams2.contains(trigram)) {
+        shared++;
+      }
+    }
+    return (double) shared / (trigrams1.size() + trigrams2.size() - shared);
+  }
 }
@@ -0,0 +1,51 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.tool;
+
+import com.axelor.db.JPA;
+import javax.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionImplementor;
+
+public final class TransactionTool {
+
+  private TransactionTool() {}
+
+  /**
+   * Run an action once the transaction of the current thread is over, committed or rolled back,
+   * or right away when no transaction is in progress.
+   *
+   * <p>Used to drop in-memory caches after a change. An entity listener runs at flush time, and
+   * flushed changes are only visible to other transactions once committed: a concurrent reader
+   * could cache the previous committed state again, until the next change. Listeners therefore
+   * invalidate right away, for the current transaction, and again with this method.
+   *
+   * @param action the action to run
+   */
+  public static void afterCompletion(Runnable action) {
+    EntityManager em = JPA.em();
+
+    if (!em.getTransaction().isActive()) {
+      action.run();
+      return;
+    }
+
+    em.unwrap(SessionImplementor.class)
+        .getActionQueue()
+        .registerProcess((success, session) -> action.run());
+  }
+}
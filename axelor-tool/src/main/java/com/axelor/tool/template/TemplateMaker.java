@@ -31,6 +31,8 @@ import com.axelor.rpc.Resource;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import java.io.File;
@@ -43,6 +45,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.stringtemplate.v4.AttributeRenderer;
 import org.stringtemplate.v4.DateRenderer;
@@ -52,10 +55,23 @@ import org.stringtemplate.v4.NumberRenderer;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroup;
 import org.stringtemplate.v4.StringRenderer;
+import org.stringtemplate.v4.compiler.CompiledST;
 import org.stringtemplate.v4.misc.ObjectModelAdaptor;
 
 public class TemplateMaker {
 
+  private static final int COMPILED_TEMPLATE_CACHE_SIZE = 500;
+
+  /**
+   * Compiled templates shared by all makers, keyed by delimiters and template text. They are
+   * compiled in a group per delimiters holding only stateless renderers, and instantiated in the
+   * group of each maker, so that its model adaptor and locale still apply.
+   */
+  private static final Cache<String, CompiledST> COMPILED_TEMPLATES =
+      CacheBuilder.newBuilder().maximumSize(COMPILED_TEMPLATE_CACHE_SIZE).build();
+
+  private static final Map<String, STGroup> COMPILER_GROUPS = new ConcurrentHashMap<>();
+
   private Map<String, Object> context;
   private Map<String, Object> localContext;
 
@@ -63,21 +79,29 @@ public class TemplateMaker {
   private STGroup stGroup;
   private Locale locale;
   private String timeZone;
+  private String delimiters;
 
   public TemplateMaker(
       String timeZone, Locale locale, char delimiterStartChar, char delimiterStopChar) {
     this.locale = locale;
     this.timeZone = timeZone;
-    this.stGroup = new STGroup(delimiterStartChar, delimiterStopChar);
+    this.delimiters = String.valueOf(new char[] {delimiterStartChar, delimiterStopChar});
+    this.stGroup = createGroup(delimiterStartChar, delimiterStopChar);
     // Custom renderer
     this.stGroup.registerModelAdaptor(Model.class, new ModelFormatRenderer());
-    this.stGroup.registerRenderer(LocalDate.class, new LocalDateRenderer());
-    this.stGroup.registerRenderer(LocalDateTime.class, new LocalDateTimeRenderer());
-    this.stGroup.registerRenderer(LocalTime.class, new LocalTimeRenderer());
+  }
+
+  private static STGroup createGroup(char delimiterStartChar, char delimiterStopChar) {
+    STGroup group = new STGroup(delimiterStartChar, delimiterStopChar);
+    // Custom renderer
+    group.registerRenderer(LocalDate.class, new LocalDateRenderer());
+    group.registerRenderer(LocalDateTime.class, new LocalDateTimeRenderer());
+    group.registerRenderer(LocalTime.class, new LocalTimeRenderer());
     // Default renderer provide by ST
-    this.stGroup.registerRenderer(String.class, new StringRenderer());
-    this.stGroup.registerRenderer(Number.class, new NumberRenderer());
-    this.stGroup.registerRenderer(Date.class, new DateRenderer());
+    group.registerRenderer(String.class, new StringRenderer());
+    group.registerRenderer(Number.class, new NumberRenderer());
+    group.registerRenderer(Date.class, new DateRenderer());
+    return group;
   }
 
   public void setContext(Model model) {
@@ -173,7 +197,7 @@ public class TemplateMaker {
       throw new IllegalArgumentException(I18n.get(IExceptionMessage.TEMPLATE_MAKER_2));
     }
 
-    ST st = new ST(stGroup, template);
+    ST st = createST();
 
     Map<String, Object> _map = Maps.newHashMap();
     if (localContext != null && !localContext.isEmpty()) {
@@ -204,6 +228,43 @@ public class TemplateMaker {
     return st.render(locale);
   }
 
+  private ST createST() {
+    String key = delimiters + template;
+    CompiledST compiled = COMPILED_TEMPLATES.getIfPresent(key);
+    if (compiled == null) {
+      compiled = compile();
+      if (compiled == null) {
+        return new ST(stGroup, template);
+      }
+      COMPILED_TEMPLATES.put(key, compiled);
+    }
+    try {
+      // Attributes are declared on the compiled template when added, each instance needs its own.
+      return stGroup.createStringTemplate(compiled.clone());
+    } catch (CloneNotSupportedException e) {
+      return new ST(stGroup, template);
+    }
+  }
+
+  /**
+   * Compile the template for the cache. Templates defining anonymous sub-templates are not cached,
+   * as those are registered in the group compiling them.
+   */
+  private CompiledST compile() {
+    STGroup compilerGroup =
+        COMPILER_GROUPS.computeIfAbsent(delimiters, d -> createGroup(d.charAt(0), d.charAt(1)));
+    CompiledST compiled;
+    synchronized (compilerGroup) {
+      compiled = compilerGroup.compile(compilerGroup.getFileName(), null, null, template, null);
+    }
+    if (compiled == null || compiled.implicitlyDefinedTemplates != null) {
+      return null;
+    }
+    compiled.hasFormalArgs = false;
+    compiled.name = ST.UNKNOWN_NAME;
+    return compiled;
+  }
+
   class ModelFormatRenderer implements ModelAdaptor {
 
     private Property getProperty(Class<?> beanClass, String name) {
@@ -243,7 +304,7 @@ public class TemplateMaker {
     }
   }
 
-  class LocalDateRenderer implements AttributeRenderer {
+  static class LocalDateRenderer implements AttributeRenderer {
 
     @Override
     public String toString(Object o, String formatString, Locale locale) {
@@ -253,7 +314,7 @@ public class TemplateMaker {
     }
   }
 
-  class LocalDateTimeRenderer implements AttributeRenderer {
+  static class LocalDateTimeRenderer implements AttributeRenderer {
 
     @Override
     public String toString(Object o, String formatString, Locale locale) {
@@ -263,7 +324,7 @@ public class TemplateMaker {
     }
   }
 
-  class LocalTimeRenderer implements AttributeRenderer {
+  static class LocalTimeRenderer implements AttributeRenderer {
 
     @Override
     public String toString(Object o, String formatString, Locale locale) {
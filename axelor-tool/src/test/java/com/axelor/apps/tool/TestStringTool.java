@@ -17,6 +17,7 @@
  */
 package com.axelor.apps.tool;
 
+import java.util.Set;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -55,4 +56,33 @@ public class TestStringTool {
 
     Assert.assertEquals(StringTool.fillStringLeft(resultRight, ' ', 4), "    ");
   }
+
+  @Test
+  public void testNormalizeForComparison() {
+
+    Assert.assertEquals(
+        "jean francois d arc", StringTool.normalizeForComparison(" Jean-François  D'Arc "));
+    Assert.assertEquals("", StringTool.normalizeForComparison(null));
+    Assert.assertEquals("arc d francois jean", StringTool.sortWords("jean francois d arc"));
+  }
+
+  @Test
+  public void testSoundex() {
+
+    Assert.assertEquals("r163", StringTool.soundex("robert"));
+    Assert.assertEquals("r163", StringTool.soundex("rupert"));
+    Assert.assertEquals("a261", StringTool.soundex("ashcraft"));
+    Assert.assertEquals("p236", StringTool.soundex("pfister"));
+    Assert.assertEquals("12", StringTool.soundex("12"));
+  }
+
+  @Test
+  public void testTrigramSimilarity() {
+
+    Set<String> trigrams = StringTool.trigrams("axelor");
+    Assert.assertEquals(7, trigrams.size());
+    Assert.assertEquals(1, StringTool.trigramSimilarity(trigrams, trigrams), 0);
+    Assert.assertTrue(StringTool.trigramSimilarity(trigrams, StringTool.trigrams("axellor")) > 0.5);
+    Assert.assertEquals(0, StringTool.trigramSimilarity(trigrams, StringTool.trigrams("zzz")), 0);
+  }
 }
@@ -26,15 +26,21 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class STTest {
 
+  private static final Logger LOG = LoggerFactory.getLogger(STTest.class);
+
   public Contact contact;
   public String contentFinal;
   public Map<String, Object> map = Maps.newHashMap();
@@ -161,6 +167,58 @@ public class STTest {
     }
   }
 
+  @Test
+  public void test4() {
+    String template = "$contact.lastName$ $testKey1$";
+    Contact other = new Contact("Jane", "Smith");
+
+    TemplateMaker maker = new TemplateMaker("Europe/Paris", Locale.FRENCH, '$', '$');
+    maker.setTemplate(template);
+    maker.setContext(contact, map, "contact");
+    Assert.assertEquals("John This is the key 1", maker.make());
+
+    // A new maker reuses the compiled template with its own context
+    TemplateMaker otherMaker = new TemplateMaker("Europe/Paris", Locale.FRENCH, '$', '$');
+    otherMaker.setTemplate(template);
+    otherMaker.setContext(other, "contact");
+    Assert.assertEquals("Smith ", otherMaker.make());
+
+    // Anonymous sub-templates are still rendered
+    otherMaker.setTemplate("$[\"a\",\"b\"]:{x | <$x$>}$");
+    Assert.assertEquals("<a><b>", otherMaker.make());
+  }
+
+  /**
+   * Compare rendering a template compiled once with parsing it on each make, as before compiled
+   * templates were shared: each distinct text misses the cache. The second round is logged, after
+   * the warm-up.
+   */
+  @Test
+  @Ignore("Benchmark, run manually")
+  public void benchmarkCompiledTemplates() {
+    int count = 10000;
+    TemplateMaker maker = new TemplateMaker("Europe/Paris", Locale.FRENCH, '$', '$');
+    maker.setContext(contact, map, "contact");
+
+    for (int round = 0; round < 2; round++) {
+      for (boolean compiledOnce : new boolean[] {false, true}) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+          maker.setTemplate(compiledOnce ? content : content + i);
+          Assert.assertNotNull(maker.make());
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (round > 0) {
+          LOG.info(
+              "{} renders {}: {} ms",
+              count,
+              compiledOnce ? "compiled once" : "parsed each time",
+              millis);
+        }
+      }
+    }
+  }
+
   class ThreadTest extends Thread {
     @Override
     public void run() {